@@ -16,24 +16,40 @@ public class Artist
 
     // ---------------- Class variables -------------------------------------
 
+    private ArtistStore artistStore;
+    private int artistID;
     private String displayName;
     private ArtistNames artistNames;
-    private ArtistTrackData artistTrackData;
 
     /**
-     * Class constructor.
+     * Class constructor. Artists are created by the artist store, which
+     * assigns the artist ID and keeps the track data.
      * 
+     * @param artistStore artist store that contains this artist
+     * @param artistID artist ID
      * @param displayName artist display name
      */
-    public Artist(String displayName)
+    Artist(ArtistStore artistStore, int artistID, String displayName)
     {
+        this.artistStore = artistStore;
+        this.artistID = artistID;
         this.displayName = displayName;
         artistNames = null;
-        artistTrackData = new ArtistTrackData();
     }
 
     // ---------------- Getters and setters ---------------------------------
 
+    /**
+     * Gets the artist ID. This is the key used to access the artist in the
+     * artist store.
+     * 
+     * @return artist ID
+     */
+    public int getArtistID()
+    {
+        return artistID;
+    }
+
     /**
      * Gets the display name. This is the first spelling of the artist we
      * encounter.
@@ -68,13 +84,37 @@ public class Artist
     }
     
     /**
-     * Gets the artist track data object. This contains information about all
-     * tracks for this artist.
+     * Gets the number of tracks for this artist.
+     * 
+     * @return number of tracks
+     */
+    public int getNumTracks()
+    {
+        return artistStore.getNumTracks(artistID);
+    }
+    
+    /**
+     * Gets the total time of tracks for this artist.
+     * 
+     * @return total time of tracks
+     */
+    public int getTotalTime()
+    {
+        return artistStore.getTotalTime(artistID);
+    }
+    
+    /**
+     * Gets a copy of the track data for this artist. Changing the copy does
+     * not change this artist.
      * 
      * @return artist track data object
      */
     public ArtistTrackData getArtistTrackData ()
     {
+        ArtistTrackData artistTrackData = new ArtistTrackData();
+        artistTrackData.setNumTracks(getNumTracks());
+        artistTrackData.setTotalTime(getTotalTime());
+        
         return artistTrackData;
     }
 
@@ -107,8 +147,7 @@ public class Artist
         /*
          * Update the track counts and total time.
          */
-        artistTrackData.incrementNumTracks(1);
-        artistTrackData.incrementTotalTime(track.getDuration());
+        artistStore.addTrackData(artistID, 1, track.getDuration());
 
         /*
          * The artist name could possibly be an alternate, so see if it needs to be saved.
@@ -117,13 +156,70 @@ public class Artist
     }
 
     /**
-     * Gets a correlator to use with this instance.
+     * Removes a track from this artist. This is the reverse of
+     * <code>addTrackToArtist</code>.
+     * 
+     * @param track track object
+     * @param artistLogger logger to use
+     */
+    public void removeTrackFromArtist(Track track, Logger artistLogger)
+    {  
+        if (track == null)
+        {
+            throw new IllegalArgumentException("track argument is null");
+        }
+        
+        if (artistLogger == null)
+        {
+            throw new IllegalArgumentException("artistLogger argument is null");
+        }
+        
+        artistLogger.trace("removeTrackFromArtist: " + this.hashCode());
+        
+        String artistName = track.getArtist();
+
+        /*
+         * Update the track counts and total time.
+         */
+        artistStore.addTrackData(artistID, -1, -track.getDuration());
+
+        /*
+         * The artist name could possibly be an alternate, so update that as well.
+         */
+        artistNames.checkAndRemoveAlternateName(artistName, track, artistLogger);
+    }
+
+    /**
+     * Adds track data to this artist.
+     * 
+     * @param artistTrackData artist track data object
+     */
+    public void addTrackData(ArtistTrackData artistTrackData)
+    {
+        if (artistTrackData == null)
+        {
+            throw new IllegalArgumentException("artistTrackData argument is null");
+        }
+        
+        artistStore.addTrackData(artistID, artistTrackData.getNumTracks(), 
+                artistTrackData.getTotalTime());
+    }
+
+    /**
+     * Removes track data from this artist. This is the reverse of
+     * <code>addTrackData</code>.
      * 
-     * @return correlator
+     * @param artistTrackData artist track data object
      */
-    public Integer getCorrelator()
+    public void removeTrackData(ArtistTrackData artistTrackData)
     {
-        return this.hashCode();
+        if (artistTrackData == null)
+        {
+            throw new IllegalArgumentException("artistTrackData argument is null");
+        }
+        
+        artistStore.addTrackData(artistID, -artistTrackData.getNumTracks(), 
+                -artistTrackData.getTotalTime());
     }
 
     /**
@@ -144,9 +240,9 @@ public class Artist
                 Integer.toString(numAltNames));
 
         result.put(ArtistDisplayColumns.ColumnNames.NUM_TRACKS.getNameValue(),
-                Integer.toString(artistTrackData.getNumTracks()));
+                Integer.toString(getNumTracks()));
         result.put(ArtistDisplayColumns.ColumnNames.TOTAL_TIME.getNameValue(),
-                Utilities.convertMillisecondTime(artistTrackData.getTotalTime()));
+                Utilities.convertMillisecondTime(getTotalTime()));
 
         return result;
     }
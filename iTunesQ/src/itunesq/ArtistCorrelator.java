@@ -17,6 +17,7 @@ public class ArtistCorrelator
     private String displayName = null;
     private String normalizedName = null;
     private int artistKey;
+    private int correlatorID = -1;
 
     /**
      * Class constructor.
@@ -99,6 +100,26 @@ public class ArtistCorrelator
     {
         this.artistKey = artistKey;
     }
+
+    /**
+     * Gets the correlator ID, which is assigned by the artist registry.
+     * 
+     * @return correlator ID, or -1 if the correlator has not been registered
+     */
+    public int getCorrelatorID()
+    {
+        return correlatorID;
+    }
+
+    /**
+     * Sets the correlator ID, which is assigned by the artist registry.
+     * 
+     * @param correlatorID correlator ID
+     */
+    public void setCorrelatorID(int correlatorID)
+    {
+        this.correlatorID = correlatorID;
+    }
     
     //---------------- Public methods --------------------------------------
 
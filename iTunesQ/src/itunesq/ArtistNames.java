@@ -2,6 +2,8 @@ package itunesq;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashMap;
@@ -106,6 +108,24 @@ public class ArtistNames
     private String normalizedName;
     private Preferences userPrefs;
 
+    /*
+     * Cache of display name to normalized name, with the least recently used names removed
+     * once it's full. The lookup and hit counts are for the diag log.
+     */
+    private static final java.util.LinkedHashMap<String, String> normalizedNameCache = 
+            new java.util.LinkedHashMap<String, String>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(java.util.Map.Entry<String, String> eldest)
+        {
+            return size() > InternalConstants.ARTIST_NAME_CACHE_SIZE;
+        }
+    };
+    private static long normalizedNameLookups = 0;
+    private static long normalizedNameHits = 0;
+
     private static Logger artistLogger = (Logger) LoggerFactory.getLogger(ArtistNames.class.getSimpleName() + "_Artist");
 
     /**
@@ -124,6 +144,16 @@ public class ArtistNames
 
     // ---------------- Getters and setters ---------------------------------
     
+    /**
+     * Gets the artist display name.
+     * 
+     * @return artist display name
+     */
+    public String getDisplayName ()
+    {
+        return displayName;
+    }
+    
     /**
      * Sets the artist display name.
      * 
@@ -155,6 +185,37 @@ public class ArtistNames
         return postProcessType;
     }
 
+    /**
+     * Sets the post-processing type.
+     * 
+     * @param postProcessType post-processing type
+     */
+    public void setPostProcessType(PostProcessType postProcessType)
+    {
+        this.postProcessType = postProcessType;
+    }
+
+    /**
+     * Gets the normalized artist name. This is null until 
+     * <code>normalizeName</code> has been called.
+     * 
+     * @return normalized artist name
+     */
+    public String getNormalizedName()
+    {
+        return normalizedName;
+    }
+
+    /**
+     * Sets the normalized artist name.
+     * 
+     * @param normalizedName normalized artist name
+     */
+    public void setNormalizedName(String normalizedName)
+    {
+        this.normalizedName = normalizedName;
+    }
+
     // ---------------- Public methods --------------------------------------
 
     /**
@@ -167,6 +228,33 @@ public class ArtistNames
         logging.registerLogger(Logging.Dimension.ARTIST, artistLogger);
     }
 
+    /**
+     * Gets the number of normalized name lookups, and the number of those
+     * that were found in the cache. The counts are since the last reset.
+     * 
+     * @return array of the lookup count followed by the hit count
+     */
+    public static long[] getNormalizedNameCacheStats()
+    {
+        synchronized (normalizedNameCache)
+        {
+            return new long[] { normalizedNameLookups, normalizedNameHits };
+        }
+    }
+
+    /**
+     * Resets the normalized name lookup and hit counts. The cached names are
+     * kept, since they don't depend on the input file.
+     */
+    public static void resetNormalizedNameCacheStats()
+    {
+        synchronized (normalizedNameCache)
+        {
+            normalizedNameLookups = 0;
+            normalizedNameHits = 0;
+        }
+    }
+
     /**
      * Normalizes the artist name. This involves:
      * <ul>
@@ -197,17 +285,16 @@ public class ArtistNames
      * Matches the artist name against the current list of such names. This
      * includes alternate name detection.
      * 
-     * @param artistCorrs list of current artist name correlators
+     * @param artistRegistry registry of current artist name correlators
      * @param artistLogger logger to use
-     * @return zero or a positive index to indicate the index of the found 
-     * name, or a negative index to indicate the negation of the index at 
-     * which the artist would be inserted if found
+     * @return artist correlator of the found name, or null if the artist 
+     * was not found
      */
-    public int matchArtist(ArrayList<ArtistCorrelator> artistCorrs, Logger artistLogger)
+    public ArtistCorrelator matchArtist(ArtistRegistry artistRegistry, Logger artistLogger)
     {  
-        if (artistCorrs == null)
+        if (artistRegistry == null)
         {
-            throw new IllegalArgumentException("artistCorrs argument is null");
+            throw new IllegalArgumentException("artistRegistry argument is null");
         }
         
         if (artistLogger == null)
@@ -258,24 +345,22 @@ public class ArtistNames
          * NOTE: I'm making the assumption that a given artist can't have both "feat." and "with". I
          * wouldn't know how to handle that anyway.
          */
-        int index = -1;
+        ArtistCorrelator artistCorr = null;
         int loopControl = 0;
         boolean performSearch = true;
         String modifiedArtist = null;
         
-        while (index < 0)
+        while (artistCorr == null)
         {
-            ArtistCorrelator searchCorr = new ArtistCorrelator();
 
             /*
-             * Look up the name in the list.
+             * Look up the name in the registry.
              */
             if (performSearch == true)
             {
-                searchCorr.setNormalizedName(artistToCheck);
-                index = ArrayList.binarySearch(artistCorrs, searchCorr, artistCorrs.getComparator());
+                artistCorr = artistRegistry.find(artistToCheck);
 
-                if (index < 0)
+                if (artistCorr == null)
                 {
                     artistLogger.debug("artist '" + artistToCheck + "' not found in existing list");
                 }
@@ -289,7 +374,7 @@ public class ArtistNames
             /*
              * Continue if not found. If it was found, we're done.
              */
-            if (index < 0)
+            if (artistCorr == null)
             {
                 int targetIdx;
 
@@ -302,7 +387,7 @@ public class ArtistNames
                     
                     /*
                      * If an automatic artist override exists, we do NOT want this artist to be an
-                     * alternate for the primary from the override, so just return the negative index.
+                     * alternate for the primary from the override, so just return null.
                      * 
                      * NOTE: this means we never do post-processing for automatic overrides.
                      */
@@ -409,7 +494,7 @@ public class ArtistNames
             }
         }
 
-        return index;
+        return artistCorr;
     }
 
     /**
@@ -417,19 +502,18 @@ public class ArtistNames
      * artist can be located. If so, then this artist becomes an alternate 
      * name for the primary.
      * 
-     * @param artistNames list of all artist name correlators
-     * @return zero or a positive index to indicate the index of the found 
-     * name, or a negative index to indicate the negation of the index at 
-     * which the artist would be inserted if found
+     * @param artistRegistry registry of all artist name correlators
+     * @return artist correlator of the primary artist, or null if the 
+     * primary artist was not found
      */
-    public int checkPostProcessType(ArrayList<ArtistCorrelator> artistNames)
+    public ArtistCorrelator checkPostProcessType(ArtistRegistry artistRegistry)
     {
-        if (artistNames == null)
+        if (artistRegistry == null)
         {
-            throw new IllegalArgumentException("artistNames argument is null");
+            throw new IllegalArgumentException("artistRegistry argument is null");
         }
         
-        int index = -1;
+        ArtistCorrelator primaryCorr = null;
         String artistToCheck = null;
 
         /*
@@ -483,12 +567,10 @@ public class ArtistNames
             /*
              * Now try to find the primary artist.
              */
-            ArtistCorrelator searchCorr = new ArtistCorrelator();
-            searchCorr.setNormalizedName(artistToCheck);
-            index = ArrayList.binarySearch(artistNames, searchCorr, artistNames.getComparator());
+            primaryCorr = artistRegistry.find(artistToCheck);
         }
 
-        return index;
+        return primaryCorr;
     }
 
     /**
@@ -580,6 +662,61 @@ public class ArtistNames
         }
     }
 
+    /**
+     * Removes a track from an alternate artist name, if the track artist name
+     * is an alternate. The alternate name is removed once it has no tracks.
+     * 
+     * @param artistName artist name from the track
+     * @param track track object
+     * @param artistLogger logger to use
+     */
+    public void checkAndRemoveAlternateName(String artistName, Track track, Logger artistLogger)
+    {
+        if (artistName == null)
+        {
+            throw new IllegalArgumentException("artistName argument is null");
+        }
+        
+        if (track == null)
+        {
+            throw new IllegalArgumentException("track argument is null");
+        }
+        
+        if (artistLogger == null)
+        {
+            throw new IllegalArgumentException("artistLogger argument is null");
+        }
+
+        artistLogger.trace("checkAndRemoveAlternateName: " + this.hashCode());
+
+        /*
+         * We have nothing to do if the name matches the display name.
+         */
+        if (!artistName.equals(displayName))
+        {
+            ArtistTrackData artistTrackData = altNames.get(artistName);
+            if (artistTrackData != null)
+            {
+
+                /*
+                 * Decrement the track and time totals.
+                 */
+                artistTrackData.decrementNumTracks(1);
+                artistTrackData.decrementTotalTime(track.getDuration());
+
+                /*
+                 * Remove the alternate name if it has no tracks left.
+                 */
+                if (artistTrackData.getNumTracks() <= 0)
+                {
+                    altNames.remove(artistName);
+                    artistLogger.debug("removed alternate artist '" + artistName  + "' from '" 
+                            + displayName + "'");
+                }
+            }
+        }
+    }
+
     /**
      * Adds an alternate artist name to this artist.
      * 
@@ -635,79 +772,50 @@ public class ArtistNames
      * Transfers an artist as an alternate name to a primary artist.
      * 
      * @param altArtistCorr artist correlator object for the alternate artist
-     * @param primaryIdx index into the list of artist correlators for the 
-     * primary artist
-     * @param artistCorrelatorsIter iterator for the list of artist correlators
-     * to be used to remove the alternate artist
+     * @param primaryArtistCorr artist correlator object for the primary 
+     * artist
      */
-    public static void transferArtistToPrimary(ArtistCorrelator altArtistCorr, int primaryIdx,
-            Iterator<ArtistCorrelator> artistCorrelatorsIter)
+    public static void transferArtistToPrimary(ArtistCorrelator altArtistCorr, 
+            ArtistCorrelator primaryArtistCorr)
     {
-        artistLogger.trace("transferArtistToPrimary (with iterator)");
+        artistLogger.trace("transferArtistToPrimary");
         
         if (altArtistCorr == null)
         {
             throw new IllegalArgumentException("altArtistCorr argument is null");
         }
         
-        if (primaryIdx < 0)
+        if (primaryArtistCorr == null)
         {
-            throw new IllegalArgumentException("primaryIdx argument is negative");
+            throw new IllegalArgumentException("primaryArtistCorr argument is null");
         }
-        
-        if (artistCorrelatorsIter == null)
-        {
-            throw new IllegalArgumentException("artistCorrelatorsIter argument is null");
-        }
-        
+
         /*
-         * Call the implementation method.
+         * Access the objects we need.
          */
-        transferArtistToPrimaryImpl(altArtistCorr, primaryIdx);
+        ArtistStore artistStore = Database.getArtistStore();
         
+        Artist altArtistObj = artistStore.get(altArtistCorr.getArtistKey());
+        ArtistTrackData altTrackData = altArtistObj.getArtistTrackData();
+
+        Artist primaryArtistObj = artistStore.get(primaryArtistCorr.getArtistKey());
+        ArtistNames primaryArtistNames = primaryArtistObj.getArtistNames();
+
         /*
-         * Delete the now-alternate name from the artist correlators list.
+         * Add the alternate name to the primary artist.
          */
-        artistCorrelatorsIter.remove();
-    }
+        primaryArtistNames.addAlternateName(altArtistObj.getDisplayName(), altTrackData, artistLogger);
 
-    /**
-     * Transfers an artist as an alternate name to a primary artist.
-     * 
-     * @param altArtistCorr artist correlator object for the alternate artist
-     * @param primaryIdx index into the list of artist correlators for the 
-     * primary artist
-     * @param altIdx index into the list of artist correlators to be used to 
-     * remove the alternate artist 
-     */
-    public static void transferArtistToPrimary(ArtistCorrelator altArtistCorr, int primaryIdx, int altIdx)
-    {
-        artistLogger.trace("transferArtistToPrimary (with index)");
-        
-        if (altArtistCorr == null)
-        {
-            throw new IllegalArgumentException("altArtistCorr argument is null");
-        }
-        
-        if (primaryIdx < 0)
-        {
-            throw new IllegalArgumentException("primaryIdx argument is negative");
-        }
-        
-        if (altIdx < 0)
-        {
-            throw new IllegalArgumentException("altIdx argument is negative");
-        }
-        
         /*
-         * Call the implementation method.
+         * Update the primary artist counts and times.
          */
-        transferArtistToPrimaryImpl(altArtistCorr, primaryIdx);
-        
+        primaryArtistObj.addTrackData(altTrackData);
+
         /*
-         * Delete the now-alternate name from the artist correlators list.
+         * Delete the now-alternate name from the artist store and the artist registry.
          */
-        Database.getArtistCorrelators().remove(altIdx, 1);
+        artistStore.remove(altArtistCorr.getArtistKey());
+        Database.getArtistRegistry().remove(altArtistCorr);
     }
     
     /**
@@ -723,15 +831,15 @@ public class ArtistNames
         
         /*
          * Step 1 is to create the appropriate objects and add the alternate artist to the 
-         * artistCorrelators and artists lists ...
+         * artist registry and artist store ...
          */
         
         /*
          * Access primary artist objects.
          */
-        Map<Integer, Artist> artists = Database.getArtists();
+        ArtistStore artistStore = Database.getArtistStore();
         ArtistCorrelator primaryArtistCorr = Database.findArtistCorrelator(primaryArtist);
-        Artist primaryArtistObj = artists.get(primaryArtistCorr.getArtistKey());
+        Artist primaryArtistObj = artistStore.get(primaryArtistCorr.getArtistKey());
         ArtistNames primaryArtistNames = primaryArtistObj.getArtistNames();
 
         /*
@@ -744,20 +852,15 @@ public class ArtistNames
          */
         ArtistCorrelator altArtistCorr = new ArtistCorrelator(altArtist);
         altArtistCorr.setNormalizedName(altArtistNames.normalizeName());
-        Database.getArtistCorrelators().add(altArtistCorr);
+        Database.getArtistRegistry().add(altArtistCorr);
 
         /*
-         * Create the alternate artist object and attach the artist names object.
+         * Create the alternate artist object in the artist store and attach the artist names 
+         * object. The artist ID is the correlator key.
          */
-        Artist altArtistObj = new Artist(altArtist);
+        Artist altArtistObj = artistStore.createArtist(altArtist);
         altArtistObj.setArtistNames(altArtistNames);
-        
-        /*
-         * Create the correlator key and add the artist object to the list
-         */
-        Integer correlator = altArtistObj.getCorrelator();
-        altArtistCorr.setArtistKey(correlator);
-        artists.put(correlator, altArtistObj);
+        altArtistCorr.setArtistKey(altArtistObj.getArtistID());
         
         /*
          * Step 2 is to remove the alternate artist from the primary's list of alternate names. 
@@ -770,18 +873,18 @@ public class ArtistNames
          * the data for the removed alternate), and the alternate artist (by using the artist track 
          * data retrieved above).
          */
-        primaryArtistObj.getArtistTrackData().decrementNumTracks(altTrackData.getNumTracks());
-        primaryArtistObj.getArtistTrackData().decrementTotalTime(altTrackData.getTotalTime());
-        
-        altArtistObj.getArtistTrackData().setNumTracks(altTrackData.getNumTracks());
-        altArtistObj.getArtistTrackData().setTotalTime(altTrackData.getTotalTime());
+        primaryArtistObj.removeTrackData(altTrackData);
+        altArtistObj.addTrackData(altTrackData);
     }
     
     /*
      * Normalize the name. This private method (used only by us, of course) is called by the public
      * method that doesn't have an argument.
+     * 
+     * The normalized name only depends on the display name, and most display names are shared
+     * by many tracks, so the names are cached. The cache is shared by all threads.
      */
-    private String normalizeName(String displayName)
+    private static String normalizeName(String displayName)
     {
         
         /*
@@ -797,100 +900,170 @@ public class ArtistNames
                 }
             }
         }
-        String normalizedName = new String(displayName.toLowerCase().trim());
-        int idx;
 
         /*
-         * Remove leading "the" if it exists.
+         * Return the cached name if we have it.
          */
-        if (normalizedName.startsWith(THE_STR))
+        String normalizedName;
+        synchronized (normalizedNameCache)
         {
-            normalizedName = normalizedName.substring(THE_STR.length());
+            normalizedNameLookups++;
+            normalizedName = normalizedNameCache.get(displayName);
+            if (normalizedName != null)
+            {
+                normalizedNameHits++;
+                return normalizedName;
+            }
         }
 
         /*
-         * Change a single "and" within the name to "&".
+         * Normalize the name and cache it.
          */
-        idx = normalizedName.indexOf(AND_STR);
-        if (idx >= 0 && normalizedName.lastIndexOf(AND_STR) == idx)
+        normalizedName = buildNormalizedName(displayName);
+        synchronized (normalizedNameCache)
         {
-            normalizedName = normalizedName.replace(AND_STR, AMPERSAND_WITH_WHITESPACE_STR);
+            normalizedNameCache.put(displayName, normalizedName);
         }
 
+        return normalizedName;
+    }
+
+    /*
+     * Build the normalized name for a display name. This makes the following changes:
+     * 
+     * - remove leading "the"
+     * - change a single "and" to "&"
+     * - change a single "featuring" or "ft" to "feat."
+     * - if the name contains a single ampersand, ensure it's surrounded by whitespace
+     * - if the name contains a single ampersand, remove "the" if it immediately follows
+     * 
+     * We find everything to be changed in one scan of the name, then build the normalized name
+     * in a second scan. This works because the words to be changed are surrounded by spaces,
+     * and changing a word keeps the spaces, so changing one word never adds or removes an
+     * occurrence of another. The exception is the "the" after an ampersand, which can appear
+     * as a result of the other changes, so we look for it last.
+     */
+    private static String buildNormalizedName(String displayName)
+    {
+        String lowerName = displayName.toLowerCase().trim();
+        int length = lowerName.length();
+
+        /*
+         * Skip leading "the" if it exists.
+         */
+        int start = (lowerName.startsWith(THE_STR)) ? THE_STR.length() : 0;
+
         /*
-         * Change a single "featuring" within the name to "feat.".
+         * Count the words to be changed. We only change a word that occurs once, so we also keep
+         * the index of the last occurrence.
          */
-        idx = normalizedName.indexOf(FEATURING_STR);
-        if (idx >= 0 && normalizedName.lastIndexOf(FEATURING_STR) == idx)
+        int andCount = 0;
+        int andIdx = -1;
+        int featuringCount = 0;
+        int featuringIdx = -1;
+        int ftCount = 0;
+        int ftIdx = -1;
+        int ampersandCount = 0;
+        int ampersandIdx = -1;
+
+        for (int i = start; i < length; i++)
         {
-            normalizedName = normalizedName.replace(FEATURING_STR, FEAT_STR);
+            char c = lowerName.charAt(i);
+            if (c == '&')
+            {
+                ampersandCount++;
+                ampersandIdx = i;
+            }
+            else if (c == ' ')
+            {
+                if (lowerName.startsWith(AND_STR, i))
+                {
+                    andCount++;
+                    andIdx = i;
+                }
+                else if (lowerName.startsWith(FEATURING_STR, i))
+                {
+                    featuringCount++;
+                    featuringIdx = i;
+                }
+                else if (lowerName.startsWith(FT_STR, i))
+                {
+                    ftCount++;
+                    ftIdx = i;
+                }
+            }
         }
 
         /*
-         * Change a single "ft" within the name to "feat.".
+         * Decide what to change. We only change the word itself, not the spaces around it. An
+         * ampersand only needs whitespace if it's the only one, which rules out changing "and".
          */
-        idx = normalizedName.indexOf(FT_STR);
-        if (idx >= 0 && normalizedName.lastIndexOf(FT_STR) == idx)
+        int andWordIdx = (andCount == 1) ? andIdx + 1 : -1;
+        int featuringWordIdx = (featuringCount == 1) ? featuringIdx + 1 : -1;
+        int ftWordIdx = (ftCount == 1) ? ftIdx + 1 : -1;
+
+        boolean spaceBeforeAmpersand = false;
+        boolean spaceAfterAmpersand = false;
+        if (andCount != 1 && ampersandCount == 1)
+        {
+            spaceBeforeAmpersand = ampersandIdx > start && lowerName.charAt(ampersandIdx - 1) == ' ';
+            spaceAfterAmpersand = ampersandIdx < length - 1 && lowerName.charAt(ampersandIdx + 1) == ' ';
+        }
+        else
         {
-            normalizedName = normalizedName.replace(FT_STR, FEAT_STR);
+            ampersandIdx = -1;
         }
 
         /*
-         * If the name contains a single ampersand, ensure it's surrounded by whitespace.
+         * Build the normalized name.
          */
-        idx = normalizedName.indexOf(AMPERSAND_NO_WHITESPACE_STR);
-        if (idx >= 0 && normalizedName.lastIndexOf(AMPERSAND_NO_WHITESPACE_STR) == idx)
+        StringBuilder normalizedName = new StringBuilder(length - start + FEAT_STR.length());
+        for (int i = start; i < length; i++)
         {
-
-            /*
-             * Continue if the ampersand is not surrounded with whitespace.
-             */
-            if (normalizedName.indexOf(AMPERSAND_WITH_WHITESPACE_STR) == -1)
+            if (i == andWordIdx)
             {
-
-                /*
-                 * Replace just leading whitespace with full whitespace.
-                 */
-                if (normalizedName.indexOf(AMPERSAND_LEADING_WHITESPACE_STR) >= 0)
-                {
-                    normalizedName = 
-                            normalizedName.replace(AMPERSAND_LEADING_WHITESPACE_STR, 
-                                    AMPERSAND_WITH_WHITESPACE_STR);
-                }
-
-                /*
-                 * Replace just trailing whitespace with full whitespace.
-                 */
-                else if (normalizedName.indexOf(AMPERSAND_TRAILING_WHITESPACE_STR) >= 0)
+                normalizedName.append(AMPERSAND_NO_WHITESPACE_STR);
+                i += AND_STR.length() - 3;
+            }
+            else if (i == featuringWordIdx)
+            {
+                normalizedName.append(FEAT_STR, 1, FEAT_STR.length() - 1);
+                i += FEATURING_STR.length() - 3;
+            }
+            else if (i == ftWordIdx)
+            {
+                normalizedName.append(FEAT_STR, 1, FEAT_STR.length() - 1);
+                i += FT_STR.length() - 3;
+            }
+            else if (i == ampersandIdx)
+            {
+                if (spaceBeforeAmpersand == false)
                 {
-                    normalizedName = 
-                            normalizedName.replace(AMPERSAND_TRAILING_WHITESPACE_STR, 
-                                    AMPERSAND_WITH_WHITESPACE_STR);
+                    normalizedName.append(' ');
                 }
-
-                /*
-                 * Must have no whitespace at all, so replace with full whitespace.
-                 */
-                else
+                normalizedName.append('&');
+                if (spaceAfterAmpersand == false)
                 {
-                    normalizedName =
-                            normalizedName.replace(AMPERSAND_NO_WHITESPACE_STR, 
-                                    AMPERSAND_WITH_WHITESPACE_STR);
+                    normalizedName.append(' ');
                 }
             }
+            else
+            {
+                normalizedName.append(lowerName.charAt(i));
+            }
         }
 
         /*
-         * If the name contains a single ampersand, remove "the" if it immediately follows.
+         * If the name contains a single ampersand followed by "the", remove the "the".
          */
-        idx = normalizedName.indexOf(AMPERSAND_THE_STR);
+        int idx = normalizedName.indexOf(AMPERSAND_THE_STR);
         if (idx >= 0 && normalizedName.lastIndexOf(AMPERSAND_THE_STR) == idx)
         {
-            normalizedName = normalizedName.replace(AMPERSAND_THE_STR, 
-                    AMPERSAND_WITH_WHITESPACE_STR);
+            normalizedName.delete(idx + AMPERSAND_WITH_WHITESPACE_STR.length(), 
+                    idx + AMPERSAND_THE_STR.length());
         }
 
-        return normalizedName;
+        return normalizedName.toString();
     }
 
     /*
@@ -916,38 +1089,58 @@ public class ArtistNames
         artistLogger.trace("lookForArtistAlternateNames");
 
         /*
-         * Loop through the correlator list. We need to use an iterator instead of a foreach
-         * so we can safely remove correlator items while looping.
+         * Collect the correlators that need post-processing, in normalized name order.
+         */
+        ArtistRegistry artistRegistry = Database.getArtistRegistry();
+        ArtistStore artistStore = Database.getArtistStore();
+        List<ArtistCorrelator> candidateCorrs = new ArrayList<ArtistCorrelator>();
+        for (ArtistCorrelator artistCorr : artistRegistry.getNormalizedNameOrder())
+        {
+            Artist artistObj = artistStore.get(artistCorr.getArtistKey());
+            if (artistObj.getArtistNames().getPostProcessType() != ArtistNames.PostProcessType.NONE)
+            {
+                candidateCorrs.add(artistCorr);
+            }
+        }
+
+        /*
+         * Find the primary artist of each candidate in parallel. Nothing is changed while we
+         * search, so the registry and artists can be shared.
+         */
+        final ArtistCorrelator[] primaryCorrs = new ArtistCorrelator[candidateCorrs.getLength()];
+        new IndexRangeTask(0, primaryCorrs.length, new IntConsumer()
+        {
+            @Override
+            public void accept(int i)
+            {
+                Artist artistObj = artistStore.get(candidateCorrs.get(i).getArtistKey());
+                primaryCorrs[i] = artistObj.getArtistNames().checkPostProcessType(artistRegistry);
+            }
+        }).invoke();
+
+        /*
+         * Now transfer the alternates to their primaries, in normalized name order. A primary
+         * might itself have been transferred by then, in which case it's no longer in the
+         * registry and the alternate stays where it is. This is the same result as looking
+         * up each primary just before the transfer.
          */
-        ArrayList<ArtistCorrelator> artistCorrelators = Database.getArtistCorrelators();
-        Iterator<ArtistCorrelator> artistCorrelatorsIter = artistCorrelators.iterator();
-        while (artistCorrelatorsIter.hasNext())
+        for (int i = 0; i < primaryCorrs.length; i++)
         {
-            ArtistCorrelator artistCorr = artistCorrelatorsIter.next();
+            ArtistCorrelator artistCorr = candidateCorrs.get(i);
+            ArtistCorrelator primaryCorr = primaryCorrs[i];
 
-            Artist artistObj = Database.getArtists().get(artistCorr.getArtistKey());
-            ArtistNames artistNames = artistObj.getArtistNames();
+            artistLogger.debug("artist name '" + artistCorr.getDisplayName() + "', normalized '"
+                    + artistCorr.getNormalizedName() + "', post-processing type '"
+                    + artistStore.get(artistCorr.getArtistKey()).getArtistNames().getPostProcessType().getDisplayValue() 
+                    + "'");
 
             /*
-             * If the post-processing type is set, try to find the associated primary artist.
+             * If we found the primary artist then transfer this alternate to it, and remove
+             * this alternate from the registry.
              */
-            ArtistNames.PostProcessType postProcessType = artistNames.getPostProcessType();
-            if (postProcessType != ArtistNames.PostProcessType.NONE)
+            if (primaryCorr != null && artistRegistry.getCorrelator(primaryCorr.getCorrelatorID()) != null)
             {
-                artistLogger.debug("artist name '" + artistCorr.getDisplayName() + "', normalized '"
-                        + artistCorr.getNormalizedName() + "', post-processing type '"
-                        + postProcessType.getDisplayValue() + "'");
-
-                int index = artistNames.checkPostProcessType(artistCorrelators);
-
-                /*
-                 * If we found the primary artist then transfer this alternate to it, and remove
-                 * this alternate from the correlators list.
-                 */
-                if (index >= 0)
-                {
-                    transferArtistToPrimary(artistCorr, index, artistCorrelatorsIter);
-                }
+                transferArtistToPrimary(artistCorr, primaryCorr);
             }
         }
     }
@@ -966,40 +1159,87 @@ public class ArtistNames
         Preferences userPrefs = Preferences.getInstance();
         
         /*
-         * We need a search correlator to look up artists in the database.
+         * We need the artist registry to look up artists in the database.
          */
-        ArtistCorrelator searchCorr = new ArtistCorrelator();
+        ArtistRegistry artistRegistry = Database.getArtistRegistry();
+        ArtistStore artistStore = Database.getArtistStore();
         
         /*
          * Get the artist overrides from the preferences.
          */
         List<ArtistAlternateNameOverride> artistOverrides = userPrefs.getArtistOverrides();
         boolean prefsUpdated = false;
+
+        /*
+         * Check all overrides in parallel. For each override we find the primary artist, and
+         * flag the alternates that are invalid. The overrides aren't changed while we check, so
+         * they can be shared. An override whose primary doesn't exist gets no flags.
+         */
+        final boolean[][] invalidAlternates = new boolean[artistOverrides.getLength()][];
+        new IndexRangeTask(0, invalidAlternates.length, new IntConsumer()
+        {
+            @Override
+            public void accept(int i)
+            {
+                ArtistAlternateNameOverride override = artistOverrides.get(i);
+
+                /*
+                 * The primary artists always exist in the database, so we search for them there.
+                 */
+                ArtistNames primaryTemp = new ArtistNames(override.getPrimaryArtist());
+                ArtistCorrelator primaryCorr = artistRegistry.find(primaryTemp.normalizeName());
+                if (primaryCorr == null)
+                {
+                    return;
+                }
+
+                List<String> alternateArtists = override.getAlternateArtists();
+                boolean[] invalid = new boolean[alternateArtists.getLength()];
+                for (int j = 0; j < invalid.length; j++)
+                {
+                    String alternateArtist = alternateArtists.get(j);
+
+                    /*
+                     * Look for this alternate in the primary's alternate list if the override
+                     * type is manual.
+                     */
+                    if (override.getOverrideType() == ArtistAlternateNameOverride.OverrideType.MANUAL)
+                    {
+                        Artist primaryArtistObj = artistStore.get(primaryCorr.getArtistKey());
+                        Map<String, ArtistTrackData> altNames = primaryArtistObj.getArtistNames().getAltNames();
+                        invalid[j] = !altNames.containsKey(alternateArtist);
+                    }
+
+                    /*
+                     * Look for this alternate in the database if the override type is automatic.
+                     */
+                    else
+                    {
+                        ArtistNames altTemp = new ArtistNames(alternateArtist);
+                        invalid[j] = (artistRegistry.find(altTemp.normalizeName()) == null);
+                    }
+                }
+
+                invalidAlternates[i] = invalid;
+            }
+        }).invoke();
         
         /*
-         * Loop through all overrides to verify the artists still exist.
+         * Now loop through all overrides to remove the invalid ones.
          */
+        int overrideIdx = 0;
         Iterator<ArtistAlternateNameOverride> artistOverridesIter = artistOverrides.iterator();
         while (artistOverridesIter.hasNext())
         {
-            ArrayList<ArtistCorrelator> artistCorrelators = Database.getArtistCorrelators();
             ArtistAlternateNameOverride override = artistOverridesIter.next();
-            
-            int primaryIdx;
+            boolean[] invalid = invalidAlternates[overrideIdx++];
             String primaryArtist = override.getPrimaryArtist();
-
-            /*
-             * The primary artists always exist in the database, so we search for them there.
-             */
-            ArtistNames primaryTemp = new ArtistNames(primaryArtist);
-            searchCorr.setNormalizedName(primaryTemp.normalizeName());
             
             /*
              * If the primary from the override doesn't exist in the database, remove the entire
              * override and iterate the loop.
              */
-            if ((primaryIdx = ArrayList.binarySearch(artistCorrelators, 
-                    searchCorr, artistCorrelators.getComparator())) < 0)
+            if (invalid == null)
             {
                 artistLogger.debug("found invalid primary artist " + primaryArtist);
                 
@@ -1026,54 +1266,16 @@ public class ArtistNames
                 continue;
             }
             
+            int alternateIdx = 0;
             Iterator<String> alternateArtistsIter = alternateArtists.iterator();
             while (alternateArtistsIter.hasNext())
             {
                 String alternateArtist = alternateArtistsIter.next();
                 
-                /*
-                 * Look for this alternate in the primary's alternate list if the override type is
-                 * manual.
-                 */
-                boolean altInvalid = false;
-                if (override.getOverrideType() == ArtistAlternateNameOverride.OverrideType.MANUAL)
-                {
-                    ArtistCorrelator primaryCorr = artistCorrelators.get(primaryIdx);
-                    Artist primaryArtistObj = Database.getArtists().get(primaryCorr.getArtistKey());
-                    ArtistNames primaryNames = primaryArtistObj.getArtistNames();
-                    Map<String, ArtistTrackData> altNames = primaryNames.getAltNames();
-
-                    /*
-                     * If the alternate from the override doesn't exist, flag it.
-                     */
-                    if (!altNames.containsKey(alternateArtist))
-                    {
-                        altInvalid = true;
-                    }
-                }
-                
-                /*
-                 * Look for this alternate in the database if the override type is automatic.
-                 */
-                else
-                {
-                    ArtistNames altTemp = new ArtistNames(alternateArtist);
-                    searchCorr.setNormalizedName(altTemp.normalizeName());
-
-                    /*
-                     * If the alternate from the override doesn't exist, flag it.
-                     */
-                    if (ArrayList.binarySearch(artistCorrelators, searchCorr, 
-                            artistCorrelators.getComparator()) < 0)
-                    {
-                        altInvalid = true;
-                    }
-                }
-                
                 /*
                  * If the alternate is invalid remove it from the override.
                  */
-                if (altInvalid == true)
+                if (invalid[alternateIdx++] == true)
                 {
                     artistLogger.debug("found invalid alternate artist " + alternateArtist);
 
@@ -1092,10 +1294,12 @@ public class ArtistNames
         }
         
         /*
-         * Write the user preferences if the overrides were updated.
+         * Reindex and write the user preferences if the overrides were updated.
          */
         if (prefsUpdated == true)
         {
+            userPrefs.indexArtistOverrides();
+            
             try
             {
                 userPrefs.writePreferences();
@@ -1107,47 +1311,49 @@ public class ArtistNames
             }
         }
     }
-    
+
+    // ---------------- Nested classes --------------------------------------
+
     /*
-     * This is the implementation method for transferring an alternate artist to a primary. There
-     * are multiple public methods with differing parameters for deleting the alternate artist
-     * correlator, but the bulk of the logic (this method) is identical.
+     * Fork-join task that runs a check for each index in a range. The range is split in half
+     * until it's small enough to check directly, and the halves are checked in parallel. The
+     * check must only write results for its own index.
      */
-    private static void transferArtistToPrimaryImpl (ArtistCorrelator altArtistCorr, int primaryIdx)
+    private static final class IndexRangeTask extends RecursiveAction
     {
-        artistLogger.trace("transferArtistToPrimaryImpl");
+        private static final long serialVersionUID = 1L;
 
         /*
-         * Access the objects we need.
+         * Number of indexes below which we stop splitting the range.
          */
-        ArrayList<ArtistCorrelator> artistCorrelators = Database.getArtistCorrelators();
-        Map<Integer, Artist> artists = Database.getArtists();
-        
-        Artist altArtistObj = artists.get(altArtistCorr.getArtistKey());
+        private static final int MIN_SPLIT_SIZE = 256;
 
-        ArtistCorrelator primaryArtistCorr = artistCorrelators.get(primaryIdx);
-        Artist primaryArtistObj = artists.get(primaryArtistCorr.getArtistKey());
-        ArtistNames primaryArtistNames = primaryArtistObj.getArtistNames();
-
-        /*
-         * Add the alternate name to the primary artist.
-         */
-        primaryArtistNames.addAlternateName(altArtistObj.getDisplayName(), 
-                altArtistObj.getArtistTrackData(), artistLogger);
+        private int start;
+        private int end;
+        private transient IntConsumer check;
 
-        /*
-         * Update the primary artist counts and times.
-         */
-        int updatedValue = primaryArtistObj.getArtistTrackData().getNumTracks() + 
-                altArtistObj.getArtistTrackData().getNumTracks();
-        primaryArtistObj.getArtistTrackData().setNumTracks(updatedValue);
-        updatedValue = primaryArtistObj.getArtistTrackData().getTotalTime() + 
-                altArtistObj.getArtistTrackData().getTotalTime();
-        primaryArtistObj.getArtistTrackData().setTotalTime(updatedValue);
+        private IndexRangeTask(int start, int end, IntConsumer check)
+        {
+            this.start = start;
+            this.end = end;
+            this.check = check;
+        }
 
-        /*
-         * Delete the now-alternate name from the artist list.
-         */
-        artists.remove(altArtistCorr.getArtistKey());
+        @Override
+        protected void compute()
+        {
+            if (end - start <= MIN_SPLIT_SIZE)
+            {
+                for (int i = start; i < end; i++)
+                {
+                    check.accept(i);
+                }
+            }
+            else
+            {
+                int middle = (start + end) >>> 1;
+                invokeAll(new IndexRangeTask(start, middle, check), new IndexRangeTask(middle, end, check));
+            }
+        }
     }
 }
@@ -0,0 +1,255 @@
+package itunesq;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+
+/**
+ * Class that represents the registry of artist correlators.
+ * <p>
+ * The correlators are kept in a hash map keyed by normalized name, so that
+ * looking up an artist name doesn't require a sorted list. Normalized names
+ * are compared without regard to case, so the key is the lower case
+ * normalized name.
+ * <p>
+ * Each correlator gets a dense ID when it's added, starting at 0. IDs are
+ * never reused, so the ID of a correlator doesn't change when other
+ * correlators are removed.
+ * <p>
+ * Lists of the correlators sorted by normalized name and by display name are
+ * created when they're first asked for, and kept until the registry changes.
+ * The sorted lists are shared, so callers must not modify them.
+ *
+ * @author Jon
+ *
+ */
+public class ArtistRegistry
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    /*
+     * Correlators indexed by normalized name and by ID. Removed correlators leave a null
+     * entry in the ID list.
+     */
+    private Map<String, ArtistCorrelator> correlatorsByName;
+    private List<ArtistCorrelator> correlatorsByID;
+
+    /*
+     * Cached sorted lists, which are null until they're needed.
+     */
+    private List<ArtistCorrelator> normalizedNameOrder;
+    private List<ArtistCorrelator> displayNameOrder;
+    private ArrayList<String> displayNames;
+
+    /**
+     * Class constructor.
+     */
+    public ArtistRegistry()
+    {
+        correlatorsByName = new HashMap<String, ArtistCorrelator>();
+        correlatorsByID = new ArrayList<ArtistCorrelator>();
+        invalidateSortedLists();
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the number of correlators in the registry.
+     *
+     * @return number of correlators
+     */
+    public int getNumCorrelators()
+    {
+        return correlatorsByName.getCount();
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Adds a correlator to the registry, and assigns its ID.
+     *
+     * @param artistCorr artist correlator, whose normalized name must not
+     * already be in the registry
+     */
+    public void add(ArtistCorrelator artistCorr)
+    {
+        if (artistCorr == null)
+        {
+            throw new IllegalArgumentException("artistCorr argument is null");
+        }
+
+        String key = artistCorr.getNormalizedName().toLowerCase();
+        if (correlatorsByName.containsKey(key))
+        {
+            throw new InternalErrorException(true, "artist '" + artistCorr.getNormalizedName()
+                    + "' is already registered");
+        }
+
+        artistCorr.setCorrelatorID(correlatorsByID.getLength());
+        correlatorsByID.add(artistCorr);
+        correlatorsByName.put(key, artistCorr);
+        invalidateSortedLists();
+    }
+
+    /**
+     * Removes a correlator from the registry.
+     *
+     * @param artistCorr artist correlator
+     * @return <code>true</code> if the correlator was in the registry,
+     * otherwise <code>false</code>
+     */
+    public boolean remove(ArtistCorrelator artistCorr)
+    {
+        if (artistCorr == null)
+        {
+            throw new IllegalArgumentException("artistCorr argument is null");
+        }
+
+        String key = artistCorr.getNormalizedName().toLowerCase();
+        if (correlatorsByName.get(key) != artistCorr)
+        {
+            return false;
+        }
+
+        correlatorsByName.remove(key);
+        correlatorsByID.update(artistCorr.getCorrelatorID(), null);
+        invalidateSortedLists();
+
+        return true;
+    }
+
+    /**
+     * Finds the correlator for a normalized artist name.
+     *
+     * @param normalizedName normalized artist name
+     * @return artist correlator, or null if it could not be found
+     */
+    public ArtistCorrelator find(String normalizedName)
+    {
+        if (normalizedName == null)
+        {
+            throw new IllegalArgumentException("normalizedName argument is null");
+        }
+
+        return correlatorsByName.get(normalizedName.toLowerCase());
+    }
+
+    /**
+     * Gets the correlator with a given ID.
+     *
+     * @param correlatorID correlator ID
+     * @return artist correlator, or null if the correlator has been removed
+     */
+    public ArtistCorrelator getCorrelator(int correlatorID)
+    {
+        return correlatorsByID.get(correlatorID);
+    }
+
+    /**
+     * Gets the correlators sorted by normalized name.
+     *
+     * @return list of artist correlators
+     */
+    public List<ArtistCorrelator> getNormalizedNameOrder()
+    {
+        if (normalizedNameOrder == null)
+        {
+            ArtistCorrelator[] sorted = new ArtistCorrelator[correlatorsByName.getCount()];
+            int i = 0;
+            for (String key : correlatorsByName)
+            {
+                sorted[i++] = correlatorsByName.get(key);
+            }
+
+            Arrays.sort(sorted, new Comparator<ArtistCorrelator>()
+            {
+                @Override
+                public int compare(ArtistCorrelator c1, ArtistCorrelator c2)
+                {
+                    return c1.compareToNormalized(c2);
+                }
+            });
+
+            normalizedNameOrder = new ArrayList<ArtistCorrelator>(sorted, 0, sorted.length);
+        }
+
+        return normalizedNameOrder;
+    }
+
+    /**
+     * Gets the correlators sorted by display name. Correlators with the same
+     * display name are in normalized name order.
+     *
+     * @return list of artist correlators
+     */
+    public List<ArtistCorrelator> getDisplayNameOrder()
+    {
+        if (displayNameOrder == null)
+        {
+
+            /*
+             * The sort is stable, so starting from the normalized name order breaks ties the
+             * same way every time.
+             */
+            List<ArtistCorrelator> normalizedOrder = getNormalizedNameOrder();
+            ArtistCorrelator[] sorted = new ArtistCorrelator[normalizedOrder.getLength()];
+            for (int i = 0; i < sorted.length; i++)
+            {
+                sorted[i] = normalizedOrder.get(i);
+            }
+
+            Arrays.sort(sorted, new Comparator<ArtistCorrelator>()
+            {
+                @Override
+                public int compare(ArtistCorrelator c1, ArtistCorrelator c2)
+                {
+                    return c1.compareToDisplay(c2);
+                }
+            });
+
+            displayNameOrder = new ArrayList<ArtistCorrelator>(sorted, 0, sorted.length);
+        }
+
+        return displayNameOrder;
+    }
+
+    /**
+     * Gets the artist display names, sorted without regard to case. The list
+     * has a case-insensitive comparator, as needed by the typing assistant.
+     *
+     * @return list of artist display names
+     */
+    public ArrayList<String> getDisplayNames()
+    {
+        if (displayNames == null)
+        {
+            List<ArtistCorrelator> normalizedOrder = getNormalizedNameOrder();
+            displayNames = new ArrayList<String>(normalizedOrder.getLength());
+            for (ArtistCorrelator artistCorr : normalizedOrder)
+            {
+                displayNames.add(artistCorr.getDisplayName());
+            }
+
+            displayNames.setComparator(String.CASE_INSENSITIVE_ORDER);
+        }
+
+        return displayNames;
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Discard the sorted lists, so they're created again when needed.
+     */
+    private void invalidateSortedLists()
+    {
+        normalizedNameOrder = null;
+        displayNameOrder = null;
+        displayNames = null;
+    }
+}
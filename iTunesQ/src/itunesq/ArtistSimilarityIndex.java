@@ -0,0 +1,543 @@
+package itunesq;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+
+/**
+ * Class that represents an index of normalized artist names, used to find
+ * artists whose names are similar but don't match according to the
+ * <code>ArtistNames</code> rules. Typical examples are typos and
+ * punctuation variants, such as "Guns N' Roses" and "Guns n Roses".
+ * <p>
+ * Two names are similar if the edit distance between their lower case
+ * normalized names is small. The allowed distance depends on the length of
+ * the shorter name, so short names need to be closer than long ones, and
+ * very short names are never similar.
+ * <p>
+ * Comparing every pair of names is much too slow for a large library, so
+ * each name is split into trigrams (after padding both ends), and the index
+ * holds the names that contain each trigram. A name within edit distance
+ * <i>k</i> of another shares all but at most 3<i>k</i> of its distinct
+ * trigrams with it. So any similar name must contain one of the 3<i>k</i>+1
+ * rarest trigrams of a name, and only names that share enough trigrams have
+ * their edit distance computed. The trigrams of all names are kept in a
+ * single array, with an array of offsets giving the start of each name's
+ * trigrams, and the same for the names of each trigram.
+ * <p>
+ * The index refers to correlators, so it must be rebuilt whenever the
+ * artist registry changes.
+ *
+ * @author Jon
+ *
+ */
+public class ArtistSimilarityIndex
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private static final int TRIGRAM_SIZE = 3;
+    private static final String TRIGRAM_PAD = "\u0000\u0000";
+
+    private ArtistCorrelator[] correlators;
+    private String[] names;
+    private int[] nameLengths;
+
+    /*
+     * Trigrams are numbered from the rarest to the most common. The distinct trigrams of
+     * name i are in entries nameOffsets[i] up to nameOffsets[i + 1] of nameTrigrams, in
+     * ascending order. The names that contain trigram t are in entries trigramOffsets[t] up
+     * to trigramOffsets[t + 1] of trigramNames, in ascending order.
+     */
+    private int[] nameOffsets;
+    private int[] nameTrigrams;
+    private int[] trigramOffsets;
+    private int[] trigramNames;
+
+    /**
+     * Class constructor. This builds the index from a list of artist
+     * correlators.
+     *
+     * @param artistCorrelators list of artist correlators, in the order in
+     * which similar artists should be returned
+     */
+    public ArtistSimilarityIndex(List<ArtistCorrelator> artistCorrelators)
+    {
+        if (artistCorrelators == null)
+        {
+            throw new IllegalArgumentException("artistCorrelators argument is null");
+        }
+
+        int numNames = artistCorrelators.getLength();
+        correlators = new ArtistCorrelator[numNames];
+        names = new String[numNames];
+        nameLengths = new int[numNames];
+
+        /*
+         * Collect the distinct trigrams of each name, numbering the trigrams as we find them.
+         * The trigrams array grows as needed, starting with room for typical names.
+         */
+        Map<String, Integer> trigramIDs = new HashMap<String, Integer>();
+        int[] trigrams = new int[numNames * 16 + 1];
+
+        nameOffsets = new int[numNames + 1];
+        int numEntries = 0;
+        for (int i = 0; i < numNames; i++)
+        {
+            correlators[i] = artistCorrelators.get(i);
+            names[i] = correlators[i].getNormalizedName().toLowerCase();
+            nameLengths[i] = names[i].length();
+
+            String paddedName = TRIGRAM_PAD + names[i] + TRIGRAM_PAD;
+            for (int j = 0; j + TRIGRAM_SIZE <= paddedName.length(); j++)
+            {
+                String trigram = paddedName.substring(j, j + TRIGRAM_SIZE);
+                Integer trigramID = trigramIDs.get(trigram);
+                if (trigramID == null)
+                {
+                    trigramID = trigramIDs.getCount();
+                    trigramIDs.put(trigram, trigramID);
+                }
+
+                if (containsTrigram(trigrams, nameOffsets[i], numEntries, trigramID) == false)
+                {
+                    if (numEntries == trigrams.length)
+                    {
+                        trigrams = Arrays.copyOf(trigrams, numEntries * 2);
+                    }
+                    trigrams[numEntries++] = trigramID;
+                }
+            }
+
+            nameOffsets[i + 1] = numEntries;
+        }
+
+        nameTrigrams = Arrays.copyOf(trigrams, numEntries);
+
+        /*
+         * Count the names of each trigram, and renumber the trigrams from the rarest to the
+         * most common. Then the trigrams of each name can be sorted rarest first.
+         */
+        int numTrigrams = trigramIDs.getCount();
+        int[] trigramCounts = new int[numTrigrams];
+        for (int j = 0; j < numEntries; j++)
+        {
+            trigramCounts[nameTrigrams[j]]++;
+        }
+
+        Integer[] trigramOrder = new Integer[numTrigrams];
+        for (int t = 0; t < numTrigrams; t++)
+        {
+            trigramOrder[t] = t;
+        }
+
+        Arrays.sort(trigramOrder, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer t1, Integer t2)
+            {
+                return Integer.compare(trigramCounts[t1], trigramCounts[t2]);
+            }
+        });
+
+        int[] trigramRanks = new int[numTrigrams];
+        trigramOffsets = new int[numTrigrams + 1];
+        for (int rank = 0; rank < numTrigrams; rank++)
+        {
+            trigramRanks[trigramOrder[rank]] = rank;
+            trigramOffsets[rank + 1] = trigramOffsets[rank] + trigramCounts[trigramOrder[rank]];
+        }
+
+        for (int i = 0; i < numNames; i++)
+        {
+            for (int j = nameOffsets[i]; j < nameOffsets[i + 1]; j++)
+            {
+                nameTrigrams[j] = trigramRanks[nameTrigrams[j]];
+            }
+
+            Arrays.sort(nameTrigrams, nameOffsets[i], nameOffsets[i + 1]);
+        }
+
+        /*
+         * Fill in the names of each trigram. The names are visited in ascending order, so
+         * the names of each trigram come out in ascending order.
+         */
+        trigramNames = new int[numEntries];
+        int[] nextOffsets = Arrays.copyOf(trigramOffsets, numTrigrams);
+        for (int i = 0; i < numNames; i++)
+        {
+            for (int j = nameOffsets[i]; j < nameOffsets[i + 1]; j++)
+            {
+                trigramNames[nextOffsets[nameTrigrams[j]]++] = i;
+            }
+        }
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Finds all groups of similar artists. Similarity is not transitive, so
+     * a group contains every artist that can be reached through a chain of
+     * similar names.
+     * <p>
+     * Two artists are not considered similar if the user has removed one of
+     * them as an alternate name of the other, as recorded by an automatic
+     * artist override.
+     *
+     * @return list of groups, each a list of artist correlators, in index
+     * order of the first artist of each group
+     */
+    public List<List<ArtistCorrelator>> findSimilarGroups()
+    {
+        Preferences userPrefs = Preferences.getInstance();
+
+        /*
+         * Join the groups of each pair of similar names. Each pair is only found once, from
+         * the lower name index.
+         */
+        int numNames = names.length;
+        int[] groupParents = new int[numNames];
+        for (int i = 0; i < numNames; i++)
+        {
+            groupParents[i] = i;
+        }
+
+        Matcher matcher = new Matcher();
+        for (int i = 0; i < numNames; i++)
+        {
+            int numMatches = matcher.match(i);
+            for (int j = 0; j < numMatches; j++)
+            {
+                int matchIndex = matcher.matches[j];
+                if (isRemovedAlternate(userPrefs, i, matchIndex) == false)
+                {
+                    joinGroups(groupParents, i, matchIndex);
+                }
+            }
+        }
+
+        /*
+         * Collect the groups with more than one name. A group is identified by its root,
+         * which is the lowest name index in the group, so the groups are created in order
+         * of their first name.
+         */
+        int[] groupSizes = new int[numNames];
+        for (int i = 0; i < numNames; i++)
+        {
+            groupSizes[findGroup(groupParents, i)]++;
+        }
+
+        List<List<ArtistCorrelator>> result = new ArrayList<List<ArtistCorrelator>>();
+        Map<Integer, List<ArtistCorrelator>> groupsByRoot =
+                new HashMap<Integer, List<ArtistCorrelator>>();
+        for (int i = 0; i < numNames; i++)
+        {
+            int root = findGroup(groupParents, i);
+            if (groupSizes[root] < 2)
+            {
+                continue;
+            }
+
+            List<ArtistCorrelator> group = groupsByRoot.get(root);
+            if (group == null)
+            {
+                group = new ArrayList<ArtistCorrelator>();
+                groupsByRoot.put(root, group);
+                result.add(group);
+            }
+            group.add(correlators[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the maximum edit distance for two names to be similar.
+     *
+     * @param nameLength length of the shorter normalized name
+     * @return maximum edit distance, which is 0 if names of this length are
+     * never similar
+     */
+    public static int getMaxDistance(int nameLength)
+    {
+        return Math.min(InternalConstants.ARTIST_SIMILARITY_MAX_EDITS,
+                nameLength / InternalConstants.ARTIST_SIMILARITY_CHARS_PER_EDIT);
+    }
+
+    /**
+     * Computes the edit distance between two strings, which is the number of
+     * single character insertions, deletions and substitutions needed to
+     * change one into the other.
+     *
+     * @param s1 first string
+     * @param s2 second string
+     * @param maxDistance largest distance of interest
+     * @return edit distance, or <code>maxDistance + 1</code> if the distance
+     * is larger than <code>maxDistance</code>
+     */
+    public static int editDistance(String s1, String s2, int maxDistance)
+    {
+        if (s1 == null)
+        {
+            throw new IllegalArgumentException("s1 argument is null");
+        }
+
+        if (s2 == null)
+        {
+            throw new IllegalArgumentException("s2 argument is null");
+        }
+
+        int length1 = s1.length();
+        int length2 = s2.length();
+        if (Math.abs(length1 - length2) > maxDistance)
+        {
+            return maxDistance + 1;
+        }
+
+        /*
+         * Standard dynamic programming, keeping the previous and current rows. We give up
+         * as soon as a whole row exceeds the maximum, since the distance can only grow.
+         */
+        int[] previousRow = new int[length2 + 1];
+        int[] currentRow = new int[length2 + 1];
+        for (int j = 0; j <= length2; j++)
+        {
+            previousRow[j] = j;
+        }
+
+        for (int i = 1; i <= length1; i++)
+        {
+            currentRow[0] = i;
+            int rowMinimum = i;
+            char c1 = s1.charAt(i - 1);
+
+            for (int j = 1; j <= length2; j++)
+            {
+                int cost = (c1 == s2.charAt(j - 1)) ? 0 : 1;
+                currentRow[j] = Math.min(Math.min(currentRow[j - 1] + 1, previousRow[j] + 1),
+                        previousRow[j - 1] + cost);
+                rowMinimum = Math.min(rowMinimum, currentRow[j]);
+            }
+
+            if (rowMinimum > maxDistance)
+            {
+                return maxDistance + 1;
+            }
+
+            int[] swapRow = previousRow;
+            previousRow = currentRow;
+            currentRow = swapRow;
+        }
+
+        return Math.min(previousRow[length2], maxDistance + 1);
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Determine if a range of trigram entries contains a trigram. A name only has a few
+     * trigrams, so a scan is fine.
+     */
+    private static boolean containsTrigram(int[] trigrams, int start, int end, int trigramID)
+    {
+        for (int j = start; j < end; j++)
+        {
+            if (trigrams[j] == trigramID)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Determine if the user removed one of two names as an alternate of the other.
+     */
+    private boolean isRemovedAlternate(Preferences userPrefs, int nameIndex1, int nameIndex2)
+    {
+        String artist1 = correlators[nameIndex1].getDisplayName();
+        String artist2 = correlators[nameIndex2].getDisplayName();
+
+        ArtistAlternateNameOverride override =
+                userPrefs.getArtistOverride(artist1, ArtistAlternateNameOverride.OverrideType.AUTOMATIC);
+        if (override != null && override.getPrimaryArtist().equals(artist2))
+        {
+            return true;
+        }
+
+        override = userPrefs.getArtistOverride(artist2, ArtistAlternateNameOverride.OverrideType.AUTOMATIC);
+        return (override != null && override.getPrimaryArtist().equals(artist1));
+    }
+
+    /*
+     * Find the root of the group that contains a name, shortening the path as we go.
+     */
+    private static int findGroup(int[] groupParents, int nameIndex)
+    {
+        while (groupParents[nameIndex] != nameIndex)
+        {
+            groupParents[nameIndex] = groupParents[groupParents[nameIndex]];
+            nameIndex = groupParents[nameIndex];
+        }
+
+        return nameIndex;
+    }
+
+    /*
+     * Join the groups that contain two names. The lower root becomes the root of both, so
+     * the root is always the lowest name index in the group.
+     */
+    private static void joinGroups(int[] groupParents, int nameIndex1, int nameIndex2)
+    {
+        int root1 = findGroup(groupParents, nameIndex1);
+        int root2 = findGroup(groupParents, nameIndex2);
+
+        if (root1 < root2)
+        {
+            groupParents[root2] = root1;
+        }
+        else if (root2 < root1)
+        {
+            groupParents[root1] = root2;
+        }
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /*
+     * Finds the names similar to a given name. The work arrays are kept between calls, so
+     * matching every name in turn doesn't create any objects per name.
+     */
+    private final class Matcher
+    {
+        private boolean[] isCandidate;
+        private boolean[] isNameTrigram;
+        private int[] candidates;
+        private int[] matches;
+
+        private Matcher()
+        {
+            isCandidate = new boolean[names.length];
+            isNameTrigram = new boolean[trigramOffsets.length - 1];
+            candidates = new int[names.length];
+            matches = new int[names.length];
+        }
+
+        /*
+         * Find the names similar to a name that have a higher index, and return the number of
+         * them. The matches are left in the matches array.
+         */
+        private int match(int nameIndex)
+        {
+            String name = names[nameIndex];
+            int nameLength = nameLengths[nameIndex];
+
+            /*
+             * The allowed distance for any pair with this name is at most the allowed distance
+             * for this name.
+             */
+            int maxDistance = getMaxDistance(nameLength);
+            if (maxDistance == 0)
+            {
+                return 0;
+            }
+
+            /*
+             * Collect the names that contain one of the rarest trigrams of this name, skipping
+             * names whose length is too different.
+             */
+            int start = nameOffsets[nameIndex];
+            int end = nameOffsets[nameIndex + 1];
+            int prefixEnd = Math.min(end, start + TRIGRAM_SIZE * maxDistance + 1);
+
+            int numCandidates = 0;
+            for (int j = start; j < prefixEnd; j++)
+            {
+                int trigram = nameTrigrams[j];
+                int first = trigramOffsets[trigram];
+                int last = trigramOffsets[trigram + 1];
+
+                /*
+                 * The names of each trigram are in ascending order, and include this name, so
+                 * we can skip straight past it to the higher names.
+                 */
+                first = Arrays.binarySearch(trigramNames, first, last, nameIndex) + 1;
+
+                for (int k = first; k < last; k++)
+                {
+                    int candidate = trigramNames[k];
+                    if (isCandidate[candidate] == true
+                            || Math.abs(nameLengths[candidate] - nameLength) > maxDistance)
+                    {
+                        continue;
+                    }
+
+                    isCandidate[candidate] = true;
+                    candidates[numCandidates++] = candidate;
+                }
+            }
+
+            /*
+             * Compute the edit distance of the candidates that share enough trigrams, and reset
+             * the candidates for the next name.
+             */
+            for (int j = start; j < end; j++)
+            {
+                isNameTrigram[nameTrigrams[j]] = true;
+            }
+
+            int numMatches = 0;
+            for (int j = 0; j < numCandidates; j++)
+            {
+                int candidate = candidates[j];
+                isCandidate[candidate] = false;
+
+                int pairDistance = getMaxDistance(Math.min(nameLength, nameLengths[candidate]));
+                if (pairDistance == 0)
+                {
+                    continue;
+                }
+
+                int candidateTrigrams = nameOffsets[candidate + 1] - nameOffsets[candidate];
+                int minShared = Math.max(end - start, candidateTrigrams) - TRIGRAM_SIZE * pairDistance;
+                if (sharesTrigrams(candidate, minShared) == true
+                        && editDistance(name, names[candidate], pairDistance) <= pairDistance)
+                {
+                    matches[numMatches++] = candidate;
+                }
+            }
+
+            for (int j = start; j < end; j++)
+            {
+                isNameTrigram[nameTrigrams[j]] = false;
+            }
+
+            return numMatches;
+        }
+
+        /*
+         * Determine if a candidate has at least the given number of trigrams in common with
+         * the name being matched, whose trigrams are flagged. The candidate's trigrams are
+         * checked rarest first, which are the most likely to be missing, so we can usually
+         * give up early.
+         */
+        private boolean sharesTrigrams(int candidate, int minShared)
+        {
+            int allowedMisses = nameOffsets[candidate + 1] - nameOffsets[candidate] - minShared;
+            for (int j = nameOffsets[candidate]; j < nameOffsets[candidate + 1]; j++)
+            {
+                if (isNameTrigram[nameTrigrams[j]] == false && --allowedMisses < 0)
+                {
+                    return false;
+                }
+            }
+
+            return (allowedMisses >= 0);
+        }
+    }
+}
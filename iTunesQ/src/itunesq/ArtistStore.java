@@ -0,0 +1,211 @@
+package itunesq;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Class that represents the store of artist objects.
+ * <p>
+ * Each artist gets a dense ID when it's created, starting at 0. The ID is the
+ * artist key kept in the <code>ArtistCorrelator</code> class, and indexes
+ * the array of artists. IDs are never reused, so the ID of an artist doesn't
+ * change when other artists are removed, and removed artists leave a null
+ * entry in the array.
+ * <p>
+ * The track count and total time of each artist are kept in arrays indexed
+ * by artist ID, rather than in an object per artist. So adding a track to an
+ * artist doesn't create any objects.
+ * <p>
+ * Iterating the store returns the artists in order of ID, skipping removed
+ * artists.
+ *
+ * @author Jon
+ *
+ */
+public class ArtistStore implements Iterable<Artist>
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private Artist[] artists;
+    private int numArtistIDs;
+    private int numArtists;
+
+    /*
+     * Track data, indexed by artist ID.
+     */
+    private int[] numTracks;
+    private int[] totalTimes;
+
+    /**
+     * Class constructor.
+     */
+    public ArtistStore()
+    {
+        artists = new Artist[DEFAULT_CAPACITY];
+        numTracks = new int[DEFAULT_CAPACITY];
+        totalTimes = new int[DEFAULT_CAPACITY];
+        numArtistIDs = 0;
+        numArtists = 0;
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the number of artists in the store.
+     *
+     * @return number of artists
+     */
+    public int getNumArtists()
+    {
+        return numArtists;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Creates an artist and adds it to the store. The artist gets the next
+     * artist ID, and has no tracks.
+     *
+     * @param displayName artist display name
+     * @return artist object
+     */
+    public Artist createArtist(String displayName)
+    {
+        if (numArtistIDs == artists.length)
+        {
+            int capacity = artists.length * 2;
+            artists = Arrays.copyOf(artists, capacity);
+            numTracks = Arrays.copyOf(numTracks, capacity);
+            totalTimes = Arrays.copyOf(totalTimes, capacity);
+        }
+
+        int artistID = numArtistIDs++;
+        Artist artistObj = new Artist(this, artistID, displayName);
+        artists[artistID] = artistObj;
+        numArtists++;
+
+        return artistObj;
+    }
+
+    /**
+     * Gets the artist with a given ID.
+     *
+     * @param artistID artist ID
+     * @return artist object, or null if the artist has been removed
+     */
+    public Artist get(int artistID)
+    {
+        return (artistID >= 0 && artistID < numArtistIDs) ? artists[artistID] : null;
+    }
+
+    /**
+     * Removes an artist from the store.
+     *
+     * @param artistID artist ID
+     * @return <code>true</code> if the artist was in the store, otherwise
+     * <code>false</code>
+     */
+    public boolean remove(int artistID)
+    {
+        if (get(artistID) == null)
+        {
+            return false;
+        }
+
+        artists[artistID] = null;
+        numTracks[artistID] = 0;
+        totalTimes[artistID] = 0;
+        numArtists--;
+
+        return true;
+    }
+
+    /**
+     * Gets the number of tracks for an artist.
+     *
+     * @param artistID artist ID
+     * @return number of tracks
+     */
+    public int getNumTracks(int artistID)
+    {
+        return numTracks[artistID];
+    }
+
+    /**
+     * Gets the total time of tracks for an artist.
+     *
+     * @param artistID artist ID
+     * @return total time of tracks
+     */
+    public int getTotalTime(int artistID)
+    {
+        return totalTimes[artistID];
+    }
+
+    /**
+     * Adds to the track data of an artist. The values can be negative, to
+     * subtract track data.
+     *
+     * @param artistID artist ID
+     * @param tracks number of tracks to add
+     * @param time time to add to the total time of tracks
+     */
+    public void addTrackData(int artistID, int tracks, int time)
+    {
+        numTracks[artistID] += tracks;
+        totalTimes[artistID] += time;
+    }
+
+    /**
+     * Returns an iterator over the artists, in order of artist ID.
+     *
+     * @return iterator
+     */
+    @Override
+    public Iterator<Artist> iterator()
+    {
+        return new Iterator<Artist>()
+        {
+            private int nextID = findNext(0);
+
+            @Override
+            public boolean hasNext()
+            {
+                return nextID < numArtistIDs;
+            }
+
+            @Override
+            public Artist next()
+            {
+                if (hasNext() == false)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                Artist artistObj = artists[nextID];
+                nextID = findNext(nextID + 1);
+
+                return artistObj;
+            }
+        };
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Find the first artist ID starting at the given ID that hasn't been removed.
+     */
+    private int findNext(int artistID)
+    {
+        while (artistID < numArtistIDs && artists[artistID] == null)
+        {
+            artistID++;
+        }
+
+        return artistID;
+    }
+}
@@ -11,8 +11,8 @@ public class ArtistTrackData
 
     // ---------------- Class variables -------------------------------------
 
-    private Integer numTracks;
-    private Integer totalTime;
+    private int numTracks;
+    private int totalTime;
     
     /**
      * Class constructor.
@@ -30,7 +30,7 @@ public class ArtistTrackData
      * 
      * @return number of tracks
      */
-    public Integer getNumTracks()
+    public int getNumTracks()
     {
         return numTracks;
     }
@@ -50,7 +50,7 @@ public class ArtistTrackData
      * 
      * @return total time of tracks
      */
-    public Integer getTotalTime()
+    public int getTotalTime()
     {
         return totalTime;
     }
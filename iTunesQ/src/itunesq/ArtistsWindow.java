@@ -1,7 +1,6 @@
 package itunesq;
 
 import java.io.IOException;
-import java.util.Comparator;
 import java.util.Iterator;
 
 import org.apache.pivot.beans.BXML;
@@ -64,7 +63,10 @@ public class ArtistsWindow
     private List<String> selectedArtists = null;
     private ImmutableList<Span> selectedRanges = null;
     private String primaryForRemoval = null;
+    private List<List<ArtistCorrelator>> similarArtistGroups = null;
+    private int nextSimilarGroup = 0;
     private String tableSortColumnName = null;
+    private LibraryWatcher.ReloadListener reloadListener = null;
     
     private Skins skins = null;
     private Preferences userPrefs = null;
@@ -130,6 +132,7 @@ public class ArtistsWindow
     @BXML private BoxPane actionBoxPane = null;
     @BXML private PushButton doneButton = null;
     @BXML private PushButton setAltNameButton = null;
+    @BXML private PushButton suggestAltNamesButton = null;
     @BXML private PushButton removeAltNameButton = null;
     @BXML private PushButton reviewOverridesButton = null;
 
@@ -265,42 +268,7 @@ public class ArtistsWindow
         /*
          * Create a list suitable for the setTableData() method.
          */
-        List<HashMap<String, String>> displayArtists = new ArrayList<HashMap<String, String>>();
-
-        /*
-         * Get the list of artist correlators. These contain the unaltered artist display names.
-         */
-        ArrayList<ArtistCorrelator> artistCorrs = Database.getArtistCorrelators();
-
-        /*
-         * The correlators are currently sorted by normalized names, but we want them sorted by
-         * the display (unaltered) names. Save the current comparator and set the new one.
-         */
-        Comparator<ArtistCorrelator> savedComparator = artistCorrs.getComparator();
-        artistCorrs.setComparator(new Comparator<ArtistCorrelator>()
-        {
-            @Override
-            public int compare(ArtistCorrelator c1, ArtistCorrelator c2)
-            {
-                return c1.compareToDisplay(c2);
-            }
-        });
-
-        /*
-         * Now walk the artists, and add them all to the list.
-         */
-        for (ArtistCorrelator artistCorr : artistCorrs)
-        {
-            Artist artistObj = Database.getArtists().get(artistCorr.getArtistKey());
-
-            HashMap<String, String> artistAttrs = artistObj.toDisplayMap();
-            displayArtists.add(artistAttrs);
-        }
-
-        /*
-         * Restore the saved comparator.
-         */
-        artistCorrs.setComparator(savedComparator);
+        List<HashMap<String, String>> displayArtists = createDisplayArtists();
 
         artistLogger.info("found " + displayArtists.getLength() + " artists for display");
 
@@ -315,6 +283,19 @@ public class ArtistsWindow
          */
         artistsTableView.setTableData(displayArtists);
 
+        /*
+         * Refresh the artists if the input file is reloaded while the window is open.
+         */
+        reloadListener = new LibraryWatcher.ReloadListener()
+        {
+            @Override
+            public void libraryReloaded()
+            {
+                refreshArtists();
+            }
+        };
+        LibraryWatcher.addReloadListener(reloadListener);
+
         /*
          * Add a sort listener to allow column sorting.
          */
@@ -388,6 +369,9 @@ public class ArtistsWindow
         setAltNameButton.setButtonData(StringConstants.ARTISTS_SET_ALTNAME_BUTTON);
         setAltNameButton.setTooltipText(StringConstants.ARTISTS_SET_ALTNAME_BUTTON_TIP);
         setAltNameButton.setTooltipDelay(InternalConstants.TOOLTIP_DELAY);
+        suggestAltNamesButton.setButtonData(StringConstants.ARTISTS_SUGGEST_ALTNAMES_BUTTON);
+        suggestAltNamesButton.setTooltipText(StringConstants.ARTISTS_SUGGEST_ALTNAMES_BUTTON_TIP);
+        suggestAltNamesButton.setTooltipDelay(InternalConstants.TOOLTIP_DELAY);
         removeAltNameButton.setButtonData(StringConstants.ARTISTS_REMOVE_ALTNAME_BUTTON);
         removeAltNameButton.setTooltipText(StringConstants.ARTISTS_REMOVE_ALTNAME_BUTTON_TIP);
         removeAltNameButton.setTooltipDelay(InternalConstants.TOOLTIP_DELAY);
@@ -433,6 +417,64 @@ public class ArtistsWindow
 
     // ---------------- Private methods -------------------------------------
 
+    /*
+     * Create the table data for all artists.
+     */
+    private List<HashMap<String, String>> createDisplayArtists()
+    {
+        List<HashMap<String, String>> displayArtists = new ArrayList<HashMap<String, String>>();
+
+        /*
+         * Get the artist correlators sorted by the display (unaltered) names.
+         */
+        List<ArtistCorrelator> artistCorrs = Database.getArtistRegistry().getDisplayNameOrder();
+
+        /*
+         * Now walk the artists, and add them all to the list.
+         */
+        for (ArtistCorrelator artistCorr : artistCorrs)
+        {
+            Artist artistObj = Database.getArtistStore().get(artistCorr.getArtistKey());
+
+            HashMap<String, String> artistAttrs = artistObj.toDisplayMap();
+            displayArtists.add(artistAttrs);
+        }
+
+        return displayArtists;
+    }
+
+    /*
+     * Refresh the displayed artists after the input file has been reloaded.
+     */
+    private void refreshArtists()
+    {
+        uiLogger.trace("refreshArtists: " + this.hashCode());
+
+        List<HashMap<String, String>> displayArtists = createDisplayArtists();
+        artistLogger.info("refreshed " + displayArtists.getLength() + " artists for display");
+
+        numArtistsLabel.setText(StringConstants.ARTISTS_NUM_ARTISTS + Database.getNumberOfArtists());
+        artistsTableView.setTableData(displayArtists);
+
+        /*
+         * The similar artists have to be found again for the reloaded artists.
+         */
+        similarArtistGroups = null;
+
+        /*
+         * Resort the table according to the current sort, if any.
+         */
+        TableView.SortDictionary sort = artistsTableView.getSort();
+        if (sort.getLength() > 0)
+        {
+            Dictionary.Pair<String, SortDirection> dict = artistsTableView.getSort().get(0);
+            artistsTableView.setSort(dict.key, dict.value);
+        }
+
+        artistsTableView.clearSelection();
+        artistsTableView.repaint(true);
+    }
+
     /*
      * Set up the various event handlers.
      */
@@ -450,6 +492,11 @@ public class ArtistsWindow
             {
                 uiLogger.info("done button pressed");
 
+                /*
+                 * We no longer care about the input file being reloaded.
+                 */
+                LibraryWatcher.removeReloadListener(reloadListener);
+
                 /*
                  * Close the window.
                  */
@@ -481,6 +528,23 @@ public class ArtistsWindow
             }
         });
 
+        /*
+         * Listener to handle the suggest alternate names button press.
+         */
+        suggestAltNamesButton.getButtonPressListeners().add(new ButtonPressListener()
+        {
+            @Override
+            public void buttonPressed(Button button)
+            {
+                uiLogger.info("suggest alternate names button pressed");
+                
+                /*
+                 * Select the next group of similar artists.
+                 */
+                suggestAlternateNames();
+            }
+        });
+
         /*
          * Listener to handle the remove alternate name button press.
          */
@@ -1227,7 +1291,7 @@ public class ArtistsWindow
          * now.
          */
         ArtistCorrelator artistCorr = Database.findArtistCorrelator(artistName);
-        Artist artistObj = Database.getArtists().get(artistCorr.getArtistKey());
+        Artist artistObj = Database.getArtistStore().get(artistCorr.getArtistKey());
         ArtistNames artistNames = artistObj.getArtistNames();
 
         /*
@@ -1513,6 +1577,78 @@ public class ArtistsWindow
         setAltNameSelectionDialog.open(display);
     }
     
+    /*
+     * Handle the suggest alternate names button. Each press selects the next group of similar
+     * artist names in the table. The user can then merge them with the set alternate name
+     * button, which adds the usual manual overrides.
+     */
+    private void suggestAlternateNames ()
+    {
+        artistLogger.trace("suggestAlternateNames: " + this.hashCode());
+
+        ArtistRegistry artistRegistry = Database.getArtistRegistry();
+
+        /*
+         * Find the groups of similar artists on the first press.
+         */
+        if (similarArtistGroups == null)
+        {
+            ArtistSimilarityIndex similarityIndex = 
+                    new ArtistSimilarityIndex(artistRegistry.getNormalizedNameOrder());
+            similarArtistGroups = similarityIndex.findSimilarGroups();
+            nextSimilarGroup = 0;
+            artistLogger.info("found " + similarArtistGroups.getLength() 
+                    + " groups of similar artists");
+        }
+        
+        /*
+         * Get the current table data, containing all the artist rows.
+         */
+        @SuppressWarnings("unchecked") 
+        List<HashMap<String, String>> artistRows = 
+                (List<HashMap<String, String>>) artistsTableView.getTableData();
+
+        /*
+         * Select the rows of the next group. Artists that have been merged since we found
+         * the groups are no longer in the registry, so we skip them, and any group that's 
+         * left with fewer than two artists.
+         */
+        while (nextSimilarGroup < similarArtistGroups.getLength())
+        {
+            List<ArtistCorrelator> group = similarArtistGroups.get(nextSimilarGroup++);
+            
+            List<Span> groupRanges = new ArrayList<Span>();
+            for (ArtistCorrelator artistCorr : group)
+            {
+                if (artistRegistry.getCorrelator(artistCorr.getCorrelatorID()) == artistCorr)
+                {
+                    int index = findPrimaryRowIndex(artistRows, artistCorr.getDisplayName());
+                    if (index >= 0)
+                    {
+                        groupRanges.add(new Span(index));
+                    }
+                }
+            }
+            
+            if (groupRanges.getLength() > 1)
+            {
+                artistLogger.debug("suggesting " + groupRanges.getLength() + " similar artists, group " 
+                        + nextSimilarGroup);
+                
+                artistsTableView.setSelectedRanges(groupRanges);
+                artistsTableView.scrollAreaToVisible(artistsTableView.getRowBounds(groupRanges.get(0).start));
+                return;
+            }
+        }
+        
+        /*
+         * We've run out of groups. Start over with a fresh search on the next press.
+         */
+        similarArtistGroups = null;
+        artistsTableView.clearSelection();
+        Alert.alert(MessageType.INFO, StringConstants.ALERT_NO_SIMILAR_ARTISTS, artistsWindow);
+    }
+    
     /*
      * Handle the remove alternate names button.
      */
@@ -1601,7 +1737,7 @@ public class ArtistsWindow
          * artist object. But to get the artist object we need the artist correlator.
          */
         ArtistCorrelator artistCorr = Database.findArtistCorrelator(primaryForRemoval);
-        Artist artistObj = Database.getArtists().get(artistCorr.getArtistKey());
+        Artist artistObj = Database.getArtistStore().get(artistCorr.getArtistKey());
         ArtistNames artistNames = artistObj.getArtistNames();
 
         /*
@@ -1885,48 +2021,25 @@ public class ArtistsWindow
             selectedArtists.remove(primaryArtist);
             
             /*
-             * Get the artist correlator list.
+             * Find the primary artist correlator.
              */
-            ArrayList<ArtistCorrelator> artistCorrs = Database.getArtistCorrelators();
-            
-            /*
-             * Create a search correlator for the primary.
-             */
-            ArtistCorrelator primaryCorr = new ArtistCorrelator();
-            ArtistNames primaryNames = new ArtistNames(primaryArtist);
-            primaryCorr.setNormalizedName(primaryNames.normalizeName());
+            ArtistCorrelator primaryCorr = Database.findArtistCorrelator(primaryArtist);
 
             /*
              * Loop through the alternates.
              */
-            int primaryIdx = 0;
             for (String altArtist : selectedArtists)
             {
                 
-                /*
-                 * Find the primary artist correlator. We have to do this for each 
-                 * iteration because the index could change as we delete the alternates.
-                 */
-                primaryIdx = ArrayList.binarySearch(artistCorrs, primaryCorr, artistCorrs.getComparator());
-                
                 /*
                  * Find the alternate artist correlator.
                  */
-                ArtistCorrelator altCorr = new ArtistCorrelator();
-                ArtistNames altNames = new ArtistNames(altArtist);
-                altCorr.setNormalizedName(altNames.normalizeName());
-                int altIdx = ArrayList.binarySearch(artistCorrs, altCorr, artistCorrs.getComparator());
-                
-                /*
-                 * Get the real alternate artist correlator, replacing the fake one we
-                 * used for searching.
-                 */
-                altCorr = artistCorrs.get(altIdx);
+                ArtistCorrelator altCorr = Database.findArtistCorrelator(altArtist);
                 
                 /*
                  * Transfer the alternate to the primary.
                  */
-                ArtistNames.transferArtistToPrimary(altCorr, primaryIdx, altIdx);
+                ArtistNames.transferArtistToPrimary(altCorr, primaryCorr);
 
                 /*
                  * If we have an automatic artist override for the primary, remove the alternate from 
@@ -1959,7 +2072,7 @@ public class ArtistsWindow
              * Access primary artist objects and update the primary in the list of displayed artists.
              */
             ArtistCorrelator primaryArtistCorr = Database.findArtistCorrelator(primaryArtist);
-            Artist primaryArtistObj = Database.getArtists().get(primaryArtistCorr.getArtistKey());
+            Artist primaryArtistObj = Database.getArtistStore().get(primaryArtistCorr.getArtistKey());
             
             HashMap<String, String> primaryRowData = primaryArtistObj.toDisplayMap();
             artistRows.update(primaryTableIndex, primaryRowData);
@@ -2082,7 +2195,7 @@ public class ArtistsWindow
              * of artists being displayed.
              */
             ArtistCorrelator altArtistCorr = Database.findArtistCorrelator(altArtist);
-            Artist altArtistObj = Database.getArtists().get(altArtistCorr.getArtistKey());
+            Artist altArtistObj = Database.getArtistStore().get(altArtistCorr.getArtistKey());
             
             /*
              * Add this alternate to the list of displayed artists.
@@ -2100,7 +2213,7 @@ public class ArtistsWindow
          * Access primary artist objects and update the primary in the list of displayed artists.
          */
         ArtistCorrelator primaryArtistCorr = Database.findArtistCorrelator(primaryForRemoval);
-        Artist primaryArtistObj = Database.getArtists().get(primaryArtistCorr.getArtistKey());
+        Artist primaryArtistObj = Database.getArtistStore().get(primaryArtistCorr.getArtistKey());
         
         HashMap<String, String> primaryRowData = primaryArtistObj.toDisplayMap();
         artistRows.update(index, primaryRowData);
@@ -2501,6 +2614,9 @@ public class ArtistsWindow
         setAltNameButton = 
                 (PushButton) windowSerializer.getNamespace().get("setAltNameButton");
         components.add(setAltNameButton);
+        suggestAltNamesButton = 
+                (PushButton) windowSerializer.getNamespace().get("suggestAltNamesButton");
+        components.add(suggestAltNamesButton);
         removeAltNameButton = 
                 (PushButton) windowSerializer.getNamespace().get("removeAltNameButton");
         components.add(removeAltNameButton);
@@ -72,4 +72,12 @@ public class CodecStats
     {
     	count++;
     }
+    
+    /**
+     * Decrements the codec count.
+     */
+    public void decrementCount()
+    {
+    	count--;
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package itunesq;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
 import org.apache.pivot.collections.ArrayList;
@@ -29,21 +30,20 @@ public final class Database
     private static ArrayList<Track> tracks = null;
 
     /*
-     * The different tracks maps are a map of the track ID to its index value in the 
-     * all tracks list. This means it can't be created until the entire list has been
-     * created and sorted. This map facilitates quick searches of a track given
-     * its track ID (tracks within a playlist are identified only by ID).
+     * The track ID index maps the track ID to its index value in the all tracks
+     * list, and knows which tracks are video tracks. This means it can't be
+     * created until the entire list has been created and sorted. This index
+     * facilitates quick searches of a track given its track ID (tracks within a
+     * playlist are identified only by ID).
      */
-    private static Map<Integer, Integer> tracksMap = null;
-    private static Map<Integer, Integer> audioTracksMap = null;
-    private static Map<Integer, Integer> videoTracksMap = null;
+    private static TrackIDIndex trackIDIndex = null;
 
     /*
-     * The duplicates map is a map of the track name to a list of track IDs.
-     * This allows us to find duplicates quickly on demand, at the cost of
+     * The duplicates index groups the tracks that could be duplicates of each
+     * other. This allows us to find duplicates quickly on demand, at the cost of
      * longer time to process the input file.
      */
-    private static Map<String, List<Integer>> duplicatesMap = null;
+    private static DuplicatesIndex duplicatesIndex = null;
 
     /*
      * The list of playlists. This is a map of the playlist ID to its
@@ -58,6 +58,19 @@ public final class Database
      */
     private static Map<String, String> playlistsMap = null;
 
+    /*
+     * The track playlist index maps each track to the playlists that contain
+     * it, along with whether each playlist is bypassed. It's rebuilt whenever
+     * the playlists or the track indices change.
+     */
+    private static TrackPlaylistIndex trackPlaylistIndex = null;
+
+    /*
+     * The playlist hierarchy holds the children, ancestors and depth of each
+     * playlist. It's rebuilt whenever the playlists change.
+     */
+    private static PlaylistHierarchy playlistHierarchy = null;
+
     /*
      * List of playlist names. This is to provide typing assistance when the
      * user wants to enter a playlist name.
@@ -65,23 +78,23 @@ public final class Database
     private static ArrayList<String> playlistNames = null;
 
     /*
-     * List of track artist names. This is to provide typing assistance when the
+     * Registry of track artist names. This is to provide typing assistance when the
      * user wants to enter an artist name on a track filter.
      * 
      * It's also used to correlate multiple artist names to a single artist
      * object, based on the fact that the multiple names all adhere to a set of
      * matching rules according to the ArtistNames class.
      * 
-     * For example, this list can contain both "beatles" and "the beatles", but
-     * only have one artist object. The key from the ArtistCorrelator class is
-     * the same in both list entries, and is the key used in the artists map.
+     * For example, the artist "the beatles" can also be found by the name
+     * "beatles", but there's only one artist object. The key from the
+     * ArtistCorrelator class is the ID of the artist in the artist store.
      */
-    private static ArrayList<ArtistCorrelator> artistCorrelators = null;
+    private static ArtistRegistry artistRegistry = null;
 
     /*
-     * Map of artist key to artist object. The key is kept in the ArtistCorrelator class.
+     * Store of artist objects, indexed by artist ID. The ID is kept in the ArtistCorrelator class.
      */
-    private static Map<Integer, Artist> artists = null;
+    private static ArtistStore artistStore = null;
 
     /*
      * Number of ignored playlists.
@@ -94,6 +107,12 @@ public final class Database
     private static Map<String, CodecStats> codecStats = null;
     private static Map<String, Integer> encoderStats = null;
 
+    /*
+     * Name of the input file from which the database was built. This is null
+     * until an input file has been successfully processed.
+     */
+    private static String inputFileName = null;
+
     // ---------------- Getters and setters ---------------------------------
     
     /**
@@ -107,53 +126,83 @@ public final class Database
     }
     
     /**
-     * Gets the mapping of all track IDs to track list indices, regardless of type.
+     * Gets the index of track IDs to track list indices.
      * 
-     * @return mapping of all track IDs to track list indices
+     * @return track ID index
      */
-    public static Map<Integer, Integer> getTracksMap()
+    public static TrackIDIndex getTrackIDIndex()
     {
-        return tracksMap;
+        return trackIDIndex;
     }
 
     /**
-     * Gets the mapping of audio track IDs to track list indices.
+     * Gets the index of possible duplicate tracks.
      * 
-     * @return mapping of audio track IDs to indices
+     * @return duplicates index
      */
-    public static Map<Integer, Integer> getAudioTracksMap()
+    public static DuplicatesIndex getDuplicatesIndex()
     {
-        return audioTracksMap;
+        return duplicatesIndex;
     }
 
     /**
-     * Gets the mapping of video track IDs to track list indices.
+     * Gets the mapping of duplicates index keys to groups of duplicate tracks.
      * 
-     * @return mapping of video track IDs to indices
+     * @return mapping of duplicates index keys to duplicate tracks
      */
-    public static Map<Integer, Integer> getVideoTracksMap()
+    public static Map<String, DuplicatesIndex.DuplicateTracks> getDuplicatesMap()
     {
-        return videoTracksMap;
+        return duplicatesIndex.getDuplicatesMap();
     }
 
     /**
-     * Gets the mapping of duplicate track names to track IDs.
+     * Gets the list of playlists found in the input file.
      * 
-     * @return mapping of duplicate track names to track IDs
+     * @return list of playlists
      */
-    public static Map<String, List<Integer>> getDuplicatesMap()
+    public static Map<String, Playlist> getPlaylists()
     {
-        return duplicatesMap;
+        return playlists;
     }
 
     /**
-     * Gets the list of playlists found in the input file.
+     * Gets the index of tracks to the playlists that contain them.
      * 
-     * @return list of playlists
+     * @return track playlist index
      */
-    public static Map<String, Playlist> getPlaylists()
+    public static TrackPlaylistIndex getTrackPlaylistIndex()
     {
-        return playlists;
+        return trackPlaylistIndex;
+    }
+
+    /**
+     * Sets the index of tracks to the playlists that contain them.
+     * 
+     * @param index track playlist index
+     */
+    public static void setTrackPlaylistIndex(TrackPlaylistIndex index)
+    {
+        trackPlaylistIndex = index;
+    }
+
+    /**
+     * Gets the hierarchy of playlists.
+     * 
+     * @return playlist hierarchy
+     */
+    public static PlaylistHierarchy getPlaylistHierarchy()
+    {
+        return playlistHierarchy;
+    }
+
+    /**
+     * Sets the hierarchy of playlists.
+     * 
+     * @param hierarchy playlist hierarchy
+     */
+    public static void setPlaylistHierarchy(PlaylistHierarchy hierarchy)
+    {
+        playlistHierarchy = hierarchy;
     }
 
     /**
@@ -177,23 +226,33 @@ public final class Database
     }
 
     /**
-     * Gets the list of track artist names found in the input file.
+     * Gets the registry of track artist names found in the input file.
      * 
-     * @return list of artist names
+     * @return artist registry
      */
-    public static ArrayList<ArtistCorrelator> getArtistCorrelators()
+    public static ArtistRegistry getArtistRegistry()
     {
-        return artistCorrelators;
+        return artistRegistry;
     }
 
     /**
-     * Gets the mapping of artist names to artist objects.
+     * Gets the store of artist objects.
      * 
-     * @return mapping of artist names to artist objects
+     * @return artist store
      */
-    public static Map<Integer, Artist> getArtists()
+    public static ArtistStore getArtistStore()
     {
-        return artists;
+        return artistStore;
+    }
+    
+    /**
+     * Gets the playlist ignored count.
+     * 
+     * @return playlist ignored count
+     */
+    public static int getPlaylistIgnoredCount()
+    {
+    	return playlistIgnoredCount;
     }
     
     /**
@@ -226,27 +285,120 @@ public final class Database
         return encoderStats;
     }
 
+    /**
+     * Gets the name of the input file from which the database was built.
+     * 
+     * @return input file name, or null if the database is empty
+     */
+    public static String getInputFileName()
+    {
+        return inputFileName;
+    }
+
+    /**
+     * Sets the name of the input file from which the database was built.
+     * 
+     * @param fileName input file name
+     */
+    public static void setInputFileName(String fileName)
+    {
+        inputFileName = fileName;
+    }
+
     // ---------------- Public methods --------------------------------------
     
     /**
-     * Initializes the database. This is called once at initialization.
+     * Initializes the database. This is called at initialization, and before
+     * an input file is processed from scratch.
      */
     public static void initializeDB()
     {
     	tracks = new ArrayList<Track>();
-    	tracksMap = new HashMap<Integer, Integer>();
-        audioTracksMap = new HashMap<Integer, Integer>();
-        videoTracksMap = new HashMap<Integer, Integer>();
-        duplicatesMap = new HashMap<String, List<Integer>>();
+    	trackIDIndex = new TrackIDIndex(tracks);
+        duplicatesIndex = new DuplicatesIndex();
+        initializePlaylists();
+        artistRegistry = new ArtistRegistry();
+        ArtistNames.resetNormalizedNameCacheStats();
+        artistStore = new ArtistStore();
+        codecStats = new HashMap<String, CodecStats>();
+        encoderStats = new HashMap<String, Integer>();
+        inputFileName = null;
+    }
+
+    /**
+     * Initializes just the playlists in the database. This is used when the
+     * playlists are rebuilt without rebuilding the tracks.
+     */
+    public static void initializePlaylists()
+    {
         playlists = new HashMap<String, Playlist>();
         playlistsMap = new HashMap<String, String>();
         playlistNames = new ArrayList<String>();
-        artistCorrelators = new ArrayList<ArtistCorrelator>();
-        artists = new HashMap<Integer, Artist>();
-        codecStats = new HashMap<String, CodecStats>();
-        encoderStats = new HashMap<String, Integer>();
+        trackPlaylistIndex = new TrackPlaylistIndex();
+        playlistHierarchy = new PlaylistHierarchy();
+        playlistIgnoredCount = 0;
     }
     
+    /**
+     * Starts a bulk load of the tracks. Tracks can then be added to the all
+     * tracks list in any order, and are sorted once by
+     * <code>finishBulkLoad</code>. This avoids a sorted insert for every track,
+     * but can only be used on a database without tracks.
+     */
+    public static void startBulkLoad()
+    {
+        if (tracks.getLength() > 0)
+        {
+            throw new InternalErrorException(true, "bulk load started on a database with tracks");
+        }
+
+        tracks.setComparator(null);
+    }
+
+    /**
+     * Finishes a bulk load of the tracks by sorting the all tracks list. The
+     * sort key of each track is created here, and large lists are sorted in
+     * parallel. Tracks that compare equal stay in the order they were
+     * added.
+     * <p>
+     * The track ID mappings still need to be generated after this.
+     */
+    public static void finishBulkLoad()
+    {
+        int numTracks = tracks.getLength();
+
+        /*
+         * Create the sort keys before sorting, so the sort threads only read them. The
+         * sort is stable, so tracks that compare equal keep their order.
+         */
+        Track[] loadedTracks = new Track[numTracks];
+        for (int i = 0; i < numTracks; i++)
+        {
+            loadedTracks[i] = tracks.get(i);
+            loadedTracks[i].getSortKey();
+        }
+
+        Arrays.parallelSort(loadedTracks, Comparator.comparing(Track::getSortKey));
+
+        for (int i = 0; i < numTracks; i++)
+        {
+            tracks.update(i, loadedTracks[i]);
+        }
+
+        /*
+         * Setting the comparator sorts the list, but it's already sorted so this only
+         * checks the order. It's needed for any tracks added later.
+         */
+        tracks.setComparator(new Comparator<Track>()
+        {
+            @Override
+            public int compare(Track t1, Track t2)
+            {
+                return t1.compareTo(t2);
+            }
+        });
+    }
+
     /**
      * Generates the various mappings of track ID to list index for all tracks.
      * 
@@ -258,19 +410,26 @@ public final class Database
         {
             throw new IllegalArgumentException("trackLogger argument is null");
         }
-        
+
+        /*
+         * Build a new index, since tracks might have been added or removed since the last
+         * time. The index is replaced as a whole, so nothing ever sees a partial one.
+         */
+        trackIDIndex = new TrackIDIndex(tracks);
+
+        /*
+         * Log the mappings.
+         */
         int index = 0;
         
         for (Track track : tracks)
         {
             int trackID = track.getID();
-            tracksMap.put(trackID, index);
             
             Track.TrackType trackType = track.getTrackType();
             switch (trackType)
             {
             case VIDEO:
-                videoTracksMap.put(trackID, index);
                 trackLogger.debug("mapped video track ID " + trackID + " to index " + index + ", name '" + track.getName() + "'");
             	break;
 
@@ -279,7 +438,6 @@ public final class Database
             			" unknown track type - assuming audio");
             	
             case AUDIO:
-                audioTracksMap.put(trackID, index);
                 trackLogger.debug("mapped audio track ID " + trackID + " to index " + index + ", name '" + track.getName() + "'");
                 break;
                 
@@ -290,16 +448,75 @@ public final class Database
             index++;
         }
     }
+
+    /**
+     * Gets the index in the all tracks list of a track ID.
+     * 
+     * @param trackID track ID
+     * @return index in the all tracks list, or -1 if the track ID was not
+     * found
+     */
+    public static int getTrackIndex(int trackID)
+    {
+        return trackIDIndex.getIndex(trackID);
+    }
+
+    /**
+     * Gets the track for a track ID.
+     * 
+     * @param trackID track ID
+     * @return track, or null if the track ID was not found
+     */
+    public static Track getTrackByID(int trackID)
+    {
+        int index = trackIDIndex.getIndex(trackID);
+
+        return (index >= 0) ? tracks.get(index) : null;
+    }
+
+    /**
+     * Determines if a track ID is for a track of a given type. Tracks of
+     * unknown type are treated as audio tracks.
+     * 
+     * @param trackID track ID
+     * @param trackType track type, either audio or video
+     * @return <code>true</code> if the track ID was found and is for a track
+     * of the given type, otherwise <code>false</code>
+     */
+    public static boolean isTrackOfType(int trackID, Track.TrackType trackType)
+    {
+        int index = trackIDIndex.getIndex(trackID);
+
+        return index >= 0 && trackIDIndex.isVideoIndex(index) == (trackType == Track.TrackType.VIDEO);
+    }
     
     /**
-     * Gets a list of tracks based on a tracks map.
+     * Gets a list of all tracks of a given type. Tracks of unknown type are
+     * treated as audio tracks.
      * 
-     * @param tracksMap map of track ID to index in the all tracks list
+     * @param trackType track type, either audio or video
      * @return list of tracks
      */
-    public static List<Track> getTracksFromMap(Map<Integer, Integer> tracksMap)
+    public static List<Track> getTracksOfType(Track.TrackType trackType)
     {
-    	List<Track> trackList = new ArrayList<Track>();
+        boolean video = (trackType == Track.TrackType.VIDEO);
+        int numTracks = trackIDIndex.getNumTracks();
+
+    	List<Track> trackList = new ArrayList<Track>((video == true)
+    	        ? trackIDIndex.getNumVideoTracks() : trackIDIndex.getNumAudioTracks());
+
+        for (int index = 0; index < numTracks; index++)
+        {
+            if (trackIDIndex.isVideoIndex(index) == video)
+            {
+                trackList.add(tracks.get(index));
+            }
+        }
+
+        /*
+         * The tracks are added in sorted order, so setting the comparator only checks the
+         * order. It's needed for any tracks added later.
+         */
     	trackList.setComparator(new Comparator<Track>()
         {
             @Override
@@ -309,12 +526,6 @@ public final class Database
             }
         });
     	
-    	for (Integer ID : tracksMap)
-    	{
-    		Integer index = tracksMap.get(ID);
-    		trackList.add(tracks.get(index));
-    	}
-    	
     	return trackList;
     }
 
@@ -335,7 +546,7 @@ public final class Database
      */
     public static int getNumberOfAudioTracks()
     {
-        return (audioTracksMap != null) ? audioTracksMap.getCount() : 0;
+        return (trackIDIndex != null) ? trackIDIndex.getNumAudioTracks() : 0;
     }
 
     /**
@@ -345,7 +556,7 @@ public final class Database
      */
     public static int getNumberOfVideoTracks()
     {
-        return (videoTracksMap != null) ? videoTracksMap.getCount() : 0;
+        return (trackIDIndex != null) ? trackIDIndex.getNumVideoTracks() : 0;
     }
 
     /**
@@ -366,7 +577,7 @@ public final class Database
      */
     public static int getNumberOfArtists()
     {
-        return (artists != null) ? artists.getCount() : 0;
+        return (artistStore != null) ? artistStore.getNumArtists() : 0;
     }
 
     /**
@@ -427,48 +638,10 @@ public final class Database
      * @return artist correlator object, or null if it could not be found
      */
     public static ArtistCorrelator findArtistCorrelator (String artistName)
-    {        
-        ArtistCorrelator artistCorr = null;
-
-        /*
-         * Search the correlator list for the given artist.
-         */
-        int index = findArtistCorrelatorIndex(artistName);
-        
-        /*
-         * Return the correlator object if we found it.
-         */
-        if (index >= 0)
-        {
-            artistCorr = artistCorrelators.get(index);
-        }
-        
-        return artistCorr;
-    }
-    
-    /**
-     * Finds the artist correlator index for a given artist name.
-     * 
-     * @param artistName artist name for which to search
-     * @return artist correlator index, or -1 if it could not be found
-     */
-    public static Integer findArtistCorrelatorIndex(String artistName)
     {
-    	int index;
-        
-        /*
-         * Create a correlator with which to search.
-         */
-        ArtistCorrelator searchCorr = new ArtistCorrelator();
         ArtistNames searchNames = new ArtistNames(artistName);
-        searchCorr.setNormalizedName(searchNames.normalizeName());
 
-        /*
-         * Search the correlator list for the given artist.
-         */
-        index = ArrayList.binarySearch(artistCorrelators, searchCorr, artistCorrelators.getComparator());
-        
-        return index;
+        return artistRegistry.find(searchNames.normalizeName());
     }
 
     /**
@@ -490,21 +663,20 @@ public final class Database
         /*
          * Number of audio tracks.
          */
-        Map<Integer, Integer> audioTracksMap = Database.getAudioTracksMap();
-        if (audioTracksMap != null)
+        TrackIDIndex trackIDIndex = Database.getTrackIDIndex();
+        if (trackIDIndex != null)
         {
             output.append(String.format("%2d", ++itemNum) + ") " + "Number of audio tracks: "
-                    + audioTracksMap.getCount() + lineSeparator);
+                    + trackIDIndex.getNumAudioTracks() + lineSeparator);
         }   
 
         /*
          * Number of video tracks.
          */
-        Map<Integer, Integer> videoTracksMap = Database.getVideoTracksMap();
-        if (videoTracksMap != null)
+        if (trackIDIndex != null)
         {
             output.append(String.format("%2d", ++itemNum) + ") " + "Number of video tracks: "
-                    + videoTracksMap.getCount() + lineSeparator);
+                    + trackIDIndex.getNumVideoTracks() + lineSeparator);
         }
 
         /*
@@ -522,11 +694,21 @@ public final class Database
         /*
          * Number of artists.
          */
-        Map<Integer, Artist> artists = Database.getArtists();
-        if (artists != null)
+        if (artistStore != null)
         {
             output.append(String.format("%2d", ++itemNum) + ") " + "Number of artists: "
-                    + artists.getCount() + lineSeparator);
+                    + artistStore.getNumArtists() + lineSeparator);
+        }
+
+        /*
+         * Artist name cache hit rate.
+         */
+        long[] cacheStats = ArtistNames.getNormalizedNameCacheStats();
+        if (cacheStats[0] > 0)
+        {
+            output.append(String.format("%2d", ++itemNum) + ") " + "Artist name cache: "
+                    + cacheStats[0] + " lookups, " + String.format("%.1f", 100.0 * cacheStats[1] / cacheStats[0])
+                    + "% hits" + lineSeparator);
         }
         
         /*
@@ -560,4 +742,4 @@ public final class Database
         Logger diagLogger = Logging.getInstance().getDiagLogger();
         diagLogger.info(output.toString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,511 @@
+package itunesq;
+
+import java.util.Comparator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Map;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Class that adds tracks and playlists to the database as they are read from
+ * the input file.
+ * <p>
+ * For each track this accumulates the codec and encoder statistics, updates
+ * the duplicates index, adds the track to the all tracks list, and matches the
+ * track artist to the existing artists. Once all tracks have been read, the
+ * track ID mappings are generated and the artists are post-processed. Each
+ * playlist is then added to the playlist collection.
+ * <p>
+ * Once the input file has been read, <code>finish</code> must be called. The
+ * playlists then still need to be post-processed, using
+ * <code>PlaylistCollection.postProcessPlaylists</code>.
+ * <p>
+ * The work for each track is split into protected methods, so that a
+ * subclass can run them on separate threads.
+ * <p>
+ * When loading a whole input file, the tracks can be bulk loaded. They are
+ * then sorted once, rather than as each track is added.
+ *
+ * @author Jon
+ *
+ */
+public class DatabaseLoader implements LibraryListener
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private Logger trackLogger;
+    private Logger playlistLogger;
+    private Logger artistLogger;
+
+    /*
+     * Options that depend on the type of input file.
+     */
+    private boolean checkIgnoredPlaylists = false;
+    private boolean bulkLoad = false;
+
+    /*
+     * Database objects.
+     */
+    private ArrayList<Track> tracks;
+    private DuplicatesIndex duplicatesIndex;
+    private ArtistRegistry artistRegistry;
+    private ArtistStore artistStore;
+    private Map<String, CodecStats> codecStats;
+    private Map<String, Integer> encoderStats;
+
+    private boolean playlistsStarted = false;
+
+    /**
+     * Class constructor.
+     *
+     * @param trackLogger logger to use for tracks
+     * @param playlistLogger logger to use for playlists
+     * @param artistLogger logger to use for artists
+     */
+    public DatabaseLoader(Logger trackLogger, Logger playlistLogger, Logger artistLogger)
+    {
+        if (trackLogger == null)
+        {
+            throw new IllegalArgumentException("trackLogger argument is null");
+        }
+
+        if (playlistLogger == null)
+        {
+            throw new IllegalArgumentException("playlistLogger argument is null");
+        }
+
+        if (artistLogger == null)
+        {
+            throw new IllegalArgumentException("artistLogger argument is null");
+        }
+
+        this.trackLogger = trackLogger;
+        this.playlistLogger = playlistLogger;
+        this.artistLogger = artistLogger;
+
+        /*
+         * We collect all the tracks into an ArrayList of type Track.
+         * Make sure it's sorted by track name.
+         *
+         * NOTE: The comparators are only set if they don't already exist. Setting a
+         * comparator sorts the list, which is a waste of time if we're adding to an
+         * existing database.
+         */
+        tracks = Database.getTracks();
+        if (tracks.getComparator() == null)
+        {
+            tracks.setComparator(new Comparator<Track>()
+            {
+                @Override
+                public int compare(Track t1, Track t2)
+                {
+                    return t1.compareTo(t2);
+                }
+            });
+        }
+
+        /*
+         * Get the duplicates index.
+         */
+        duplicatesIndex = Database.getDuplicatesIndex();
+
+        /*
+         * Get the registry of artist names.
+         */
+        artistRegistry = Database.getArtistRegistry();
+
+        /*
+         * Get the artist store.
+         */
+        artistStore = Database.getArtistStore();
+
+        /*
+         * Get the codecs and encoder maps.
+         */
+        codecStats = Database.getCodecStats();
+        if (codecStats.getComparator() == null)
+        {
+            codecStats.setComparator(String.CASE_INSENSITIVE_ORDER);
+        }
+
+        encoderStats = Database.getEncoderStats();
+        if (encoderStats.getComparator() == null)
+        {
+            encoderStats.setComparator(String.CASE_INSENSITIVE_ORDER);
+        }
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Sets whether duplicate tracks are found by name only.
+     * <p>
+     * The standard track sort key contains a number of items to ensure
+     * uniqueness. But that would short-circuit the duplicates index because
+     * it would only find duplicates for the same artist and same album. So
+     * this can be set to index duplicates by just the normalized name.
+     *
+     * @param duplicatesByName <code>true</code> to find duplicates by name
+     * only, otherwise <code>false</code>
+     */
+    public void setDuplicatesByName(boolean duplicatesByName)
+    {
+        duplicatesIndex.setByName(duplicatesByName);
+    }
+
+    /**
+     * Gets whether duplicate tracks are found by name only.
+     *
+     * @return <code>true</code> if duplicates are found by name only,
+     * otherwise <code>false</code>
+     */
+    public boolean getDuplicatesByName()
+    {
+        return duplicatesIndex.getByName();
+    }
+
+    /**
+     * Sets whether playlists are checked against the ignored playlist
+     * preferences as they are added.
+     *
+     * @param checkIgnoredPlaylists <code>true</code> to check for ignored
+     * playlists, otherwise <code>false</code>
+     */
+    public void setCheckIgnoredPlaylists(boolean checkIgnoredPlaylists)
+    {
+        this.checkIgnoredPlaylists = checkIgnoredPlaylists;
+    }
+
+    /**
+     * Sets whether tracks are bulk loaded.
+     * <p>
+     * Normally each track is inserted in sorted order. That's fine for a few
+     * tracks, but slow for a whole input file. With a bulk load the tracks
+     * are appended in input file order, then sorted once when the tracks are
+     * complete. This can only be used on a database without tracks, and must be set before any
+     * tracks are added.
+     *
+     * @param bulkLoad <code>true</code> to bulk load the tracks, otherwise
+     * <code>false</code>
+     */
+    public void setBulkLoad(boolean bulkLoad)
+    {
+        if (bulkLoad == true && this.bulkLoad == false)
+        {
+            Database.startBulkLoad();
+        }
+
+        this.bulkLoad = bulkLoad;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Adds a track to the database.
+     *
+     * @param trackObj track object
+     */
+    @Override
+    public void trackFound(Track trackObj)
+    {
+        if (trackObj == null)
+        {
+            throw new IllegalArgumentException("trackObj argument is null");
+        }
+
+        addTrackStats(trackObj);
+        addTrack(trackObj);
+        addTrackArtist(trackObj);
+    }
+
+    /**
+     * Completes the tracks once they have all been added.
+     */
+    @Override
+    public void tracksComplete()
+    {
+        completeTracks();
+        completeArtists();
+    }
+
+    /**
+     * Adds a playlist to the database.
+     *
+     * @param playlistObj playlist object
+     */
+    @Override
+    public void playlistFound(Playlist playlistObj)
+    {
+        if (playlistObj == null)
+        {
+            throw new IllegalArgumentException("playlistObj argument is null");
+        }
+
+        if (playlistsStarted == false)
+        {
+
+            /*
+             * Reset the playlist ignored count, so it doesn't keep growing if we
+             * reread the input file.
+             */
+            Database.setPlaylistIgnoredCount(0);
+
+            /*
+             * Initialize the list of playlist names, and set a case-insensitive
+             * comparator.
+             */
+            Database.getPlaylistNames().setComparator(String.CASE_INSENSITIVE_ORDER);
+
+            playlistsStarted = true;
+        }
+
+        /*
+         * Remember what the playlist looked like in the input file, before the
+         * tracks of child playlists are bubbled up into it. This is used to detect
+         * changed playlists when the input file is imported again.
+         */
+        playlistObj.setContentHash(playlistObj.computeContentHash());
+
+        /*
+         * If this playlist is to be ignored, indicate so.
+         */
+        if (checkIgnoredPlaylists == true
+                && PlaylistCollection.isPlaylistIgnored(playlistObj.getName()))
+        {
+            playlistObj.setIgnored(true);
+            Database.incrementPlaylistIgnoredCount(1);
+        }
+
+        /*
+         * Add the playlist object to the collection.
+         */
+        Database.getPlaylists().put(playlistObj.getPersistentID(), playlistObj);
+        Database.getPlaylistsMap().put(playlistObj.getName(), playlistObj.getPersistentID());
+        playlistLogger.debug("found playlist name " + playlistObj.getName());
+
+        /*
+         * If the playlist is not ignored, add its name to the playlist name
+         * list.
+         */
+        if (playlistObj.getIgnored() == false)
+        {
+            Database.addPlaylistName(playlistObj.getName());
+        }
+    }
+
+    /**
+     * Finishes loading once the input file has been read. This must be called
+     * even if reading the input file failed.
+     */
+    public void finish()
+    {
+    }
+
+    /**
+     * Gets the codec name from the track kind, for example AAC. MPEG is
+     * changed to MP3 since it's more common.
+     *
+     * @param kind track kind
+     * @return codec name, or null if the track has no kind
+     */
+    public static String getCodec(String kind)
+    {
+        if (kind == null)
+        {
+            return null;
+        }
+
+        String[] kindWords = kind.split(" ");
+        String codec = kindWords[0];
+        if (codec.equals("MPEG"))
+        {
+            codec = "MP3";
+        }
+
+        return codec;
+    }
+
+    // ---------------- Protected methods -----------------------------------
+
+    /**
+     * Accumulates the codec and encoder statistics for a track.
+     *
+     * @param trackObj track object
+     */
+    protected void addTrackStats(Track trackObj)
+    {
+        /*
+         * Accumulate a count of each codec discovered.
+         */
+        String codec = getCodec(trackObj.getKind());
+        if (codec != null)
+        {
+            CodecStats stats = codecStats.get(codec);
+            if (stats != null)
+            {
+                stats.incrementCount();
+            }
+            else
+            {
+                stats = new CodecStats();
+                stats.setCount(1);
+                stats.setType(trackObj.getTrackType());
+            }
+            codecStats.put(codec, stats);
+        }
+
+        /*
+         * Accumulate a count of each encoder discovered.
+         */
+        String encoder = trackObj.getEncoder();
+        if (encoder != null && encoder.length() > 0)
+        {
+            Integer encoderNum = encoderStats.get(encoder);
+            if (encoderNum != null)
+            {
+                encoderStats.put(encoder, ++encoderNum);
+            }
+            else
+            {
+                encoderStats.put(encoder, 1);
+            }
+        }
+    }
+
+    /**
+     * Adds a track to the duplicates index, and to the all tracks list.
+     *
+     * @param trackObj track object
+     */
+    protected void addTrack(Track trackObj)
+    {
+        int ID = trackObj.getID();
+        Track.TrackType trackType = trackObj.getTrackType();
+
+        /*
+         * Add the track to the duplicates index. This is a single hash lookup, and
+         * doesn't depend on the order of the all tracks list.
+         */
+        DuplicatesIndex.DuplicateTracks duplicates = duplicatesIndex.addTrack(trackObj);
+        if (duplicates != null)
+        {
+            trackLogger.debug("added track ID " + ID + " type " + trackType + " to track '"
+                    + duplicates.getName() + "', " + duplicates.getCount() + " tracks");
+        }
+        else
+        {
+            trackLogger.debug("found track ID " + ID + " type " + trackType + ", name '"
+                    + trackObj.getName() + "'");
+        }
+
+        /*
+         * Add the track object to the all tracks list. With a bulk load it's sorted once
+         * all tracks have been added.
+         */
+        tracks.add(trackObj);
+    }
+
+    /**
+     * Matches the artist of a track to the existing artists, creating a new
+     * artist if there is no match.
+     *
+     * @param trackObj track object
+     */
+    protected void addTrackArtist(Track trackObj)
+    {
+        /*
+         * Handle tracks that have an artist.
+         */
+        String artist = trackObj.getArtist();
+        if (artist != null)
+        {
+
+            /*
+             * Get an artist names object and normalize the artist name.
+             */
+            ArtistNames artistNames = new ArtistNames(artist);
+            String normalizedName = artistNames.normalizeName();
+
+            /*
+             * Try to match the artist name to the current list of artists. This method
+             * detects alternate artist names, matching them to the existing primary name.
+             */
+            ArtistCorrelator artistCorr = artistNames.matchArtist(artistRegistry, artistLogger);
+            if (artistCorr == null)
+            {
+
+                /*
+                 * We did not find a match. Add the artist name to the registry of such names
+                 * (as a correlator object).
+                 */
+                artistCorr = new ArtistCorrelator(artist);
+                artistCorr.setNormalizedName(normalizedName);
+                artistRegistry.add(artistCorr);
+
+                /*
+                 * Create a new artist object in the artist store, and initialize it from the
+                 * track. The artist ID is the correlator key.
+                 */
+                Artist artistObj = artistStore.createArtist(artist);
+                artistObj.setArtistNames(artistNames);
+                artistObj.addTrackToArtist(trackObj, artistLogger);
+                artistCorr.setArtistKey(artistObj.getArtistID());
+                artistLogger.debug("found artist name '" + artist + "', normalized '"
+                        + normalizedName + "'");
+            }
+
+            /*
+             * The artist already exists in the list of artist names and the
+             * artist store. Update the artist object from the track.
+             */
+            else
+            {
+                Artist artistObj = artistStore.get(artistCorr.getArtistKey());
+                artistObj.addTrackToArtist(trackObj, artistLogger);
+                artistLogger.debug("updated existing artist name '" + artist + "', normalized '"
+                        + normalizedName + "'");
+            }
+        }
+    }
+
+    /**
+     * Generates the track ID to index mappings once all tracks have been
+     * added.
+     */
+    protected void completeTracks()
+    {
+
+        /*
+         * Sort the bulk loaded tracks.
+         */
+        if (bulkLoad == true)
+        {
+            trackLogger.info("sorting " + tracks.getLength() + " tracks");
+            Database.finishBulkLoad();
+            bulkLoad = false;
+        }
+
+        /*
+         * Generate the track ID to index mappings. We have to wait until all
+         * tracks have been found and sorted in order for the indices to be
+         * correct.
+         */
+        Database.generateTrackIDMappings(trackLogger);
+    }
+
+    /**
+     * Post-processes the artists once all tracks have been added.
+     */
+    protected void completeArtists()
+    {
+
+        /*
+         * Now that the tracks (and artists) are all created, post-process the
+         * artists to try and find additional alternate names, and to verify
+         * artist alternate name overrides.
+         */
+        ArtistNames.postProcessArtists();
+    }
+}
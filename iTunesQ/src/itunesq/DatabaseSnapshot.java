@@ -0,0 +1,1088 @@
+package itunesq;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Class that saves and restores a binary snapshot of the database.
+ * <p>
+ * This is a final class consisting entirely of static methods.
+ * <p>
+ * Processing a large input file takes a long time, and most of the time the
+ * file hasn't changed since the last time we ran. So after the input file has
+ * been processed, the complete database is written to a snapshot file in the
+ * preferences save directory. The next time the same input file is opened,
+ * the database is restored from the snapshot instead.
+ * <p>
+ * The snapshot is only used if all of the following still match:
+ * <ul>
+ * <li>the snapshot format version</li>
+ * <li>the input file path, size and modification time</li>
+ * <li>a hash of the input file contents</li>
+ * <li>a hash of the preferences that affect the database contents (ignored
+ * and bypassed playlists, and artist overrides)</li>
+ * </ul>
+ * Otherwise the input file is processed as usual and a new snapshot is
+ * written.
+ * <p>
+ * A snapshot of an earlier version of the same input file can also be
+ * restored, so that an incremental import only has to apply the changes
+ * since then.
+ *
+ * @author Jon
+ *
+ */
+public final class DatabaseSnapshot
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private static String className = DatabaseSnapshot.class.getSimpleName();
+    private static Logger logger = (Logger) LoggerFactory.getLogger(className + "_File");
+
+    /*
+     * Snapshot file header values. Bump the version whenever the layout of the
+     * snapshot changes, so that old snapshots are rebuilt.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x69545153;
+    private static final int SNAPSHOT_VERSION = 4;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /*
+     * Size of the stream buffers.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /*
+     * Marker values for null references.
+     */
+    private static final int NULL_REF = -1;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    /*
+     * Lock held while the database is written to a snapshot, or built from the input file.
+     */
+    private static final Object DATABASE_LOCK = new Object();
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Initializes logging. This is called once at application initialization.
+     */
+    public static void initializeLogging()
+    {
+        Logging logging = Logging.getInstance();
+        logging.registerLogger(Logging.Dimension.FILE, logger);
+    }
+
+    /**
+     * Creates the snapshot key for the current input file and preferences.
+     * This reads the whole input file to compute its hash, so it should be
+     * called on a background task.
+     * <p>
+     * The key must be created before the input file is processed, and then
+     * used to save the snapshot. If the input file changes while it's being
+     * processed, the key then describes an older version of the file than the
+     * database, so the snapshot is never mistaken for one of the new file.
+     *
+     * @param inputFileName input file name
+     * @return snapshot key
+     * @throws IOException If an error occurs trying to read the input file.
+     */
+    public static SnapshotKey createKey(String inputFileName)
+            throws IOException
+    {
+        if (inputFileName == null)
+        {
+            throw new IllegalArgumentException("inputFileName argument is null");
+        }
+
+        logger.trace("createKey");
+
+        SnapshotKey fileKey = new SnapshotKey(inputFileName);
+        fileKey.computeContentHash();
+
+        return fileKey;
+    }
+
+    /**
+     * Restores the database from the snapshot of the input file, if a valid
+     * snapshot exists.
+     *
+     * @param fileKey snapshot key of the input file
+     * @return <code>true</code> if the database was restored,
+     * <code>false</code> if the input file needs to be processed
+     */
+    public static boolean loadSnapshot(SnapshotKey fileKey)
+    {
+        if (fileKey == null)
+        {
+            throw new IllegalArgumentException("fileKey argument is null");
+        }
+
+        logger.trace("loadSnapshot");
+
+        return restoreSnapshot(fileKey, true);
+    }
+
+    /**
+     * Restores the database from the snapshot of an earlier version of the
+     * input file, if one exists. The database then needs to be updated from
+     * the input file.
+     * <p>
+     * The snapshot must have been written for the same input file path, using
+     * the same preferences. The input file contents are not checked.
+     *
+     * @param fileKey snapshot key of the input file
+     * @return <code>true</code> if the database was restored,
+     * <code>false</code> if no usable snapshot exists
+     */
+    public static boolean loadPreviousSnapshot(SnapshotKey fileKey)
+    {
+        if (fileKey == null)
+        {
+            throw new IllegalArgumentException("fileKey argument is null");
+        }
+
+        logger.trace("loadPreviousSnapshot");
+
+        return restoreSnapshot(fileKey, false);
+    }
+
+    /**
+     * Saves a snapshot of the database for the input file. Failure to save the
+     * snapshot is logged but otherwise ignored, since it only means the input
+     * file will be processed again next time.
+     * <p>
+     * This can be called on a background task. Only one snapshot is saved at
+     * a time, and the input file is not processed while a snapshot is being
+     * saved, as long as the processing holds the database lock.
+     *
+     * @param fileKey snapshot key of the input file, created before the input
+     * file was processed
+     */
+    public static void saveSnapshot(SnapshotKey fileKey)
+    {
+        if (fileKey == null)
+        {
+            throw new IllegalArgumentException("fileKey argument is null");
+        }
+
+        logger.trace("saveSnapshot");
+
+        File snapshotFile = getSnapshotFile();
+        if (snapshotFile == null)
+        {
+            return;
+        }
+
+        synchronized (DATABASE_LOCK)
+        {
+
+            /*
+             * The database might have been rebuilt from a different input file since the
+             * key was created, in which case the snapshot would be wrong.
+             */
+            if (!fileKey.inputFileName.equals(Database.getInputFileName()))
+            {
+                logger.info("database is no longer for input file, not saving snapshot");
+                return;
+            }
+
+            /*
+             * Write to a temporary file first, then move it into place, so that a partially
+             * written snapshot is never picked up.
+             */
+            File tempFile = new File(snapshotFile.getPath() + ".tmp");
+            DataOutputStream output = null;
+
+            try
+            {
+                output = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE));
+                fileKey.write(output);
+                writeDatabase(output, fileKey.inputFileName);
+                output.close();
+                output = null;
+
+                Files.move(tempFile.toPath(), snapshotFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                logger.info("saved database snapshot '" + snapshotFile.getPath() + "'");
+            }
+            catch (IOException | RuntimeException e)
+            {
+                MainWindow.logException(logger, e);
+                logger.warn("unable to save database snapshot");
+
+                closeQuietly(output);
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Gets the lock that must be held while the database is built or updated
+     * from the input file on a background task, so that a snapshot never sees
+     * a partly built database.
+     *
+     * @return database lock
+     */
+    public static Object getDatabaseLock()
+    {
+        return DATABASE_LOCK;
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Restore the database from the snapshot. If the input file contents must be the same,
+     * the full key including the content hash is checked. Otherwise only the input file
+     * path and preferences are checked.
+     */
+    private static boolean restoreSnapshot(SnapshotKey fileKey, boolean sameContents)
+    {
+        File snapshotFile = getSnapshotFile();
+        if (snapshotFile == null || !snapshotFile.exists())
+        {
+            logger.info("no database snapshot found");
+            return false;
+        }
+
+        DataInputStream input = null;
+        boolean restored = false;
+
+        try
+        {
+            input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(snapshotFile), BUFFER_SIZE));
+
+            /*
+             * Check the header against the input file and preferences.
+             */
+            SnapshotKey savedKey = SnapshotKey.read(input);
+            if (savedKey == null || !savedKey.matchesSource(fileKey))
+            {
+                logger.info("database snapshot is for a different input file or preferences");
+                return false;
+            }
+
+            if (sameContents == true)
+            {
+                if (!savedKey.matchesExceptHash(fileKey))
+                {
+                    logger.info("database snapshot is out of date");
+                    return false;
+                }
+
+                if (!Arrays.equals(savedKey.contentHash, fileKey.contentHash))
+                {
+                    logger.info("database snapshot content hash does not match input file");
+                    return false;
+                }
+            }
+
+            /*
+             * The snapshot is valid, so read it into a fresh database.
+             */
+            logger.info("restoring database from snapshot '" + snapshotFile.getPath() + "'");
+            Database.initializeDB();
+            readDatabase(input, fileKey.inputFileName);
+            Database.setInputFileName(fileKey.inputFileName);
+            restored = true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            MainWindow.logException(logger, e);
+            logger.warn("unable to restore database snapshot");
+
+            /*
+             * We might have partially restored the database, so start over.
+             */
+            Database.initializeDB();
+        }
+        finally
+        {
+            closeQuietly(input);
+        }
+
+        if (restored == true)
+        {
+            Database.logFileStats();
+        }
+
+        return restored;
+    }
+
+    /*
+     * Get the snapshot file in the preferences save directory, or null if there isn't one.
+     */
+    private static File getSnapshotFile()
+    {
+        String saveDirectory = Preferences.getSaveDirectory();
+        if (saveDirectory == null)
+        {
+            return null;
+        }
+
+        return new File(saveDirectory + "/" + DatabaseSnapshot.class.getName() + SNAPSHOT_SUFFIX);
+    }
+
+    /*
+     * Write the entire database.
+     */
+    private static void writeDatabase(DataOutputStream output, String inputFileName)
+            throws IOException
+    {
+        logger.trace("writeDatabase");
+
+        SnapshotWriter writer = new SnapshotWriter(output);
+
+        /*
+         * File date.
+         */
+        writer.writeDate(getFileDate(inputFileName));
+
+        /*
+         * Tracks, in sorted order. The track ID mappings are regenerated from the tracks
+         * when the snapshot is read.
+         */
+        ArrayList<Track> tracks = Database.getTracks();
+        output.writeInt(tracks.getLength());
+        for (Track track : tracks)
+        {
+            output.writeInt(track.getID());
+            writer.writeString(track.getName());
+            writer.writeString(track.getArtist());
+            writer.writeString(track.getComposer());
+            writer.writeString(track.getAlbum());
+            writer.writeString(track.getGenre());
+            writer.writeString(track.getKind());
+            output.writeInt(track.getSize());
+            output.writeInt(track.getDuration());
+            output.writeInt(track.getYear());
+            writer.writeDate(track.getModified());
+            writer.writeDate(track.getDateAdded());
+            output.writeInt(track.getBitRate());
+            output.writeInt(track.getSampleRate());
+            output.writeInt(track.getPlayCount());
+            writer.writeDate(track.getReleased());
+            output.writeInt(track.getRating());
+            writer.writeString(track.getEncoder());
+            writer.writeEnum(track.getTrackType());
+        }
+
+        /*
+         * Duplicates. The index is rebuilt from the tracks, so we only need to know how it
+         * groups them.
+         */
+        output.writeBoolean(Database.getDuplicatesIndex().getByName());
+
+        /*
+         * Playlists. These include the tracks bubbled up from child playlists.
+         */
+        Map<String, Playlist> playlists = Database.getPlaylists();
+        output.writeInt(playlists.getCount());
+        for (String playlistID : playlists)
+        {
+            Playlist playlistObj = playlists.get(playlistID);
+            writer.writeString(playlistID);
+            writer.writeString(playlistObj.getName());
+            writer.writeString(playlistObj.getPersistentID());
+            writer.writeString(playlistObj.getParentPersistentID());
+            output.writeInt(playlistObj.getFolderContentCount());
+            output.writeBoolean(playlistObj.getIgnored());
+            output.writeBoolean(playlistObj.getBypassed());
+            output.writeLong(playlistObj.getContentHash());
+            writer.writeTrackIDs(playlistObj.getTracks());
+        }
+
+        Map<String, String> playlistsMap = Database.getPlaylistsMap();
+        output.writeInt(playlistsMap.getCount());
+        for (String playlistName : playlistsMap)
+        {
+            writer.writeString(playlistName);
+            writer.writeString(playlistsMap.get(playlistName));
+        }
+
+        ArrayList<String> playlistNames = Database.getPlaylistNames();
+        output.writeInt(playlistNames.getLength());
+        for (String playlistName : playlistNames)
+        {
+            writer.writeString(playlistName);
+        }
+
+        output.writeInt(Database.getPlaylistIgnoredCount());
+
+        /*
+         * Artists. Removed artists leave gaps in the artist IDs, so the IDs are replaced by
+         * an index into the list of artists we write.
+         */
+        ArtistStore artistStore = Database.getArtistStore();
+        Map<Integer, Integer> artistIndices = new HashMap<Integer, Integer>();
+        output.writeInt(artistStore.getNumArtists());
+        int artistIndex = 0;
+        for (Artist artistObj : artistStore)
+        {
+            artistIndices.put(artistObj.getArtistID(), artistIndex++);
+
+            writer.writeString(artistObj.getDisplayName());
+            writer.writeTrackData(artistObj.getArtistTrackData());
+
+            ArtistNames artistNames = artistObj.getArtistNames();
+            writer.writeString(artistNames.getDisplayName());
+            writer.writeString(artistNames.getNormalizedName());
+            writer.writeEnum(artistNames.getPostProcessType());
+
+            Map<String, ArtistTrackData> altNames = artistNames.getAltNames();
+            output.writeInt(altNames.getCount());
+            for (String altName : altNames)
+            {
+                writer.writeString(altName);
+                writer.writeTrackData(altNames.get(altName));
+            }
+        }
+
+        List<ArtistCorrelator> artistCorrelators = Database.getArtistRegistry().getNormalizedNameOrder();
+        output.writeInt(artistCorrelators.getLength());
+        for (ArtistCorrelator artistCorr : artistCorrelators)
+        {
+            writer.writeString(artistCorr.getDisplayName());
+            writer.writeString(artistCorr.getNormalizedName());
+            Integer index = artistIndices.get(artistCorr.getArtistKey());
+            output.writeInt((index != null) ? index : NULL_REF);
+        }
+
+        /*
+         * Statistics.
+         */
+        Map<String, CodecStats> codecStats = Database.getCodecStats();
+        output.writeInt(codecStats.getCount());
+        for (String codec : codecStats)
+        {
+            CodecStats stats = codecStats.get(codec);
+            writer.writeString(codec);
+            output.writeInt(stats.getCount());
+            writer.writeEnum(stats.getType());
+        }
+
+        Map<String, Integer> encoderStats = Database.getEncoderStats();
+        output.writeInt(encoderStats.getCount());
+        for (String encoder : encoderStats)
+        {
+            writer.writeString(encoder);
+            output.writeInt(encoderStats.get(encoder));
+        }
+    }
+
+    /*
+     * Read the entire database. The database must have just been initialized.
+     */
+    private static void readDatabase(DataInputStream input, String inputFileName)
+            throws IOException
+    {
+        logger.trace("readDatabase");
+
+        SnapshotReader reader = new SnapshotReader(input);
+
+        /*
+         * File date.
+         */
+        setFileDate(inputFileName, reader.readDate());
+
+        /*
+         * Tracks. They were written in sorted order, so add them all before setting the
+         * comparator, which avoids a sorted insert for every track.
+         */
+        ArrayList<Track> tracks = Database.getTracks();
+        int numTracks = input.readInt();
+        for (int i = 0; i < numTracks; i++)
+        {
+            Track track = new Track(input.readInt());
+            track.setName(reader.readString());
+            track.setArtist(reader.readString());
+            track.setComposer(reader.readString());
+            track.setAlbum(reader.readString());
+            track.setGenre(reader.readString());
+            track.setKind(reader.readString());
+            track.setSize(input.readInt());
+            track.setDuration(input.readInt());
+            track.setYear(input.readInt());
+            track.setModified(reader.readDate());
+            track.setDateAdded(reader.readDate());
+            track.setBitRate(input.readInt());
+            track.setSampleRate(input.readInt());
+            track.setPlayCount(input.readInt());
+            track.setReleased(reader.readDate());
+            track.setRating(input.readInt());
+            track.setEncoder(reader.readString());
+            track.setTrackType(reader.readEnum(Track.TrackType.values()));
+
+            tracks.add(track);
+        }
+        tracks.setComparator(new Comparator<Track>()
+        {
+            @Override
+            public int compare(Track t1, Track t2)
+            {
+                return t1.compareTo(t2);
+            }
+        });
+
+        Database.generateTrackIDMappings(logger);
+
+        /*
+         * Duplicates.
+         */
+        DuplicatesIndex duplicatesIndex = Database.getDuplicatesIndex();
+        duplicatesIndex.setByName(input.readBoolean());
+        duplicatesIndex.rebuild(tracks);
+
+        /*
+         * Playlists.
+         */
+        Map<String, Playlist> playlists = Database.getPlaylists();
+        int numPlaylists = input.readInt();
+        for (int i = 0; i < numPlaylists; i++)
+        {
+            String playlistID = reader.readString();
+            Playlist playlistObj = new Playlist();
+            playlistObj.setName(reader.readString());
+            playlistObj.setPersistentID(reader.readString());
+            playlistObj.setParentPersistentID(reader.readString());
+            playlistObj.setFolderContentCount(input.readInt());
+            playlistObj.setIgnored(input.readBoolean());
+            playlistObj.setBypassed(input.readBoolean());
+            playlistObj.setContentHash(input.readLong());
+            playlistObj.setTracks(reader.readTrackIDs());
+            playlists.put(playlistID, playlistObj);
+        }
+
+        Map<String, String> playlistsMap = Database.getPlaylistsMap();
+        int numPlaylistsMap = input.readInt();
+        for (int i = 0; i < numPlaylistsMap; i++)
+        {
+            String playlistName = reader.readString();
+            playlistsMap.put(playlistName, reader.readString());
+        }
+
+        ArrayList<String> playlistNames = Database.getPlaylistNames();
+        int numPlaylistNames = input.readInt();
+        for (int i = 0; i < numPlaylistNames; i++)
+        {
+            playlistNames.add(reader.readString());
+        }
+        playlistNames.setComparator(String.CASE_INSENSITIVE_ORDER);
+
+        Database.setPlaylistIgnoredCount(input.readInt());
+
+        /*
+         * The playlist hierarchy and the track playlist index are rebuilt from the
+         * playlists, which include their ignored and bypassed indicators.
+         */
+        PlaylistCollection.updatePlaylistHierarchy();
+        PlaylistCollection.updateTrackPlaylistInfo();
+
+        /*
+         * Artists. New artist objects mean new artist IDs.
+         */
+        ArtistStore artistStore = Database.getArtistStore();
+        int numArtists = input.readInt();
+        int[] artistIDs = new int[numArtists];
+        for (int i = 0; i < numArtists; i++)
+        {
+            Artist artistObj = artistStore.createArtist(reader.readString());
+            ArtistTrackData artistTrackData = new ArtistTrackData();
+            reader.readTrackData(artistTrackData);
+            artistObj.addTrackData(artistTrackData);
+
+            ArtistNames artistNames = new ArtistNames(reader.readString());
+            artistNames.setNormalizedName(reader.readString());
+            artistNames.setPostProcessType(reader.readEnum(ArtistNames.PostProcessType.values()));
+
+            Map<String, ArtistTrackData> altNames = artistNames.getAltNames();
+            int numAltNames = input.readInt();
+            for (int j = 0; j < numAltNames; j++)
+            {
+                String altName = reader.readString();
+                ArtistTrackData trackData = new ArtistTrackData();
+                reader.readTrackData(trackData);
+                altNames.put(altName, trackData);
+            }
+
+            artistObj.setArtistNames(artistNames);
+            artistIDs[i] = artistObj.getArtistID();
+        }
+
+        ArtistRegistry artistRegistry = Database.getArtistRegistry();
+        int numCorrelators = input.readInt();
+        for (int i = 0; i < numCorrelators; i++)
+        {
+            ArtistCorrelator artistCorr = new ArtistCorrelator(reader.readString());
+            artistCorr.setNormalizedName(reader.readString());
+            int index = input.readInt();
+            if (index != NULL_REF)
+            {
+                artistCorr.setArtistKey(artistIDs[index]);
+            }
+            artistRegistry.add(artistCorr);
+        }
+
+        /*
+         * Statistics.
+         */
+        Map<String, CodecStats> codecStats = Database.getCodecStats();
+        codecStats.setComparator(String.CASE_INSENSITIVE_ORDER);
+        int numCodecs = input.readInt();
+        for (int i = 0; i < numCodecs; i++)
+        {
+            String codec = reader.readString();
+            CodecStats stats = new CodecStats();
+            stats.setCount(input.readInt());
+            stats.setType(reader.readEnum(Track.TrackType.values()));
+            codecStats.put(codec, stats);
+        }
+
+        Map<String, Integer> encoderStats = Database.getEncoderStats();
+        encoderStats.setComparator(String.CASE_INSENSITIVE_ORDER);
+        int numEncoders = input.readInt();
+        for (int i = 0; i < numEncoders; i++)
+        {
+            String encoder = reader.readString();
+            encoderStats.put(encoder, input.readInt());
+        }
+    }
+
+    /*
+     * Get the file date from the handler for the input file type.
+     */
+    private static Date getFileDate(String inputFileName)
+    {
+        String fileNameExt = FilenameUtils.getExtension(inputFileName);
+        return (fileNameExt.equals(StringConstants.JSON))
+                ? JSONHandler.getJSONFileDate() : XMLHandler.getXMLFileDate();
+    }
+
+    /*
+     * Set the file date in the handler for the input file type.
+     */
+    private static void setFileDate(String inputFileName, Date fileDate)
+    {
+        String fileNameExt = FilenameUtils.getExtension(inputFileName);
+        if (fileNameExt.equals(StringConstants.JSON))
+        {
+            JSONHandler.setJSONFileDate(fileDate);
+        }
+        else
+        {
+            XMLHandler.setXMLFileDate(fileDate);
+        }
+    }
+
+    /*
+     * Close a stream, ignoring any error.
+     */
+    private static void closeQuietly(Closeable stream)
+    {
+        if (stream != null)
+        {
+            try
+            {
+                stream.close();
+            }
+            catch (IOException e)
+            {
+
+                /*
+                 * Nothing useful to do here.
+                 */
+            }
+        }
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /**
+     * Class that represents the key identifying the input file and preferences
+     * a snapshot was created from. Keys are created by <code>createKey</code>.
+     *
+     * @author Jon
+     *
+     */
+    public static final class SnapshotKey
+    {
+        private String inputFileName;
+        private String inputPath;
+        private long fileSize;
+        private long fileModified;
+        private byte[] contentHash;
+        private byte[] prefsHash;
+
+        /*
+         * Create a key for the current input file and preferences. The file size and
+         * modification time are read first, so they can't describe a newer file than the
+         * content hash.
+         */
+        private SnapshotKey(String inputFileName)
+                throws IOException
+        {
+            File inputFile = new File(inputFileName);
+            this.inputFileName = inputFileName;
+            inputPath = inputFile.getCanonicalPath();
+            fileSize = inputFile.length();
+            fileModified = inputFile.lastModified();
+            contentHash = null;
+            prefsHash = computePrefsHash();
+        }
+
+        /*
+         * Create an empty key, to be filled in from a snapshot file.
+         */
+        private SnapshotKey()
+        {
+        }
+
+        /*
+         * Read a key from a snapshot file. Returns null if the file is not a snapshot
+         * or is a different version.
+         */
+        private static SnapshotKey read(DataInputStream input)
+                throws IOException
+        {
+            if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION)
+            {
+                return null;
+            }
+
+            SnapshotKey key = new SnapshotKey();
+            key.inputPath = input.readUTF();
+            key.fileSize = input.readLong();
+            key.fileModified = input.readLong();
+            key.contentHash = readBytes(input);
+            key.prefsHash = readBytes(input);
+
+            return key;
+        }
+
+        /*
+         * Write this key to a snapshot file.
+         */
+        private void write(DataOutputStream output)
+                throws IOException
+        {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeUTF(inputPath);
+            output.writeLong(fileSize);
+            output.writeLong(fileModified);
+            writeBytes(output, contentHash);
+            writeBytes(output, prefsHash);
+        }
+
+        /*
+         * Compare the input file path and preferences.
+         */
+        private boolean matchesSource(SnapshotKey key2)
+        {
+            return inputPath.equals(key2.inputPath)
+                    && Arrays.equals(prefsHash, key2.prefsHash);
+        }
+
+        /*
+         * Compare everything except the content hash.
+         */
+        private boolean matchesExceptHash(SnapshotKey key2)
+        {
+            return inputPath.equals(key2.inputPath)
+                    && fileSize == key2.fileSize
+                    && fileModified == key2.fileModified
+                    && Arrays.equals(prefsHash, key2.prefsHash);
+        }
+
+        /*
+         * Compute the hash of the input file contents.
+         */
+        private void computeContentHash()
+                throws IOException
+        {
+            MessageDigest digest = getDigest();
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            InputStream input = new FileInputStream(inputPath);
+            try
+            {
+                int count;
+                while ((count = input.read(buffer)) > 0)
+                {
+                    digest.update(buffer, 0, count);
+                }
+            }
+            finally
+            {
+                input.close();
+            }
+
+            contentHash = digest.digest();
+        }
+
+        /*
+         * Compute the hash of the preferences that affect the database contents.
+         */
+        private static byte[] computePrefsHash()
+        {
+            Preferences userPrefs = Preferences.getInstance();
+            MessageDigest digest = getDigest();
+
+            for (String ignoredPref : userPrefs.getIgnoredPrefs())
+            {
+                updateDigest(digest, "I", ignoredPref);
+            }
+
+            for (BypassPreference bypassPref : userPrefs.getBypassPrefs())
+            {
+                updateDigest(digest, (bypassPref.getIncludeChildren() == true) ? "BC" : "B",
+                        bypassPref.getPlaylistName());
+            }
+
+            for (ArtistAlternateNameOverride override : userPrefs.getArtistOverrides())
+            {
+                updateDigest(digest, "O" + override.getOverrideType(), override.getPrimaryArtist());
+                for (String alternateArtist : override.getAlternateArtists())
+                {
+                    updateDigest(digest, "A", alternateArtist);
+                }
+            }
+
+            return digest.digest();
+        }
+
+        /*
+         * Add a tagged value to a digest.
+         */
+        private static void updateDigest(MessageDigest digest, String tag, String value)
+        {
+            digest.update(tag.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (value != null)
+            {
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+        }
+
+        /*
+         * Get a message digest.
+         */
+        private static MessageDigest getDigest()
+        {
+            try
+            {
+                return MessageDigest.getInstance(HASH_ALGORITHM);
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new InternalErrorException(true, e.getMessage());
+            }
+        }
+
+        private static byte[] readBytes(DataInputStream input)
+                throws IOException
+        {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return bytes;
+        }
+
+        private static void writeBytes(DataOutputStream output, byte[] bytes)
+                throws IOException
+        {
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    /*
+     * Snapshot writer. Strings are written once, and then referred to by index, which
+     * keeps the snapshot compact since artist, album, genre and playlist names are
+     * highly repetitive.
+     */
+    private static final class SnapshotWriter
+    {
+        private DataOutputStream output;
+        private Map<String, Integer> stringTable = new HashMap<String, Integer>();
+
+        private SnapshotWriter(DataOutputStream output)
+        {
+            this.output = output;
+        }
+
+        /*
+         * A string is written as its index in the string table. A new string is written
+         * with the next available index, followed by its contents.
+         */
+        private void writeString(String value)
+                throws IOException
+        {
+            if (value == null)
+            {
+                output.writeInt(NULL_REF);
+                return;
+            }
+
+            Integer index = stringTable.get(value);
+            if (index != null)
+            {
+                output.writeInt(index);
+                return;
+            }
+
+            index = stringTable.getCount();
+            stringTable.put(value, index);
+            output.writeInt(index);
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        private void writeDate(Date value)
+                throws IOException
+        {
+            output.writeLong((value != null) ? value.getTime() : NULL_DATE);
+        }
+
+        private void writeEnum(Enum<?> value)
+                throws IOException
+        {
+            output.writeInt((value != null) ? value.ordinal() : NULL_REF);
+        }
+
+        private void writeTrackIDs(TrackIDSequence trackIDs)
+                throws IOException
+        {
+            if (trackIDs == null)
+            {
+                output.writeInt(NULL_REF);
+                return;
+            }
+
+            output.writeInt(trackIDs.getLength());
+            for (int i = 0; i < trackIDs.getLength(); i++)
+            {
+                output.writeInt(trackIDs.get(i));
+            }
+        }
+
+        private void writeTrackData(ArtistTrackData trackData)
+                throws IOException
+        {
+            output.writeInt(trackData.getNumTracks());
+            output.writeInt(trackData.getTotalTime());
+        }
+    }
+
+    /*
+     * Snapshot reader, the inverse of the snapshot writer.
+     */
+    private static final class SnapshotReader
+    {
+        private DataInputStream input;
+        private ArrayList<String> stringTable = new ArrayList<String>();
+
+        private SnapshotReader(DataInputStream input)
+        {
+            this.input = input;
+        }
+
+        private String readString()
+                throws IOException
+        {
+            int index = input.readInt();
+            if (index == NULL_REF)
+            {
+                return null;
+            }
+
+            if (index < stringTable.getLength())
+            {
+                return stringTable.get(index);
+            }
+
+            if (index != stringTable.getLength())
+            {
+                throw new IOException("invalid string table index " + index);
+            }
+
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            stringTable.add(value);
+
+            return value;
+        }
+
+        private Date readDate()
+                throws IOException
+        {
+            long value = input.readLong();
+            return (value != NULL_DATE) ? new Date(value) : null;
+        }
+
+        private <E extends Enum<E>> E readEnum(E[] values)
+                throws IOException
+        {
+            int ordinal = input.readInt();
+            return (ordinal != NULL_REF) ? values[ordinal] : null;
+        }
+
+        private TrackIDList readTrackIDs()
+                throws IOException
+        {
+            int count = input.readInt();
+            if (count == NULL_REF)
+            {
+                return null;
+            }
+
+            TrackIDList trackIDs = new TrackIDList(count);
+            for (int i = 0; i < count; i++)
+            {
+                trackIDs.add(input.readInt());
+            }
+
+            return trackIDs;
+        }
+
+        private void readTrackData(ArtistTrackData trackData)
+                throws IOException
+        {
+            trackData.setNumTracks(input.readInt());
+            trackData.setTotalTime(input.readInt());
+        }
+    }
+}
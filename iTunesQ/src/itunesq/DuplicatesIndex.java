@@ -0,0 +1,305 @@
+package itunesq;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+
+/**
+ * Class that represents an index of tracks that could be duplicates of each
+ * other.
+ * <p>
+ * Every track is indexed under a key derived from its sort key. By default
+ * the key is the whole sort key, so tracks are only duplicates if they have
+ * the same name, artist, album and kind. The index can instead be set to use
+ * just the normalized name. Tracks with the same key are kept together in a
+ * group, with separate lists of audio and video track IDs in the order the
+ * tracks were added.
+ * <p>
+ * Each track is added with a single hash lookup, so the index doesn't depend
+ * on the order of the all tracks list. The duplicates map contains just the
+ * groups with more than one track.
+ *
+ * @author Jon
+ *
+ */
+public class DuplicatesIndex
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private boolean byName;
+
+    /*
+     * Map of key to group for all indexed tracks, and map of key to group for just the
+     * groups that have duplicates.
+     */
+    private Map<String, DuplicateTracks> groups;
+    private Map<String, DuplicateTracks> duplicatesMap;
+
+    /**
+     * Class constructor.
+     */
+    public DuplicatesIndex()
+    {
+        byName = false;
+        groups = new HashMap<String, DuplicateTracks>();
+        duplicatesMap = new HashMap<String, DuplicateTracks>();
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets whether tracks are indexed by name only.
+     *
+     * @return <code>true</code> if tracks are indexed by name only,
+     * otherwise <code>false</code>
+     */
+    public boolean getByName()
+    {
+        return byName;
+    }
+
+    /**
+     * Sets whether tracks are indexed by name only. If this changes for an
+     * index that already has tracks, the index is rebuilt from the all tracks
+     * list.
+     *
+     * @param byName <code>true</code> to index tracks by name only,
+     * otherwise <code>false</code>
+     */
+    public void setByName(boolean byName)
+    {
+        if (this.byName == byName)
+        {
+            return;
+        }
+
+        this.byName = byName;
+
+        if (groups.isEmpty() == false)
+        {
+            rebuild(Database.getTracks());
+        }
+    }
+
+    /**
+     * Gets the map of duplicate tracks. This maps the index key to the group
+     * of tracks with that key, for groups with more than one track.
+     *
+     * @return map of duplicate tracks
+     */
+    public Map<String, DuplicateTracks> getDuplicatesMap()
+    {
+        return duplicatesMap;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Adds a track to the index.
+     *
+     * @param track track to add
+     * @return group the track was added to, if it has duplicates, otherwise
+     * null
+     */
+    public DuplicateTracks addTrack(Track track)
+    {
+        if (track == null)
+        {
+            throw new IllegalArgumentException("track argument is null");
+        }
+
+        String key = getKey(track);
+
+        DuplicateTracks group = groups.get(key);
+        if (group == null)
+        {
+            group = new DuplicateTracks(track.getName());
+            groups.put(key, group);
+        }
+
+        group.add(track.getID(), track.getTrackType());
+
+        if (group.getCount() < 2)
+        {
+            return null;
+        }
+
+        if (group.getCount() == 2)
+        {
+            duplicatesMap.put(key, group);
+        }
+
+        return group;
+    }
+
+    /**
+     * Removes a track from the index. The track must still have the
+     * attributes it was added with.
+     *
+     * @param track track to remove
+     */
+    public void removeTrack(Track track)
+    {
+        if (track == null)
+        {
+            throw new IllegalArgumentException("track argument is null");
+        }
+
+        String key = getKey(track);
+
+        DuplicateTracks group = groups.get(key);
+        if (group == null || group.remove(track.getID(), track.getTrackType()) == false)
+        {
+            return;
+        }
+
+        if (group.getCount() == 0)
+        {
+            groups.remove(key);
+        }
+        else if (group.getCount() == 1)
+        {
+            duplicatesMap.remove(key);
+        }
+    }
+
+    /**
+     * Rebuilds the index from a list of tracks.
+     *
+     * @param tracks list of tracks
+     */
+    public void rebuild(List<Track> tracks)
+    {
+        if (tracks == null)
+        {
+            throw new IllegalArgumentException("tracks argument is null");
+        }
+
+        groups.clear();
+        duplicatesMap.clear();
+
+        for (Track track : tracks)
+        {
+            addTrack(track);
+        }
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Get the index key for a track.
+     */
+    private String getKey(Track track)
+    {
+        Track.SortKey sortKey = track.getSortKey();
+
+        return (byName == true) ? sortKey.getName() : sortKey.toKeyString();
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /**
+     * Class that represents a group of tracks with the same index key. The
+     * track IDs are kept in separate lists for audio and video tracks. Tracks
+     * of unknown type are treated as audio tracks.
+     *
+     * @author Jon
+     *
+     */
+    public static final class DuplicateTracks
+    {
+        private static final int[] NO_TRACK_IDS = new int[0];
+
+        private String name;
+        private TrackIDList audioTrackIDs = null;
+        private TrackIDList videoTrackIDs = null;
+
+        private DuplicateTracks(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Gets the name of the first track added to the group.
+         *
+         * @return track name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Gets the total number of tracks in the group.
+         *
+         * @return number of tracks
+         */
+        public int getCount()
+        {
+            return getCount(audioTrackIDs) + getCount(videoTrackIDs);
+        }
+
+        /**
+         * Gets the IDs of the tracks of a given type in the group.
+         *
+         * @param trackType track type
+         * @return array of track IDs, in the order they were added
+         */
+        public int[] getTrackIDs(Track.TrackType trackType)
+        {
+            TrackIDList trackIDs = getTrackIDList(trackType);
+
+            return (trackIDs != null) ? trackIDs.toArray() : NO_TRACK_IDS;
+        }
+
+        /*
+         * Add a track ID to the list for its type.
+         */
+        private void add(int trackID, Track.TrackType trackType)
+        {
+            if (trackType == Track.TrackType.VIDEO)
+            {
+                if (videoTrackIDs == null)
+                {
+                    videoTrackIDs = new TrackIDList(2);
+                }
+                videoTrackIDs.add(trackID);
+            }
+            else
+            {
+                if (audioTrackIDs == null)
+                {
+                    audioTrackIDs = new TrackIDList(2);
+                }
+                audioTrackIDs.add(trackID);
+            }
+        }
+
+        /*
+         * Remove a track ID from the list for its type.
+         */
+        private boolean remove(int trackID, Track.TrackType trackType)
+        {
+            TrackIDList trackIDs = getTrackIDList(trackType);
+
+            return (trackIDs != null) ? trackIDs.remove(trackID) : false;
+        }
+
+        /*
+         * Get the list for a track type, which is null if no tracks of that type were added.
+         */
+        private TrackIDList getTrackIDList(Track.TrackType trackType)
+        {
+            return (trackType == Track.TrackType.VIDEO) ? videoTrackIDs : audioTrackIDs;
+        }
+
+        /*
+         * Get the length of a list that could be null.
+         */
+        private static int getCount(TrackIDList trackIDs)
+        {
+            return (trackIDs != null) ? trackIDs.getLength() : 0;
+        }
+    }
+}
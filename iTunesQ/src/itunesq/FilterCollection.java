@@ -298,17 +298,10 @@ public class FilterCollection
         boolean result;
 
         /*
-         * Create a list of tracks to be displayed. Make sure it's sorted by track name.
+         * Create a list of tracks to be displayed. It's sorted by track name once all tracks
+         * have been checked.
          */
         filteredTracks = new ArrayList<Track>();
-        filteredTracks.setComparator(new Comparator<Track>()
-        {
-            @Override
-            public int compare(Track t1, Track t2)
-            {
-                return t1.compareTo(t2);
-            }
-        });
 
         /*
          * Get the initial filter logic (AND = true, OR = false).
@@ -479,6 +472,19 @@ public class FilterCollection
             }
         }
 
+        /*
+         * The tracks were added in the order of the all tracks list, so they're already
+         * sorted and this only checks the order.
+         */
+        filteredTracks.setComparator(new Comparator<Track>()
+        {
+            @Override
+            public int compare(Track t1, Track t2)
+            {
+                return t1.compareTo(t2);
+            }
+        });
+
         return evaluation;
     }
 
@@ -421,18 +421,10 @@ public class FiltersWindow
                         Filter.Operator operatorEnum = Filter.Operator.getEnum(operatorValue);
 
                         /*
-                         * Create an array of artist display names for the typing assistant.
-                         * Unfortunately, we don't have such a list handy.
+                         * Get the sorted artist display names for the typing assistant. The
+                         * registry keeps them until the artists change.
                          */
-                        ArrayList<String> artistNames = new ArrayList<String>();
-                        artistNames.setComparator(String.CASE_INSENSITIVE_ORDER);
-
-                        ArrayList<ArtistCorrelator> artistCorrs = Database.getArtistCorrelators();
-
-                        for (ArtistCorrelator artistCorr : artistCorrs)
-                        {
-                            artistNames.add(artistCorr.getDisplayName());
-                        }
+                        ArrayList<String> artistNames = Database.getArtistRegistry().getDisplayNames();
 
                         Utilities.typingAssistant(textInput, artistNames, textInput.getText(),
                                 operatorEnum);
@@ -7,8 +7,10 @@ import java.util.Comparator;
 import org.apache.pivot.beans.BXML;
 import org.apache.pivot.beans.BXMLSerializer;
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Set;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.wtk.Alert;
 import org.apache.pivot.wtk.Border;
@@ -250,78 +252,80 @@ public class FindDuplicatesDialog
                 uiLogger.debug("selected match criteria: " + matchSpec.toString());
 
                 /*
-                 * Initialize the duplicate tracks list, and sort it by name.
+                 * Initialize the duplicate tracks list, and the IDs of the tracks in it. The
+                 * list is sorted by name once all duplicates have been found.
                  */
                 List<Track> allDupTracks = new ArrayList<Track>();
-                allDupTracks.setComparator(new Comparator<Track>()
+                Set<Integer> allDupIDs = new HashSet<Integer>();
+
+                /*
+                 * Get the type of tracks shown by the owning window. Duplicates are only looked
+                 * for among tracks of that type.
+                 */
+                Track.TrackType trackType;
+                switch (window)
                 {
-                    @Override
-                    public int compare(Track t1, Track t2)
-                    {
-                        return t1.compareTo(t2);
-                    }
-                });
+                case AUDIO_TRACKS:
+                    trackType = Track.TrackType.AUDIO;
+                    break;
+
+                case VIDEO_TRACKS:
+                    trackType = Track.TrackType.VIDEO;
+                    break;
+
+                default:
+                    throw new InternalErrorException(true, "unexpected window type '" + window + "'");
+                }
 
                 /*
-                 * Get the duplicates map. This maps track name to all the IDs
-                 * with that name.
+                 * Get the duplicates map. This maps a duplicates index key to the group of
+                 * tracks with that key, with the IDs of the audio and video tracks kept apart.
                  */
-                Map<String, List<Integer>> duplicatesMap = Database.getDuplicatesMap();
+                Map<String, DuplicatesIndex.DuplicateTracks> duplicatesMap = Database.getDuplicatesMap();
 
                 /*
                  * Walk through all the duplicates.
                  */
-                for (String dupName : duplicatesMap)
+                for (String dupKey : duplicatesMap)
                 {
+                    DuplicatesIndex.DuplicateTracks duplicates = duplicatesMap.get(dupKey);
 
                     /*
-                     * Get the list of track IDs for this name.
+                     * Get the IDs of the tracks of the type we want. There's nothing to do
+                     * unless there are at least two of them.
                      */
-                    List<Integer> dupIDs = duplicatesMap.get(dupName);
+                    int[] dupIDs = duplicates.getTrackIDs(trackType);
+                    if (dupIDs.length < 2)
+                    {
+                        continue;
+                    }
 
                     /*
                      * Create a list of track objects that correspond to the
                      * IDs.
                      */
-                    List<Track> dupTracksForName = new ArrayList<Track>();
-                    for (Integer dupID : dupIDs)
+                    List<Track> dupTracksForName = new ArrayList<Track>(dupIDs.length);
+                    for (int dupID : dupIDs)
                     {
-                    	Track track;
-                    	Integer trackIndex;
-                    	
-                    	switch (window)
-                    	{
-                    	case AUDIO_TRACKS:
-                            trackIndex = Database.getAudioTracksMap().get(dupID);
-                    		break;
-                    		
-                    	case VIDEO_TRACKS:
-                            trackIndex = Database.getVideoTracksMap().get(dupID);
-                    		break;
-                    		
-                    	default:
-                            throw new InternalErrorException(true, "unexpected window type '" + window + "'");
-                    	}
-                        
-                        /*
-                         * Skip adding if we didn't find the index, which can happen if we're not
-                         * on the appropriate window (meaning the ID is for a video track while
-                         * we're on the audio tracks window, or vice versa).
-                         */
-                        if (trackIndex != null)
-                        {
-                        	track = Database.getTracks().get(trackIndex);                 
-                        	dupTracksForName.add(track);
-                        }
+                        dupTracksForName.add(Database.getTrackByID(dupID));
                     }
 
                     /*
                      * Now create the duplicate tracks (if any) based on the
                      * match criteria.
                      */
-                    addDuplicateTracks(dupName, dupTracksForName, allDupTracks);
+                    addDuplicateTracks(duplicates.getName(), dupTracksForName, allDupTracks, allDupIDs);
                 }
 
+                allDupTracks.setComparator(new Comparator<Track>()
+                {
+                    @Override
+                    public int compare(Track t1, Track t2)
+                    {
+                        return t1.compareTo(t2);
+                    }
+                });
+
                 /*
                  * Display duplicate tracks, if any.
                  */
@@ -437,7 +441,8 @@ public class FindDuplicatesDialog
      * Given a list of possible duplicate tracks, determine which are actual
      * duplicates based on the match criteria.
      */
-    private void addDuplicateTracks(String dupName, List<Track> dupTracksForName, List<Track> allDupTracks)
+    private void addDuplicateTracks(String dupName, List<Track> dupTracksForName, List<Track> allDupTracks,
+            Set<Integer> allDupIDs)
     {
         trackLogger.trace("addDuplicateTracks: " + this.hashCode());
 
@@ -461,25 +466,14 @@ public class FindDuplicatesDialog
                     /*
                      * Since we have nested loops, one or both tracks might
                      * already be in the list, so we only add them if not.
-                     * 
-                     * NOTE: Some hideous Pivot code to deal with. The indexOf
-                     * method uses a binary search if the array list has an
-                     * associated comparator, which is indeed the case. This
-                     * means our comparator's compare method is used, which only
-                     * compares the name, meaning it finds a match based only on
-                     * name, which is not what we want. So, we save, clear, and
-                     * restore the comparator so the entire object gets
-                     * compared.
+                     * The set of IDs tells us that without searching the
+                     * list.
                      */
 
                     /*
                      * Add the first track if it's not already there.
                      */
-                    Comparator<Track> savedComparator = allDupTracks.getComparator();
-                    allDupTracks.setComparator(null);
-                    int index = allDupTracks.indexOf(track1);
-                    allDupTracks.setComparator(savedComparator);
-                    if (index == -1)
+                    if (allDupIDs.add(track1.getID()) == true)
                     {
                         allDupTracks.add(track1);
                     }
@@ -487,11 +481,7 @@ public class FindDuplicatesDialog
                     /*
                      * Add the second track if it's not already there.
                      */
-                    savedComparator = allDupTracks.getComparator();
-                    allDupTracks.setComparator(null);
-                    index = allDupTracks.indexOf(track2);
-                    allDupTracks.setComparator(savedComparator);
-                    if (index == -1)
+                    if (allDupIDs.add(track2.getID()) == true)
                     {
                         allDupTracks.add(track2);
                     }
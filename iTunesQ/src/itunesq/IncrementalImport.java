@@ -0,0 +1,822 @@
+package itunesq;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Map;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Class that updates the database from a new version of the input file it was
+ * built from, instead of processing the whole file from scratch.
+ * <p>
+ * This is a final class consisting entirely of static methods.
+ * <p>
+ * When iTunes rewrites the library file usually only a handful of tracks have
+ * changed, for example play counts or ratings. So the input file is read into
+ * a staging area, and compared to the database as follows:
+ * <ul>
+ * <li>Tracks are matched by track ID. A track is unchanged if the date
+ * modified and all other attributes we keep are the same.</li>
+ * <li>A changed track that still sorts in the same place is updated in
+ * place, adjusting the artist and codec totals as needed.</li>
+ * <li>Other changed tracks are removed and added again, as are new and
+ * deleted tracks. This updates the duplicates map and artists.</li>
+ * <li>Playlists are matched by persistent ID and a hash of their contents
+ * in the input file. If any playlist changed, all playlists are rebuilt,
+ * since the tracks of child playlists are bubbled up to their parents. This
+ * is cheap compared to rebuilding the tracks and artists.</li>
+ * </ul>
+ * If there are too many changed tracks, or a track artist can't be found in
+ * the artists we have, the database is rebuilt from the staging area. This
+ * still avoids reading the input file a second time.
+ *
+ * @author Jon
+ *
+ */
+public final class IncrementalImport
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private static String className = IncrementalImport.class.getSimpleName();
+    private static Logger logger = (Logger) LoggerFactory.getLogger(className + "_File");
+    private static Logger trackLogger = (Logger) LoggerFactory.getLogger(className + "_Track");
+    private static Logger artistLogger = (Logger) LoggerFactory.getLogger(className + "_Artist");
+
+    /*
+     * If more than this percentage of tracks were added, removed or reordered, it's
+     * faster to rebuild the database than to patch it.
+     */
+    private static final int REBUILD_THRESHOLD_PERCENT = 10;
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Initializes logging. This is called once at application initialization.
+     */
+    public static void initializeLogging()
+    {
+        Logging logging = Logging.getInstance();
+        logging.registerLogger(Logging.Dimension.FILE, logger);
+        logging.registerLogger(Logging.Dimension.TRACK, trackLogger);
+        logging.registerLogger(Logging.Dimension.ARTIST, artistLogger);
+    }
+
+    /**
+     * Updates the database from the input file, applying only the changes
+     * since the database was built. This can only be done if the database was
+     * built from the same input file.
+     *
+     * @param inputFileName input file name
+     * @return <code>true</code> if the database was updated,
+     * <code>false</code> if the input file needs to be processed from scratch
+     * @throws IOException If an error occurs trying to read the input file.
+     */
+    public static boolean updateDatabase(String inputFileName)
+            throws IOException
+    {
+        if (inputFileName == null)
+        {
+            throw new IllegalArgumentException("inputFileName argument is null");
+        }
+
+        logger.trace("updateDatabase");
+
+        if (!inputFileName.equals(Database.getInputFileName()))
+        {
+            logger.info("database was not built from input file, incremental import not possible");
+            return false;
+        }
+
+        /*
+         * Read the input file into the staging area. This doesn't touch the database.
+         */
+        LibraryStage stage = readLibrary(inputFileName);
+        if (stage == null)
+        {
+            return false;
+        }
+
+        applyLibrary(stage);
+        return true;
+    }
+
+    /**
+     * Reads the input file into a staging area, without touching the database.
+     * <p>
+     * This can be run on a background thread while the database is in use,
+     * followed by <code>applyLibrary</code> once nothing else is using the
+     * database.
+     *
+     * @param inputFileName input file name
+     * @return staging area, or <code>null</code> if the input file is of
+     * unknown type
+     * @throws IOException If an error occurs trying to read the input file.
+     */
+    public static LibraryStage readLibrary(String inputFileName)
+            throws IOException
+    {
+        if (inputFileName == null)
+        {
+            throw new IllegalArgumentException("inputFileName argument is null");
+        }
+
+        logger.trace("readLibrary");
+
+        LibraryStage stage = new LibraryStage();
+        stage.inputFileName = inputFileName;
+        stage.fileNameExt = FilenameUtils.getExtension(inputFileName);
+        if (stage.fileNameExt.equals(StringConstants.XML))
+        {
+            XMLHandler.readXML(inputFileName, stage);
+        }
+        else if (stage.fileNameExt.equals(StringConstants.JSON))
+        {
+            JSONHandler.readJSON(inputFileName, stage);
+        }
+        else
+        {
+            return null;
+        }
+
+        return stage;
+    }
+
+    /**
+     * Updates the database from a staging area returned by
+     * <code>readLibrary</code>. Only the changes are applied if the database
+     * was built from the same input file, otherwise the database is rebuilt
+     * from the staging area.
+     *
+     * @param stage staging area
+     */
+    public static void applyLibrary(LibraryStage stage)
+    {
+        if (stage == null)
+        {
+            throw new IllegalArgumentException("stage argument is null");
+        }
+
+        logger.trace("applyLibrary");
+
+        if (!stage.inputFileName.equals(Database.getInputFileName()))
+        {
+            logger.info("database was not built from input file, rebuilding database");
+            Database.setInputFileName(stage.inputFileName);
+            rebuildDatabase(stage);
+            Database.logFileStats();
+            return;
+        }
+
+        /*
+         * Compare the staging area to the database.
+         */
+        TrackChanges changes = findTrackChanges(stage);
+        boolean playlistsChanged = findPlaylistChanges(stage);
+
+        logger.info("incremental import found " + changes.updated.getLength() + " updated, "
+                + changes.additions.getLength() + " added or reordered, "
+                + changes.removals.length + " removed tracks, playlists "
+                + ((playlistsChanged == true) ? "changed" : "unchanged"));
+
+        /*
+         * Decide whether to patch or rebuild the database.
+         */
+        int numMoved = changes.additions.getLength() + changes.removals.length;
+        if (numMoved * 100 > Database.getTracks().getLength() * REBUILD_THRESHOLD_PERCENT)
+        {
+            logger.info("too many track changes, rebuilding database");
+            rebuildDatabase(stage);
+        }
+        else if (findArtistsForChanges(changes) == false)
+        {
+            logger.info("unable to find artist for a changed track, rebuilding database");
+            rebuildDatabase(stage);
+        }
+        else
+        {
+            DatabaseLoader loader = createLoader(stage);
+            boolean applied = false;
+            try
+            {
+                applyTrackChanges(changes, loader);
+                applied = true;
+            }
+            catch (RuntimeException e)
+            {
+                MainWindow.logException(logger, e);
+                logger.warn("unable to apply track changes, rebuilding database");
+                rebuildDatabase(stage);
+            }
+
+            if (applied == true && playlistsChanged == true)
+            {
+                rebuildPlaylists(stage, loader);
+            }
+        }
+
+        Database.logFileStats();
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Compare the staged tracks to the database tracks.
+     */
+    private static TrackChanges findTrackChanges(LibraryStage stage)
+    {
+        logger.trace("findTrackChanges");
+
+        ArrayList<Track> tracks = Database.getTracks();
+        TrackIDIndex trackIDIndex = Database.getTrackIDIndex();
+        boolean[] found = new boolean[tracks.getLength()];
+        TrackChanges changes = new TrackChanges();
+
+        for (Track newTrack : stage.tracks)
+        {
+            int index = trackIDIndex.getIndex(newTrack.getID());
+
+            /*
+             * New track.
+             */
+            if (index < 0)
+            {
+                changes.additions.add(newTrack);
+                continue;
+            }
+
+            found[index] = true;
+            Track oldTrack = tracks.get(index);
+
+            /*
+             * Nothing to do if the track hasn't changed. The date modified is the most
+             * likely difference, so it's checked first. But play counts and ratings can
+             * change without changing the date modified.
+             */
+            if (sameDate(oldTrack.getModified(), newTrack.getModified())
+                    && sameAttributes(oldTrack, newTrack))
+            {
+                continue;
+            }
+
+            /*
+             * If the track still sorts in the same place, and keeps the same name and
+             * artist, it can be updated in place. Otherwise it has to be removed and
+             * added again.
+             */
+            if (oldTrack.compareTo(newTrack) == 0
+                    && oldTrack.getTrackType() == newTrack.getTrackType()
+                    && sameString(oldTrack.getName(), newTrack.getName())
+                    && sameString(oldTrack.getArtist(), newTrack.getArtist()))
+            {
+                changes.updated.add(oldTrack);
+                changes.updates.add(newTrack);
+            }
+            else
+            {
+                changes.additions.add(newTrack);
+                changes.removed.add(oldTrack);
+            }
+        }
+
+        /*
+         * Tracks we didn't find have been deleted. Replaced tracks are removed as well.
+         */
+        for (int i = 0; i < found.length; i++)
+        {
+            if (found[i] == false)
+            {
+                changes.removed.add(tracks.get(i));
+            }
+        }
+
+        changes.removals = new int[changes.removed.getLength()];
+        int next = 0;
+        for (Track oldTrack : changes.removed)
+        {
+            changes.removals[next++] = trackIDIndex.getIndex(oldTrack.getID());
+        }
+        Arrays.sort(changes.removals);
+
+        return changes;
+    }
+
+    /*
+     * Determine if any playlist has changed. Playlists are matched by persistent ID.
+     */
+    private static boolean findPlaylistChanges(LibraryStage stage)
+    {
+        logger.trace("findPlaylistChanges");
+
+        Map<String, Playlist> playlists = Database.getPlaylists();
+        if (playlists.getCount() != stage.playlists.getLength())
+        {
+            return true;
+        }
+
+        for (Playlist newPlaylist : stage.playlists)
+        {
+            Playlist oldPlaylist = playlists.get(newPlaylist.getPersistentID());
+            if (oldPlaylist == null
+                    || oldPlaylist.getContentHash() != newPlaylist.computeContentHash())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Find the artist objects for all removed tracks, and updated tracks whose duration
+     * changed. Returns false if any artist can't be found.
+     */
+    private static boolean findArtistsForChanges(TrackChanges changes)
+    {
+        logger.trace("findArtistsForChanges");
+
+        /*
+         * Build a map of every artist display name and alternate name to its artist
+         * object. Alternate names that belong to an alternate transferred to a primary
+         * artist are not in the map, so those tracks cause a rebuild.
+         */
+        Map<String, Artist> artistsByName = new HashMap<String, Artist>();
+        for (Artist artistObj : Database.getArtistStore())
+        {
+            ArtistNames artistNames = artistObj.getArtistNames();
+
+            if (addArtistName(artistsByName, artistNames.getDisplayName(), artistObj) == false)
+            {
+                return false;
+            }
+
+            for (String altName : artistNames.getAltNames())
+            {
+                if (addArtistName(artistsByName, altName, artistObj) == false)
+                {
+                    return false;
+                }
+            }
+        }
+
+        for (Track oldTrack : changes.removed)
+        {
+            if (findArtist(artistsByName, oldTrack, changes) == false)
+            {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < changes.updated.getLength(); i++)
+        {
+            Track oldTrack = changes.updated.get(i);
+            if (oldTrack.getDuration() != changes.updates.get(i).getDuration()
+                    && findArtist(artistsByName, oldTrack, changes) == false)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Add an artist name to the artist names map. Returns false if the name belongs to
+     * more than one artist.
+     */
+    private static boolean addArtistName(Map<String, Artist> artistsByName, String name,
+            Artist artistObj)
+    {
+        Artist existing = artistsByName.put(name, artistObj);
+        return existing == null || existing == artistObj;
+    }
+
+    /*
+     * Find the artist object for a track and save it in the changes. Returns false if
+     * the track has an artist that can't be found.
+     */
+    private static boolean findArtist(Map<String, Artist> artistsByName, Track track,
+            TrackChanges changes)
+    {
+        String artist = track.getArtist();
+        if (artist == null)
+        {
+            return true;
+        }
+
+        Artist artistObj = artistsByName.get(artist);
+        if (artistObj == null)
+        {
+            artistLogger.debug("no artist found for name '" + artist + "'");
+            return false;
+        }
+
+        changes.trackArtists.put(track.getID(), artistObj);
+        return true;
+    }
+
+    /*
+     * Apply the track changes to the database.
+     */
+    private static void applyTrackChanges(TrackChanges changes, DatabaseLoader loader)
+    {
+        logger.trace("applyTrackChanges");
+
+        ArrayList<Track> tracks = Database.getTracks();
+        boolean artistsChanged = false;
+
+        /*
+         * Update changed tracks in place. The artist only needs updating if the duration
+         * changed, since the name is the same.
+         */
+        for (int i = 0; i < changes.updated.getLength(); i++)
+        {
+            Track oldTrack = changes.updated.get(i);
+            Track newTrack = changes.updates.get(i);
+
+            removeTrackStats(oldTrack);
+            addTrackStats(newTrack);
+
+            int durationDelta = newTrack.getDuration() - oldTrack.getDuration();
+            if (durationDelta != 0 && oldTrack.getArtist() != null)
+            {
+                Artist artistObj = changes.trackArtists.get(oldTrack.getID());
+                artistObj.removeTrackFromArtist(oldTrack, artistLogger);
+                artistObj.addTrackToArtist(newTrack, artistLogger);
+            }
+
+            copyAttributes(newTrack, oldTrack);
+            trackLogger.debug("updated track ID " + oldTrack.getID() + ", name '"
+                    + oldTrack.getName() + "'");
+        }
+
+        /*
+         * Remove deleted and replaced tracks, from the end of the list so the indices
+         * stay valid.
+         */
+        if (changes.removals.length > 0)
+        {
+            DuplicatesIndex duplicatesIndex = Database.getDuplicatesIndex();
+
+            for (int i = changes.removals.length - 1; i >= 0; i--)
+            {
+                int index = changes.removals[i];
+                Track oldTrack = tracks.get(index);
+
+                removeTrackStats(oldTrack);
+                duplicatesIndex.removeTrack(oldTrack);
+
+                if (oldTrack.getArtist() != null)
+                {
+                    Artist artistObj = changes.trackArtists.get(oldTrack.getID());
+                    artistObj.removeTrackFromArtist(oldTrack, artistLogger);
+
+                    if (artistObj.getNumTracks() <= 0)
+                    {
+                        removeArtist(artistObj);
+                        artistsChanged = true;
+                    }
+                }
+
+                tracks.remove(index, 1);
+                trackLogger.debug("removed track ID " + oldTrack.getID() + ", name '"
+                        + oldTrack.getName() + "'");
+            }
+        }
+
+        /*
+         * Add new and replaced tracks, in input file order.
+         */
+        int numArtists = Database.getArtistStore().getNumArtists();
+        for (Track newTrack : changes.additions)
+        {
+            loader.trackFound(newTrack);
+        }
+
+        if (Database.getArtistStore().getNumArtists() != numArtists)
+        {
+            artistsChanged = true;
+        }
+
+        /*
+         * The track indices have changed if any tracks were added or removed. The track
+         * playlist index refers to tracks by index, so it has to be rebuilt too. Replaced
+         * tracks keep the same ID, so they keep their playlists, in case the playlists
+         * haven't changed.
+         */
+        if (changes.additions.getLength() > 0 || changes.removals.length > 0)
+        {
+            Database.generateTrackIDMappings(trackLogger);
+            PlaylistCollection.updateTrackPlaylistInfo();
+        }
+
+        /*
+         * Artists that were added or removed might affect alternate names and artist
+         * overrides.
+         */
+        if (artistsChanged == true)
+        {
+            ArtistNames.postProcessArtists();
+        }
+    }
+
+    /*
+     * Rebuild all playlists from the staging area.
+     */
+    private static void rebuildPlaylists(LibraryStage stage, DatabaseLoader loader)
+    {
+        logger.info("rebuilding playlists");
+
+        Database.initializePlaylists();
+
+        for (Playlist playlistObj : stage.playlists)
+        {
+            loader.playlistFound(playlistObj);
+        }
+
+        PlaylistCollection.postProcessPlaylists();
+    }
+
+    /*
+     * Rebuild the entire database from the staging area.
+     */
+    private static void rebuildDatabase(LibraryStage stage)
+    {
+        logger.trace("rebuildDatabase");
+
+        String inputFileName = Database.getInputFileName();
+        Database.initializeDB();
+        Database.setInputFileName(inputFileName);
+
+        /*
+         * The loader has to be created after the database is initialized. The database is
+         * empty, so the tracks can be bulk loaded.
+         */
+        DatabaseLoader loader = createLoader(stage);
+        loader.setBulkLoad(true);
+
+        for (Track track : stage.tracks)
+        {
+            loader.trackFound(track);
+        }
+        loader.tracksComplete();
+
+        for (Playlist playlistObj : stage.playlists)
+        {
+            loader.playlistFound(playlistObj);
+        }
+
+        PlaylistCollection.postProcessPlaylists();
+    }
+
+    /*
+     * Create a database loader for the type of input file. We drive the loader directly, so
+     * it can't be pipelined.
+     */
+    private static DatabaseLoader createLoader(LibraryStage stage)
+    {
+        return (stage.fileNameExt.equals(StringConstants.XML))
+                ? XMLHandler.createDatabaseLoader(false) : JSONHandler.createDatabaseLoader(false);
+    }
+
+    /*
+     * Remove an artist that has no tracks left.
+     */
+    private static void removeArtist(Artist artistObj)
+    {
+        int artistKey = artistObj.getArtistID();
+        Database.getArtistStore().remove(artistKey);
+
+        /*
+         * The correlator has the same display name as the artist.
+         */
+        ArtistCorrelator artistCorr = Database.findArtistCorrelator(artistObj.getDisplayName());
+        if (artistCorr != null && artistCorr.getArtistKey() == artistKey)
+        {
+            Database.getArtistRegistry().remove(artistCorr);
+        }
+
+        artistLogger.debug("removed artist '" + artistObj.getDisplayName() + "'");
+    }
+
+    /*
+     * Add a track to the codec and encoder statistics.
+     */
+    private static void addTrackStats(Track track)
+    {
+        String codec = DatabaseLoader.getCodec(track.getKind());
+        if (codec != null)
+        {
+            Map<String, CodecStats> codecStats = Database.getCodecStats();
+            CodecStats stats = codecStats.get(codec);
+            if (stats != null)
+            {
+                stats.incrementCount();
+            }
+            else
+            {
+                stats = new CodecStats();
+                stats.setCount(1);
+                stats.setType(track.getTrackType());
+                codecStats.put(codec, stats);
+            }
+        }
+
+        String encoder = track.getEncoder();
+        if (encoder != null && encoder.length() > 0)
+        {
+            Map<String, Integer> encoderStats = Database.getEncoderStats();
+            Integer encoderNum = encoderStats.get(encoder);
+            encoderStats.put(encoder, (encoderNum != null) ? encoderNum + 1 : 1);
+        }
+    }
+
+    /*
+     * Remove a track from the codec and encoder statistics.
+     */
+    private static void removeTrackStats(Track track)
+    {
+        String codec = DatabaseLoader.getCodec(track.getKind());
+        if (codec != null)
+        {
+            Map<String, CodecStats> codecStats = Database.getCodecStats();
+            CodecStats stats = codecStats.get(codec);
+            if (stats != null)
+            {
+                stats.decrementCount();
+                if (stats.getCount() <= 0)
+                {
+                    codecStats.remove(codec);
+                }
+            }
+        }
+
+        String encoder = track.getEncoder();
+        if (encoder != null && encoder.length() > 0)
+        {
+            Map<String, Integer> encoderStats = Database.getEncoderStats();
+            Integer encoderNum = encoderStats.get(encoder);
+            if (encoderNum != null)
+            {
+                if (encoderNum > 1)
+                {
+                    encoderStats.put(encoder, encoderNum - 1);
+                }
+                else
+                {
+                    encoderStats.remove(encoder);
+                }
+            }
+        }
+    }
+
+    /*
+     * Determine if two tracks have the same attributes, other than the date modified.
+     */
+    private static boolean sameAttributes(Track t1, Track t2)
+    {
+        return sameString(t1.getName(), t2.getName())
+                && sameString(t1.getArtist(), t2.getArtist())
+                && sameString(t1.getComposer(), t2.getComposer())
+                && sameString(t1.getAlbum(), t2.getAlbum())
+                && sameString(t1.getGenre(), t2.getGenre())
+                && sameString(t1.getKind(), t2.getKind())
+                && t1.getSize() == t2.getSize()
+                && t1.getDuration() == t2.getDuration()
+                && t1.getYear() == t2.getYear()
+                && sameDate(t1.getDateAdded(), t2.getDateAdded())
+                && t1.getBitRate() == t2.getBitRate()
+                && t1.getSampleRate() == t2.getSampleRate()
+                && t1.getPlayCount() == t2.getPlayCount()
+                && sameDate(t1.getReleased(), t2.getReleased())
+                && t1.getRating() == t2.getRating()
+                && sameString(t1.getEncoder(), t2.getEncoder())
+                && t1.getTrackType() == t2.getTrackType();
+    }
+
+    /*
+     * Copy the attributes of one track to another.
+     */
+    private static void copyAttributes(Track from, Track to)
+    {
+        to.setName(from.getName());
+        to.setArtist(from.getArtist());
+        to.setComposer(from.getComposer());
+        to.setAlbum(from.getAlbum());
+        to.setGenre(from.getGenre());
+        to.setKind(from.getKind());
+        to.setSize(from.getSize());
+        to.setDuration(from.getDuration());
+        to.setYear(from.getYear());
+        to.setModified(from.getModified());
+        to.setDateAdded(from.getDateAdded());
+        to.setBitRate(from.getBitRate());
+        to.setSampleRate(from.getSampleRate());
+        to.setPlayCount(from.getPlayCount());
+        to.setReleased(from.getReleased());
+        to.setRating(from.getRating());
+        to.setEncoder(from.getEncoder());
+    }
+
+    /*
+     * Compare two strings that could be null.
+     */
+    private static boolean sameString(String s1, String s2)
+    {
+        return (s1 == null) ? s2 == null : s1.equals(s2);
+    }
+
+    /*
+     * Compare two dates that could be null.
+     */
+    private static boolean sameDate(Date d1, Date d2)
+    {
+        return (d1 == null) ? d2 == null : d1.equals(d2);
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /**
+     * Staging area for the tracks and playlists read from the input file, in
+     * input file order. It is only created by <code>readLibrary</code> and
+     * consumed by <code>applyLibrary</code>.
+     *
+     * @author Jon
+     *
+     */
+    public static final class LibraryStage implements LibraryListener
+    {
+        private ArrayList<Track> tracks = new ArrayList<Track>();
+        private ArrayList<Playlist> playlists = new ArrayList<Playlist>();
+        private String inputFileName = null;
+        private String fileNameExt = null;
+
+        private LibraryStage()
+        {
+        }
+
+        /**
+         * Gets the input file name the staging area was read from.
+         *
+         * @return input file name
+         */
+        public String getInputFileName()
+        {
+            return inputFileName;
+        }
+
+        @Override
+        public void trackFound(Track track)
+        {
+            tracks.add(track);
+        }
+
+        @Override
+        public void tracksComplete()
+        {
+        }
+
+        @Override
+        public void playlistFound(Playlist playlist)
+        {
+            playlists.add(playlist);
+        }
+    }
+
+    /*
+     * Differences between the staged tracks and the database tracks.
+     */
+    private static final class TrackChanges
+    {
+
+        /*
+         * Tracks to be updated in place, and the corresponding staged tracks.
+         */
+        private ArrayList<Track> updated = new ArrayList<Track>();
+        private ArrayList<Track> updates = new ArrayList<Track>();
+
+        /*
+         * Staged tracks to be added, in input file order. This includes replaced tracks.
+         */
+        private ArrayList<Track> additions = new ArrayList<Track>();
+
+        /*
+         * Database tracks to be removed, including replaced tracks, and their indices
+         * in the tracks list in ascending order.
+         */
+        private ArrayList<Track> removed = new ArrayList<Track>();
+        private int[] removals = null;
+
+        /*
+         * Map of track ID to the artist object of the database track.
+         */
+        private Map<Integer, Artist> trackArtists = new HashMap<Integer, Artist>();
+    }
+}
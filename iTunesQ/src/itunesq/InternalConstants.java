@@ -46,11 +46,28 @@ public class InternalConstants
      */
     public static final int ALPHA_BAR_WIDTH = 22 * 26;
 
+    /**
+     * Maximum number of artist display names whose normalized names are 
+     * cached.
+     */
+    public static final int ARTIST_NAME_CACHE_SIZE = 32768;
+
     /**
      * Height of the scrollable area for the artist overrides dialogs.
      */
     public static final int ARTIST_OVERRIDES_SCROLLPANE_HEIGHT = 170;
 
+    /**
+     * Number of characters in the shorter of two normalized artist names for
+     * each edit allowed when looking for similar artist names.
+     */
+    public static final int ARTIST_SIMILARITY_CHARS_PER_EDIT = 5;
+
+    /**
+     * Maximum number of edits allowed between two similar artist names.
+     */
+    public static final int ARTIST_SIMILARITY_MAX_EDITS = 2;
+
     /**
      * Spacing of the labels for the info elements on the artists window.
      */
@@ -119,4 +136,10 @@ public class InternalConstants
      * the track variables and their values.
      */
     public static final int TRACK_DETAILS_LABEL_WIDTH = 130;
+
+    /**
+     * Time in milliseconds the input file must be quiet before it's reloaded
+     * after a change. iTunes writes the file in several bursts.
+     */
+    public static final int WATCH_FILE_QUIET_TIME = 3000;
 }
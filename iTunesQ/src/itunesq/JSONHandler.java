@@ -1,23 +1,15 @@
 package itunesq;
 
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.util.Comparator;
 import java.util.Date;
 
-import org.apache.pivot.collections.ArrayList;
-import org.apache.pivot.collections.LinkedList;
-import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.collections.Map;
-import org.json.simple.DeserializationException;
-import org.json.simple.JsonArray;
-import org.json.simple.JsonKey;
-import org.json.simple.JsonObject;
-import org.json.simple.Jsoner;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Logger;
@@ -27,8 +19,12 @@ import ch.qos.logback.classic.Logger;
  * <p>
  * This is a final class consisting entirely of static methods.
  * <p>
- * The main public method is <code>processJSON</code>, that uses a JSON 
- * reader to walk through the JSON file.
+ * The main public method is <code>processJSON</code>, that uses a streaming
+ * JSON reader to walk through the JSON file. Tracks and playlists are added
+ * to the database as they are read, so only a single track or playlist is
+ * held in memory at a time. The file can also be read with
+ * <code>readJSON</code>, which hands the tracks and playlists to a listener
+ * instead.
  * 
  * @author Jon
  *
@@ -47,8 +43,13 @@ public final class JSONHandler
     private static Logger artistLogger = (Logger) LoggerFactory.getLogger(className + "_Artist");
 
     private static Date fileDate = null;
+
+    /*
+     * Size of the input buffer.
+     */
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
     
-    private enum JsonKeys implements JsonKey
+    private enum JsonKeys
     {
 		TIMESTAMP("TimeStamp"), 
 		TRACKS("Tracks"), 
@@ -61,20 +62,34 @@ public final class JSONHandler
             displayValue = s;
 		}
 
-		@Override
 		public String getKey()
 		{
 			return displayValue;
 		}
 
-		@Override
-		public Object getValue()
-		{
-			return null;
-		}    	
+        /*
+         * Performs a reverse lookup of the enum from the key value. Returns
+         * null for keys we don't process.
+         */
+        private static JsonKeys getEnum(String value)
+        {
+            return lookup.get(value);
+        }
+
+        /*
+         * Reverse lookup capability to get the enum based on its key value.
+         */
+        private static final Map<String, JsonKeys> lookup = new HashMap<String, JsonKeys>();
+        static
+        {
+            for (JsonKeys value : JsonKeys.values())
+            {
+                lookup.put(value.getKey(), value);
+            }
+        }
     }
     
-    private enum TrackKeys implements JsonKey
+    private enum TrackKeys
     {
 		ALBUM("Album"),
 		ARTIST("Artist"),
@@ -101,21 +116,34 @@ public final class JSONHandler
             displayValue = s;
 		}
 
-		@Override
 		public String getKey()
 		{
 			return displayValue;
 		}
 
-		@Override
-		public Object getValue()
-		{
-			return null;
-		}
-    	
+        /*
+         * Performs a reverse lookup of the enum from the key value. Returns
+         * null for keys we don't process.
+         */
+        private static TrackKeys getEnum(String value)
+        {
+            return lookup.get(value);
+        }
+
+        /*
+         * Reverse lookup capability to get the enum based on its key value.
+         */
+        private static final Map<String, TrackKeys> lookup = new HashMap<String, TrackKeys>();
+        static
+        {
+            for (TrackKeys value : TrackKeys.values())
+            {
+                lookup.put(value.getKey(), value);
+            }
+        }
     }
     
-    private enum PlaylistKeys implements JsonKey
+    private enum PlaylistKeys
     {
 		ITEMS("Items"),
 		NAME("Name"),
@@ -130,18 +158,31 @@ public final class JSONHandler
             displayValue = s;
 		}
 
-		@Override
 		public String getKey()
 		{
 			return displayValue;
 		}
 
-		@Override
-		public Object getValue()
-		{
-			return null;
-		}
-    	
+        /*
+         * Performs a reverse lookup of the enum from the key value. Returns
+         * null for keys we don't process.
+         */
+        private static PlaylistKeys getEnum(String value)
+        {
+            return lookup.get(value);
+        }
+
+        /*
+         * Reverse lookup capability to get the enum based on its key value.
+         */
+        private static final Map<String, PlaylistKeys> lookup = new HashMap<String, PlaylistKeys>();
+        static
+        {
+            for (PlaylistKeys value : PlaylistKeys.values())
+            {
+                lookup.put(value.getKey(), value);
+            }
+        }
     }
 
     // ---------------- Public methods --------------------------------------
@@ -168,6 +209,27 @@ public final class JSONHandler
         return (fileDate != null) ? Utilities.formatDate(fileDate) : "";
     }
 
+    /**
+     * Gets the date of the JSON file.
+     * 
+     * @return file date, or null if no file has been processed
+     */
+    public static Date getJSONFileDate()
+    {
+        return fileDate;
+    }
+
+    /**
+     * Sets the date of the JSON file. This is used when the database is
+     * restored without processing the file.
+     * 
+     * @param date file date
+     */
+    public static void setJSONFileDate(Date date)
+    {
+        fileDate = date;
+    }
+
     /**
      * Reads and processes the JSON file.
      * 
@@ -180,63 +242,21 @@ public final class JSONHandler
     {
         fileLogger.trace("processJSON");
 
-        JsonObject json = null;
-
-        fileLogger.info("creating JSON reader");
-        //Reader reader = new BufferedReader(new FileReader(jsonFileName));
-        Reader reader = new InputStreamReader(new FileInputStream(jsonFileName), StandardCharsets.UTF_8);
-
-        fileLogger.info("deserializing JSON document");
-        try
-        {
-			json = (JsonObject) Jsoner.deserialize(reader);
-		}
-        catch (DeserializationException e)
-        {
-            MainWindow.logException(fileLogger, e);
-            handleJSONError(e.getMessage());
-		}
-
-        fileLogger.info("getting global information elements");
-		String fileTimestamp = json.getString(JsonKeys.TIMESTAMP);
-		JsonArray tracksHolder = new JsonArray(json.getCollection(JsonKeys.TRACKS));			
-		JsonArray playlistsHolder = new JsonArray(json.getCollection(JsonKeys.PLAYLISTS));
-        
         /*
-         * Parse the date if we were successful.
+         * Read the JSON file into the database. Use separate threads for the tracks and artists
+         * if that's worthwhile. The database is empty, so the tracks can be bulk loaded.
          */
-        if (fileTimestamp != null)
+        DatabaseLoader loader = createDatabaseLoader(PipelinedDatabaseLoader.isWorthwhile());
+        loader.setBulkLoad(true);
+        try
         {
-            try
-            {
-                fileDate = Utilities.parseDate(fileTimestamp);
-            }
-            catch (ParseException e)
-            {
-                MainWindow.logException(fileLogger, e);
-                handleJSONError("unable to parse date value " + fileTimestamp);
-            }
+            readJSON(jsonFileName, loader);
+        }
+        finally
+        {
+            loader.finish();
         }
 
-        /*
-         * Now gather the actual tracks.
-         */
-        fileLogger.info("gathering tracks");
-        generateTracks(tracksHolder);
-
-        /*
-         * Now that the tracks (and artists) are all created, post-process the artists
-         * to try and find additional alternate names, and to verify artist alternate name 
-         * overrides.
-         */
-        ArtistNames.postProcessArtists();
-
-        /*
-         * Gather playlists.
-         */
-        fileLogger.info("gathering playlists");
-        generatePlaylists(playlistsHolder);
-        
         /*
          * Post-process the playlists as follows:
          * 
@@ -252,61 +272,147 @@ public final class JSONHandler
         Database.logFileStats();
     }
 
-    // ---------------- Private methods -------------------------------------
+    /**
+     * Creates a database loader that handles tracks and playlists the way
+     * the JSON file requires.
+     * 
+     * @param pipelined <code>true</code> to use separate threads for the
+     * tracks and artists
+     * @return database loader
+     */
+    public static DatabaseLoader createDatabaseLoader(boolean pipelined)
+    {
+        return (pipelined == true)
+                ? new PipelinedDatabaseLoader(trackLogger, playlistLogger, artistLogger)
+                : new DatabaseLoader(trackLogger, playlistLogger, artistLogger);
+    }
 
-    /*
-     * Create the tracks from the JSON file.
+    /**
+     * Reads the JSON file, handing each track and playlist to a listener. The
+     * file date is also saved.
+     * 
+     * @param jsonFileName JSON file name
+     * @param listener listener that receives the tracks and playlists
+     * @throws IOException If an error occurs trying to read the JSON
+     * file.
      */
-    private static void generateTracks(JsonArray tracksHolder)
+    public static void readJSON(String jsonFileName, LibraryListener listener) 
+            throws IOException
     {
-        trackLogger.trace("generateTracks");
+        fileLogger.trace("readJSON");
+
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener argument is null");
+        }
+
+        fileLogger.info("creating JSON reader");
+        JSONStreamReader json = new JSONStreamReader(new BufferedReader(
+                new InputStreamReader(new FileInputStream(jsonFileName), StandardCharsets.UTF_8),
+                INPUT_BUFFER_SIZE));
+
+        String fileTimestamp = null;
+        boolean tracksFound = false;
+        boolean playlistsFound = false;
 
         /*
-         * We collect all the tracks into an ArrayList of type Track.
-         * Make sure it's sorted by track name.
+         * Walk the members of the top level object. These represent global
+         * information and the arrays of tracks and playlists. The tracks and
+         * playlists are processed as soon as they are found, rather than after
+         * the entire file has been read.
          */
-        ArrayList<Track> tracks = Database.getTracks();
-        tracks.setComparator(new Comparator<Track>()
+        fileLogger.info("getting global information elements");
+        try
         {
-            @Override
-            public int compare(Track t1, Track t2)
+            json.beginObject();
+            while (json.hasNext() == true)
             {
-                return t1.compareTo(t2);
+                JsonKeys key = JsonKeys.getEnum(json.nextName());
+                if (key == null)
+                {
+                    json.skipValue();
+                    continue;
+                }
+
+                switch (key)
+                {
+                case TIMESTAMP:
+                    fileTimestamp = json.nextString();
+                    break;
+
+                case TRACKS:
+
+                    /*
+                     * Now gather the actual tracks.
+                     */
+                    fileLogger.info("gathering tracks");
+                    generateTracks(json, listener);
+                    tracksFound = true;
+                    listener.tracksComplete();
+                    break;
+
+                case PLAYLISTS:
+
+                    /*
+                     * Playlists refer to tracks, so the tracks must come first.
+                     */
+                    if (tracksFound == false)
+                    {
+                        handleJSONError("could not find '" + JsonKeys.TRACKS.getKey() + "' key");
+                    }
+
+                    /*
+                     * Gather playlists.
+                     */
+                    fileLogger.info("gathering playlists");
+                    generatePlaylists(json, listener);
+                    playlistsFound = true;
+                    break;
+                }
             }
-        });
+            json.endObject();
+        }
+        finally
+        {
+            json.close();
+        }
 
-        /*
-         * Get the duplicates map.
-         */
-        Map<String, List<Integer>> duplicatesMap = Database.getDuplicatesMap();
+        if (tracksFound == false)
+        {
+            handleJSONError("could not find '" + JsonKeys.TRACKS.getKey() + "' key");
+        }
 
+        if (playlistsFound == false)
+        {
+            handleJSONError("could not find '" + JsonKeys.PLAYLISTS.getKey() + "' key");
+        }
+        
         /*
-         * Get the list of artist names, and set a case-insensitive
-         * comparator.
+         * Parse the date if we were successful.
          */
-        ArrayList<ArtistCorrelator> artistCorrelators = Database.getArtistCorrelators();
-        artistCorrelators.setComparator(new Comparator<ArtistCorrelator>()
+        if (fileTimestamp != null)
         {
-            @Override
-            public int compare(ArtistCorrelator c1, ArtistCorrelator c2)
+            try
+            {
+                fileDate = Utilities.parseDate(fileTimestamp);
+            }
+            catch (ParseException e)
             {
-                return c1.compareToNormalized(c2);
+                MainWindow.logException(fileLogger, e);
+                handleJSONError("unable to parse date value " + fileTimestamp);
             }
-        });
+        }
+    }
 
-        /*
-         * Get the artists map.
-         */
-        Map<Integer, Artist> artists = Database.getArtists();
-        
-        /*
-         * Get the codecs and encoder maps.
-         */
-        Map<String, CodecStats> codecStats = Database.getCodecStats();
-        codecStats.setComparator(String.CASE_INSENSITIVE_ORDER);
-        
-        Map<String, Integer> encoderStats = Database.getEncoderStats();
-        encoderStats.setComparator(String.CASE_INSENSITIVE_ORDER);
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Create the tracks from the JSON file.
+     */
+    private static void generateTracks(JSONStreamReader json, LibraryListener listener)
+            throws IOException
+    {
+        trackLogger.trace("generateTracks");
 
         /*
          * Walk through the elements of the JSON structure.
@@ -314,14 +420,120 @@ public final class JSONHandler
         int ID = 0;
 
         trackLogger.debug("starting track loop");
-		for (int i = 0; i < tracksHolder.size(); i++)
+        json.beginArray();
+		while (json.hasNext() == true)
 		{
 			
 			/*
-			 * Grab the JSON object representing this track and get the track ID.
+			 * Read the JSON object representing this track. The members can be in any 
+			 * order, so we need to read the entire object before creating the track.
 			 */
-			JsonObject track = tracksHolder.getMap(i);
-			ID = track.getInteger(TrackKeys.TRACK_ID);
+			Integer trackID = null;
+			String album = null;
+			String artist = null;
+			Integer bitRate = null;
+			String composer = null;
+			String dateAdded = null;
+			String dateModified = null;
+			Integer duration = null;
+			String encoder = null;
+			String genre = null;
+			String kind = null;
+			String name = null;
+			Integer playCount = null;
+			Integer rating = null;
+			Integer sampleRate = null;
+			Integer size = null;
+			Integer year = null;
+
+			json.beginObject();
+			while (json.hasNext() == true)
+			{
+				TrackKeys key = TrackKeys.getEnum(json.nextName());
+				if (key == null)
+				{
+					json.skipValue();
+					continue;
+				}
+
+				switch (key)
+				{
+				case ALBUM:
+					album = json.nextString();
+					break;
+
+				case ARTIST:
+					artist = json.nextString();
+					break;
+
+				case BITRATE:
+					bitRate = json.nextInteger();
+					break;
+
+				case COMPOSER:
+					composer = json.nextString();
+					break;
+
+				case DATE_ADDED:
+					dateAdded = json.nextString();
+					break;
+
+				case DATE_MODIFIED:
+					dateModified = json.nextString();
+					break;
+
+				case DURATION:
+					duration = json.nextInteger();
+					break;
+
+				case ENCODER:
+					encoder = json.nextString();
+					break;
+
+				case GENRE:
+					genre = json.nextString();
+					break;
+
+				case KIND:
+					kind = json.nextString();
+					break;
+
+				case NAME:
+					name = json.nextString();
+					break;
+
+				case PLAY_COUNT:
+					playCount = json.nextInteger();
+					break;
+
+				case RATING:
+					rating = json.nextInteger();
+					break;
+
+				case SAMPLE_RATE:
+					sampleRate = json.nextInteger();
+					break;
+
+				case SIZE:
+					size = json.nextInteger();
+					break;
+
+				case TRACK_ID:
+					trackID = json.nextInteger();
+					break;
+
+				case YEAR:
+					year = json.nextInteger();
+					break;
+				}
+			}
+			json.endObject();
+
+			if (trackID == null)
+			{
+				handleJSONError("track found without '" + TrackKeys.TRACK_ID.getKey() + "' key");
+			}
+			ID = trackID;
 
             /*
              * Initialize the track object.
@@ -331,23 +543,22 @@ public final class JSONHandler
             /*
              * Fill in most of the track object.
              */
-			trackObj.setAlbum(track.getString(TrackKeys.ALBUM));
-			trackObj.setArtist(track.getString(TrackKeys.ARTIST));
-			trackObj.setBitRate(track.getInteger(TrackKeys.BITRATE));
-			trackObj.setComposer(track.getString(TrackKeys.COMPOSER));
-			trackObj.setDuration(track.getInteger(TrackKeys.DURATION));
-			trackObj.setGenre(track.getString(TrackKeys.GENRE));
-			trackObj.setName(track.getString(TrackKeys.NAME));
-			trackObj.setPlayCount(track.getInteger(TrackKeys.PLAY_COUNT));
-			trackObj.setRating(track.getInteger(TrackKeys.RATING));	
-			trackObj.setSampleRate(track.getInteger(TrackKeys.SAMPLE_RATE));			
-			trackObj.setSize(track.getInteger(TrackKeys.SIZE));
-			trackObj.setYear(track.getInteger(TrackKeys.YEAR));
+			trackObj.setAlbum(album);
+			trackObj.setArtist(artist);
+			trackObj.setBitRate(bitRate);
+			trackObj.setComposer(composer);
+			trackObj.setDuration(duration);
+			trackObj.setGenre(genre);
+			trackObj.setName(name);
+			trackObj.setPlayCount(playCount);
+			trackObj.setRating(rating);	
+			trackObj.setSampleRate(sampleRate);			
+			trackObj.setSize(size);
+			trackObj.setYear(year);
 
 			/*
 			 * Parse the dates.
 			 */
-			String dateAdded = track.getString(TrackKeys.DATE_ADDED);
 			try
 			{
 				trackObj.setDateAdded(Utilities.parseDate(dateAdded));
@@ -358,7 +569,6 @@ public final class JSONHandler
                 handleJSONError("unable to parse date value " + dateAdded);
 			}
 			
-			String dateModified = track.getString(TrackKeys.DATE_MODIFIED);
 			try
 			{
 				trackObj.setModified(Utilities.parseDate(dateModified));
@@ -370,9 +580,8 @@ public final class JSONHandler
 			}
 			
 			/*
-			 * Kind is special: collect codec stats and set the track type.
+			 * Kind is special: set the track type.
 			 */
-        	String kind = track.getString(TrackKeys.KIND);
             trackObj.setKind(kind);
             
             /*
@@ -392,264 +601,112 @@ public final class JSONHandler
             	trackObj.setTrackType(Track.TrackType.UNKNOWN);
             }
             
-            /*
-             * Get the codec name, for example AAC. Change MPEG to MP3 since it's more common.
-             */
-            String[] kindWords = kind.split(" ");
-            String codec = kindWords[0];
-            if (codec.equals("MPEG"))
-            {
-            	codec = "MP3";
-            }
-            
-            /*
-             * Accumulate a count of each codec discovered.
-             */
-            CodecStats stats = codecStats.get(codec);
-            if (stats != null)
-            {
-            	stats.incrementCount();
-            }
-            else
-            {
-            	stats = new CodecStats();
-            	stats.setCount(1);
-            	stats.setType(trackObj.getTrackType());
-            }
-        	codecStats.put(codec, stats);
-			
 			/*
-			 * Encoder is special: collect encoder stats.
+			 * Encoder is special: it's only in the JSON file.
 			 */
-        	String encoder = track.getString(TrackKeys.ENCODER);
             trackObj.setEncoder(encoder);
-            
-            /*
-             * Accumulate a count of each encoder discovered.
-             */
-            Integer encoderNum = encoderStats.get(encoder);
-            if (encoder.length() > 0)
-            {
-            	if (encoderNum != null)
-            	{
-            		encoderStats.put(encoder, ++encoderNum);
-            	}
-            	else
-            	{
-            		encoderStats.put(encoder, 1);
-            	}
-            }
-
-            /*
-             * Add the track to the duplicates map if necessary. We have to
-             * do this before adding it to the main tracks list, to avoid
-             * false duplicates.
-             */
-            boolean trackLogged = false;
-            Track.TrackType trackType = trackObj.getTrackType();
-            
-            int index = ArrayList.binarySearch(tracks, trackObj, tracks.getComparator());
-            if (index >= 0)
-            {
-                List<Integer> trackIDs;
-                String trackName = trackObj.getName();
-                int thisID = trackObj.getID();
-
-                if ((trackIDs = duplicatesMap.get(trackName)) == null)
-                {
-                    trackIDs = new ArrayList<Integer>();
-                    int foundID = tracks.get(index).getID();
-                    trackIDs.add(foundID);
-                    trackLogger.debug("initialized duplicates map entry for track '" + trackName
-                            + "', track ID " + foundID);
-                }
-                trackIDs.add(thisID);
-                trackLogger.debug("added track ID " + thisID + " type " + trackType + " to track '" + trackName + "'");
-                trackLogged = true;
-
-                duplicatesMap.put(trackName, trackIDs);
-            }
-            
-            /*
-             * Add the track object to the all tracks list.
-             */
-            tracks.add(trackObj);
-            if (trackLogged == false)
-            {
-            	trackLogger.debug("found track ID " + ID + " type " + trackType + ", name '" + trackObj.getName() + "'");
-            }
-
-            /*
-             * Handle tracks that have an artist.
-             */
-            String artist = trackObj.getArtist();
-            if (artist != null)
-            {
-
-                /*
-                 * Get an artist names object and normalize the artist name.
-                 */
-                ArtistNames artistNames = new ArtistNames(artist);
-                String normalizedName = artistNames.normalizeName();
-
-                /*
-                 * Try to match the artist name to the current list of artists. This method
-                 * detects alternate artist names, matching them to the existing primary name.
-                 */
-                int artistIndex = artistNames.matchArtist(artistCorrelators, artistLogger);
-                if (artistIndex < 0)
-                {
-
-                    /*
-                     * We did not find a match. Add the artist name to the list of such names
-                     * (as a correlator object).
-                     */
-                    ArtistCorrelator artistCorr = new ArtistCorrelator(artist);
-                    artistCorr.setNormalizedName(normalizedName);
-                    artistCorrelators.add(artistCorr);
-
-                    /*
-                     * Create a new artist object, initialize it from the track, and add it to 
-                     * the artist map.
-                     */
-                    Artist artistObj = new Artist(artist);
-                    artistObj.setArtistNames(artistNames);
-                    artistObj.addTrackToArtist(trackObj, artistLogger);
-                    Integer correlator = artistObj.getCorrelator();
-                    artistCorr.setArtistKey(correlator);
-                    artists.put(correlator, artistObj);
-                    artistLogger.debug("found artist name '" + artist + "', normalized '"
-                            + normalizedName + "'");
-                }
 
-                /*
-                 * The artist already exists in the list of artist names and the
-                 * artist map. Update the artist object from the track and then
-                 * replace it in the artist map.
-                 */
-                else
-                {
-                    ArtistCorrelator artistCorr = artistCorrelators.get(artistIndex);
-                    Artist artistObj = artists.get(artistCorr.getArtistKey());
-                    artistObj.addTrackToArtist(trackObj, artistLogger);
-                    artists.put(artistCorr.getArtistKey(), artistObj);
-                    artistLogger.debug("updated existing artist name '" + artist + "', normalized '"
-                            + normalizedName + "'");
-                }
-            }
+            listener.trackFound(trackObj);
 		}
-
-        /*
-         * Generate the track ID to index mappings. We have to wait until all
-         * tracks have been found and sorted in order for the indices to be
-         * correct.
-         */
-        Database.generateTrackIDMappings(trackLogger);
+		json.endArray();
     }
 
     /*
      * Create the playlists from the JSON file.
      */
-    private static void generatePlaylists(JsonArray playlistsHolder)
+    private static void generatePlaylists(JSONStreamReader json, LibraryListener listener)
+            throws IOException
     {
         playlistLogger.trace("generatePlaylists");
 
-        /*
-         * Reset the playlist ignored count, so it doesn't keep growing if we
-         * reread the JSON file.
-         */
-        Database.setPlaylistIgnoredCount(0);
-
-        /*
-         * We collect all the playlists into a HashMap of the playlist name to
-         * its Playlist object. Initialize it now.
-         */
-        Map<String, Playlist> playlists = Database.getPlaylists();
-
-        /*
-         * To be able to find a given playlist by name, we also create a HashMap
-         * of the playlist name to ID.
-         */
-        Map<String, String> playlistsMap = Database.getPlaylistsMap();
-
-        /*
-         * Initialize the list of playlist names, and set a case-insensitive
-         * comparator.
-         */
-        List<String> playlistNames = Database.getPlaylistNames();
-        playlistNames.setComparator(String.CASE_INSENSITIVE_ORDER);
-        
         /*
          * Walk through the elements of the JSON structure.
          */
 
         trackLogger.debug("starting playlist loop");
-		for (int i = 0; i < playlistsHolder.size(); i++)
+        json.beginArray();
+		while (json.hasNext() == true)
 		{
-			
-			/*
-			 * Grab the JSON object representing this playlist.
-			 */
-			JsonObject playlist = playlistsHolder.getMap(i);
 
             /*
-             * Create a new playlist object and fill it in.
+             * Create a new playlist object and fill it in from the JSON object 
+             * representing this playlist.
              */
             Playlist playlistObj = new Playlist();
-			
-            playlistObj.setName(playlist.getString(PlaylistKeys.NAME));
-            playlistObj.setParentPersistentID(playlist.getString(PlaylistKeys.PARENT_PERSISTENT_ID));
-            playlistObj.setPersistentID(playlist.getString(PlaylistKeys.PERSISTENT_ID));
+            Integer numItems = null;
+            TrackIDList playlistTracks = null;
+
+            json.beginObject();
+            while (json.hasNext() == true)
+            {
+                PlaylistKeys key = PlaylistKeys.getEnum(json.nextName());
+                if (key == null)
+                {
+                    json.skipValue();
+                    continue;
+                }
+
+                switch (key)
+                {
+                case ITEMS:
+                    playlistTracks = gatherPlaylistTracks(json);
+                    break;
+
+                case NAME:
+                    playlistObj.setName(json.nextString());
+                    break;
+
+                case NUM_ITEMS:
+                    numItems = json.nextInteger();
+                    break;
+
+                case PARENT_PERSISTENT_ID:
+                    playlistObj.setParentPersistentID(json.nextString());
+                    break;
+
+                case PERSISTENT_ID:
+                    playlistObj.setPersistentID(json.nextString());
+                    break;
+                }
+            }
+            json.endObject();
 
             /*
-             * Gather the playlist track IDs.
+             * Set the playlist track IDs.
              */
-            Integer numItems = playlist.getInteger(PlaylistKeys.NUM_ITEMS);
-            if (numItems > 0)
+            if (numItems != null && numItems > 0 && playlistTracks != null)
             {
-            	JsonArray tracksHolder = new JsonArray(playlist.getCollectionOrDefault(PlaylistKeys.ITEMS));
-            	List<Integer> playlistTracks = gatherPlaylistTracks(tracksHolder);
-
                 playlistLogger.debug("playlist '" + playlistObj.getName() + "' has "
                         + playlistTracks.getLength() + " tracks");
                 
                 playlistObj.setTracks(playlistTracks);
             }
 
-            /*
-             * Add the playlist object to the collection.
-             */
-            playlists.put(playlistObj.getPersistentID(), playlistObj);
-            playlistsMap.put(playlistObj.getName(), playlistObj.getPersistentID());
-            playlistLogger.debug("found playlist name " + playlistObj.getName());
-
-            /*
-             * If the playlist is not ignored, add its name to the playlist name
-             * list.
-             */
-            if (playlistObj.getIgnored() == false)
-            {
-                Database.addPlaylistName(playlistObj.getName());
-            }            
+            listener.playlistFound(playlistObj);
 		}
+		json.endArray();
     }
 
     /*
      * Gather the list of tracks for a playlist.
      */
-    private static List<Integer> gatherPlaylistTracks(JsonArray tracksHolder)
+    private static TrackIDList gatherPlaylistTracks(JSONStreamReader json)
+            throws IOException
     {
         playlistLogger.trace("gatherPlaylistTracks");
 
-        List<Integer> playlistTracks = new LinkedList<Integer>();
+        TrackIDList playlistTracks = new TrackIDList();
 		
         /*
          * The tracks are a simple array of tracks IDs.
          */
-        for (int i = 0; i < tracksHolder.size(); i++)
+        json.beginArray();
+        while (json.hasNext() == true)
         {
-        	playlistTracks.add(tracksHolder.getInteger(i));
+        	playlistTracks.add(json.nextInt());
         }
+        json.endArray();
+        playlistTracks.trimToLength();
 
         return playlistTracks;
     }
@@ -0,0 +1,614 @@
+package itunesq;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+
+/**
+ * Class that provides a forward-only, streaming view of a JSON document.
+ * <p>
+ * The document is read one token at a time from a <code>Reader</code>, so
+ * nothing is retained beyond the value currently being read. The caller walks
+ * the document structure using the <code>begin</code> and <code>end</code>
+ * methods, and reads names and scalar values as they are encountered. Values
+ * that are not of interest can be skipped with <code>skipValue</code>.
+ * <p>
+ * All syntax errors are reported by throwing a
+ * <code>JSONProcessingException</code> that includes the line and column of
+ * the error.
+ *
+ * @author Jon
+ *
+ */
+public class JSONStreamReader
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private Reader reader;
+
+    /*
+     * Input buffer. We do our own buffering so that peeking at the next
+     * character is cheap.
+     */
+    private char[] buffer = new char[INPUT_BUFFER_SIZE];
+    private int bufferPos = 0;
+    private int bufferLimit = 0;
+
+    /*
+     * Current location, for error reporting.
+     */
+    private int line = 1;
+    private int column = 0;
+
+    /*
+     * Whether or not a value has been read in the current container, which
+     * determines if a comma is needed before the next one.
+     */
+    private boolean[] containerHasValue = new boolean[16];
+    private int depth = 0;
+
+    /*
+     * Reusable buffer for strings and numbers.
+     */
+    private StringBuilder tokenBuilder = new StringBuilder();
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The type of the next token.
+     */
+    public enum TokenType
+    {
+
+        /**
+         * start of an object
+         */
+        BEGIN_OBJECT,
+
+        /**
+         * start of an array
+         */
+        BEGIN_ARRAY,
+
+        /**
+         * string value
+         */
+        STRING,
+
+        /**
+         * number value
+         */
+        NUMBER,
+
+        /**
+         * boolean value
+         */
+        BOOLEAN,
+
+        /**
+         * null value
+         */
+        NULL
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param reader reader for the JSON document
+     */
+    public JSONStreamReader(Reader reader)
+    {
+        this.reader = reader;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Consumes the start of an object.
+     *
+     * @throws IOException If an error occurs reading the input.
+     */
+    public void beginObject()
+            throws IOException
+    {
+        beginValue();
+        expect('{');
+        pushContainer();
+    }
+
+    /**
+     * Consumes the end of an object.
+     *
+     * @throws IOException If an error occurs reading the input.
+     */
+    public void endObject()
+            throws IOException
+    {
+        expect('}');
+        depth--;
+    }
+
+    /**
+     * Consumes the start of an array.
+     *
+     * @throws IOException If an error occurs reading the input.
+     */
+    public void beginArray()
+            throws IOException
+    {
+        beginValue();
+        expect('[');
+        pushContainer();
+    }
+
+    /**
+     * Consumes the end of an array.
+     *
+     * @throws IOException If an error occurs reading the input.
+     */
+    public void endArray()
+            throws IOException
+    {
+        expect(']');
+        depth--;
+    }
+
+    /**
+     * Determines if the current object or array has more elements.
+     *
+     * @return <code>true</code> if another element follows, otherwise
+     * <code>false</code>
+     * @throws IOException If an error occurs reading the input.
+     */
+    public boolean hasNext()
+            throws IOException
+    {
+        int c = peekNonWhitespace();
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    /**
+     * Gets the type of the next value without consuming it.
+     *
+     * @return type of the next value
+     * @throws IOException If an error occurs reading the input.
+     */
+    public TokenType peek()
+            throws IOException
+    {
+        beginValue();
+
+        int c = peekNonWhitespace();
+        switch (c)
+        {
+        case '{':
+            return TokenType.BEGIN_OBJECT;
+
+        case '[':
+            return TokenType.BEGIN_ARRAY;
+
+        case '"':
+            return TokenType.STRING;
+
+        case 't':
+        case 'f':
+            return TokenType.BOOLEAN;
+
+        case 'n':
+            return TokenType.NULL;
+
+        default:
+            if (c == '-' || (c >= '0' && c <= '9'))
+            {
+                return TokenType.NUMBER;
+            }
+            throw syntaxError("unexpected character " + describe(c));
+        }
+    }
+
+    /**
+     * Reads the name of the next object member, including the following
+     * colon.
+     *
+     * @return member name
+     * @throws IOException If an error occurs reading the input.
+     */
+    public String nextName()
+            throws IOException
+    {
+        beginValue();
+        String name = readString();
+        expect(':');
+
+        /*
+         * The value that follows the name doesn't need a comma.
+         */
+        containerHasValue[depth] = false;
+        return name;
+    }
+
+    /**
+     * Reads a string value.
+     *
+     * @return string value, or <code>null</code> if the value is null
+     * @throws IOException If an error occurs reading the input.
+     */
+    public String nextString()
+            throws IOException
+    {
+        if (peek() == TokenType.NULL)
+        {
+            readLiteral("null");
+            return null;
+        }
+
+        return readString();
+    }
+
+    /**
+     * Reads an integer value. Numbers with a fractional part or exponent are
+     * truncated.
+     *
+     * @return integer value, or <code>null</code> if the value is null
+     * @throws IOException If an error occurs reading the input.
+     */
+    public Integer nextInteger()
+            throws IOException
+    {
+        if (peek() == TokenType.NULL)
+        {
+            readLiteral("null");
+            return null;
+        }
+
+        return nextInt();
+    }
+
+    /**
+     * Reads an integer value that can't be null. Numbers with a fractional
+     * part or exponent are truncated.
+     *
+     * @return integer value
+     * @throws IOException If an error occurs reading the input.
+     */
+    public int nextInt()
+            throws IOException
+    {
+        if (peek() != TokenType.NUMBER)
+        {
+            throw syntaxError("expected a number");
+        }
+
+        String number = readNumber();
+
+        /*
+         * Nearly all numbers are simple integers, so avoid the cost of a
+         * BigDecimal in that case.
+         */
+        if (number.length() < 10 && number.indexOf('.') == -1 && number.indexOf('e') == -1
+                && number.indexOf('E') == -1)
+        {
+            return Integer.parseInt(number);
+        }
+
+        return new BigDecimal(number).intValue();
+    }
+
+    /**
+     * Skips the next value, including all nested values.
+     *
+     * @throws IOException If an error occurs reading the input.
+     */
+    public void skipValue()
+            throws IOException
+    {
+        switch (peek())
+        {
+        case BEGIN_OBJECT:
+            beginObject();
+            while (hasNext())
+            {
+                nextName();
+                skipValue();
+            }
+            endObject();
+            break;
+
+        case BEGIN_ARRAY:
+            beginArray();
+            while (hasNext())
+            {
+                skipValue();
+            }
+            endArray();
+            break;
+
+        case STRING:
+            readString();
+            break;
+
+        case NUMBER:
+            readNumber();
+            break;
+
+        case BOOLEAN:
+            readLiteral(peekNonWhitespace() == 't' ? "true" : "false");
+            break;
+
+        case NULL:
+            readLiteral("null");
+            break;
+        }
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException If an error occurs closing the reader.
+     */
+    public void close()
+            throws IOException
+    {
+        reader.close();
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Consume the comma that separates this value from the previous one, if
+     * needed, and note that the current container has a value.
+     */
+    private void beginValue()
+            throws IOException
+    {
+        if (containerHasValue[depth] == true)
+        {
+            expect(',');
+            containerHasValue[depth] = false;
+        }
+    }
+
+    /*
+     * Enter a new object or array.
+     */
+    private void pushContainer()
+    {
+        containerHasValue[depth] = true;
+        depth++;
+        if (depth == containerHasValue.length)
+        {
+            boolean[] newArray = new boolean[depth * 2];
+            System.arraycopy(containerHasValue, 0, newArray, 0, depth);
+            containerHasValue = newArray;
+        }
+        containerHasValue[depth] = false;
+    }
+
+    /*
+     * Read a quoted string, handling escape sequences.
+     */
+    private String readString()
+            throws IOException
+    {
+        expect('"');
+        tokenBuilder.setLength(0);
+
+        while (true)
+        {
+            int c = read();
+            switch (c)
+            {
+            case -1:
+                throw syntaxError("unterminated string");
+
+            case '"':
+                containerHasValue[depth] = true;
+                return tokenBuilder.toString();
+
+            case '\\':
+                c = read();
+                switch (c)
+                {
+                case '"':
+                case '\\':
+                case '/':
+                    tokenBuilder.append((char) c);
+                    break;
+
+                case 'b':
+                    tokenBuilder.append('\b');
+                    break;
+
+                case 'f':
+                    tokenBuilder.append('\f');
+                    break;
+
+                case 'n':
+                    tokenBuilder.append('\n');
+                    break;
+
+                case 'r':
+                    tokenBuilder.append('\r');
+                    break;
+
+                case 't':
+                    tokenBuilder.append('\t');
+                    break;
+
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4; i++)
+                    {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0)
+                        {
+                            throw syntaxError("invalid unicode escape");
+                        }
+                        value = (value << 4) + digit;
+                    }
+                    tokenBuilder.append((char) value);
+                    break;
+
+                default:
+                    throw syntaxError("invalid escape character " + describe(c));
+                }
+                break;
+
+            default:
+                tokenBuilder.append((char) c);
+            }
+        }
+    }
+
+    /*
+     * Read a number, returning its text.
+     */
+    private String readNumber()
+            throws IOException
+    {
+        peekNonWhitespace();
+        tokenBuilder.setLength(0);
+
+        while (true)
+        {
+            int c = peekChar();
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')
+            {
+                tokenBuilder.append((char) read());
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        containerHasValue[depth] = true;
+        return tokenBuilder.toString();
+    }
+
+    /*
+     * Read one of the literals true, false or null.
+     */
+    private void readLiteral(String literal)
+            throws IOException
+    {
+        peekNonWhitespace();
+        for (int i = 0; i < literal.length(); i++)
+        {
+            if (read() != literal.charAt(i))
+            {
+                throw syntaxError("expected '" + literal + "'");
+            }
+        }
+
+        containerHasValue[depth] = true;
+    }
+
+    /*
+     * Skip whitespace and consume the expected character.
+     */
+    private void expect(char expected)
+            throws IOException
+    {
+        int c = peekNonWhitespace();
+        if (c != expected)
+        {
+            throw syntaxError("expected '" + expected + "' but found " + describe(c));
+        }
+        read();
+    }
+
+    /*
+     * Skip whitespace and return the next character without consuming it.
+     */
+    private int peekNonWhitespace()
+            throws IOException
+    {
+        while (true)
+        {
+            int c = peekChar();
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+            {
+                read();
+            }
+            else
+            {
+                return c;
+            }
+        }
+    }
+
+    /*
+     * Return the next character without consuming it, or -1 at end of input.
+     */
+    private int peekChar()
+            throws IOException
+    {
+        if (bufferPos == bufferLimit && fillBuffer() == false)
+        {
+            return -1;
+        }
+
+        return buffer[bufferPos];
+    }
+
+    /*
+     * Consume and return the next character, or -1 at end of input.
+     */
+    private int read()
+            throws IOException
+    {
+        if (bufferPos == bufferLimit && fillBuffer() == false)
+        {
+            return -1;
+        }
+
+        char c = buffer[bufferPos++];
+        if (c == '\n')
+        {
+            line++;
+            column = 0;
+        }
+        else
+        {
+            column++;
+        }
+
+        return c;
+    }
+
+    /*
+     * Refill the input buffer.
+     */
+    private boolean fillBuffer()
+            throws IOException
+    {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0)
+        {
+            return false;
+        }
+
+        bufferPos = 0;
+        bufferLimit = count;
+        return true;
+    }
+
+    /*
+     * Describe a character for an error message.
+     */
+    private String describe(int c)
+    {
+        return (c == -1) ? "end of input" : "'" + (char) c + "'";
+    }
+
+    /*
+     * Create an exception for a syntax error.
+     */
+    private JSONProcessingException syntaxError(String message)
+    {
+        return new JSONProcessingException(
+                message + " at line " + line + ", column " + column);
+    }
+}
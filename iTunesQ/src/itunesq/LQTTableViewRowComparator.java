@@ -39,6 +39,12 @@ public class LQTTableViewRowComparator implements Comparator<Object>
 
     private Map<String, NumericalType> numericalColumns = null;
 
+    /*
+     * Sort keys for string values, so each value is only normalized once. The same values
+     * are compared many times during a sort, and again for every later sort of the table.
+     */
+    private Map<String, String> sortKeys = null;
+
     /**
      * Class constructor.
      * 
@@ -71,6 +77,8 @@ public class LQTTableViewRowComparator implements Comparator<Object>
                 NumericalType.TIME);
         numericalColumns.put(PlaylistDisplayColumns.ColumnNames.NUM_TRACKS.getNameValue(), 
                 NumericalType.NUMBER);
+
+        sortKeys = new HashMap<String, String>();
     }
 
     // ---------------- Public methods --------------------------------------
@@ -221,14 +229,12 @@ public class LQTTableViewRowComparator implements Comparator<Object>
                     }
 
                     /*
-                     * For all other columns, use the String Comparable
-                     * interface compareTo method. Ignore leading "The" (case insensitive).
+                     * For all other columns, compare the sort keys of the
+                     * strings, which ignore case and a leading "The".
                      */
                     else
                     {
-                    	String string1 = ((String) value1).replaceAll("^(?i)The ", "");
-                    	String string2 = ((String) value2).replaceAll("^(?i)The ", "");
-                        result = (string1).compareToIgnoreCase(string2);
+                        result = getSortKey((String) value1).compareTo(getSortKey((String) value2));
                     }
                 }
 
@@ -250,4 +256,30 @@ public class LQTTableViewRowComparator implements Comparator<Object>
 
         return result;
     }
-}
\ No newline at end of file
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Get the sort key for a string value, creating it if necessary. The key has any leading
+     * "The" (case insensitive) removed, and each character folded the same way as
+     * String.compareToIgnoreCase().
+     */
+    private String getSortKey(String value)
+    {
+        String sortKey = sortKeys.get(value);
+        if (sortKey == null)
+        {
+            String stripped = Utilities.stripLeadingArticle(value);
+            char[] chars = new char[stripped.length()];
+            for (int i = 0; i < chars.length; i++)
+            {
+                chars[i] = Character.toLowerCase(Character.toUpperCase(stripped.charAt(i)));
+            }
+
+            sortKey = new String(chars);
+            sortKeys.put(value, sortKey);
+        }
+
+        return sortKey;
+    }
+}
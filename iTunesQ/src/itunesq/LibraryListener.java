@@ -0,0 +1,38 @@
+package itunesq;
+
+/**
+ * Interface that receives the tracks and playlists read from an input file.
+ * <p>
+ * The XML and JSON handlers only know how to read their file format. As each
+ * track or playlist is read it is handed to a listener, which decides what to
+ * do with it. The normal listener is a <code>DatabaseLoader</code>, which
+ * adds everything to the database. An incremental import instead collects the
+ * tracks and playlists so they can be compared to the current database.
+ * <p>
+ * Tracks are always delivered before playlists.
+ *
+ * @author Jon
+ *
+ */
+public interface LibraryListener
+{
+
+    /**
+     * Called for each track read from the input file.
+     *
+     * @param track track object
+     */
+    public void trackFound(Track track);
+
+    /**
+     * Called after the last track has been read from the input file.
+     */
+    public void tracksComplete();
+
+    /**
+     * Called for each playlist read from the input file.
+     *
+     * @param playlist playlist object
+     */
+    public void playlistFound(Playlist playlist);
+}
@@ -0,0 +1,578 @@
+package itunesq;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.TaskAdapter;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Class that watches the input file, and reloads it in the background when it
+ * changes.
+ * <p>
+ * This is a final class consisting entirely of static methods.
+ * <p>
+ * Watching is optional, and controlled by a user preference. iTunes rewrites
+ * the library file in several bursts, so a reload is only started once the
+ * file has been quiet for a while. The reload then works as follows:
+ * <ul>
+ * <li>The input file is read into a staging area on a background task. This
+ * doesn't touch the database, so all windows keep working with the current
+ * data.</li>
+ * <li>When the task completes, the staging area is applied to the database,
+ * and a snapshot of the database is saved, on another background task. The
+ * activity indicator is active while this happens, which keeps the main
+ * window buttons and playlist status updates away from the database.</li>
+ * <li>Open windows that registered a reload listener are then told to
+ * refresh their contents on the UI thread.</li>
+ * </ul>
+ * A change is ignored if the input file is being processed from scratch,
+ * for example because the user opened a new file, since that reads the
+ * latest file anyway. If the activity indicator is active for any other
+ * reason, the reload is put off until it goes inactive.
+ *
+ * @author Jon
+ *
+ */
+public final class LibraryWatcher
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private static String className = LibraryWatcher.class.getSimpleName();
+    private static Logger logger = (Logger) LoggerFactory.getLogger(className + "_File");
+
+    /*
+     * Watch service and the thread waiting on it. These are null if we're not watching.
+     */
+    private static WatchService watchService = null;
+    private static Thread watchThread = null;
+    private static String watchedFileName = null;
+
+    /*
+     * Reload state. A reload is running until the database has been updated and the
+     * snapshot saved. A change that
+     * arrives while a reload is running, or while the activity indicator is active, sets the
+     * pending flag, so we reload again when that's done.
+     */
+    private static boolean reloadRunning = false;
+    private static boolean reloadPending = false;
+
+    /*
+     * Listeners to be told when the database has been reloaded.
+     */
+    private static ArrayList<ReloadListener> reloadListeners = new ArrayList<ReloadListener>();
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Initializes logging. This is called once at application initialization.
+     */
+    public static void initializeLogging()
+    {
+        Logging logging = Logging.getInstance();
+        logging.registerLogger(Logging.Dimension.FILE, logger);
+    }
+
+    /**
+     * Starts watching an input file. Any file being watched is no longer
+     * watched.
+     *
+     * @param inputFileName input file name
+     */
+    public static void startWatching(String inputFileName)
+    {
+        if (inputFileName == null)
+        {
+            throw new IllegalArgumentException("inputFileName argument is null");
+        }
+
+        logger.trace("startWatching");
+
+        stopWatching();
+
+        /*
+         * We have to watch the directory, since that's all a watch service can do. Events for
+         * other files in the directory are ignored.
+         */
+        Path inputPath = Paths.get(inputFileName).toAbsolutePath();
+        Path directory = inputPath.getParent();
+        if (directory == null)
+        {
+            logger.warn("unable to watch input file '" + inputFileName + "', no parent directory");
+            return;
+        }
+
+        try
+        {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException e)
+        {
+            MainWindow.logException(logger, e);
+            logger.warn("unable to watch input file '" + inputFileName + "'");
+            closeWatchService();
+            return;
+        }
+
+        watchedFileName = inputFileName;
+
+        watchThread = new Thread(new WatchRunner(watchService, inputPath.getFileName()), className);
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        logger.info("watching input file '" + inputFileName + "'");
+    }
+
+    /**
+     * Stops watching the input file, if it's being watched.
+     */
+    public static void stopWatching()
+    {
+        logger.trace("stopWatching");
+
+        if (watchThread == null)
+        {
+            return;
+        }
+
+        logger.info("no longer watching input file '" + watchedFileName + "'");
+
+        /*
+         * Closing the watch service wakes up the watch thread, which then exits.
+         */
+        closeWatchService();
+        watchThread.interrupt();
+        watchThread = null;
+        watchedFileName = null;
+        reloadPending = false;
+    }
+
+    /**
+     * Adds a listener to be told when the database has been reloaded.
+     *
+     * @param listener reload listener
+     */
+    public static void addReloadListener(ReloadListener listener)
+    {
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener argument is null");
+        }
+
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Removes a reload listener.
+     *
+     * @param listener reload listener
+     */
+    public static void removeReloadListener(ReloadListener listener)
+    {
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener argument is null");
+        }
+
+        reloadListeners.remove(listener);
+    }
+
+    /**
+     * Starts a reload if the input file changed while we couldn't reload it.
+     * This is called on the UI thread when the activity indicator goes
+     * inactive.
+     */
+    public static void checkPendingReload()
+    {
+        if (reloadPending == true && reloadRunning == false)
+        {
+            startReload();
+        }
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Close the watch service, ignoring errors.
+     */
+    private static void closeWatchService()
+    {
+        if (watchService != null)
+        {
+            try
+            {
+                watchService.close();
+            }
+            catch (IOException e)
+            {
+            }
+            watchService = null;
+        }
+    }
+
+    /*
+     * Start a reload of the watched file. This runs on the UI thread.
+     */
+    private static void startReload()
+    {
+        logger.trace("startReload");
+
+        if (watchedFileName == null)
+        {
+            return;
+        }
+
+        /*
+         * Only one reload at a time.
+         */
+        if (reloadRunning == true)
+        {
+            reloadPending = true;
+            return;
+        }
+
+        /*
+         * Don't compete with a full processing of the input file, which reads the latest file
+         * anyway. Anything else using the activity indicator only delays the reload.
+         */
+        if (MainWindow.isInputFileProcessing() == true)
+        {
+            logger.info("input file is already being processed, skipping reload");
+            reloadPending = false;
+            return;
+        }
+
+        if (MainWindow.isActivityIndicatorActive() == true)
+        {
+            logger.info("database is being updated, deferring reload");
+            reloadPending = true;
+            return;
+        }
+
+        logger.info("input file '" + watchedFileName + "' changed, reloading");
+
+        reloadRunning = true;
+        reloadPending = false;
+
+        ReloadTask reloadTask = new ReloadTask(watchedFileName);
+
+        TaskListener<IncrementalImport.LibraryStage> taskListener =
+                new TaskListener<IncrementalImport.LibraryStage>()
+        {
+
+            /*
+             * The input file was read. Apply it to the database in the background. The
+             * reload is still running until that's done.
+             */
+            @Override
+            public void taskExecuted(Task<IncrementalImport.LibraryStage> task)
+            {
+                if (startApply(task.getResult(), reloadTask.getFileKey()) == false)
+                {
+                    reloadRunning = false;
+                    checkPendingReload();
+                }
+            }
+
+            /*
+             * The input file couldn't be read. This can happen if iTunes is still writing it,
+             * in which case we'll see another change. So just log it.
+             */
+            @Override
+            public void executeFailed(Task<IncrementalImport.LibraryStage> task)
+            {
+                reloadRunning = false;
+                logger.warn("unable to reload input file: " + task.getFault());
+                checkPendingReload();
+            }
+        };
+
+        reloadTask.execute(new TaskAdapter<IncrementalImport.LibraryStage>(taskListener));
+    }
+
+    /*
+     * Start applying a staging area to the database on a background task, which also saves
+     * the snapshot. This runs on the UI thread. Returns false if the staging area couldn't be
+     * applied.
+     */
+    private static boolean startApply(IncrementalImport.LibraryStage stage,
+            DatabaseSnapshot.SnapshotKey fileKey)
+    {
+        logger.trace("startApply");
+
+        if (stage == null)
+        {
+            return false;
+        }
+
+        /*
+         * The input file might have been replaced or reprocessed while we were reading it. In
+         * that case the staging area is stale.
+         */
+        if (MainWindow.isInputFileProcessing() == true
+                || !stage.getInputFileName().equals(watchedFileName)
+                || !stage.getInputFileName().equals(Database.getInputFileName()))
+        {
+            logger.info("database changed during reload, discarding reload");
+            return false;
+        }
+
+        /*
+         * Something else is updating the database, so its view of the database would be
+         * stale if we changed it now. Read the file again once that's done.
+         */
+        if (MainWindow.isActivityIndicatorActive() == true)
+        {
+            logger.info("database is being updated, deferring reload");
+            reloadPending = true;
+            return false;
+        }
+
+        /*
+         * The activity indicator stays active until the database has been updated and the
+         * snapshot saved. That disables the main window buttons, and holds off playlist
+         * status updates, which would otherwise change the database at the same time.
+         */
+        MainWindow.updateActivityIndicator(true);
+
+        ApplyTask applyTask = new ApplyTask(stage, fileKey);
+
+        TaskListener<Void> taskListener = new TaskListener<Void>()
+        {
+
+            /*
+             * The database was updated. Tell the windows, unless the input file is now
+             * being processed from scratch, in which case that will tell them.
+             */
+            @Override
+            public void taskExecuted(Task<Void> task)
+            {
+                reloadRunning = false;
+
+                if (MainWindow.isInputFileProcessing() == false)
+                {
+                    publishReload(stage.getInputFileName());
+                    MainWindow.updateActivityIndicator(false);
+                }
+            }
+
+            /*
+             * The task failed, which only happens if an exception was thrown. The database
+             * might be partly updated, so we can't carry on.
+             */
+            @Override
+            public void executeFailed(Task<Void> task)
+            {
+                reloadRunning = false;
+                MainWindow.updateActivityIndicator(false);
+
+                throw new InternalErrorException(true, "failed to apply reloaded input file: "
+                        + task.getFault());
+            }
+        };
+
+        applyTask.execute(new TaskAdapter<Void>(taskListener));
+
+        return true;
+    }
+
+    /*
+     * Update the main window, and tell the listeners the database was reloaded. This runs
+     * on the UI thread.
+     */
+    private static void publishReload(String inputFileName)
+    {
+        logger.trace("publishReload");
+
+        Utilities.updateMainWindowLabels(inputFileName);
+
+        /*
+         * Tell the listeners. Use a copy of the list, since a listener might remove itself.
+         */
+        ArrayList<ReloadListener> listeners = new ArrayList<ReloadListener>(reloadListeners);
+        for (ReloadListener listener : listeners)
+        {
+            listener.libraryReloaded();
+        }
+
+        logger.info("input file reloaded");
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /**
+     * Interface for windows that need to refresh their contents when the
+     * database is reloaded.
+     *
+     * @author Jon
+     *
+     */
+    public interface ReloadListener
+    {
+
+        /**
+         * Called on the UI thread after the database has been reloaded.
+         */
+        public void libraryReloaded();
+    }
+
+    /*
+     * Thread that waits for the input file to change, then waits for it to become quiet
+     * before queuing a reload on the UI thread.
+     */
+    private static final class WatchRunner implements Runnable
+    {
+        private WatchService service;
+        private Path fileName;
+
+        private WatchRunner(WatchService service, Path fileName)
+        {
+            this.service = service;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    if (fileChanged(service.take()) == false)
+                    {
+                        continue;
+                    }
+
+                    /*
+                     * Keep waiting until there are no more changes for a while.
+                     */
+                    WatchKey key;
+                    while ((key = service.poll(InternalConstants.WATCH_FILE_QUIET_TIME,
+                            TimeUnit.MILLISECONDS)) != null)
+                    {
+                        fileChanged(key);
+                    }
+
+                    ApplicationContext.queueCallback(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            startReload();
+                        }
+                    });
+                }
+            }
+            catch (InterruptedException | ClosedWatchServiceException e)
+            {
+                // Not an error: we've been told to stop watching.
+            }
+        }
+
+        /*
+         * Check if any of the events for a key are for the watched file.
+         */
+        private boolean fileChanged(WatchKey key)
+        {
+            boolean result = false;
+
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || fileName.equals(event.context()))
+                {
+                    result = true;
+                }
+            }
+            key.reset();
+
+            return result;
+        }
+    }
+
+    /*
+     * Background task that reads the input file into a staging area. The snapshot key is
+     * created before the file is read, so the snapshot saved after the reload can't be
+     * mistaken for one of a newer version of the file.
+     */
+    private static final class ReloadTask extends Task<IncrementalImport.LibraryStage>
+    {
+        private String inputFileName;
+        private DatabaseSnapshot.SnapshotKey fileKey;
+
+        private ReloadTask(String inputFileName)
+        {
+            this.inputFileName = inputFileName;
+            this.fileKey = null;
+        }
+
+        private DatabaseSnapshot.SnapshotKey getFileKey()
+        {
+            return fileKey;
+        }
+
+        @Override
+        public IncrementalImport.LibraryStage execute()
+                throws TaskExecutionException
+        {
+            try
+            {
+                fileKey = DatabaseSnapshot.createKey(inputFileName);
+                return IncrementalImport.readLibrary(inputFileName);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                throw new TaskExecutionException(e);
+            }
+        }
+    }
+
+    /*
+     * Background task that applies a staging area to the database, and then saves the
+     * snapshot. It holds the database lock throughout, so a full processing of the input
+     * file waits for it.
+     */
+    private static final class ApplyTask extends Task<Void>
+    {
+        private IncrementalImport.LibraryStage stage;
+        private DatabaseSnapshot.SnapshotKey fileKey;
+
+        private ApplyTask(IncrementalImport.LibraryStage stage,
+                DatabaseSnapshot.SnapshotKey fileKey)
+        {
+            this.stage = stage;
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public Void execute()
+                throws TaskExecutionException
+        {
+            synchronized (DatabaseSnapshot.getDatabaseLock())
+            {
+                IncrementalImport.applyLibrary(stage);
+                DatabaseSnapshot.saveSnapshot(fileKey);
+            }
+
+            return null;
+        }
+    }
+}
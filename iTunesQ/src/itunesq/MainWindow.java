@@ -209,6 +209,7 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
     private String saveDirectory = null;
     private static boolean exceptionLogged = false;
     private static String diagTriggerValue = null;
+    private static boolean inputFileProcessing = false;
 
     /*
      * BXML variables.
@@ -326,6 +327,9 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
         PlaylistTree.initializeLogging();
         XMLHandler.initializeLogging();
         JSONHandler.initializeLogging();
+        DatabaseSnapshot.initializeLogging();
+        IncrementalImport.initializeLogging();
+        LibraryWatcher.initializeLogging();
 
         /*
          * Initialize variables.
@@ -611,9 +615,16 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
             throws IOException
     {
 
+        /*
+         * Stop watching the input file while it's processed. We start again when processing
+         * completes, if the user wants that.
+         */
+        LibraryWatcher.stopWatching();
+
         /*
          * Start the activity indicator.
          */
+        inputFileProcessing = true;
         MainWindow.updateActivityIndicator(true);
         
         /*
@@ -634,9 +645,18 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
             @Override
             public void taskExecuted(Task<Integer> task)
             {
+                inputFileProcessing = false;
                 MainWindow.updateActivityIndicator(false);
                 Utilities.updateMainWindowLabels(inputFileName);
                 owningWindow.repaint(true);
+
+                /*
+                 * Watch the input file for changes if the user wants that.
+                 */
+                if (Preferences.getInstance().getWatchInputFile() == true)
+                {
+                    LibraryWatcher.startWatching(inputFileName);
+                }
             }
 
             /*
@@ -648,6 +668,7 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
             @Override
             public void executeFailed(Task<Integer> task)
             {
+                inputFileProcessing = false;
                 MainWindow.updateActivityIndicator(false);
                 
                 if (task.getFault() != null)
@@ -678,14 +699,40 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
 
         /*
          * We use the activity indicator going inactive as the trigger to enable the main window
-         * buttons.
+         * buttons, and to catch up on playlist status changes and input file changes made
+         * while we were busy.
          */
         if (value == false)
         {
             updateMainButtonsState(true);
+            PlaylistCollection.checkPendingStatusUpdate();
+            LibraryWatcher.checkPendingReload();
         }
     }
 
+    /**
+     * Gets the state of the main window activity indicator. This is active
+     * while the input file is being processed, or the database is being
+     * updated on a background task.
+     * 
+     * @return true or false
+     */
+    public static boolean isActivityIndicatorActive()
+    {
+        return activityIndicator.isActive();
+    }
+
+    /**
+     * Determines if the input file is being processed from scratch, for
+     * example because the user opened a new file.
+     * 
+     * @return true or false
+     */
+    public static boolean isInputFileProcessing()
+    {
+        return inputFileProcessing;
+    }
+
     /**
      * Enables or disables the main window buttons.
      * 
@@ -909,7 +956,7 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
                 {
                     TracksWindow tracksWindowHandler = new TracksWindow();
                     tracksWindowHandler.displayTracks(display, Skins.Window.AUDIO_TRACKS, 
-                    		Database.getTracksFromMap(Database.getAudioTracksMap()), null);
+                    		Database.getTracksOfType(Track.TrackType.AUDIO), null);
                 }
                 catch (IOException | SerializationException e)
                 {
@@ -933,7 +980,7 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
                 {
                     TracksWindow tracksWindowHandler = new TracksWindow();
                     tracksWindowHandler.displayTracks(display, Skins.Window.VIDEO_TRACKS, 
-                    		Database.getTracksFromMap(Database.getVideoTracksMap()), null);
+                    		Database.getTracksOfType(Track.TrackType.VIDEO), null);
                 }
                 catch (IOException | SerializationException e)
                 {
@@ -1388,25 +1435,69 @@ public class MainWindow implements Application, Application.UncaughtExceptionHan
         	}
             
             /*
-             * Process the input file.
+             * Hold the database lock, so we don't rebuild the database while an automatic
+             * reload is being applied to it.
              */
-            try
-            {
-            	switch (processors)
-            	{
-            	case XML:
-            		XMLHandler.processXML(inputFileName);
-            		break;
-            		
-            	case JSON:
-            		JSONHandler.processJSON(inputFileName);
-            		break;
-            	}
-            }
-            catch (IOException e)
+            synchronized (DatabaseSnapshot.getDatabaseLock())
             {
-                MainWindow.logException(uiLogger, e);
-                throw new InternalErrorException(true, e.getMessage());
+                try
+                {
+                    
+                    /*
+                     * Create the snapshot key before the input file is processed. If the file
+                     * changes while we're processing it, the snapshot is then saved under the
+                     * key of the older file, and won't be used for the new one.
+                     */
+                    DatabaseSnapshot.SnapshotKey fileKey = DatabaseSnapshot.createKey(inputFileName);
+                    
+                    /*
+                     * Restore the database from a snapshot if the input file hasn't changed
+                     * since the snapshot was saved. Otherwise process the input file, and save
+                     * a snapshot for the next time.
+                     */
+                    if (DatabaseSnapshot.loadSnapshot(fileKey) == true)
+                    {
+                        return result;
+                    }
+                    
+                    /*
+                     * If the database wasn't built from this input file, start from a snapshot
+                     * of an earlier version of it if we have one. Either way, we can then apply
+                     * just the changes to the database.
+                     */
+                    if (!inputFileName.equals(Database.getInputFileName()))
+                    {
+                        DatabaseSnapshot.loadPreviousSnapshot(fileKey);
+                    }
+                    
+                    /*
+                     * Process the input file.
+                     */
+                    if (IncrementalImport.updateDatabase(inputFileName) == false)
+                    {
+                        Database.initializeDB();
+                        
+                        switch (processors)
+                        {
+                        case XML:
+                            XMLHandler.processXML(inputFileName);
+                            break;
+
+                        case JSON:
+                            JSONHandler.processJSON(inputFileName);
+                            break;
+                        }
+                        
+                        Database.setInputFileName(inputFileName);
+                    }
+                    
+                    DatabaseSnapshot.saveSnapshot(fileKey);
+                }
+                catch (IOException e)
+                {
+                    MainWindow.logException(uiLogger, e);
+                    throw new InternalErrorException(true, e.getMessage());
+                }
             }
             
             return result;            
@@ -0,0 +1,446 @@
+package itunesq;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.pivot.collections.ArrayList;
+
+/**
+ * Class that represents a memory-mapped iTunes property list (plist) XML file,
+ * with the <code>Tracks</code> section split into chunks that can be parsed
+ * independently.
+ * <p>
+ * The file is scanned once at the byte level to find the <code>&lt;dict&gt;</code>
+ * element following the <code>&lt;key&gt;Tracks&lt;/key&gt;</code> element of
+ * the top level dictionary. Its contents are split into chunks of roughly
+ * equal size, always at the <code>&lt;key&gt;</code> element that starts a
+ * track. Each chunk can then be read as a stand-alone document, and the rest
+ * of the file can be read as if the tracks section were empty.
+ * <p>
+ * The scan only recognizes <code>&lt;key&gt;</code>, <code>&lt;dict&gt;</code>
+ * and <code>&lt;array&gt;</code> elements, which is enough for the files
+ * iTunes writes. Files that can't be handled this way, for example because
+ * they are not UTF-8, are rejected so the caller can read them sequentially.
+ *
+ * @author Jon
+ *
+ */
+public class MappedPlistFile
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private MappedByteBuffer buffer;
+
+    /*
+     * Byte range of the contents of the tracks <dict> element.
+     */
+    private int tracksStart;
+    private int tracksEnd;
+    private int tracksLineCount;
+
+    /*
+     * Start offset and line number of each chunk. A chunk ends where the next one starts,
+     * or at the end of the tracks section.
+     */
+    private ArrayList<Integer> chunkStarts;
+    private ArrayList<Integer> chunkLines;
+
+    /*
+     * Chunks are never smaller than this, so small files aren't split into pieces that
+     * cost more to schedule than to parse.
+     */
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+    /*
+     * Byte patterns we look for.
+     */
+    private static final byte[] KEY_START = bytes("<key>");
+    private static final byte[] DICT_START = bytes("<dict>");
+    private static final byte[] DICT_END = bytes("</dict>");
+    private static final byte[] ARRAY_START = bytes("<array>");
+    private static final byte[] ARRAY_END = bytes("</array>");
+    private static final byte[] TRACKS_KEY = bytes("<key>Tracks</key>");
+    private static final byte[] ENCODING = bytes("encoding=");
+
+    /*
+     * Class constructor.
+     */
+    private MappedPlistFile(MappedByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        chunkStarts = new ArrayList<Integer>();
+        chunkLines = new ArrayList<Integer>();
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Maps a plist file and splits its tracks section into chunks.
+     *
+     * @param fileName name of the plist file
+     * @param chunkCount number of chunks to aim for
+     * @return mapped file, or null if the file can't be split
+     * @throws IOException If an error occurs trying to map the file.
+     */
+    public static MappedPlistFile open(String fileName, int chunkCount)
+            throws IOException
+    {
+        if (fileName == null)
+        {
+            throw new IllegalArgumentException("fileName argument is null");
+        }
+
+        if (chunkCount <= 0)
+        {
+            throw new IllegalArgumentException("chunkCount argument must be positive");
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+        {
+
+            /*
+             * A single buffer can't map more than 2GB.
+             */
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                return null;
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        MappedPlistFile mappedFile = new MappedPlistFile(buffer);
+        if (mappedFile.isUTF8() == false)
+        {
+            return null;
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, buffer.limit() / chunkCount);
+        if (mappedFile.splitTracks(chunkSize) == false)
+        {
+            return null;
+        }
+
+        return mappedFile;
+    }
+
+    /**
+     * Gets the number of chunks in the tracks section.
+     *
+     * @return number of chunks
+     */
+    public int getChunkCount()
+    {
+        return chunkStarts.getLength();
+    }
+
+    /**
+     * Gets the line number in the file where a chunk starts.
+     *
+     * @param index chunk index
+     * @return line number
+     */
+    public int getChunkLine(int index)
+    {
+        return chunkLines.get(index);
+    }
+
+    /**
+     * Opens a chunk of the tracks section as a stand-alone document. The
+     * document consists of a <code>&lt;dict&gt;</code> element, whose
+     * children are the track ID keys and track dictionaries of the chunk.
+     *
+     * @param index chunk index
+     * @return input stream for the chunk
+     */
+    public InputStream openChunk(int index)
+    {
+        int start = chunkStarts.get(index);
+        int end = (index + 1 < chunkStarts.getLength()) ? chunkStarts.get(index + 1) : tracksEnd;
+
+        return new SequenceInputStream(new ByteArrayInputStream(DICT_START),
+                new SequenceInputStream(new BufferInputStream(buffer, start, end),
+                        new ByteArrayInputStream(DICT_END)));
+    }
+
+    /**
+     * Opens the file without the contents of the tracks section. The lines
+     * of the tracks section are replaced by empty lines, so line numbers
+     * are the same as in the file.
+     *
+     * @return input stream for the file
+     */
+    public InputStream openWithoutTracks()
+    {
+        return new SequenceInputStream(new BufferInputStream(buffer, 0, tracksStart),
+                new SequenceInputStream(new NewlineInputStream(tracksLineCount),
+                        new BufferInputStream(buffer, tracksEnd, buffer.limit())));
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Check that the file is encoded in UTF-8. The chunks don't have an XML declaration, so
+     * the parser assumes UTF-8 for them.
+     */
+    private boolean isUTF8()
+    {
+        int limit = buffer.limit();
+
+        /*
+         * A UTF-16 file starts with a byte order mark.
+         */
+        if (limit > 0 && (buffer.get(0) == (byte) 0xFE || buffer.get(0) == (byte) 0xFF))
+        {
+            return false;
+        }
+
+        /*
+         * Look for an encoding in the XML declaration.
+         */
+        for (int pos = 0; pos < limit && buffer.get(pos) != '>'; pos++)
+        {
+            if (matches(pos, ENCODING))
+            {
+                int start = pos + ENCODING.length + 1;
+                int end = start;
+                while (end < limit && buffer.get(end) != '"' && buffer.get(end) != '\'')
+                {
+                    end++;
+                }
+
+                byte[] encoding = new byte[end - start];
+                for (int i = 0; i < encoding.length; i++)
+                {
+                    encoding[i] = buffer.get(start + i);
+                }
+
+                return new String(encoding, StandardCharsets.US_ASCII).equalsIgnoreCase("UTF-8");
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Find the tracks section and split it into chunks. Returns false if the tracks section
+     * can't be found.
+     */
+    private boolean splitTracks(int chunkSize)
+    {
+        int limit = buffer.limit();
+        int depth = 0;
+        int line = 1;
+        boolean tracksKeyFound = false;
+        int lastChunkStart = 0;
+
+        for (int pos = 0; pos < limit; pos++)
+        {
+            byte b = buffer.get(pos);
+            if (b == '\n')
+            {
+                line++;
+                continue;
+            }
+            if (b != '<')
+            {
+                continue;
+            }
+
+            /*
+             * Look for the tracks key in the top level dictionary. It must be followed by the
+             * tracks <dict> element, so anything else means the file can't be split.
+             */
+            if (tracksStart == 0)
+            {
+                if (tracksKeyFound == true)
+                {
+                    if (matches(pos, DICT_START) == false)
+                    {
+                        return false;
+                    }
+
+                    depth++;
+                    tracksStart = pos + DICT_START.length;
+                    tracksLineCount = line;
+                    lastChunkStart = tracksStart;
+                    chunkStarts.add(tracksStart);
+                    chunkLines.add(line);
+                }
+                else if (depth == 1 && matches(pos, TRACKS_KEY))
+                {
+                    tracksKeyFound = true;
+                    pos += TRACKS_KEY.length - 1;
+                }
+                else if (matches(pos, DICT_START) || matches(pos, ARRAY_START))
+                {
+                    depth++;
+                }
+                else if (matches(pos, DICT_END) || matches(pos, ARRAY_END))
+                {
+                    depth--;
+                }
+            }
+
+            /*
+             * Inside the tracks section, split at a track key once the current chunk is big
+             * enough, and stop at the end of the section.
+             */
+            else
+            {
+                if (matches(pos, KEY_START))
+                {
+                    if (depth == 2 && pos - lastChunkStart >= chunkSize)
+                    {
+                        lastChunkStart = pos;
+                        chunkStarts.add(pos);
+                        chunkLines.add(line);
+                    }
+                }
+                else if (matches(pos, DICT_START) || matches(pos, ARRAY_START))
+                {
+                    depth++;
+                }
+                else if (matches(pos, DICT_END) || matches(pos, ARRAY_END))
+                {
+                    depth--;
+                    if (depth == 1)
+                    {
+                        tracksEnd = pos;
+                        tracksLineCount = line - tracksLineCount;
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Check if the bytes at a position match a pattern.
+     */
+    private boolean matches(int pos, byte[] pattern)
+    {
+        if (pos + pattern.length > buffer.limit())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < pattern.length; i++)
+        {
+            if (buffer.get(pos + i) != pattern[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Get the bytes of a pattern.
+     */
+    private static byte[] bytes(String pattern)
+    {
+        return pattern.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /*
+     * Input stream that reads a range of a buffer. Each stream has its own view of the
+     * buffer, so streams can be read on different threads.
+     */
+    private static final class BufferInputStream extends InputStream
+    {
+        private ByteBuffer view;
+
+        private BufferInputStream(ByteBuffer buffer, int start, int end)
+        {
+            view = buffer.duplicate();
+            view.limit(end);
+            view.position(start);
+        }
+
+        @Override
+        public int read()
+        {
+            return (view.hasRemaining()) ? view.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (view.hasRemaining() == false)
+            {
+                return -1;
+            }
+
+            int count = Math.min(length, view.remaining());
+            view.get(bytes, offset, count);
+            return count;
+        }
+    }
+
+    /*
+     * Input stream that reads a number of newlines.
+     */
+    private static final class NewlineInputStream extends InputStream
+    {
+        private int remaining;
+
+        private NewlineInputStream(int count)
+        {
+            remaining = count;
+        }
+
+        @Override
+        public int read()
+        {
+            if (remaining == 0)
+            {
+                return -1;
+            }
+
+            remaining--;
+            return '\n';
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (remaining == 0)
+            {
+                return -1;
+            }
+
+            int count = Math.min(length, remaining);
+            for (int i = 0; i < count; i++)
+            {
+                bytes[offset + i] = '\n';
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package itunesq;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Class that adds tracks and playlists to the database as they are read from
+ * the input file, using separate threads for the different parts of the work.
+ * <p>
+ * The work is split into the following stages:
+ * <ul>
+ * <li>The thread reading the input file creates the track objects, and hands
+ * each one to both of the following stages through bounded queues.</li>
+ * <li>The track stage accumulates the codec and encoder statistics, updates
+ * the duplicates index, and adds the track to the all tracks list.</li>
+ * <li>The artist stage matches the track artist to the existing artists. Once
+ * all tracks have been read, it also post-processes the artists.</li>
+ * <li>The thread reading the input file waits for the track stage before
+ * generating the track ID mappings, then adds the playlists while the artist
+ * stage is still post-processing the artists.</li>
+ * </ul>
+ * The stages don't share any database objects, and each stage sees the tracks
+ * in input file order. So the resulting database is the same as the one
+ * created by <code>DatabaseLoader</code>.
+ *
+ * @author Jon
+ *
+ */
+public class PipelinedDatabaseLoader extends DatabaseLoader
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private Logger trackLogger;
+
+    /*
+     * Queues between the thread reading the input file and the stages. These are bounded
+     * so a slow stage doesn't cause all tracks to pile up in memory.
+     */
+    private static final int QUEUE_CAPACITY = 1024;
+    private ArrayBlockingQueue<Track> trackQueue;
+    private ArrayBlockingQueue<Track> artistQueue;
+
+    /*
+     * Markers that end the queues. Complete means all tracks were read, abandoned means
+     * reading the input file failed.
+     */
+    private static final Track TRACKS_COMPLETE = new Track(-1);
+    private static final Track TRACKS_ABANDONED = new Track(-1);
+
+    private Thread trackThread = null;
+    private Thread artistThread = null;
+    private boolean tracksEnded = false;
+
+    /*
+     * The first failure in any stage. The stages keep draining their queues after a
+     * failure, so the thread reading the input file never blocks.
+     */
+    private volatile Throwable failure = null;
+
+    /**
+     * Class constructor.
+     *
+     * @param trackLogger logger to use for tracks
+     * @param playlistLogger logger to use for playlists
+     * @param artistLogger logger to use for artists
+     */
+    public PipelinedDatabaseLoader(Logger trackLogger, Logger playlistLogger, Logger artistLogger)
+    {
+        super(trackLogger, playlistLogger, artistLogger);
+
+        this.trackLogger = trackLogger;
+        trackQueue = new ArrayBlockingQueue<Track>(QUEUE_CAPACITY);
+        artistQueue = new ArrayBlockingQueue<Track>(QUEUE_CAPACITY);
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Determines if loading on separate threads is worthwhile, which is the
+     * case if more than one processor is available.
+     *
+     * @return <code>true</code> if this class should be used instead of
+     * <code>DatabaseLoader</code>
+     */
+    public static boolean isWorthwhile()
+    {
+        return Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Hands a track to the track and artist stages.
+     *
+     * @param trackObj track object
+     */
+    @Override
+    public void trackFound(Track trackObj)
+    {
+        if (trackObj == null)
+        {
+            throw new IllegalArgumentException("trackObj argument is null");
+        }
+
+        /*
+         * Start the stages with the first track. Doing it here rather than in the
+         * constructor makes sure the stages see any options set on the loader.
+         */
+        if (trackThread == null)
+        {
+            trackLogger.info("starting track and artist stages");
+
+            trackThread = new Thread(new StageRunner(trackQueue, false), "TrackStage");
+            trackThread.setDaemon(true);
+            trackThread.start();
+
+            artistThread = new Thread(new StageRunner(artistQueue, true), "ArtistStage");
+            artistThread.setDaemon(true);
+            artistThread.start();
+        }
+
+        putTrack(trackQueue, trackObj);
+        putTrack(artistQueue, trackObj);
+    }
+
+    /**
+     * Completes the tracks once they have all been read. This waits for the
+     * track stage, then generates the track ID mappings. The artists are
+     * post-processed by the artist stage.
+     */
+    @Override
+    public void tracksComplete()
+    {
+
+        /*
+         * No tracks, so no stages.
+         */
+        if (trackThread == null)
+        {
+            super.tracksComplete();
+            return;
+        }
+
+        endTracks(TRACKS_COMPLETE);
+        joinStage(trackThread);
+        checkFailure();
+
+        completeTracks();
+    }
+
+    /**
+     * Waits for all stages to finish. Any failure in a stage is thrown from
+     * here.
+     */
+    @Override
+    public void finish()
+    {
+        if (trackThread == null)
+        {
+            return;
+        }
+
+        /*
+         * If the tracks never completed, reading the input file failed. Tell the stages
+         * to stop without post-processing anything.
+         */
+        endTracks(TRACKS_ABANDONED);
+        joinStage(trackThread);
+        joinStage(artistThread);
+        checkFailure();
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * End both queues with a marker, unless they have already been ended.
+     */
+    private void endTracks(Track marker)
+    {
+        if (tracksEnded == false)
+        {
+            putTrack(trackQueue, marker);
+            putTrack(artistQueue, marker);
+            tracksEnded = true;
+        }
+    }
+
+    /*
+     * Put a track on a queue, waiting if the queue is full.
+     */
+    private void putTrack(ArrayBlockingQueue<Track> queue, Track trackObj)
+    {
+        try
+        {
+            queue.put(trackObj);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InternalErrorException(true, "interrupted while loading tracks");
+        }
+    }
+
+    /*
+     * Wait for a stage to finish.
+     */
+    private void joinStage(Thread stage)
+    {
+        try
+        {
+            stage.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InternalErrorException(true, "interrupted while loading tracks");
+        }
+    }
+
+    /*
+     * Throw the first failure in any stage.
+     */
+    private void checkFailure()
+    {
+        Throwable stageFailure = failure;
+        if (stageFailure instanceof Error)
+        {
+            throw (Error) stageFailure;
+        }
+        else if (stageFailure != null)
+        {
+            throw (RuntimeException) stageFailure;
+        }
+    }
+
+    /*
+     * Remember the first failure in any stage.
+     */
+    private synchronized void recordFailure(Throwable stageFailure)
+    {
+        if (failure == null)
+        {
+            failure = stageFailure;
+        }
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /*
+     * Runs a stage, taking tracks off a queue until the queue is ended.
+     */
+    private final class StageRunner implements Runnable
+    {
+        private ArrayBlockingQueue<Track> queue;
+        private boolean artistStage;
+
+        private StageRunner(ArrayBlockingQueue<Track> queue, boolean artistStage)
+        {
+            this.queue = queue;
+            this.artistStage = artistStage;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                Track trackObj;
+                try
+                {
+                    trackObj = queue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    recordFailure(new InternalErrorException(true, "interrupted while loading tracks"));
+                    return;
+                }
+
+                if (trackObj == TRACKS_ABANDONED)
+                {
+                    return;
+                }
+
+                /*
+                 * Only do the work if no stage has failed. Otherwise just drain the queue.
+                 */
+                if (failure != null)
+                {
+                    if (trackObj == TRACKS_COMPLETE)
+                    {
+                        return;
+                    }
+                    continue;
+                }
+
+                try
+                {
+                    if (trackObj == TRACKS_COMPLETE)
+                    {
+                        if (artistStage == true)
+                        {
+                            completeArtists();
+                        }
+                        return;
+                    }
+
+                    if (artistStage == true)
+                    {
+                        addTrackArtist(trackObj);
+                    }
+                    else
+                    {
+                        addTrackStats(trackObj);
+                        addTrack(trackObj);
+                    }
+                }
+                catch (RuntimeException | Error e)
+                {
+                    recordFailure(e);
+                }
+            }
+        }
+    }
+}
@@ -51,11 +51,16 @@ public class Playlist
     private String plPersistentID;
     private String plParentPersistentID;
     private int plFolderContentCount;
-    private List<Integer> plTracks;
+    private TrackIDList plTracks;
 
     private boolean plIgnored;
     private boolean plBypassed;
 
+    /*
+     * Hash of the playlist as it was read from the input file.
+     */
+    private long plContentHash;
+
     /**
      * Class constructor.
      */
@@ -141,11 +146,22 @@ public class Playlist
     }
 
     /**
-     * Gets the playlist tracks.
+     * Sets the playlist folder content count.
      * 
-     * @return playlist tracks
+     * @param folderContentCount number of playlists in this folder
      */
-    public List<Integer> getTracks()
+    public void setFolderContentCount(int folderContentCount)
+    {
+        this.plFolderContentCount = folderContentCount;
+    }
+
+    /**
+     * Gets the playlist tracks. This is a read-only view of the track IDs;
+     * use <code>addTrack</code> to add tracks.
+     * 
+     * @return playlist tracks, or null if the playlist has no tracks
+     */
+    public TrackIDSequence getTracks()
     {
         return plTracks;
     }
@@ -155,7 +171,7 @@ public class Playlist
      * 
      * @param tracks playlist tracks
      */
-    public void setTracks(List<Integer> tracks)
+    public void setTracks(TrackIDList tracks)
     {
         this.plTracks = tracks;
     }
@@ -200,8 +216,73 @@ public class Playlist
         this.plBypassed = bypassed;
     }
 
+    /**
+     * Gets the playlist content hash.
+     * 
+     * @return hash of the playlist as it was read from the input file
+     * @see #computeContentHash()
+     */
+    public long getContentHash()
+    {
+        return plContentHash;
+    }
+
+    /**
+     * Sets the playlist content hash.
+     * 
+     * @param contentHash hash of the playlist as it was read from the input
+     * file
+     */
+    public void setContentHash(long contentHash)
+    {
+        this.plContentHash = contentHash;
+    }
+
     // ---------------- Public methods --------------------------------------
 
+    /**
+     * Adds a track to the playlist.
+     * 
+     * @param trackID track ID
+     */
+    public void addTrack(int trackID)
+    {
+        if (plTracks == null)
+        {
+            plTracks = new TrackIDList();
+        }
+
+        plTracks.add(trackID);
+    }
+
+    /**
+     * Computes a hash of the playlist name, parent and tracks. This must be
+     * called before the tracks of child playlists are added to this
+     * playlist, so that it only reflects the contents of the input file.
+     * 
+     * @return content hash
+     */
+    public long computeContentHash()
+    {
+        long hash = hashString(17, plName);
+        hash = hashString(hash, plParentPersistentID);
+
+        if (plTracks != null)
+        {
+            for (int i = 0; i < plTracks.getLength(); i++)
+            {
+                hash = 31 * hash + plTracks.get(i);
+            }
+            hash = 31 * hash + plTracks.getLength();
+        }
+        else
+        {
+            hash = 31 * hash - 1;
+        }
+
+        return hash;
+    }
+
     /**
      * Increments the folder content count.
      */
@@ -221,4 +302,14 @@ public class Playlist
     {
         return this.plPersistentID.compareTo(key2);
     }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Add a string that could be null to a hash.
+     */
+    private static long hashString(long hash, String value)
+    {
+        return 31 * hash + ((value != null) ? value.hashCode() : 0);
+    }
 }
@@ -1,8 +1,18 @@
 package itunesq;
 
+import java.util.BitSet;
+import java.util.concurrent.RecursiveAction;
+
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Set;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.wtk.TaskAdapter;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Logger;
@@ -24,6 +34,15 @@ public final class PlaylistCollection
     private static Logger logger = (Logger) LoggerFactory.getLogger(className + "_Playlist");
     private static Logging logging = Logging.getInstance();
 
+    /*
+     * Background update of the playlist status. Only one update runs at a time. Changes
+     * made while it runs, or while anything else has the activity indicator active, are
+     * collected, and another update is started for them when the indicator goes inactive.
+     */
+    private static boolean statusUpdateRunning = false;
+    private static Set<String> pendingBypassChanges = new HashSet<String>();
+    private static boolean pendingIgnoredChange = false;
+
     // ---------------- Public methods --------------------------------------
 
     /**
@@ -41,8 +60,11 @@ public final class PlaylistCollection
      * @param prevIgnoredPlaylists list of ignored playlists before being
      * changed
      * @param newIgnoredPlaylists list of ignored playlists after being changed
+     * @return <code>true</code> if the ignored status of any playlist other
+     * than a folder playlist changed, otherwise <code>false</code>. In that
+     * case the track playlist info needs to be updated.
      */
-    public static void modifyIgnoredPlaylists(List<String> prevIgnoredPlaylists,
+    public static boolean modifyIgnoredPlaylists(List<String> prevIgnoredPlaylists,
             List<String> newIgnoredPlaylists)
     {
         logger.trace("modifyIgnoredPlaylists");
@@ -64,8 +86,9 @@ public final class PlaylistCollection
          * Make a difference list of added and removed ignored playlists. All we need are the playlist
          * names, because we're called after the preferences have been updated, so can use the 
          * preferences to determine whether or not the playlist in question is being ignored.
+         * It's a set, because it's checked for every playlist.
          */
-        List<String> ignoredDiffs = new ArrayList<String>();
+        Set<String> ignoredDiffs = new HashSet<String>();
 
         /*
          * First, loop through the previous list. If a playlist is also contained in the new list,
@@ -93,12 +116,13 @@ public final class PlaylistCollection
             ignoredDiffs.add(newIgnoredPlaylist);
         }
 
-        logger.debug("difference ignored playlists count: " + ignoredDiffs.getLength());
+        logger.debug("difference ignored playlists count: " + ignoredDiffs.getCount());
 
         /*
          * Get the preferences object instance.
          */
         Preferences prefs = Preferences.getInstance();
+        boolean trackPlaylistsChanged = false;
 
         /*
          * Walk through all playlists.
@@ -116,15 +140,25 @@ public final class PlaylistCollection
                  * We only want to process playlists in the difference list.
                  */
 
-                if (ignoredDiffs.indexOf(playlistName) == -1)
+                if (ignoredDiffs.contains(playlistName) == false)
                 {
                     continue;
                 }
 
                 /*
-                 * Set or reset the ignored flag.
+                 * Set or reset the ignored flag. Any change means the cached playlist tree
+                 * is out of date. Folder playlists aren't in the track playlist info, so only
+                 * a change to another playlist affects it.
                  */
                 boolean playlistIgnored = isPlaylistIgnored(playlistName);
+                if (playlistObj.getIgnored() != playlistIgnored)
+                {
+                    PlaylistTree.invalidatePlaylistTree();
+                    if (playlistObj.getFolderContentCount() == 0)
+                    {
+                        trackPlaylistsChanged = true;
+                    }
+                }
                 playlistObj.setIgnored(playlistIgnored);
 
                 /*
@@ -164,6 +198,112 @@ public final class PlaylistCollection
                 }
             }
         }
+
+        return trackPlaylistsChanged;
+    }
+
+    /**
+     * Finds the playlists whose bypass preference changed. This is called if
+     * the bypass preferences are changed.
+     * 
+     * @param prevBypassPrefs list of bypass preferences before being changed
+     * @param newBypassPrefs list of bypass preferences after being changed
+     * @return set of names of playlists that were added to or removed from
+     * the bypass preferences, or whose include children indicator changed
+     */
+    public static Set<String> findChangedBypassPrefs(List<BypassPreference> prevBypassPrefs,
+            List<BypassPreference> newBypassPrefs)
+    {
+        logger.trace("findChangedBypassPrefs");
+
+        if (prevBypassPrefs == null)
+        {
+            throw new IllegalArgumentException("prevBypassPrefs argument is null");
+        }
+
+        if (newBypassPrefs == null)
+        {
+            throw new IllegalArgumentException("newBypassPrefs argument is null");
+        }
+
+        Map<String, Boolean> prevIncludeChildren = createBypassPrefsMap(prevBypassPrefs);
+        Map<String, Boolean> newIncludeChildren = createBypassPrefsMap(newBypassPrefs);
+
+        /*
+         * A playlist has changed if it's only in one of the lists, or its include children
+         * indicator is different.
+         */
+        Set<String> changedPlaylists = new HashSet<String>();
+        for (String playlistName : prevIncludeChildren)
+        {
+            if (prevIncludeChildren.get(playlistName).equals(newIncludeChildren.get(playlistName)) == false)
+            {
+                changedPlaylists.add(playlistName);
+            }
+        }
+
+        for (String playlistName : newIncludeChildren)
+        {
+            if (prevIncludeChildren.containsKey(playlistName) == false)
+            {
+                changedPlaylists.add(playlistName);
+            }
+        }
+
+        logger.debug("changed bypass preferences count: " + changedPlaylists.getCount());
+
+        return changedPlaylists;
+    }
+
+    /**
+     * Updates the status of playlists after the bypass or ignored preferences
+     * change, in the background.
+     * <p>
+     * Only the playlists whose bypass preference changed, and their
+     * descendants, are checked for a change to their bypassed status. The
+     * bypassed indicators in the track playlist info are then updated for
+     * just the playlists whose status changed. The track playlist info is only
+     * rebuilt if the ignored status of a playlist changed.
+     * <p>
+     * The new status is computed on a background task, with the main window
+     * activity indicator active. The playlists and the track playlist info are
+     * then updated together on the UI thread.
+     * 
+     * @param changedBypassPlaylists set of names of playlists whose bypass
+     * preference changed
+     * @param ignoredChanged <code>true</code> if the ignored status of a
+     * playlist changed, otherwise <code>false</code>
+     */
+    public static void updatePlaylistStatus(Set<String> changedBypassPlaylists, boolean ignoredChanged)
+    {
+        logger.trace("updatePlaylistStatus");
+
+        if (changedBypassPlaylists == null)
+        {
+            throw new IllegalArgumentException("changedBypassPlaylists argument is null");
+        }
+
+        for (String playlistName : changedBypassPlaylists)
+        {
+            pendingBypassChanges.add(playlistName);
+        }
+        pendingIgnoredChange = pendingIgnoredChange || ignoredChanged;
+
+        startPlaylistStatusUpdate();
+    }
+
+    /**
+     * Starts a background update of the playlist status if changes were made
+     * while an update couldn't be started. This is called on the UI thread
+     * when the activity indicator goes inactive.
+     */
+    public static void checkPendingStatusUpdate()
+    {
+        if (statusUpdateRunning == false
+                && (pendingBypassChanges.isEmpty() == false || pendingIgnoredChange == true))
+        {
+            startPlaylistStatusUpdate();
+        }
     }
 
     /**
@@ -177,25 +317,13 @@ public final class PlaylistCollection
     {
         logger.trace("isPlaylistIgnored");
 
-        boolean result = false;
-
         /*
-         * Get the preferences object instance.
+         * Look up the playlist in the ignored playlist preferences.
          */
-        Preferences prefs = Preferences.getInstance();
-
-        /*
-         * Walk the list of ignored playlist preferences.
-         */
-        List<String> ignoredPrefs = prefs.getIgnoredPrefs();
-        for (String ignoredPref : ignoredPrefs)
+        boolean result = Preferences.getInstance().isIgnoredPref(playlistName);
+        if (result == true)
         {
-            if (ignoredPref.equals(playlistName))
-            {
-                logger.debug("playlist '" + playlistName + "' is ignored");
-                result = true;
-                break;
-            }
+            logger.debug("playlist '" + playlistName + "' is ignored");
         }
 
         return result;
@@ -207,6 +335,13 @@ public final class PlaylistCollection
     public static void postProcessPlaylists()
     {
     	
+        /*
+         * Build the playlist hierarchy, which is shared by everything below that needs the
+         * parents or children of a playlist.
+         */
+        logger.info("building playlist hierarchy");
+        updatePlaylistHierarchy();
+
         /*
          * Set the content count for all folder playlists, so that we can adjust
          * the total number of playlists if a folder playlist is dynamically
@@ -240,11 +375,16 @@ public final class PlaylistCollection
     
     /**
      * Finds and marks all playlists that are bypassed by user preferences.
+     * This is used when the playlists are first processed, when no playlists
+     * are marked yet.
      */
     public static void markBypassedPlaylists()
     {
         logger.trace("markBypassedPlaylists");
 
+        Preferences prefs = Preferences.getInstance();
+        PlaylistHierarchy hierarchy = Database.getPlaylistHierarchy();
+
         /*
          * Walk through all playlists.
          */
@@ -256,8 +396,7 @@ public final class PlaylistCollection
             /*
              * If this playlist is bypassed, mark it so.
              */
-            boolean[] result = checkBypassedPlaylist(playlistObj);
-            if (result[0] == true)
+            if (prefs.getBypassPref(playlistObj.getName()) != null)
             {
                 logger.debug("marking playlist '" + playlistObj.getName() + "' as bypassed");
                 playlistObj.setBypassed(true);
@@ -267,16 +406,13 @@ public final class PlaylistCollection
             /*
              * If one of the parents of this playlist is bypassed, mark this one so.
              */
-            String parentID;
-            Playlist workingPlaylistObj = playlistObj;
-            while ((parentID = workingPlaylistObj.getParentPersistentID()) != null)
+            for (Playlist ancestor : hierarchy.getAncestors(playlistObj.getPersistentID()))
             {
-                workingPlaylistObj = playlists.get(parentID);
-                result = checkBypassedPlaylist(workingPlaylistObj);
-                if (result[0] == true && result[1] == true)
+                BypassPreference bypassPref = prefs.getBypassPref(ancestor.getName());
+                if (bypassPref != null && bypassPref.getIncludeChildren() == true)
                 {
                     logger.debug("marking playlist '" + playlistObj.getName()
-                            + "' as bypassed due to parent playlist '" + workingPlaylistObj.getName() + "'");
+                            + "' as bypassed due to parent playlist '" + ancestor.getName() + "'");
                     playlistObj.setBypassed(true);
                     break;
                 }
@@ -284,234 +420,488 @@ public final class PlaylistCollection
         }
     }
 
+    /**
+     * Rebuilds the playlist hierarchy from all playlists. This must be called
+     * whenever the playlists change.
+     */
+    public static void updatePlaylistHierarchy()
+    {
+        logger.trace("updatePlaylistHierarchy");
+
+        PlaylistHierarchy hierarchy = new PlaylistHierarchy(Database.getPlaylists());
+        Database.setPlaylistHierarchy(hierarchy);
+
+        logger.info("found " + hierarchy.getRootPlaylists().getLength() + " top level playlists");
+    }
+
     /**
      * Updates the track playlist info for all playlists that are not ignored.
      * The playlist info consists of the playlist name and a bypassed indicator.
+     * <p>
+     * This rebuilds the track playlist index from all playlists, so it must
+     * also be called if the track indices change.
      */
     public static void updateTrackPlaylistInfo()
     {
         logger.trace("updateTrackPlaylistInfo");
 
+        TrackPlaylistIndex trackPlaylistIndex =
+                new TrackPlaylistIndex(Database.getPlaylists(), Database.getTrackIDIndex());
+        Database.setTrackPlaylistIndex(trackPlaylistIndex);
+
+        logger.info("indexed " + trackPlaylistIndex.getNumEntries() + " track playlist entries for "
+                + trackPlaylistIndex.getNumPlaylists() + " playlists");
+    }
+
+    // ---------------- Private methods -------------------------------------
+    
+    /*
+     * Copy playlist tracks to all parents.
+     * 
+     * The playlist tree comes from the playlist hierarchy. The tracks of each folder are then aggregated bottom up: a folder gets the tracks
+     * of its children after they've got the tracks of their own children. So each
+     * folder only merges its direct children, instead of every playlist copying its
+     * tracks to every ancestor. Sibling subtrees are independent, so they're
+     * aggregated in parallel.
+     */
+    private static void bubbleUpPlaylistTracks()
+    {
+        logger.trace("bubbleUpPlaylistTracks");
+
         /*
-         * Walk through all playlists.
+         * Aggregate the tracks of each root folder. Forking from outside a fork-join pool
+         * runs the tasks on the common pool.
          */
-        Map<String, Playlist> playlists = Database.getPlaylists();
-        for (String playlistKey : playlists)
+        PlaylistHierarchy hierarchy = Database.getPlaylistHierarchy();
+
+        logger.info("aggregating tracks for folder playlists");
+        FolderAggregationTask.forkAndJoin(hierarchy.getRootPlaylists(), hierarchy);
+    }
+    
+    /*
+     * Copy the tracks of child playlists to the parent. We skip any tracks that
+     * already exist in the parent.
+     */
+    private static void copyPlaylistTracks(List<Playlist> children, Playlist parent)
+    {
+        logger.trace("copyPlaylistTracks");
+
+        /*
+         * Keep a bit set of the track indexes in the parent, so that each track is only
+         * looked up once.
+         */
+        BitSet parentTrackIndexes = new BitSet(Database.getTrackIDIndex().getNumTracks());
+
+        TrackIDSequence parentTracks = parent.getTracks();
+        if (parentTracks != null)
         {
-            Playlist playlistObj = playlists.get(playlistKey);
+            for (int i = 0; i < parentTracks.getLength(); i++)
+            {
+                int trackIndex = Database.getTrackIndex(parentTracks.get(i));
+                if (trackIndex >= 0)
+                {
+                    parentTrackIndexes.set(trackIndex);
+                }
+            }
+        }
 
-            /*
-             * Now update the track playlist info. We skip the following:
-             * 
-             * - Folder playlists (covered by the playlists in the folder)
-             * - Ignored playlists
-             */
-            if (playlistObj.getFolderContentCount() == 0 && playlistObj.getIgnored() == false)
+        for (Playlist child : children)
+        {
+            TrackIDSequence tracks = child.getTracks();
+            if (tracks == null)
             {
+                continue;
+            }
+
+            for (int i = 0; i < tracks.getLength(); i++)
+            {
+                int trackID = tracks.get(i);
+                int trackIndex = Database.getTrackIndex(trackID);
 
                 /*
-                 * Walk through all tracks for this playlist, if any.
+                 * A track ID that isn't in the database can't be in the bit set, so check
+                 * the parent tracks for it instead.
                  */
-                List<Integer> playlistTracks = playlistObj.getTracks();
-                if (playlistTracks != null)
+                if (trackIndex >= 0)
                 {
-                    for (Integer trackID : playlistTracks)
+                    if (parentTrackIndexes.get(trackIndex) == false)
                     {
-
-                        /*
-                         * Get the track for this track ID.
-                         */
-                        Integer trackIndex = Database.getTracksMap().get(trackID);
-                        Track track = Database.getTracks().get(trackIndex);
-                        String trackName = track.getName();
-                        String playlistName = playlistObj.getName();
-
-                        /*
-                         * Add this playlist to the track playlist info.
-                         */
-                        TrackPlaylistInfo playlistInfo = new TrackPlaylistInfo();
-                        playlistInfo.setPlaylistName(playlistName);
-                        playlistInfo.setBypassed(playlistObj.getBypassed());
-                        track.addPlaylistInfoToTrack(playlistInfo);
-                        
-                        logger.debug("added playlist info for '" + playlistName + "' to track '" + trackName + "' (" + trackID + ")");
+                        parentTrackIndexes.set(trackIndex);
+                        parent.addTrack(trackID);
                     }
                 }
+                else if (parent.getTracks() == null || parent.getTracks().contains(trackID) == false)
+                {
+                    parent.addTrack(trackID);
+                }
             }
         }
     }
-
-    // ---------------- Private methods -------------------------------------
     
     /*
-     * Copy playlist tracks to all parents.
+     * Set the playlist folder content count for all folder playlists.
+     * 
+     * This indicates the number of playlists contained in a folder. We need
+     * this so that the number of playlists can be properly adjusted if folder
+     * playlists are dynamically added to or removed from the ignored list.
      */
-    private static void bubbleUpPlaylistTracks()
+    private static void setPlaylistFolderCounts()
     {
-        logger.trace("bubbleUpPlaylistTracks");
+        logger.trace("setPlaylistFolderCounts");
+
+        PlaylistHierarchy hierarchy = Database.getPlaylistHierarchy();
 
         /*
-         * Walk through all playlists.
+         * Walk through all playlists, counting the children of each one.
          */
         Map<String, Playlist> playlists = Database.getPlaylists();
-        List<PlaylistPair> playlistPairs = new ArrayList<PlaylistPair>();
-        
         for (String playlistKey : playlists)
         {
             Playlist playlistObj = playlists.get(playlistKey);
-            
-            String parentID;
-            Playlist parentObj = null;
-        	
+
+            int childCount = hierarchy.getChildCount(playlistObj.getPersistentID());
+            for (int i = 0; i < childCount; i++)
+            {
+                playlistObj.incrementFolderContentCount();
+            }
+        }
+    }
+
+    /*
+     * Start a background update of the playlist status for the pending changes, unless one
+     * is already running.
+     */
+    private static void startPlaylistStatusUpdate()
+    {
+        if (statusUpdateRunning == true)
+        {
+            logger.info("playlist status update is already running, deferring changes");
+            return;
+        }
+
+        /*
+         * Don't compete with a processing of the input file, or anything else that changes
+         * the database in the background. Keep the changes for when it's done, since it
+         * might have read the preferences before the user changed them.
+         */
+        if (MainWindow.isInputFileProcessing() == true)
+        {
+            logger.info("input file is being processed, deferring playlist status update");
+            return;
+        }
+
+        if (MainWindow.isActivityIndicatorActive() == true)
+        {
+            logger.info("database is being updated, deferring playlist status update");
+            return;
+        }
+
+        statusUpdateRunning = true;
+        MainWindow.updateActivityIndicator(true);
+
+        PlaylistStatusTask statusTask = new PlaylistStatusTask(Database.getPlaylists(),
+                Database.getPlaylistHierarchy(), pendingBypassChanges, pendingIgnoredChange);
+        pendingBypassChanges = new HashSet<String>();
+        pendingIgnoredChange = false;
+
+        TaskListener<PlaylistStatusUpdate> taskListener = new TaskListener<PlaylistStatusUpdate>()
+        {
+
             /*
-             * Find the parent if we have one.
+             * The new status was computed. Apply it. If more changes were made in the
+             * meantime, turning off the activity indicator starts another update.
              */
-            if ((parentID = playlistObj.getParentPersistentID()) != null)
-        	{
-        		parentObj = playlists.get(parentID);
-        	}
-            
+            @Override
+            public void taskExecuted(Task<PlaylistStatusUpdate> task)
+            {
+                applyPlaylistStatus(task.getResult());
+
+                statusUpdateRunning = false;
+                MainWindow.updateActivityIndicator(false);
+            }
+
             /*
-             * Interesting playlists are those with both a parent and a list of tracks.
-             * Save the playlist pair for each such playlist we find.
+             * The task failed, which only happens if an exception was thrown.
              */
-            if (playlistObj.getTracks() != null && parentObj != null)
+            @Override
+            public void executeFailed(Task<PlaylistStatusUpdate> task)
+            {
+                statusUpdateRunning = false;
+                MainWindow.updateActivityIndicator(false);
+
+                throw new InternalErrorException(true, "failed to update playlist status: " + task.getFault());
+            }
+        };
+
+        statusTask.execute(new TaskAdapter<PlaylistStatusUpdate>(taskListener));
+    }
+
+    /*
+     * Compute the new playlist status. This runs on a background task, so it doesn't
+     * change the playlists or the database.
+     */
+    private static PlaylistStatusUpdate computePlaylistStatus(Map<String, Playlist> playlists,
+            PlaylistHierarchy hierarchy, Map<String, Boolean> bypassPrefs, Set<String> changedBypassPlaylists,
+            boolean ignoredChanged)
+    {
+        logger.trace("computePlaylistStatus");
+
+        PlaylistStatusUpdate statusUpdate = new PlaylistStatusUpdate(playlists);
+
+        /*
+         * Find the playlists whose bypass preference changed. These and all their
+         * descendants might have a new bypassed status.
+         */
+        List<Playlist> affectedPlaylists = new ArrayList<Playlist>();
+        Set<String> affectedIDs = new HashSet<String>();
+        for (String playlistKey : playlists)
+        {
+            Playlist playlistObj = playlists.get(playlistKey);
+            if (changedBypassPlaylists.contains(playlistObj.getName()) == true
+                    && affectedIDs.add(playlistObj.getPersistentID()) == true)
             {
-            	PlaylistPair playlistPair = new PlaylistPair(playlistObj, parentObj);
-            	playlistPairs.add(playlistPair);
+                affectedPlaylists.add(playlistObj);
             }
         }
-        
+
+        for (int i = 0; i < affectedPlaylists.getLength(); i++)
+        {
+            for (Playlist child : hierarchy.getChildPlaylists(affectedPlaylists.get(i).getPersistentID()))
+            {
+                if (affectedIDs.add(child.getPersistentID()) == true)
+                {
+                    affectedPlaylists.add(child);
+                }
+            }
+        }
+
+        logger.info("checking bypassed status of " + affectedPlaylists.getLength() + " playlists");
+
         /*
-         * Now walk through the list of playlist pairs we found in the above loop.
+         * Keep the playlists whose bypassed status actually changed.
          */
-        for (PlaylistPair playlistPair : playlistPairs)
-        {
-        	Playlist child = playlistPair.getChild();
-        	Playlist parent = playlistPair.getParent();
-        	
-        	List<Integer> tracks = child.getTracks();
-        	
-        	/*
-        	 * COpy the tracks from the child to the parent.
-        	 */
-        	copyPlaylistTracks(tracks, parent);
-        	
-        	/*
-        	 * Keep walking up the playlist chain, copying tracks until no more parents exist.
-        	 */
-        	while (parent != null)
-        	{
-        		String grandparentID;
-        		Playlist grandparentObj = null;
-                
-        		if ((grandparentID = parent.getParentPersistentID()) != null)
-            	{
-            		grandparentObj = playlists.get(grandparentID);
-                	copyPlaylistTracks(tracks, grandparentObj);
-            	}
-        		
-        		parent = grandparentObj;
-        	}
+        Map<String, Boolean> bypassedByName = new HashMap<String, Boolean>();
+        for (Playlist playlistObj : affectedPlaylists)
+        {
+            boolean bypassed = isPlaylistBypassed(playlistObj, hierarchy, bypassPrefs);
+            if (bypassed != playlistObj.getBypassed())
+            {
+                logger.debug("playlist '" + playlistObj.getName() + "' is "
+                        + ((bypassed == true) ? "now" : "no longer") + " bypassed");
+                if (bypassed == true)
+                {
+                    statusUpdate.bypassedPlaylists.add(playlistObj);
+                }
+                else
+                {
+                    statusUpdate.unbypassedPlaylists.add(playlistObj);
+                }
+                bypassedByName.put(playlistObj.getName(), bypassed);
+            }
         }
+
+        /*
+         * Rebuild the track playlist info if the ignored status of a playlist changed. Then
+         * update the bypassed indicators of the changed playlists. This creates a new
+         * index, so the current one is unaffected until the update is applied.
+         */
+        TrackPlaylistIndex trackPlaylistIndex = (ignoredChanged == true)
+                ? new TrackPlaylistIndex(playlists, Database.getTrackIDIndex())
+                : Database.getTrackPlaylistIndex();
+        statusUpdate.trackPlaylistIndex = trackPlaylistIndex.updateBypassed(bypassedByName);
+
+        return statusUpdate;
     }
-    
+
     /*
-     * Copy child tracks to the parent. We skip any tracks that already exist in the parent.
+     * Apply a new playlist status. This runs on the UI thread.
      */
-    private static void copyPlaylistTracks(List<Integer> tracks, Playlist parent)
+    private static void applyPlaylistStatus(PlaylistStatusUpdate statusUpdate)
     {
-        logger.trace("copyPlaylistTracks");
-        
-    	for (Integer trackID : tracks)
-    	{
-    		boolean found = false;
-    		List<Integer> parentTracks = parent.getTracks();
-    		
-    		for (Integer parentTrackID : parentTracks)
-    		{
-    			if (parentTrackID.equals(trackID))
-    			{
-    				found = true;
-    				break;
-    			}
-    		}
-    		
-    		if (found == false)
-    		{
-    			parent.getTracks().add(trackID);
-    		}
-    	}
+        logger.trace("applyPlaylistStatus");
+
+        /*
+         * If the database was rebuilt in the meantime, it already has the new status.
+         */
+        if (statusUpdate.playlists != Database.getPlaylists())
+        {
+            logger.info("playlists were rebuilt, discarding playlist status update");
+            return;
+        }
+
+        for (Playlist playlistObj : statusUpdate.bypassedPlaylists)
+        {
+            playlistObj.setBypassed(true);
+        }
+        for (Playlist playlistObj : statusUpdate.unbypassedPlaylists)
+        {
+            playlistObj.setBypassed(false);
+        }
+        Database.setTrackPlaylistIndex(statusUpdate.trackPlaylistIndex);
+
+        logger.info("updated bypassed status of "
+                + (statusUpdate.bypassedPlaylists.getLength() + statusUpdate.unbypassedPlaylists.getLength())
+                + " playlists");
     }
-    
+
     /*
-     * Set the playlist folder content count for all folder playlists.
-     * 
-     * This indicates the number of playlists contained in a folder. We need
-     * this so that the number of playlists can be properly adjusted if folder
-     * playlists are dynamically added to or removed from the ignored list.
+     * Determine if a playlist is bypassed, either by its own bypass preference or by a
+     * preference for one of its parents that includes children.
      */
-    private static void setPlaylistFolderCounts()
+    private static boolean isPlaylistBypassed(Playlist playlistObj, PlaylistHierarchy hierarchy,
+            Map<String, Boolean> bypassPrefs)
     {
-        logger.trace("setPlaylistFolderCounts");
+        if (bypassPrefs.containsKey(playlistObj.getName()))
+        {
+            return true;
+        }
 
-        /*
-         * Walk through all playlists.
-         */
-        Map<String, Playlist> playlists = Database.getPlaylists();
-        for (String playlistKey : playlists)
+        for (Playlist ancestor : hierarchy.getAncestors(playlistObj.getPersistentID()))
         {
-            Playlist playlistObj = playlists.get(playlistKey);
+            Boolean includeChildren = bypassPrefs.get(ancestor.getName());
+            if (includeChildren != null && includeChildren == true)
+            {
+                return true;
+            }
+        }
 
-            String parentID;
-            Playlist parentPlaylistObj;
-            if ((parentID = playlistObj.getParentPersistentID()) != null)
+        return false;
+    }
+
+    /*
+     * Create a map of playlist name to include children indicator from a list of bypass
+     * preferences. The first preference for a playlist wins, as in the preferences index.
+     */
+    private static Map<String, Boolean> createBypassPrefsMap(List<BypassPreference> bypassPrefs)
+    {
+        Map<String, Boolean> bypassPrefsMap = new HashMap<String, Boolean>();
+        for (BypassPreference bypassPref : bypassPrefs)
+        {
+            if (bypassPrefsMap.containsKey(bypassPref.getPlaylistName()) == false)
             {
-                parentPlaylistObj = playlists.get(parentID);
-                parentPlaylistObj.incrementFolderContentCount();
+                bypassPrefsMap.put(bypassPref.getPlaylistName(), bypassPref.getIncludeChildren());
             }
         }
+
+        return bypassPrefsMap;
     }
 
+    // ---------------- Nested classes --------------------------------------
+
     /*
-     * Check if a playlist is bypassed.
+     * New playlist status computed by a playlist status task.
      */
-    private static boolean[] checkBypassedPlaylist(Playlist playlistObj)
+    private static final class PlaylistStatusUpdate
     {
-        logger.trace("checkBypassedPlaylist");
 
         /*
-         * The result is 2 booleans:
-         * 
-         * [0] = playlist is bypassed
-         * [1] = include the children of the playlist
+         * Playlists the status was computed for.
          */
-        boolean[] result =
-        { false, false };
+        private Map<String, Playlist> playlists;
 
         /*
-         * Get the preferences object instance.
+         * Playlists that are now bypassed, playlists that are no longer bypassed, and the new
+         * track playlist info.
          */
-        Preferences prefs = Preferences.getInstance();
+        private List<Playlist> bypassedPlaylists = new ArrayList<Playlist>();
+        private List<Playlist> unbypassedPlaylists = new ArrayList<Playlist>();
+        private TrackPlaylistIndex trackPlaylistIndex = null;
+
+        private PlaylistStatusUpdate(Map<String, Playlist> playlists)
+        {
+            this.playlists = playlists;
+        }
+    }
+
+    /*
+     * Background task that computes the new playlist status.
+     */
+    private static final class PlaylistStatusTask extends Task<PlaylistStatusUpdate>
+    {
+        private Map<String, Playlist> playlists;
+        private PlaylistHierarchy hierarchy;
+        private Map<String, Boolean> bypassPrefs;
+        private Set<String> changedBypassPlaylists;
+        private boolean ignoredChanged;
 
         /*
-         * Walk the list of bypass playlist preferences.
+         * The bypass preferences are copied here, on the UI thread.
          */
-        List<BypassPreference> bypassPrefs = prefs.getBypassPrefs();
-        for (BypassPreference bypassPref : bypassPrefs)
+        private PlaylistStatusTask(Map<String, Playlist> playlists, PlaylistHierarchy hierarchy,
+                Set<String> changedBypassPlaylists, boolean ignoredChanged)
         {
+            this.playlists = playlists;
+            this.hierarchy = hierarchy;
+            this.bypassPrefs = createBypassPrefsMap(Preferences.getInstance().getBypassPrefs());
+            this.changedBypassPlaylists = changedBypassPlaylists;
+            this.ignoredChanged = ignoredChanged;
+        }
 
-            /*
-             * Get the result for the input playlist.
-             */
-            if (playlistObj.getName().equals(bypassPref.getPlaylistName()))
+        @Override
+        public PlaylistStatusUpdate execute()
+                throws TaskExecutionException
+        {
+            try
+            {
+                return computePlaylistStatus(playlists, hierarchy, bypassPrefs, changedBypassPlaylists,
+                        ignoredChanged);
+            }
+            catch (RuntimeException e)
             {
-                result[0] = true;
-                result[1] = bypassPref.getIncludeChildren();
-                break;
+                throw new TaskExecutionException(e);
             }
         }
+    }
 
-        return result;
+    /*
+     * Fork-join task that aggregates the tracks of a folder playlist. The child folders
+     * are aggregated first, in parallel, and then their tracks are copied to the folder.
+     */
+    private static final class FolderAggregationTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private transient Playlist folder;
+        private transient PlaylistHierarchy hierarchy;
+
+        private FolderAggregationTask(Playlist folder, PlaylistHierarchy hierarchy)
+        {
+            this.folder = folder;
+            this.hierarchy = hierarchy;
+        }
+
+        @Override
+        protected void compute()
+        {
+            List<Playlist> children = hierarchy.getChildPlaylists(folder.getPersistentID());
+            forkAndJoin(children, hierarchy);
+
+            logger.debug("copying tracks of " + children.getLength() + " child playlists to folder playlist '"
+                    + folder.getName() + "'");
+            copyPlaylistTracks(children, folder);
+        }
+
+        /*
+         * Aggregate the folders in a list of sibling playlists in parallel, and wait for
+         * them all to complete.
+         */
+        private static void forkAndJoin(List<Playlist> siblings, PlaylistHierarchy hierarchy)
+        {
+            List<FolderAggregationTask> folderTasks = new ArrayList<FolderAggregationTask>();
+            for (Playlist sibling : siblings)
+            {
+                if (hierarchy.getChildCount(sibling.getPersistentID()) > 0)
+                {
+                    FolderAggregationTask folderTask = new FolderAggregationTask(sibling, hierarchy);
+                    folderTasks.add(folderTask);
+                    folderTask.fork();
+                }
+            }
+
+            for (FolderAggregationTask folderTask : folderTasks)
+            {
+                folderTask.join();
+            }
+        }
     }
 }
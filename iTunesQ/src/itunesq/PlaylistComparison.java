@@ -0,0 +1,250 @@
+package itunesq;
+
+import java.util.BitSet;
+import java.util.Comparator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+
+/**
+ * Class that represents a comparison of two or more playlists. Such a
+ * comparison has three possible results:
+ * <ol>
+ * <li>A track exists in all compared playlists</li>
+ * <li>A track exists in some, but not all, compared playlists</li>
+ * <li>A track exists in only one playlist</li>
+ * </ol>
+ * <p>
+ * Each playlist is turned into a bit set of track indexes, where the index is
+ * the position of the track in the all tracks list. The results are then
+ * found with word-at-a-time set operations, instead of looking up every track
+ * ID:
+ * <ul>
+ * <li>The 'all' set is the intersection of the playlist bit sets.</li>
+ * <li>Two running sets count the playlists each track is in, up to two: the
+ * tracks in at least one playlist, and the tracks in at least two. Adding a
+ * playlist first moves the tracks it shares with the first set into the
+ * second, then adds all its tracks to the first.</li>
+ * <li>The 'one' set is the first set minus the second.</li>
+ * <li>The 'some' set is the second set minus the 'all' set.</li>
+ * </ul>
+ * A track that appears more than once in a playlist is only counted once for
+ * that playlist. Track IDs that aren't in the all tracks list are ignored.
+ * <p>
+ * Because the all tracks list is sorted, the tracks in each result are
+ * returned in sorted order without any further sorting.
+ * <p>
+ * The tracks in at least two playlists are the result of the recursive
+ * compare, which compares every pair of playlists. They are found in the same
+ * single pass over the playlists. The bit set of each playlist is kept, so the
+ * playlists that share a track can be reported without another pass.
+ *
+ * @author Jon
+ *
+ */
+public class PlaylistComparison
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private int numPlaylists;
+    private List<String> playlistNames;
+    private List<BitSet> playlistTrackSets;
+
+    /*
+     * Tracks in all playlists, in at least one playlist, and in at least two playlists.
+     */
+    private BitSet allTracks;
+    private BitSet oneOrMoreTracks;
+    private BitSet twoOrMoreTracks;
+
+    /**
+     * Class constructor.
+     */
+    public PlaylistComparison()
+    {
+        numPlaylists = 0;
+        playlistNames = new ArrayList<String>();
+        playlistTrackSets = new ArrayList<BitSet>();
+        allTracks = new BitSet();
+        oneOrMoreTracks = new BitSet();
+        twoOrMoreTracks = new BitSet();
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the number of playlists in the comparison.
+     *
+     * @return number of playlists
+     */
+    public int getNumPlaylists()
+    {
+        return numPlaylists;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Adds a playlist to the comparison.
+     *
+     * @param playlistName playlist name
+     * @param trackIDs track IDs of the playlist
+     */
+    public void addPlaylist(String playlistName, TrackIDSequence trackIDs)
+    {
+        if (playlistName == null)
+        {
+            throw new IllegalArgumentException("playlistName argument is null");
+        }
+
+        if (trackIDs == null)
+        {
+            throw new IllegalArgumentException("trackIDs argument is null");
+        }
+
+        /*
+         * Create the bit set of track indexes for this playlist.
+         */
+        BitSet playlistTracks = new BitSet(Database.getTrackIDIndex().getNumTracks());
+        for (int i = 0; i < trackIDs.getLength(); i++)
+        {
+            int index = Database.getTrackIndex(trackIDs.get(i));
+            if (index >= 0)
+            {
+                playlistTracks.set(index);
+            }
+        }
+
+        /*
+         * Update the running sets.
+         */
+        if (numPlaylists == 0)
+        {
+            allTracks.or(playlistTracks);
+        }
+        else
+        {
+            allTracks.and(playlistTracks);
+
+            BitSet sharedTracks = (BitSet) playlistTracks.clone();
+            sharedTracks.and(oneOrMoreTracks);
+            twoOrMoreTracks.or(sharedTracks);
+        }
+        oneOrMoreTracks.or(playlistTracks);
+
+        playlistNames.add(playlistName);
+        playlistTrackSets.add(playlistTracks);
+        numPlaylists++;
+    }
+
+    /**
+     * Gets the tracks that exist in all compared playlists. This is empty if
+     * fewer than two playlists were compared.
+     *
+     * @return list of tracks
+     */
+    public List<Track> getAllTracks()
+    {
+        return (numPlaylists >= 2) ? createTrackList(allTracks) : createTrackList(new BitSet());
+    }
+
+    /**
+     * Gets the tracks that exist in some, but not all, compared playlists.
+     *
+     * @return list of tracks
+     */
+    public List<Track> getSomeTracks()
+    {
+        BitSet someTracks = (BitSet) twoOrMoreTracks.clone();
+        someTracks.andNot(allTracks);
+
+        return createTrackList(someTracks);
+    }
+
+    /**
+     * Gets the tracks that exist in only one compared playlist.
+     *
+     * @return list of tracks
+     */
+    public List<Track> getOneTracks()
+    {
+        BitSet oneTracks = (BitSet) oneOrMoreTracks.clone();
+        oneTracks.andNot(twoOrMoreTracks);
+
+        return createTrackList(oneTracks);
+    }
+
+    /**
+     * Gets the tracks that exist in at least two compared playlists. These
+     * are the tracks shared by any pair of the playlists.
+     *
+     * @return list of tracks
+     */
+    public List<Track> getSharedTracks()
+    {
+        return createTrackList(twoOrMoreTracks);
+    }
+
+    /**
+     * Gets the names of the compared playlists that contain a track. Every
+     * pair of these playlists shares the track.
+     *
+     * @param track track
+     * @return list of playlist names, in the order the playlists were added
+     */
+    public List<String> getSharingPlaylists(Track track)
+    {
+        if (track == null)
+        {
+            throw new IllegalArgumentException("track argument is null");
+        }
+
+        List<String> sharingPlaylists = new ArrayList<String>();
+
+        int index = Database.getTrackIndex(track.getID());
+        if (index >= 0)
+        {
+            for (int i = 0; i < numPlaylists; i++)
+            {
+                if (playlistTrackSets.get(i).get(index) == true)
+                {
+                    sharingPlaylists.add(playlistNames.get(i));
+                }
+            }
+        }
+
+        return sharingPlaylists;
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Create a list of the tracks for a bit set of track indexes.
+     */
+    private static List<Track> createTrackList(BitSet trackIndexes)
+    {
+        List<Track> allTracks = Database.getTracks();
+        List<Track> trackList = new ArrayList<Track>(trackIndexes.cardinality());
+
+        for (int index = trackIndexes.nextSetBit(0); index >= 0; index = trackIndexes.nextSetBit(index + 1))
+        {
+            trackList.add(allTracks.get(index));
+        }
+
+        /*
+         * The tracks are added in sorted order, so setting the comparator only checks the
+         * order. It's needed for any tracks added later.
+         */
+        trackList.setComparator(new Comparator<Track>()
+        {
+            @Override
+            public int compare(Track t1, Track t2)
+            {
+                return t1.compareTo(t2);
+            }
+        });
+
+        return trackList;
+    }
+}
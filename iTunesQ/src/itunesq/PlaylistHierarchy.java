@@ -0,0 +1,232 @@
+package itunesq;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+
+/**
+ * Class that represents the hierarchy of playlists, as defined by the parent
+ * persistent ID of each playlist.
+ * <p>
+ * The hierarchy is built once from the playlists, and never changes after
+ * that. It holds the following for each playlist, so that operations on the
+ * playlist tree don't have to rediscover it by walking parent IDs:
+ * <ul>
+ * <li>The child playlists, in the order of the playlists map.</li>
+ * <li>The ancestor playlists, starting with the parent. The ancestors of a
+ * playlist are its parent followed by the ancestors of its parent, so they're
+ * computed top down, once per playlist.</li>
+ * <li>The depth, which is the number of ancestors.</li>
+ * </ul>
+ * Playlists whose parent is not in the collection are roots of the
+ * hierarchy. Playlists that are only reachable through a cycle of parent IDs
+ * are treated as having no ancestors.
+ * <p>
+ * The hierarchy refers to playlist objects, so it must be rebuilt whenever
+ * the playlists change.
+ *
+ * @author Jon
+ *
+ */
+public class PlaylistHierarchy
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private List<Playlist> rootPlaylists;
+
+    /*
+     * Child and ancestor playlists, indexed by persistent ID. Playlists without children
+     * have no entry in the child map.
+     */
+    private Map<String, List<Playlist>> childPlaylists;
+    private Map<String, List<Playlist>> ancestorPlaylists;
+
+    /**
+     * Class constructor for an empty hierarchy.
+     */
+    public PlaylistHierarchy()
+    {
+        rootPlaylists = new ArrayList<Playlist>();
+        childPlaylists = new HashMap<String, List<Playlist>>();
+        ancestorPlaylists = new HashMap<String, List<Playlist>>();
+    }
+
+    /**
+     * Class constructor. This builds the hierarchy from a collection of
+     * playlists.
+     *
+     * @param playlists map of playlist persistent ID to playlist
+     */
+    public PlaylistHierarchy(Map<String, Playlist> playlists)
+    {
+        this();
+
+        if (playlists == null)
+        {
+            throw new IllegalArgumentException("playlists argument is null");
+        }
+
+        /*
+         * Walk through all playlists, collecting the children of each parent.
+         */
+        for (String playlistKey : playlists)
+        {
+            Playlist playlistObj = playlists.get(playlistKey);
+
+            String parentID = playlistObj.getParentPersistentID();
+            if (parentID != null && playlists.containsKey(parentID))
+            {
+                List<Playlist> children = childPlaylists.get(parentID);
+                if (children == null)
+                {
+                    children = new ArrayList<Playlist>();
+                    childPlaylists.put(parentID, children);
+                }
+                children.add(playlistObj);
+            }
+            else
+            {
+                rootPlaylists.add(playlistObj);
+            }
+        }
+
+        /*
+         * Compute the ancestors top down, starting with the roots. The work list grows as
+         * the children of each playlist are reached.
+         */
+        List<Playlist> workList = new ArrayList<Playlist>();
+        for (Playlist playlistObj : rootPlaylists)
+        {
+            ancestorPlaylists.put(playlistObj.getPersistentID(), new ArrayList<Playlist>());
+            workList.add(playlistObj);
+        }
+
+        for (int i = 0; i < workList.getLength(); i++)
+        {
+            Playlist parent = workList.get(i);
+            List<Playlist> children = childPlaylists.get(parent.getPersistentID());
+            if (children == null)
+            {
+                continue;
+            }
+
+            List<Playlist> parentAncestors = ancestorPlaylists.get(parent.getPersistentID());
+            for (Playlist child : children)
+            {
+                List<Playlist> ancestors = new ArrayList<Playlist>(parentAncestors.getLength() + 1);
+                ancestors.add(parent);
+                for (Playlist ancestor : parentAncestors)
+                {
+                    ancestors.add(ancestor);
+                }
+
+                ancestorPlaylists.put(child.getPersistentID(), ancestors);
+                workList.add(child);
+            }
+        }
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the root playlists, which are the playlists without a parent.
+     *
+     * @return list of root playlists
+     */
+    public List<Playlist> getRootPlaylists()
+    {
+        return rootPlaylists;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Gets the child playlists of a playlist.
+     *
+     * @param persistentID persistent ID of the playlist
+     * @return list of child playlists, which is empty if the playlist has no
+     * children
+     */
+    public List<Playlist> getChildPlaylists(String persistentID)
+    {
+        List<Playlist> children = childPlaylists.get(persistentID);
+
+        return (children != null) ? children : new ArrayList<Playlist>();
+    }
+
+    /**
+     * Gets the number of child playlists of a playlist.
+     *
+     * @param persistentID persistent ID of the playlist
+     * @return number of child playlists
+     */
+    public int getChildCount(String persistentID)
+    {
+        List<Playlist> children = childPlaylists.get(persistentID);
+
+        return (children != null) ? children.getLength() : 0;
+    }
+
+    /**
+     * Gets the ancestor playlists of a playlist.
+     *
+     * @param persistentID persistent ID of the playlist
+     * @return list of ancestor playlists, starting with the parent, which is
+     * empty if the playlist has no parent
+     */
+    public List<Playlist> getAncestors(String persistentID)
+    {
+        List<Playlist> ancestors = ancestorPlaylists.get(persistentID);
+
+        return (ancestors != null) ? ancestors : new ArrayList<Playlist>();
+    }
+
+    /**
+     * Gets the parent playlist of a playlist.
+     *
+     * @param persistentID persistent ID of the playlist
+     * @return parent playlist, or null if the playlist has no parent
+     */
+    public Playlist getParent(String persistentID)
+    {
+        List<Playlist> ancestors = ancestorPlaylists.get(persistentID);
+
+        return (ancestors != null && ancestors.getLength() > 0) ? ancestors.get(0) : null;
+    }
+
+    /**
+     * Gets the depth of a playlist in the hierarchy.
+     *
+     * @param persistentID persistent ID of the playlist
+     * @return depth, which is 0 for a root playlist
+     */
+    public int getDepth(String persistentID)
+    {
+        List<Playlist> ancestors = ancestorPlaylists.get(persistentID);
+
+        return (ancestors != null) ? ancestors.getLength() : 0;
+    }
+
+    /**
+     * Determines if a playlist is a descendant of another playlist.
+     *
+     * @param persistentID persistent ID of the playlist
+     * @param ancestorID persistent ID of the possible ancestor
+     * @return <code>true</code> if the playlist is a descendant, otherwise
+     * <code>false</code>
+     */
+    public boolean isDescendant(String persistentID, String ancestorID)
+    {
+        for (Playlist ancestor : getAncestors(persistentID))
+        {
+            if (ancestor.getPersistentID().equals(ancestorID))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -1,8 +1,12 @@
 package itunesq;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Set;
 import org.apache.pivot.wtk.content.TreeBranch;
 import org.apache.pivot.wtk.content.TreeNode;
 import org.slf4j.LoggerFactory;
@@ -23,6 +27,12 @@ import ch.qos.logback.classic.Logger;
  * <p>
  * There is no limit to the level of nesting of <code>TreeBranch</code> objects
  * in the tree (he says optimistically).
+ * <p>
+ * The tree is built in a single pass over the playlists, using the parents
+ * from the playlist hierarchy. The branch of each folder playlist is created
+ * once, the first time the folder or one of its descendants is reached, and
+ * each branch is sorted once at the end. The tree is cached until the
+ * playlists are reloaded or the ignored playlists change.
  * 
  * @author Jon
  *
@@ -37,9 +47,29 @@ public final class PlaylistTree
     private static Logging logging = Logging.getInstance();
 
     /*
-     * Map of Playlist objects, indexed by the persistent playlist ID.
+     * Hierarchy of the playlists, which gives the parent of each playlist.
+     */
+    private static PlaylistHierarchy hierarchy = null;
+
+    /*
+     * Branches created while building the tree:
+     * 
+     * - The branch of each folder playlist, indexed by persistent ID. Folders that are
+     *   left out of the tree, because they or one of their parents are ignored, are in
+     *   the excluded set instead.
+     * - The folder branches in each branch, indexed by the persistent ID of the branch
+     *   (the empty string for the top branch), and then by name. Folders with the same
+     *   name in the same branch share a branch.
+     */
+    private static Map<String, TreeBranch> folderBranches = null;
+    private static Set<String> excludedFolders = null;
+    private static Map<String, Map<String, TreeBranch>> branchFolders = null;
+
+    /*
+     * The cached tree, and the hierarchy it was built from.
      */
-    private static Map<String, Playlist> playlists = null;
+    private static TreeBranch cachedTree = null;
+    private static PlaylistHierarchy cachedHierarchy = null;
 
     /**
      * Class constructor.
@@ -59,7 +89,9 @@ public final class PlaylistTree
     }
 
     /**
-     * Creates the tree of playlists.
+     * Creates the tree of playlists. The tree is cached, so it's only built
+     * again if the playlists or the ignored playlists have changed since it
+     * was last built.
      * 
      * @return tree branch of all playlists
      */
@@ -67,28 +99,40 @@ public final class PlaylistTree
     {
         logger.trace("createPlaylistTree");
 
+        /*
+         * A reload of the playlists creates a new hierarchy.
+         */
+        hierarchy = Database.getPlaylistHierarchy();
+        if (cachedTree != null && cachedHierarchy == hierarchy)
+        {
+            logger.debug("using cached playlist tree");
+            return cachedTree;
+        }
+
         /*
          * Initialize the top branch.
          */
         TreeBranch topBranch = new TreeBranch();
+        folderBranches = new HashMap<String, TreeBranch>();
+        excludedFolders = new HashSet<String>();
+        branchFolders = new HashMap<String, Map<String, TreeBranch>>();
 
         /*
-         * Get the playlists into a map, and sort it by persistent ID.
+         * Get the playlist IDs, and sort them.
          */
-        playlists = Database.getPlaylists();
-        playlists.setComparator(new Comparator<String>()
+        Map<String, Playlist> playlists = Database.getPlaylists();
+        String[] playlistIDs = new String[playlists.getCount()];
+        int numPlaylists = 0;
+        for (String playlistKey : playlists)
         {
-            @Override
-            public int compare(String key1, String key2)
-            {
-                return key1.compareTo(key2);
-            }
-        });
+            playlistIDs[numPlaylists++] = playlistKey;
+        }
+        Arrays.sort(playlistIDs);
 
         /*
-         * Now walk the map, and build the tree.
+         * Now walk the playlists, and build the tree.
          */
-        for (String playlistKey : playlists)
+        for (String playlistKey : playlistIDs)
         {
             Playlist playlistObj = playlists.get(playlistKey);
 
@@ -101,205 +145,141 @@ public final class PlaylistTree
             }
 
             /*
-             * If the playlist has no parent, it's either a top-level playlist, or a vanilla
-             * one.
+             * Add a folder playlist, unless it already exists. It may have been added
+             * already when we found one of its children.
              */
-            if (playlistObj.getParentPersistentID() == null)
+            if (playlistObj.getFolderContentCount() > 0)
             {
-                logger.debug("found playlist without parent '" + playlistObj.getName() + "'");
-
-                /*
-                 * For a top level playlist, we only want to add it if it doesn't already exist.
-                 * It may have been added already when we found a vanilla playlist with this one
-                 * as parent.
-                 */
-                if (playlistObj.getFolderContentCount() > 0)
-                {
-                    TreeBranch playlist = new TreeBranch(playlistObj.getName());
-                    playlist.setUserData(playlistObj.getPersistentID());
-                    if (indexOfBranchParent(topBranch, playlist) == -1)
-                    {
-                        logger.debug("adding top level playlist '" + playlistObj.getName() + "'");
-                        topBranch.add(playlist);
-                    }
-                }
-
-                /*
-                 * Just add a vanilla playlist. We don't expect any duplicates, so don't check.
-                 */
-                else
-                {
-                    logger.debug("adding vanilla playlist '" + playlistObj.getName() + "'");
-                    TreeNode node = new TreeNode(playlistObj.getName());
-                    node.setUserData(playlistObj.getPersistentID());
-                    topBranch.add(node);
-                }
+                getFolderBranch(topBranch, playlistObj);
             }
 
             /*
-             * The playlist has a parent, so add or update the parent, recursively.
+             * Just add a vanilla playlist, unless one of its parents is ignored. We don't
+             * expect any duplicates, so don't check.
              */
             else
             {
-                addOrUpdateParent(topBranch, playlistObj);
+                TreeBranch parentBranch = getParentBranch(topBranch, playlistObj);
+                if (parentBranch != null)
+                {
+                    logger.debug("adding playlist '" + playlistObj.getName() + "'");
+                    TreeNode node = new TreeNode(playlistObj.getName());
+                    node.setUserData(playlistObj.getPersistentID());
+                    parentBranch.add(node);
+                }
             }
         }
 
         /*
-         * Sort and return the top branch.
+         * Sort all branches.
          */
-        topBranch.setComparator(new TreeNodeComparator());
+        sortBranch(topBranch);
+
+        logger.info("built playlist tree from " + numPlaylists + " playlists");
+
+        cachedTree = topBranch;
+        cachedHierarchy = hierarchy;
+
+        folderBranches = null;
+        excludedFolders = null;
+        branchFolders = null;
+
         return topBranch;
     }
 
+    /**
+     * Discards the cached tree of playlists. This must be called if the
+     * ignored status of any playlist changes.
+     */
+    public static void invalidatePlaylistTree()
+    {
+        logger.trace("invalidatePlaylistTree");
+
+        cachedTree = null;
+        cachedHierarchy = null;
+    }
+
     // ---------------- Private methods -------------------------------------
 
     /*
-     * Recursively add or update a parent branch with a playlist.
+     * Get the branch to add a playlist to, which is either the top branch or the branch of
+     * its parent. Returns null if one of the parents is ignored.
      */
-    private static TreeBranch addOrUpdateParent(TreeBranch enclosingBranch, Playlist playlistObj)
+    private static TreeBranch getParentBranch(TreeBranch topBranch, Playlist playlistObj)
     {
-        logger.trace("addOrUpdateParent");
+        Playlist parent = hierarchy.getParent(playlistObj.getPersistentID());
 
-        TreeBranch searchBranch = enclosingBranch;
+        return (parent != null) ? getFolderBranch(topBranch, parent) : topBranch;
+    }
 
-        /*
-         * Find the parent playlist in the map.
-         */
-        Playlist parent = playlists.get(playlistObj.getParentPersistentID());
+    /*
+     * Get the branch of a folder playlist, adding it and the branches of its parents to
+     * the tree if they don't exist yet. Returns null if the folder or one of its parents
+     * is ignored.
+     */
+    private static TreeBranch getFolderBranch(TreeBranch topBranch, Playlist folder)
+    {
+        String folderID = folder.getPersistentID();
+
+        TreeBranch folderBranch = folderBranches.get(folderID);
+        if (folderBranch != null || excludedFolders.contains(folderID))
+        {
+            return folderBranch;
+        }
 
         TreeBranch parentBranch = null;
+        if (folder.getIgnored() == false)
+        {
+            parentBranch = getParentBranch(topBranch, folder);
+        }
+
+        if (parentBranch == null)
+        {
+            excludedFolders.add(folderID);
+            return null;
+        }
 
         /*
-         * Only continue if the parent is not ignored.
+         * Add the folder to the parent branch, unless a folder with this name already
+         * exists there.
          */
-        if (parent.getIgnored() == false)
+        String parentKey = (parentBranch == topBranch) ? "" : (String) parentBranch.getUserData();
+        Map<String, TreeBranch> parentFolders = branchFolders.get(parentKey);
+        if (parentFolders == null)
         {
+            parentFolders = new HashMap<String, TreeBranch>();
+            branchFolders.put(parentKey, parentFolders);
+        }
 
-            /*
-             * If the parent itself also has a parent, recurse. Upon return, the intermediate
-             * parent has been added to its parent. Update the search branch to be that of 
-             * the intermediate parent so we can add this playlist to the intermediate parent.
-             */
-            if (parent.getParentPersistentID() != null)
-            {
-                logger.debug("recursing for playlist '" + playlistObj.getName() + "'");
-                searchBranch = addOrUpdateParent(searchBranch, parent);
-            }
-
-            /*
-             * A null search branch means we found a parent that is ignored, meaning we're done.
-             */
-            if (searchBranch != null)
-            {
-
-                /*
-                 * Create a node or branch to represent this playlist and a branch to represent the parent.
-                 */
-                TreeNode node;
-                if (playlistObj.getFolderContentCount() == 0)
-                {
-                    node = new TreeNode(playlistObj.getName());
-                }
-                else
-                {
-                    node = new TreeBranch(playlistObj.getName());
-                }
-                node.setUserData(playlistObj.getPersistentID());
-                parentBranch = new TreeBranch(parent.getName());
-                parentBranch.setUserData(parent.getPersistentID());
-
-                /*
-                 * If the parent branch does not exist in the search branch, then add it.
-                 */
-                int parentIndex = indexOfBranchParent(searchBranch, parentBranch);
-                if (parentIndex == -1)
-                {
-                    logger.debug("adding playlist '" + playlistObj.getName() + "'");
-                    parentBranch.add(node);
-                    logger.debug("adding parent playlist '" + parent.getName() + "'");
-                    searchBranch.add(parentBranch);
-                }
-
-                /*
-                 * The parent exists in the search branch.
-                 */
-                else
-                {
-
-                    /*
-                     * Get the parent branch.
-                     */
-                    parentBranch = (TreeBranch) searchBranch.get(parentIndex);
-
-                    /*
-                     * If the playlist node we're working on is a folder, then we only want to add it 
-                     * to the parent if it doesn't already exist.
-                     */
-                    if (node instanceof TreeBranch)
-                    {
-                        int nodeIndex = indexOfBranchParent(parentBranch, (TreeBranch) node);
-                        if (nodeIndex == -1)
-                        {
-                            logger.debug("adding playlist '" + playlistObj.getName() + "'");
-                            parentBranch.add(node);
-                            parentBranch.setComparator(new TreeNodeComparator());
-                        }
-                    }
-
-                    /*
-                     * Just add a vanilla playlist.
-                     */
-                    else
-                    {
-                        logger.debug("adding playlist '" + playlistObj.getName() + "'");
-                        parentBranch.add(node);
-                        parentBranch.setComparator(new TreeNodeComparator());
-                    }
-                }
-            }
+        folderBranch = parentFolders.get(folder.getName());
+        if (folderBranch == null)
+        {
+            logger.debug("adding folder playlist '" + folder.getName() + "'");
+            folderBranch = new TreeBranch(folder.getName());
+            folderBranch.setUserData(folderID);
+            parentBranch.add(folderBranch);
+            parentFolders.put(folder.getName(), folderBranch);
         }
 
-        return parentBranch;
+        folderBranches.put(folderID, folderBranch);
+
+        return folderBranch;
     }
 
     /*
-     * Get the index of a parent branch from a given branch, if it exists.
+     * Sort a branch and all branches below it.
      */
-    private static int indexOfBranchParent(TreeBranch searchBranch, TreeBranch parentBranch)
+    private static void sortBranch(TreeBranch branch)
     {
-        logger.trace("indexOfBranchParent");
-
-        int index = 0;
+        branch.setComparator(new TreeNodeComparator());
 
-        /*
-         * Loop through the search branch.
-         */
-        int length = searchBranch.getLength();
-        while (index < length)
+        for (TreeNode node : branch)
         {
-
-            /*
-             * We only care if the playlist name matches. Nothing else in playlist matters.
-             */
-            TreeNode node = searchBranch.get(index);
-            if (parentBranch.getText().equals(node.getText()))
+            if (node instanceof TreeBranch)
             {
-                break;
+                sortBranch((TreeBranch) node);
             }
-
-            index++;
         }
-
-        /*
-         * We did not find a match.
-         */
-        if (index == length)
-        {
-            index = -1;
-        }
-
-        return index;
     }
 
     // ---------------- Nested classes --------------------------------------
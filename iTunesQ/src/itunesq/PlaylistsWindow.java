@@ -25,6 +25,7 @@ import org.apache.pivot.wtk.TableViewSortListener;
 import org.apache.pivot.wtk.TreeView;
 import org.apache.pivot.wtk.TreeViewSelectionListener;
 import org.apache.pivot.wtk.Window;
+import org.apache.pivot.wtk.content.TreeBranch;
 import org.apache.pivot.wtk.content.TreeNode;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +48,7 @@ public class PlaylistsWindow
     private Skins skins = null;
     private Logger uiLogger = null;
     private Logger playlistLogger = null;
+    private LibraryWatcher.ReloadListener reloadListener = null;
 
     /*
      * BXML variables.
@@ -148,6 +150,19 @@ public class PlaylistsWindow
          */
         playlistsTreeView.setTreeData(PlaylistTree.createPlaylistTree());
 
+        /*
+         * Refresh the playlists if the input file is reloaded while the window is open.
+         */
+        reloadListener = new LibraryWatcher.ReloadListener()
+        {
+            @Override
+            public void libraryReloaded()
+            {
+                refreshPlaylists();
+            }
+        };
+        LibraryWatcher.addReloadListener(reloadListener);
+
         /*
          * Add widget texts.
          */
@@ -183,6 +198,24 @@ public class PlaylistsWindow
 
     // ---------------- Private methods -------------------------------------
 
+    /*
+     * Refresh the playlists after the input file has been reloaded. The selected playlist
+     * might no longer exist, so the selection and its tracks are cleared.
+     */
+    private void refreshPlaylists()
+    {
+        uiLogger.trace("refreshPlaylists: " + this.hashCode());
+
+        numPlaylistsLabel.setText(StringConstants.PLAYLIST_NUMBER + Database.getNumberOfPlaylists());
+        numTracksLabel.setText("");
+        totalTimeLabel.setText("");
+
+        playlistsTreeView.setTreeData(PlaylistTree.createPlaylistTree());
+        playlistTracksTableView.setTableData(new ArrayList<HashMap<String, String>>());
+
+        playlistsWindow.repaint(true);
+    }
+
     /*
      * Set up the various event handlers.
      */
@@ -200,6 +233,17 @@ public class PlaylistsWindow
             {
                 uiLogger.info("done button pressed");
 
+                /*
+                 * We no longer care about the input file being reloaded.
+                 */
+                LibraryWatcher.removeReloadListener(reloadListener);
+
+                /*
+                 * The playlist tree is cached and shared by all playlists windows, so detach it
+                 * from this one.
+                 */
+                playlistsTreeView.setTreeData(new TreeBranch());
+
                 /*
                  * Close the window.
                  */
@@ -229,9 +273,14 @@ public class PlaylistsWindow
                 List<HashMap<String, String>> displayTracks = new ArrayList<HashMap<String, String>>();
 
                 /*
-                 * Get the selected playlist ID.
+                 * Get the selected playlist ID. There is no selected node if the tree has been
+                 * refreshed.
                  */
                 TreeNode node = (TreeNode) treeView.getSelectedNode();
+                if (node == null)
+                {
+                    return;
+                }
                 String playlistID = (String) node.getUserData();
 
                 /*
@@ -243,7 +292,7 @@ public class PlaylistsWindow
                 /*
                  * Get the track IDs for the selected playlist into a set.
                  */
-                List<Integer> trackIDs = playlist.getTracks();
+                TrackIDSequence trackIDs = playlist.getTracks();
 
                 /*
                  * Walk the list of track IDs for the selected playlist.
@@ -254,13 +303,14 @@ public class PlaylistsWindow
                 {
                     int trackNum = 0;
 
-                    for (Integer trackID : trackIDs)
+                    for (int i = 0; i < trackIDs.getLength(); i++)
                     {
+                        int trackID = trackIDs.get(i);
 
                         /*
                          * Get the track for this track ID.
                          */
-                        Integer trackIndex = Database.getTracksMap().get(trackID);
+                        int trackIndex = Database.getTrackIndex(trackID);
                         Track track = Database.getTracks().get(trackIndex);
 
                         playlistLogger.debug("track ID " + trackID + ", index " + trackIndex + ", name "
@@ -0,0 +1,290 @@
+package itunesq;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Class that provides a forward-only, streaming view of an iTunes property
+ * list (plist) XML file.
+ * <p>
+ * This is a thin wrapper around a StAX <code>XMLStreamReader</code>. It only
+ * surfaces element boundaries and element text, which is all the plist format
+ * needs, and keeps track of the location of the current element so errors can
+ * be reported with a line and column. Nothing is retained after the reader
+ * moves past an element, so memory use does not depend on the size of the
+ * file.
+ * <p>
+ * All errors are reported by throwing an <code>XMLProcessingException</code>.
+ *
+ * @author Jon
+ *
+ */
+public class PlistStreamReader
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private InputStream inputStream;
+    private XMLStreamReader reader;
+
+    /*
+     * Location of the most recent start or end element.
+     */
+    private int line;
+    private int column;
+
+    /*
+     * Number of lines that precede the input, when it's only part of a file.
+     */
+    private int lineOffset;
+
+    /*
+     * Size of the input buffer. The default of 8K is too small for large
+     * library files.
+     */
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Class constructor.
+     *
+     * @param fileName name of the plist file to read
+     * @throws IOException If an error occurs trying to open the file.
+     */
+    public PlistStreamReader(String fileName)
+            throws IOException
+    {
+        this(new BufferedInputStream(new FileInputStream(fileName), INPUT_BUFFER_SIZE), 1);
+    }
+
+    /**
+     * Class constructor that reads from an input stream, for example part of
+     * a file. The stream is closed when the reader is closed.
+     *
+     * @param inputStream input stream to read
+     * @param firstLine line number of the start of the input, used when
+     * reporting errors
+     * @throws IOException If an error occurs trying to close the stream after
+     * a failure.
+     */
+    public PlistStreamReader(InputStream inputStream, int firstLine)
+            throws IOException
+    {
+        if (inputStream == null)
+        {
+            throw new IllegalArgumentException("inputStream argument is null");
+        }
+
+        this.inputStream = inputStream;
+        lineOffset = firstLine - 1;
+
+        /*
+         * The plist DTD reference is a remote URL, so we don't want the parser
+         * to try and resolve it. We don't validate against it anyway.
+         */
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        try
+        {
+            reader = factory.createXMLStreamReader(inputStream);
+        }
+        catch (XMLStreamException e)
+        {
+            inputStream.close();
+            throw handleStreamError(e);
+        }
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the line number of the current element.
+     *
+     * @return line number
+     */
+    public int getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Gets the column number of the current element.
+     *
+     * @return column number
+     */
+    public int getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * Gets the local name of the current element.
+     *
+     * @return element name
+     */
+    public String getName()
+    {
+        return reader.getLocalName();
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Advances to the next start or end element, skipping everything else.
+     *
+     * @return <code>true</code> if positioned on a start element,
+     * <code>false</code> if positioned on an end element
+     */
+    public boolean nextTag()
+    {
+        try
+        {
+            while (reader.hasNext())
+            {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT
+                        || event == XMLStreamConstants.END_ELEMENT)
+                {
+                    saveLocation();
+                    return event == XMLStreamConstants.START_ELEMENT;
+                }
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            throw handleStreamError(e);
+        }
+
+        throw new XMLProcessingException(line, column, "unexpected end of file");
+    }
+
+    /**
+     * Advances to the next start element, which must be named as specified.
+     *
+     * @param elementName expected element name
+     */
+    public void requireStart(String elementName)
+    {
+        if (nextTag() == false || !getName().equals(elementName))
+        {
+            throw new XMLProcessingException(line, column,
+                    "could not find <" + elementName + "> element");
+        }
+    }
+
+    /**
+     * Reads the text of the current element, which must be a start element
+     * containing only text, and trims it. The reader is left positioned on the
+     * corresponding end element.
+     *
+     * @return trimmed element text
+     */
+    public String getElementTextTrim()
+    {
+        try
+        {
+            String text = reader.getElementText().trim();
+            saveLocation();
+            return text;
+        }
+        catch (XMLStreamException e)
+        {
+            throw handleStreamError(e);
+        }
+    }
+
+    /**
+     * Skips the current element, which must be a start element, including all
+     * its children. The reader is left positioned on the corresponding end
+     * element.
+     */
+    public void skipElement()
+    {
+        int depth = 1;
+
+        try
+        {
+            while (depth > 0 && reader.hasNext())
+            {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                    depth++;
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT)
+                {
+                    depth--;
+                }
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            throw handleStreamError(e);
+        }
+
+        if (depth > 0)
+        {
+            throw new XMLProcessingException(line, column, "unexpected end of file");
+        }
+        saveLocation();
+    }
+
+    /**
+     * Closes the reader and the underlying file.
+     *
+     * @throws IOException If an error occurs trying to close the file.
+     */
+    public void close()
+            throws IOException
+    {
+        try
+        {
+            reader.close();
+        }
+        catch (XMLStreamException e)
+        {
+
+            /*
+             * Nothing useful to do here, we still want to close the file.
+             */
+        }
+        inputStream.close();
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Save the location of the current event.
+     */
+    private void saveLocation()
+    {
+        Location location = reader.getLocation();
+        line = location.getLineNumber() + lineOffset;
+        column = location.getColumnNumber();
+    }
+
+    /*
+     * Convert a StAX exception into an XMLProcessingException.
+     */
+    private XMLProcessingException handleStreamError(XMLStreamException e)
+    {
+        Location location = e.getLocation();
+        if (location != null)
+        {
+            line = location.getLineNumber() + lineOffset;
+            column = location.getColumnNumber();
+        }
+
+        return new XMLProcessingException(line, column, e.getMessage());
+    }
+}
@@ -10,8 +10,10 @@ import java.util.Iterator;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Set;
 import org.slf4j.LoggerFactory;
 
 import com.cedarsoftware.util.io.JsonReader;
@@ -63,6 +65,8 @@ public final class Preferences
      * Variables for the actual preferences we want to serialize.
      * 
      * - input file name 
+     * - watch input file flag
+     * - parallel track parsing flag
      * - list of bypass playlist preferences 
      * - list of ignored playlist preferences 
      * - various track column sets 
@@ -74,6 +78,8 @@ public final class Preferences
      * - artist alternate name overrides
      */
     private String inputFileName;
+    private boolean watchInputFile;
+    private boolean parallelTrackParsing;
     private List<BypassPreference> bypassPrefs;
     private List<String> ignoredPrefs;
     private List<List<String>> trackColumnsFullView;
@@ -126,6 +132,22 @@ public final class Preferences
     private transient Logger uiLogger = null;
     private transient Logger artistLogger = null;
 
+    /*
+     * Indexes of the bypass and ignored playlist preferences by playlist name. These are
+     * rebuilt whenever the preferences are replaced. For a bypass preference the first one
+     * in the list for a playlist wins.
+     */
+    private transient Map<String, BypassPreference> bypassPrefsIndex = null;
+    private transient Set<String> ignoredPrefsIndex = null;
+
+    /*
+     * Index of the artist overrides by override type and alternate artist name. This is
+     * rebuilt whenever the overrides change. The first override in the list for an alternate
+     * and type wins.
+     */
+    private transient Map<ArtistAlternateNameOverride.OverrideType, 
+            Map<String, ArtistAlternateNameOverride>> artistOverridesIndex = null;
+
     /*
      * Constructor. Making it private prevents instantiation by any other class.
      */
@@ -141,6 +163,8 @@ public final class Preferences
          */
         bypassPrefs = new ArrayList<BypassPreference>();
         ignoredPrefs = new ArrayList<String>(Playlist.DEFAULT_IGNORED_PLAYLISTS);
+        indexBypassPrefs();
+        indexIgnoredPrefs();
 
         maxLogHistory = InternalConstants.DEFAULT_MAX_HISTORY;
 
@@ -158,6 +182,7 @@ public final class Preferences
                 return o1.compareTo(o2);
             }
         });
+        indexArtistOverrides();
     }
 
     // ---------------- Getters and setters ---------------------------------
@@ -182,6 +207,50 @@ public final class Preferences
         inputFileName = inputFile;
     }
 
+    /**
+     * Gets the watch input file preference.
+     * 
+     * @return <code>true</code> if the input file should be reloaded
+     * automatically when it changes
+     */
+    public boolean getWatchInputFile()
+    {
+        return watchInputFile;
+    }
+
+    /**
+     * Sets the watch input file preference.
+     * 
+     * @param watch <code>true</code> if the input file should be reloaded
+     * automatically when it changes
+     */
+    public void setWatchInputFile(boolean watch)
+    {
+        this.watchInputFile = watch;
+    }
+
+    /**
+     * Gets the parallel track parsing preference.
+     * 
+     * @return <code>true</code> if the tracks in an XML input file should be
+     * parsed in parallel
+     */
+    public boolean getParallelTrackParsing()
+    {
+        return parallelTrackParsing;
+    }
+
+    /**
+     * Sets the parallel track parsing preference.
+     * 
+     * @param parallel <code>true</code> if the tracks in an XML input file
+     * should be parsed in parallel
+     */
+    public void setParallelTrackParsing(boolean parallel)
+    {
+        this.parallelTrackParsing = parallel;
+    }
+
     /**
      * Gets the list of bypass playlist preferences.
      * 
@@ -202,6 +271,29 @@ public final class Preferences
         return ignoredPrefs;
     }
 
+    /**
+     * Gets the bypass playlist preference for a playlist.
+     * 
+     * @param playlistName playlist name
+     * @return bypass playlist preference, or null if the playlist has none
+     */
+    public BypassPreference getBypassPref(String playlistName)
+    {
+        return bypassPrefsIndex.get(playlistName);
+    }
+
+    /**
+     * Determines if there is an ignored playlist preference for a playlist.
+     * 
+     * @param playlistName playlist name
+     * @return <code>true</code> if the playlist is in the ignored playlist
+     * preferences, otherwise <code>false</code>
+     */
+    public boolean isIgnoredPref(String playlistName)
+    {
+        return ignoredPrefsIndex.contains(playlistName);
+    }
+
     /**
      * Gets the list of full tracks column preferences.
      * 
@@ -449,6 +541,7 @@ public final class Preferences
         {
             this.bypassPrefs.add(bypassPref);
         }
+        indexBypassPrefs();
     }
 
     /**
@@ -470,6 +563,7 @@ public final class Preferences
         {
             this.ignoredPrefs.add(ignoredPref);
         }
+        indexIgnoredPrefs();
     }
 
     /**
@@ -619,6 +713,8 @@ public final class Preferences
             override.addAlternateArtist(alternateArtist);
             artistOverrides.add(override);
         }
+
+        indexArtistOverrides();
     }
 
     /**
@@ -657,6 +753,8 @@ public final class Preferences
                 break;
             }
         }
+
+        indexArtistOverrides();
     }
     
     /**
@@ -673,31 +771,40 @@ public final class Preferences
     {
         uiLogger.trace("getArtistOverridePrimaryName: " + this.hashCode());
         
-        ArtistAlternateNameOverride result = null;
+        Map<String, ArtistAlternateNameOverride> typeIndex = artistOverridesIndex.get(type);
+
+        return (typeIndex != null) ? typeIndex.get(alternateArtist) : null;
+    }
+
+    /**
+     * Rebuilds the index used to look up artist overrides. This is done by
+     * all methods that change the overrides, but must be called after
+     * changing the list of overrides returned by 
+     * <code>getArtistOverrides</code> directly.
+     */
+    public void indexArtistOverrides()
+    {
+        artistOverridesIndex = new HashMap<ArtistAlternateNameOverride.OverrideType, 
+                Map<String, ArtistAlternateNameOverride>>();
 
         for (ArtistAlternateNameOverride override : artistOverrides)
         {
-            List<String> altNames = override.getAlternateArtists();
-
-            for (String alternateName : altNames)
+            Map<String, ArtistAlternateNameOverride> typeIndex = 
+                    artistOverridesIndex.get(override.getOverrideType());
+            if (typeIndex == null)
             {
-                if (alternateName.equals(alternateArtist))
-                {
-                    if (type == override.getOverrideType())
-                    {
-                    	result = override;
-                        break;
-                    }
-                }
+                typeIndex = new HashMap<String, ArtistAlternateNameOverride>();
+                artistOverridesIndex.put(override.getOverrideType(), typeIndex);
             }
 
-            if (result != null)
+            for (String alternateName : override.getAlternateArtists())
             {
-                break;
+                if (typeIndex.containsKey(alternateName) == false)
+                {
+                    typeIndex.put(alternateName, override);
+                }
             }
         }
-        
-        return result;
     }
 
     /**
@@ -829,6 +936,8 @@ public final class Preferences
         }
 
         this.inputFileName = prefs.inputFileName;
+        this.watchInputFile = prefs.watchInputFile;
+        this.parallelTrackParsing = prefs.parallelTrackParsing;
         if (prefs.bypassPrefs != null)
         {
             replaceBypassPrefs(prefs.bypassPrefs);
@@ -867,6 +976,7 @@ public final class Preferences
         if (prefs.artistOverrides != null)
         {
             this.artistOverrides = prefs.artistOverrides;
+            indexArtistOverrides();
         }
     }
 
@@ -914,6 +1024,11 @@ public final class Preferences
                     throw new InternalErrorException(true, "unknown override type name '" + typeName + "'");
         		}
         	}
+
+            /*
+             * The override index isn't serialized, so build it now that the types are restored.
+             */
+            prefs.indexArtistOverrides();
         }
         catch (FileNotFoundException e)
         {
@@ -1031,6 +1146,18 @@ public final class Preferences
             output.append(indent + inputFileName + lineSeparator);
         }
 
+        /*
+         * Watch input file.
+         */
+        output.append(String.format("%2d", ++itemNum) + ") " + "Watch input file:" + lineSeparator);
+        output.append(indent + watchInputFile + lineSeparator);
+
+        /*
+         * Parallel track parsing.
+         */
+        output.append(String.format("%2d", ++itemNum) + ") " + "Parallel track parsing:" + lineSeparator);
+        output.append(indent + parallelTrackParsing + lineSeparator);
+
         /*
          * Bypassed playlists.
          */
@@ -1227,4 +1354,33 @@ public final class Preferences
         Logger diagLogger = Logging.getInstance().getDiagLogger();
         diagLogger.info(output.toString());
     }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Rebuild the index of bypass playlist preferences.
+     */
+    private void indexBypassPrefs()
+    {
+        bypassPrefsIndex = new HashMap<String, BypassPreference>();
+        for (BypassPreference bypassPref : bypassPrefs)
+        {
+            if (bypassPrefsIndex.containsKey(bypassPref.getPlaylistName()) == false)
+            {
+                bypassPrefsIndex.put(bypassPref.getPlaylistName(), bypassPref);
+            }
+        }
+    }
+
+    /*
+     * Rebuild the index of ignored playlist preferences.
+     */
+    private void indexIgnoredPrefs()
+    {
+        ignoredPrefsIndex = new HashSet<String>();
+        for (String ignoredPref : ignoredPrefs)
+        {
+            ignoredPrefsIndex.add(ignoredPref);
+        }
+    }
 }
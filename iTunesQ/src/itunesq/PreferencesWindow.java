@@ -5,9 +5,11 @@ import org.apache.pivot.beans.BXML;
 import org.apache.pivot.beans.BXMLSerializer;
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Map;
 import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.collections.Set;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.wtk.Alert;
 import org.apache.pivot.wtk.Border;
@@ -71,6 +73,8 @@ public class PreferencesWindow
     private boolean logLevelPrefsUpdated;
     private boolean saveDirectoryUpdated;
     private boolean logHistoryPrefsUpdated;
+    private boolean watchFilePrefsUpdated;
+    private boolean parallelParsePrefsUpdated;
 
     /*
      * BXML variables ...
@@ -172,6 +176,14 @@ public class PreferencesWindow
     @BXML private Border logHistoryPrefsBorder = null;
     @BXML private BoxPane logHistoryPrefsBoxPane = null;
     @BXML private TextInput logHistoryPrefsTextInput = null;
+    @BXML private Label watchFilePrefsBorderLabel = null;
+    @BXML private Border watchFilePrefsBorder = null;
+    @BXML private BoxPane watchFilePrefsBoxPane = null;
+    @BXML private Checkbox watchFilePrefsCheckbox = null;
+    @BXML private Label parallelParsePrefsBorderLabel = null;
+    @BXML private Border parallelParsePrefsBorder = null;
+    @BXML private BoxPane parallelParsePrefsBoxPane = null;
+    @BXML private Checkbox parallelParsePrefsCheckbox = null;
     @BXML private PushButton skinPrefsButton = null;
     @BXML private Border logLevelPrefsBorder = null;
     @BXML private BoxPane logLevelPrefsBoxPane = null;
@@ -495,6 +507,16 @@ public class PreferencesWindow
          */
         logHistoryPrefsTextInput.setText(Integer.toString(userPrefs.getMaxLogHistory()));
 
+        /*
+         * Initialize the watch input file preference.
+         */
+        watchFilePrefsCheckbox.setSelected(userPrefs.getWatchInputFile());
+
+        /*
+         * Initialize the parallel track parsing preference.
+         */
+        parallelParsePrefsCheckbox.setSelected(userPrefs.getParallelTrackParsing());
+
         /*
          * Initialize the log level spinners.
          */
@@ -539,6 +561,8 @@ public class PreferencesWindow
         skinPrefsUpdated = false;
         saveDirectoryUpdated = false;
         logHistoryPrefsUpdated = false;
+        watchFilePrefsUpdated = false;
+        parallelParsePrefsUpdated = false;
         logLevelPrefsUpdated = false;
 
         logger.debug("setting up widgets");
@@ -626,6 +650,14 @@ public class PreferencesWindow
         logHistoryPrefsBorderLabel.setText(StringConstants.PREFS_LOG_HISTORY_BORDER);
         logHistoryPrefsBorderLabel.setTooltipText(StringConstants.PREFS_LOG_HISTORY_TIP);
         logHistoryPrefsBorderLabel.setTooltipDelay(InternalConstants.TOOLTIP_DELAY);
+        watchFilePrefsBorderLabel.setText(StringConstants.PREFS_WATCH_FILE_BORDER);
+        watchFilePrefsBorderLabel.setTooltipText(StringConstants.PREFS_WATCH_FILE_TIP);
+        watchFilePrefsBorderLabel.setTooltipDelay(InternalConstants.TOOLTIP_DELAY);
+        watchFilePrefsCheckbox.setButtonData(StringConstants.PREFS_WATCH_FILE);
+        parallelParsePrefsBorderLabel.setText(StringConstants.PREFS_PARALLEL_PARSE_BORDER);
+        parallelParsePrefsBorderLabel.setTooltipText(StringConstants.PREFS_PARALLEL_PARSE_TIP);
+        parallelParsePrefsBorderLabel.setTooltipDelay(InternalConstants.TOOLTIP_DELAY);
+        parallelParsePrefsCheckbox.setButtonData(StringConstants.PREFS_PARALLEL_PARSE);
         logLevelPrefsBorderLabel.setText(StringConstants.PREFS_LOG_LEVEL_BORDER);
         logLevelPrefsBorderLabel.setTooltipText(StringConstants.PREFS_LOG_LEVEL_TIP);
         logLevelPrefsBorderLabel.setTooltipDelay(InternalConstants.TOOLTIP_DELAY);
@@ -808,6 +840,16 @@ public class PreferencesWindow
                  */
                 logHistoryPrefsTextInput.setText(Integer.toString(Preferences.getDefaultMaxLogHistory()));
 
+                /*
+                 * Turn off watching the input file.
+                 */
+                watchFilePrefsCheckbox.setSelected(false);
+
+                /*
+                 * Turn off parallel track parsing.
+                 */
+                parallelParsePrefsCheckbox.setSelected(false);
+
                 /*
                  * Set the global log level checkbox to selected, and grey out
                  * all the dimensional log level widgets.
@@ -834,6 +876,8 @@ public class PreferencesWindow
                  */
                 saveDirectoryUpdated = true;
                 logHistoryPrefsUpdated = true;
+                watchFilePrefsUpdated = true;
+                parallelParsePrefsUpdated = true;
                 logLevelPrefsUpdated = true;
 
                 preferencesSheet.repaint();
@@ -1136,6 +1180,8 @@ public class PreferencesWindow
                 /*
                  * First tab.
                  */
+                Set<String> changedBypassPlaylists = new HashSet<String>();
+                boolean ignoredPlaylistsChanged = false;
 
                 if (bypassPrefsUpdated == true)
                 {
@@ -1144,17 +1190,15 @@ public class PreferencesWindow
                     prefsUpdated = true;
 
                     List<BypassPreference> bypassPrefs = collectBypassPrefs();
+                    List<BypassPreference> currentBypassPrefs =
+                            new ArrayList<BypassPreference>(userPrefs.getBypassPrefs());
                     userPrefs.replaceBypassPrefs(bypassPrefs);
                     
                     /*
-                     * Mark all bypassed playlists.
-                     */
-                    PlaylistCollection.markBypassedPlaylists();
-                    
-                    /*
-                     * Update the track playlist info for all playlists, which includes the bypassed flag.
+                     * Find the playlists whose bypass preference actually changed.
                      */
-                    PlaylistCollection.updateTrackPlaylistInfo();
+                    changedBypassPlaylists =
+                            PlaylistCollection.findChangedBypassPrefs(currentBypassPrefs, bypassPrefs);
                 }
 
                 if (ignoredPrefsUpdated == true)
@@ -1166,7 +1210,17 @@ public class PreferencesWindow
                     List<String> ignoredPrefs = collectIgnoredPrefs();
                     List<String> currentIgnoredPrefs = new ArrayList<String>(userPrefs.getIgnoredPrefs());
                     userPrefs.replaceIgnoredPrefs(ignoredPrefs);
-                    PlaylistCollection.modifyIgnoredPlaylists(currentIgnoredPrefs, ignoredPrefs);
+                    ignoredPlaylistsChanged =
+                            PlaylistCollection.modifyIgnoredPlaylists(currentIgnoredPrefs, ignoredPrefs);
+                }
+
+                /*
+                 * Update the bypassed status of the affected playlists, and the track
+                 * playlist info, in the background.
+                 */
+                if (changedBypassPlaylists.isEmpty() == false || ignoredPlaylistsChanged == true)
+                {
+                    PlaylistCollection.updatePlaylistStatus(changedBypassPlaylists, ignoredPlaylistsChanged);
                 }
 
                 /*
@@ -1296,6 +1350,45 @@ public class PreferencesWindow
                     logging.updateMaxHistoryFromPref();
                 }
 
+                if (watchFilePrefsUpdated == true)
+                {
+                    logger.info("updating watch input file preference");
+
+                    prefsUpdated = true;
+
+                    /*
+                     * Save the watch input file flag in the user preferences.
+                     */
+                    boolean watchInputFile = watchFilePrefsCheckbox.isSelected();
+                    userPrefs.setWatchInputFile(watchInputFile);
+
+                    /*
+                     * Start or stop watching the input file.
+                     */
+                    String inputFileName = userPrefs.getInputFileName();
+                    if (watchInputFile == true && inputFileName != null)
+                    {
+                        LibraryWatcher.startWatching(inputFileName);
+                    }
+                    else
+                    {
+                        LibraryWatcher.stopWatching();
+                    }
+                }
+
+                if (parallelParsePrefsUpdated == true)
+                {
+                    logger.info("updating parallel track parsing preference");
+
+                    prefsUpdated = true;
+
+                    /*
+                     * Save the parallel track parsing flag in the user preferences. This takes
+                     * effect the next time the input file is read.
+                     */
+                    userPrefs.setParallelTrackParsing(parallelParsePrefsCheckbox.isSelected());
+                }
+
                 if (logLevelPrefsUpdated == true)
                 {
                     logger.info("updating log level preferences");
@@ -3645,6 +3738,48 @@ public class PreferencesWindow
         logHistoryPrefsTextInput =
                 (TextInput) prefsWindowSerializer.getNamespace().get("logHistoryPrefsTextInput");
         components.add(logHistoryPrefsTextInput);
+        watchFilePrefsBorderLabel =
+                (Label) prefsWindowSerializer.getNamespace().get("watchFilePrefsBorderLabel");
+        components.add(watchFilePrefsBorderLabel);
+        watchFilePrefsBorder =
+                (Border) prefsWindowSerializer.getNamespace().get("watchFilePrefsBorder");
+        components.add(watchFilePrefsBorder);
+        watchFilePrefsBoxPane =
+                (BoxPane) prefsWindowSerializer.getNamespace().get("watchFilePrefsBoxPane");
+        components.add(watchFilePrefsBoxPane);
+        watchFilePrefsCheckbox =
+                (Checkbox) prefsWindowSerializer.getNamespace().get("watchFilePrefsCheckbox");
+        components.add(watchFilePrefsCheckbox);
+
+        watchFilePrefsCheckbox.getButtonPressListeners().add(new ButtonPressListener()
+        {
+            @Override
+            public void buttonPressed(Button button)
+            {
+                watchFilePrefsUpdated = true;
+            }
+        });
+        parallelParsePrefsBorderLabel =
+                (Label) prefsWindowSerializer.getNamespace().get("parallelParsePrefsBorderLabel");
+        components.add(parallelParsePrefsBorderLabel);
+        parallelParsePrefsBorder =
+                (Border) prefsWindowSerializer.getNamespace().get("parallelParsePrefsBorder");
+        components.add(parallelParsePrefsBorder);
+        parallelParsePrefsBoxPane =
+                (BoxPane) prefsWindowSerializer.getNamespace().get("parallelParsePrefsBoxPane");
+        components.add(parallelParsePrefsBoxPane);
+        parallelParsePrefsCheckbox =
+                (Checkbox) prefsWindowSerializer.getNamespace().get("parallelParsePrefsCheckbox");
+        components.add(parallelParsePrefsCheckbox);
+
+        parallelParsePrefsCheckbox.getButtonPressListeners().add(new ButtonPressListener()
+        {
+            @Override
+            public void buttonPressed(Button button)
+            {
+                parallelParsePrefsUpdated = true;
+            }
+        });
         logLevelPrefsBorder =
                 (Border) prefsWindowSerializer.getNamespace().get("logLevelPrefsBorder");
         components.add(logLevelPrefsBorder);
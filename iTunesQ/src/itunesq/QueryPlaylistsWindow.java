@@ -1,16 +1,15 @@
 package itunesq;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Comparator;
 
 import org.apache.pivot.beans.BXML;
 import org.apache.pivot.beans.BXMLSerializer;
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashMap;
-import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Map;
-import org.apache.pivot.collections.Set;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.wtk.Alert;
 import org.apache.pivot.wtk.Border;
@@ -60,11 +59,12 @@ public class QueryPlaylistsWindow
     private Logger filterLogger = null;
     private boolean evaluateComparisonNeeded = true;
     private String queryStr = null;
+    private String familyPlaylistName = null;
+    private boolean familyExcludeBypassed = false;
+    private LibraryWatcher.ReloadListener reloadListener = null;
+    private LibraryWatcher.ReloadListener familyReloadListener = null;
 
-    private Set<PlaylistComparisonTrack> allIDs;
-    private Set<PlaylistComparisonTrack> someIDs;
-    private Set<PlaylistComparisonTrack> oneIDs;
-    private Set<PlaylistComparisonTrack> recursiveIDs;
+    private PlaylistComparison comparison;
 
     /*
      * BXML variables ...
@@ -238,6 +238,20 @@ public class QueryPlaylistsWindow
          */
         evaluateComparisonNeeded = true;
 
+        /*
+         * The comparison holds indexes into the list of all tracks, so it must be
+         * evaluated again if the input file is reloaded while the window is open.
+         */
+        reloadListener = new LibraryWatcher.ReloadListener()
+        {
+            @Override
+            public void libraryReloaded()
+            {
+                evaluateComparisonNeeded = true;
+            }
+        };
+        LibraryWatcher.addReloadListener(reloadListener);
+
         /*
          * Add the initial recursive compare query playlist rows. We add 2 rows because we need at
          * least that many to compare. This populates the component list with
@@ -551,33 +565,14 @@ public class QueryPlaylistsWindow
                      * Collect the playlists from the window.
                      */
                     List<String> playlists = collectPlaylists(TableType.RECURSIVE_COMPARE);
-                    
-                    /*
-                     * We need to build our own query string ... the one built by evaluateComparison() only
-                     * includes the final two playlists in the below algorithm.
-                     */
-                    StringBuilder query = new StringBuilder();
-                    boolean firstTime = true;
-                    for (String playlistName : playlists)
-                    {
-                        if (firstTime ==false)
-                        {
-                            query.append(" + ");
-                        }                    	
-                        query.append(playlistName);
-                        firstTime = false;
-                    }
 
-                    /*
-                     * Execute the recursive compare.
-                     */
-                    recursiveIDs = new HashSet<PlaylistComparisonTrack>();                    
-                    good2Go = recursiveCompare(playlists);
 
                     /*
-                     * Save the query string constructed earlier.
+                     * Evaluate the comparison. The recursive compare shows the tracks shared by
+                     * any two of the playlists, which the comparison finds along with its other
+                     * results.
                      */
-                    queryStr = query.toString();
+                    good2Go = evaluateComparison(playlists);
                 }
 
                 /*
@@ -697,6 +692,11 @@ public class QueryPlaylistsWindow
             {
                 uiLogger.info("done button pressed");
 
+                /*
+                 * We no longer care about the input file being reloaded.
+                 */
+                LibraryWatcher.removeReloadListener(reloadListener);
+
                 /*
                  * Close the window.
                  */
@@ -1021,64 +1021,6 @@ public class QueryPlaylistsWindow
         return newRow;
     }
     
-    /*
-     * Perform the recursive compare. This doesn't mean this method is recursive, it 
-     * just refers to iterating by comparing two playlists at a time.
-     */
-    private boolean recursiveCompare(List<String> playlists)
-    {
-        boolean good2Go = true;
-        
-        /*
-         * Loop through the set of playlists and compare recursively. Stop when only one
-         * playlist remains.
-         */
-        int numPlaylists = playlists.getLength();
-        filterLogger.debug("recursively comparing " + numPlaylists + " playlists");
-        while (numPlaylists > 1)
-        {
-        	
-        	/*
-        	 * Remove a playlist from the set, designated as the top.
-        	 */
-        	String top = playlists.remove(0, 1).get(0);
-        	numPlaylists = playlists.getLength();
-        	filterLogger.debug("removed top playlist '" + top + "', num = " + numPlaylists);
-            
-        	/*
-        	 * Now compare the top to all other playlists, one at a time.
-        	 */
-            for (String playlist : playlists)
-            {
-                List<String> compareList = new ArrayList<String>();
-                compareList.add(top);
-                compareList.add(playlist);
-
-                good2Go = evaluateComparison(compareList);
-                
-                /*
-                 * Add all discovered tracks (if any) to the recursive compare list.
-                 */
-                filterLogger.debug("discovered " + allIDs.getCount() + " tracks from '" + playlist + "'");
-                for (PlaylistComparisonTrack pcTrack : allIDs)
-                {
-                	if (findTrackID(recursiveIDs, pcTrack.getTrackID()) == null)
-                	{
-                		if (filterLogger.isDebugEnabled())
-                		{
-                            Integer trackIndex = Database.getTracksMap().get(pcTrack.getTrackID());
-                            Track track = Database.getTracks().get(trackIndex);
-                            filterLogger.debug("adding track '" + track.getName() + "' to recursive IDs");
-                		}
-                		recursiveIDs.add(pcTrack);
-                	}
-                }                  	
-            }
-        }
-        
-    	return good2Go;
-    }
-
     /*
      * Collect the entered playlists.
      */
@@ -1168,7 +1110,7 @@ public class QueryPlaylistsWindow
             	Checkbox includeChildren = (Checkbox) row.get(includeChildrenIndex);
                 
                 /*
-                 * If we're to include all children then we have to search through all playlists.
+                 * If we're to include all children then get them from the playlist hierarchy.
                  */
                 if (includeChildren.isSelected())
                 {
@@ -1180,23 +1122,13 @@ public class QueryPlaylistsWindow
                     String selectedID = selectedPlaylistObj.getPersistentID();
                     
                     /*
-                     * Loop through all playlists.
+                     * Add all children of the parent to the collection.
                      */
-                    Map<String, Playlist> allPlaylists = Database.getPlaylists();                
-                    for (String playlistKey : allPlaylists)
+                    for (Playlist playlistObj : Database.getPlaylistHierarchy().getChildPlaylists(selectedID))
                     {
-                        Playlist playlistObj = allPlaylists.get(playlistKey);
-                        
-                        /*
-                         * If this is a child of the parent, add it to the collection.
-                         */
-                        String parentID = playlistObj.getParentPersistentID();
-                        if (parentID != null && parentID.equals(selectedID))
-                        {
-                        	String childName = playlistObj.getName();
-                            playlists.add(childName);
-                            filterLogger.debug("added playlist '" + childName + "' (child match)");
-                        }
+                        String childName = playlistObj.getName();
+                        playlists.add(childName);
+                        filterLogger.debug("added playlist '" + childName + "' (child match)");
                     }            	
                 }
             }
@@ -1285,24 +1217,15 @@ public class QueryPlaylistsWindow
                 	Playlist selectedPlaylistObj = Database.getPlaylists().get(Database.getPlaylistsMap().get(selectedName));
                 	
                 	/*
-                	 * Get the parent ID of the current playlist in the outer loop.
+                	 * Check if this playlist is excluded via the include children checkbox, because
+                	 * the selection is one of its ancestors.
                 	 */
-                	Playlist tmpPlaylistObj = playlistObj;
-                	String parentID = null;
-                	while ((parentID = tmpPlaylistObj.getParentPersistentID()) != null)
+                	if (Database.getPlaylistHierarchy().isDescendant(playlistObj.getPersistentID(),
+                	        selectedPlaylistObj.getPersistentID()) == true)
                 	{
-
-                		/*
-                		 * Check if this playlist is excluded via the include children checkbox.
-                		 */
-                		if (parentID.equals(selectedPlaylistObj.getPersistentID()))
-                		{
-                			filterLogger.debug("excluding playlist '" + playlistName + "' (child match)");
-                			excluded = true;
-                			break;
-                		}
-                		
-                		tmpPlaylistObj = Database.getPlaylists().get(parentID);
+                		filterLogger.debug("excluding playlist '" + playlistName + "' (child match)");
+                		excluded = true;
+                		break;
                 	}
                 }
             }
@@ -1322,11 +1245,11 @@ public class QueryPlaylistsWindow
     /*
      * Evaluate the set of playlists to be compared.
      * 
-     * We only do this once per set of playlists, creating all of the sets of
-     * track IDs at once. The different display buttons then just need to
-     * display the results (see displayComparedPlaylistTracks method). However,
-     * if any change is made to the set of playlists, a switch is set to run
-     * this method again to re-evaluate the comparison.
+     * We only do this once per set of playlists, evaluating all compare types
+     * at once. The different display buttons then just need to display the
+     * results (see displayComparedPlaylistTracks method). However, if any
+     * change is made to the set of playlists, a switch is set to run this
+     * method again to re-evaluate the comparison.
      */
     private boolean evaluateComparison(List<String> playlists)
     {
@@ -1335,34 +1258,24 @@ public class QueryPlaylistsWindow
         boolean playlistsValid = true;
 
         /*
-         * Initialize lists for all compare types.
-         */
-        allIDs = new HashSet<PlaylistComparisonTrack>();
-        someIDs = new HashSet<PlaylistComparisonTrack>();
-        oneIDs = new HashSet<PlaylistComparisonTrack>();
-
-        /*
-         * Walk through the specified playlists.
-         * 
-         * We make 2 passes to establish all compare lists. In the first pass,
-         * we walk through the list of track IDs for all playlists, and create
-         * the 'one' list and a potential 'some' list.
+         * Walk through the specified playlists, adding each one to the
+         * comparison. See the PlaylistComparison class for how the compare
+         * types are evaluated.
          * 
-         * We also create the query string during the first pass. This is passed
-         * to TracksWindow when the tracks are displayed.
+         * We also create the query string. This is passed to TracksWindow
+         * when the tracks are displayed.
          */
-        int playlistLoopIndex = 0;
+        PlaylistComparison newComparison = new PlaylistComparison();
         StringBuilder query = new StringBuilder();
 
         for (String playlistName : playlists)
         {
-            filterLogger.trace("playlist index: " + playlistLoopIndex);
 
             /*
              * Add this playlist to the query string, along with a "+" separator
              * for all but the first.
              */
-            if (playlistLoopIndex != 0)
+            if (newComparison.getNumPlaylists() != 0)
             {
                 query.append(" + ");
             }
@@ -1384,81 +1297,11 @@ public class QueryPlaylistsWindow
             Playlist playlist = Database.getPlaylists().get(playlistID);
 
             /*
-             * Get the list of track IDs for this playlist.
+             * Add the list of track IDs for this playlist to the comparison.
              */
-            List<Integer> trackIDs = playlist.getTracks();
-
-            /*
-             * Walk through the list of track IDs.
-             */
-            for (Integer trackID : trackIDs)
-            {
-                filterLogger.trace("track ID: " + trackID);
-                PlaylistComparisonTrack existingTrack;
-                PlaylistComparisonTrack newTrack;
-
-                /*
-                 * Everything in the first playlist goes unconditionally on the
-                 * 'one' list, by definition.
-                 */
-                if (playlistLoopIndex == 0)
-                {
-                    newTrack = new PlaylistComparisonTrack();
-                    newTrack.setTrackID(trackID);
-                    newTrack.setPlaylistCount(1);
-
-                    filterLogger.trace("add to 'one' ID: " + trackID);
-                    oneIDs.add(newTrack);
-                    continue;
-                }
-
-                /*
-                 * If this ID already exists in the 'some' list, then bump its
-                 * playlist count. Otherwise, keep checking.
-                 * 
-                 * NOTE: This can only happen once we reach the third playlist,
-                 * if it exists, so bypass the check if the loop index is too
-                 * small for that.
-                 */
-                if (playlistLoopIndex >= 2 && (existingTrack = findTrackID(someIDs, trackID)) != null)
-                {
-                    Integer updatedCount = existingTrack.getPlaylistCount() + 1;
-                    filterLogger.trace("bump 'some' count to " + updatedCount + " for ID: " + trackID);
-                    existingTrack.setPlaylistCount(updatedCount);
-                }
-                else
-                {
-
-                    /*
-                     * If this ID exists in the 'one' list, then remove it and
-                     * add it instead to the 'some' list (and bump its count).
-                     */
-                    if ((existingTrack = findTrackID(oneIDs, trackID)) != null)
-                    {
-                        Integer updatedCount = existingTrack.getPlaylistCount() + 1;
-                        filterLogger.trace("move to 'some' ID: " + trackID + " with count " + updatedCount);
-                        oneIDs.remove(existingTrack);
-                        existingTrack.setPlaylistCount(updatedCount);
-                        someIDs.add(existingTrack);
-                    }
-
-                    /*
-                     * This ID does not exist in either list, so add it to the
-                     * 'one' list.
-                     */
-                    else
-                    {
-                        newTrack = new PlaylistComparisonTrack();
-                        newTrack.setTrackID(trackID);
-                        newTrack.setPlaylistCount(1);
-
-                        filterLogger.trace("add to 'one' ID: " + trackID);
-                        oneIDs.add(newTrack);
-                    }
-                }
-            }
-
-            playlistLoopIndex++;
+            TrackIDSequence trackIDs = playlist.getTracks();
+            filterLogger.trace("adding playlist '" + playlistName + "' with " + trackIDs.getLength() + " tracks");
+            newComparison.addPlaylist(playlistName, trackIDs);
         }
 
         /*
@@ -1468,41 +1311,10 @@ public class QueryPlaylistsWindow
         {
 
             /*
-             * Save the query string constructed during the first pass.
+             * Save the query string and the comparison.
              */
             queryStr = query.toString();
-
-            /*
-             * For the second pass, walk through the potential 'some' list. Move
-             * all IDs that have a count equal to the number of playlists to the
-             * 'all' list.
-             * 
-             * NOTE: if we only have 2 playlists to compare, then all IDs should
-             * move to the 'all' list naturally.
-             * 
-             * ANOTHER NOTE: I had to break this into 2 pieces: one to add the
-             * appropriate IDs to the 'all' list, and another to remove them
-             * from the 'some' list. Otherwise, the underlying HashSet (in turn
-             * implemented by a HashMap) throws an exception. The problem is
-             * that invoking remove() while using the iterator on the 'some'
-             * list doesn't work. It's supposed to, but doesn't. Perhaps using
-             * native Java classes instead of Pivot classes would work, but the
-             * below workaround solves the issue. Even though it's yucky.
-             */
-            for (PlaylistComparisonTrack pcTrack : someIDs)
-            {
-                if (pcTrack.getPlaylistCount() == playlists.getLength())
-                {
-                    filterLogger.trace("add to 'all' ID: " + pcTrack.getTrackID());
-                    allIDs.add(pcTrack);
-                }
-            }
-
-            for (PlaylistComparisonTrack pcTrack : allIDs)
-            {
-                filterLogger.trace("remove from 'some' ID: " + pcTrack.getTrackID());
-                someIDs.remove(pcTrack);
-            }
+            comparison = newComparison;
 
             /*
              * Reset the evaluate switch.
@@ -1523,63 +1335,49 @@ public class QueryPlaylistsWindow
         filterLogger.trace("displayComparedPlaylistTracks: " + this.hashCode());
 
         /*
-         * Initialize a list of track objects, and sort it by name.
-         */
-        List<Track> displayableTracks = new ArrayList<Track>();
-        displayableTracks.setComparator(new Comparator<Track>()
-        {
-            @Override
-            public int compare(Track t1, Track t2)
-            {
-                return t1.compareTo(t2);
-            }
-        });
-
-        /*
-         * Set up for walking through the list of track IDs.
+         * Get the list of tracks for the compare type. The tracks are already
+         * sorted.
          */
-        Set<PlaylistComparisonTrack> trackIDs = null;
+        List<Track> displayableTracks = null;
         String compareStr = null;
         switch (compareType)
         {
         case ALL:
-            trackIDs = allIDs;
+            displayableTracks = comparison.getAllTracks();
             compareStr = StringConstants.QUERY_PLAYLIST_COMPARE_ALL;
             break;
 
         case SOME:
-            trackIDs = someIDs;
+            displayableTracks = comparison.getSomeTracks();
             compareStr = StringConstants.QUERY_PLAYLIST_COMPARE_SOME;
             break;
 
         case ONE:
-            trackIDs = oneIDs;
+            displayableTracks = comparison.getOneTracks();
             compareStr = StringConstants.QUERY_PLAYLIST_COMPARE_ONE;
             break;
 
         case RECURSIVE:
-            trackIDs = recursiveIDs;
+            displayableTracks = comparison.getSharedTracks();
             compareStr = StringConstants.QUERY_PLAYLIST_COMPARE_RECURSIVE;
+
+            /*
+             * Log the playlists that share each track.
+             */
+            if (filterLogger.isDebugEnabled())
+            {
+                for (Track track : displayableTracks)
+                {
+                    filterLogger.debug("track '" + track.getName() + "' is shared by playlists '"
+                            + String.join("', '", comparison.getSharingPlaylists(track)) + "'");
+                }
+            }
             break;
 
         default:
             throw new InternalErrorException(true, "unknown compare type '" + compareType + "'");
         }
 
-        /*
-         * Walk through the appropriate list of track IDs.
-         */
-        for (PlaylistComparisonTrack pcTrack : trackIDs)
-        {
-
-            /*
-             * Add the associated track object to the list of tracks.
-             */
-            Integer trackIndex = Database.getTracksMap().get(pcTrack.getTrackID());
-            Track track = Database.getTracks().get(trackIndex);
-            displayableTracks.add(track);
-        }
-
         filterLogger.info("found " + displayableTracks.getLength() + " tracks for display");
 
         /*
@@ -1591,35 +1389,6 @@ public class QueryPlaylistsWindow
                 TrackDisplayColumns.ColumnSet.FILTERED_VIEW.getNamesList());
         tracksWindowHandler.displayTracks(display, Skins.Window.TRACKS, displayableTracks, null);
     }
-
-    /*
-     * Check if a given track ID is contained in a comparison set. If so, return
-     * it; otherwise return null.
-     */
-    private PlaylistComparisonTrack findTrackID(Set<PlaylistComparisonTrack> trackIDs, Integer trackID)
-    {
-        filterLogger.trace("findTrackID: " + this.hashCode());
-
-        PlaylistComparisonTrack target = null;
-
-        /*
-         * Walk through the input comparison set.
-         */
-        for (PlaylistComparisonTrack pcTrack : trackIDs)
-        {
-
-            /*
-             * If the input track ID matches, we're done.
-             */
-            if (pcTrack.getTrackID().equals(trackID))
-            {
-                target = pcTrack;
-                break;
-            }
-        }
-
-        return target;
-    }
     
     /*
      * Set up the various event handlers for the family playlists window.
@@ -1638,6 +1407,11 @@ public class QueryPlaylistsWindow
             {
                 uiLogger.info("family playlists done button pressed");
 
+                /*
+                 * We no longer care about the input file being reloaded.
+                 */
+                LibraryWatcher.removeReloadListener(familyReloadListener);
+
                 /*
                  * Close the window.
                  */
@@ -1739,20 +1513,21 @@ public class QueryPlaylistsWindow
         /*
          * Get the track IDs for the input playlist into a set.
          */
-        List<Integer> trackIDs = playlist.getTracks();
+        TrackIDSequence trackIDs = playlist.getTracks();
 
         /*
          * Walk the list of track IDs for the selected playlist.
          */
         if (trackIDs != null)
         {
-            for (Integer trackID : trackIDs)
+            for (int i = 0; i < trackIDs.getLength(); i++)
             {
+                int trackID = trackIDs.get(i);
 
                 /*
                  * Get the track for this track ID.
                  */
-                Track track = Database.getTracks().get(Database.getTracksMap().get(trackID));
+                Track track = Database.getTrackByID(trackID);
 
                 /*
                  * Add the track.
@@ -1783,11 +1558,46 @@ public class QueryPlaylistsWindow
         filterLogger.trace("generateFamilyPlaylistResults: " + this.hashCode());
 
         /*
-         * Create a set of playlist names, so we can determine whether we've already found a 
-         * playlist or not.
+         * Get the input playlist object.
          */
-        Set<String> playlistSet = new HashSet<String>();
-        
+        Playlist inputPlaylistObj = 
+                Database.getPlaylists().get(Database.getPlaylistsMap().get(playlistName));
+
+        /*
+         * There's nothing to display unless the input playlist has tracks.
+         */
+        if (inputPlaylistObj.getTracks() != null)
+        {
+
+            /*
+             * Save the family playlist parameters, so the results can be refreshed if the
+             * input file is reloaded.
+             */
+            familyPlaylistName = playlistName;
+            familyExcludeBypassed = excludeBypassed;
+
+            Map<String, List<String>> playlistMap = collectFamilyPlaylists(playlistName, excludeBypassed);
+            
+            /*
+             * Generate the query string for the File -> Save dialog.
+             */
+            String queryStr = ListQueryType.Type.PLAYLIST_FAMILY.getDisplayValue() + ": " + playlistName;
+            
+            /*
+             * Display the generated results.
+             */
+            displayFamilyPlaylists(display, playlistMap, queryStr);
+        }
+    }
+    
+    /*
+     * Collect the set of playlists from the family expansion playlist, as a map of
+     * the playlist name to its track list.
+     */
+    private Map<String, List<String>> collectFamilyPlaylists (String playlistName, boolean excludeBypassed)
+    {
+        filterLogger.trace("collectFamilyPlaylists: " + this.hashCode());
+
         /*
          * Create a map of the playlist name to its track list. This will drive the display of
          * the results.
@@ -1804,68 +1614,78 @@ public class QueryPlaylistsWindow
         /*
          * Get the track IDs for the input playlist into a list.
          */
-        List<Integer> trackIDs = inputPlaylistObj.getTracks();
+        TrackIDSequence trackIDs = inputPlaylistObj.getTracks();
 
         /*
          * Walk the list of track IDs for the selected playlist, if we have any.
          */
         if (trackIDs != null)
         {
-            for (Integer trackID : trackIDs)
+
+            /*
+             * Decide once for each playlist in the track playlist index whether to skip it:
+             * 
+             * - Skip the input playlist - we're only interested in other playlists used
+             *   by the tracks.
+             * - Skip bypassed playlists if so directed.
+             * - Skip children of the input playlist.
+             */
+            TrackPlaylistIndex trackPlaylistIndex = Database.getTrackPlaylistIndex();
+            int numPlaylists = trackPlaylistIndex.getNumPlaylists();
+            BitSet skippedPlaylists = new BitSet(numPlaylists);
+
+            for (int ordinal = 0; ordinal < numPlaylists; ordinal++)
+            {
+                String playlist = trackPlaylistIndex.getPlaylistName(ordinal);
+                Playlist playlistObj = 
+                        Database.getPlaylists().get(Database.getPlaylistsMap().get(playlist));
+                String parentID = playlistObj.getParentPersistentID();
+
+                if (playlist.equals(playlistName)
+                        || (excludeBypassed == true && trackPlaylistIndex.isPlaylistBypassed(ordinal) == true)
+                        || (parentID != null && parentID.equals(inputPlaylistObj.getPersistentID())))
+                {
+                    skippedPlaylists.set(ordinal);
+                }
+            }
+
+            /*
+             * Keep a set of the playlists found so far, so we can determine whether we've
+             * already found a playlist or not.
+             */
+            BitSet foundPlaylists = new BitSet(numPlaylists);
+
+            for (int i = 0; i < trackIDs.getLength(); i++)
             {
+                int trackID = trackIDs.get(i);
 
                 /*
                  * Get the track for this track ID.
                  */
-                Track track = Database.getTracks().get(Database.getTracksMap().get(trackID));
+                int trackIndex = Database.getTrackIndex(trackID);
+                Track track = Database.getTracks().get(trackIndex);
                 
                 /*
-                 * Get the list of playlist info objects for this track.
+                 * Walk the playlists for this track.
                  */
-                List<TrackPlaylistInfo> trackPlaylists = track.getPlaylists();
-                
-                /*
-                 * Walk the playlist info list.
-                 */
-                for (TrackPlaylistInfo playlistInfo : trackPlaylists)
+                for (int j = 0; j < trackPlaylistIndex.getPlaylistCount(trackIndex); j++)
                 {
-                    String playlist = playlistInfo.getPlaylistName();
-                    
-                    /*
-                     * Skip the input playlist - we're only interested in other playlists used
-                     * by the tracks.
-                     */
-                    if (playlist.equals(playlistName))
-                    {
-                        continue;
-                    }
-                    
-                    /*
-                     * Skip bypassed playlists if so directed.
-                     */
-                    if (excludeBypassed == true && playlistInfo.getBypassed() == true)
-                    {
-                        continue;
-                    }
-                    
-                    /*
-                     * Skip children of the input playlist.
-                     */
-                    Playlist playlistObj = 
-                            Database.getPlaylists().get(Database.getPlaylistsMap().get(playlist));
-                    String parentID = playlistObj.getParentPersistentID();
-                    
-                    if (parentID != null && parentID.equals(inputPlaylistObj.getPersistentID()))
+                    int ordinal = trackPlaylistIndex.getPlaylistOrdinal(trackIndex, j);
+                    if (skippedPlaylists.get(ordinal) == true)
                     {
                         continue;
                     }
+
+                    String playlist = trackPlaylistIndex.getPlaylistName(ordinal);
                     
                     /*
                      * For a new playlist, initialize the track count to 1 in the playlist map. Otherwise,
                      * bump the track count.
                      */
-                    if (playlistSet.add(playlist) == true)
+                    if (foundPlaylists.get(ordinal) == false)
                     {
+                        foundPlaylists.set(ordinal);
+
                         List<String> tracks = new ArrayList<String>(track.getName());
                         tracks.setComparator(String.CASE_INSENSITIVE_ORDER);
                         playlistMap.put(playlist, tracks);
@@ -1878,17 +1698,35 @@ public class QueryPlaylistsWindow
                     }
                 }
             }
-            
-            /*
-             * Generate the query string for the File -> Save dialog.
-             */
-            String queryStr = ListQueryType.Type.PLAYLIST_FAMILY.getDisplayValue() + ": " + playlistName;
-            
-            /*
-             * Display the generated results.
-             */
-            displayFamilyPlaylists(display, playlistMap, queryStr);
         }
+
+        return playlistMap;
+    }
+    
+    /*
+     * Refresh the family playlists after the input file is reloaded.
+     */
+    private void refreshFamilyPlaylists()
+    {
+        uiLogger.trace("refreshFamilyPlaylists: " + this.hashCode());
+
+        /*
+         * The family playlist might not exist anymore, in which case there are no results.
+         */
+        Map<String, List<String>> playlistMap;
+        if (Database.getPlaylistsMap().containsKey(familyPlaylistName) == true)
+        {
+            playlistMap = collectFamilyPlaylists(familyPlaylistName, familyExcludeBypassed);
+        }
+        else
+        {
+            playlistMap = new HashMap<String, List<String>>();
+        }
+
+        setFamilyPlaylistsTableData(playlistMap);
+        playlistTracksTableView.setTableData(new ArrayList<HashMap<String, String>>());
+
+        familyPlaylistsWindow.repaint(true);
     }
     
     /*
@@ -1922,16 +1760,6 @@ public class QueryPlaylistsWindow
          */
         createFamilyPlaylistsEventHandlers();
         
-        /*
-         * Set the number of playlists label.
-         */
-        numPlaylistsLabel.setText(StringConstants.PLAYLIST_NUMBER + playlistMap.getCount());
-
-        /*
-         * Create a list suitable for the setTableData() method.
-         */
-        List<HashMap<String, String>> displayPlaylists = new ArrayList<HashMap<String, String>>();
-
         /*
          * Create the family playlists column set.
          */
@@ -1939,45 +1767,22 @@ public class QueryPlaylistsWindow
                 playlistsTableView);
 
         /*
-         * Now walk the set, and add all playlists to the list.
+         * Fill in the table of playlists.
          */
-        for (String playlist : playlistMap)
-        {
-            HashMap<String, String> playlistAttrs = new HashMap<String, String>();
-            List<String> tracks = playlistMap.get(playlist);
-            
-            playlistAttrs.put(PlaylistDisplayColumns.ColumnNames.PLAYLIST_NAME.getNameValue(), 
-                    playlist);
-            playlistAttrs.put(PlaylistDisplayColumns.ColumnNames.NUM_TRACKS.getNameValue(), 
-                    Integer.toString(tracks.getLength()));
-            
-            /*
-             * Create the string of track names.
-             */
-            StringBuilder tracksStr = new StringBuilder();
-            
-            for (String track : tracks)
-            {   
-                if (tracksStr.length() > 0)
-                {
-                    tracksStr.append(InternalConstants.LIST_ITEM_SEPARATOR);
-                }
-                
-                tracksStr.append(track);
-            }
-            
-            playlistAttrs.put(PlaylistDisplayColumns.ColumnNames.TRACK_NAMES.getNameValue(), 
-                    tracksStr.toString());
-            
-            displayPlaylists.add(playlistAttrs);
-        }
-
-        filterLogger.info("found " + displayPlaylists.getLength() + " playlists for display");
+        setFamilyPlaylistsTableData(playlistMap);
 
         /*
-         * Add the playlists to the window table view.
+         * Refresh the playlists if the input file is reloaded while the window is open.
          */
-        playlistsTableView.setTableData(displayPlaylists);
+        familyReloadListener = new LibraryWatcher.ReloadListener()
+        {
+            @Override
+            public void libraryReloaded()
+            {
+                refreshFamilyPlaylists();
+            }
+        };
+        LibraryWatcher.addReloadListener(familyReloadListener);
 
         /*
          * Add a sort listener to allow column sorting.
@@ -2032,6 +1837,65 @@ public class QueryPlaylistsWindow
         familyPlaylistsWindow.open(display);
     }
 
+    /*
+     * Set the family playlists table data from a map of the playlist name to its track list.
+     */
+    private void setFamilyPlaylistsTableData(Map<String, List<String>> playlistMap)
+    {
+        uiLogger.trace("setFamilyPlaylistsTableData: " + this.hashCode());
+
+        /*
+         * Set the number of playlists label.
+         */
+        numPlaylistsLabel.setText(StringConstants.PLAYLIST_NUMBER + playlistMap.getCount());
+
+        /*
+         * Create a list suitable for the setTableData() method.
+         */
+        List<HashMap<String, String>> displayPlaylists = new ArrayList<HashMap<String, String>>();
+
+        /*
+         * Now walk the set, and add all playlists to the list.
+         */
+        for (String playlist : playlistMap)
+        {
+            HashMap<String, String> playlistAttrs = new HashMap<String, String>();
+            List<String> tracks = playlistMap.get(playlist);
+            
+            playlistAttrs.put(PlaylistDisplayColumns.ColumnNames.PLAYLIST_NAME.getNameValue(), 
+                    playlist);
+            playlistAttrs.put(PlaylistDisplayColumns.ColumnNames.NUM_TRACKS.getNameValue(), 
+                    Integer.toString(tracks.getLength()));
+            
+            /*
+             * Create the string of track names.
+             */
+            StringBuilder tracksStr = new StringBuilder();
+            
+            for (String track : tracks)
+            {   
+                if (tracksStr.length() > 0)
+                {
+                    tracksStr.append(InternalConstants.LIST_ITEM_SEPARATOR);
+                }
+                
+                tracksStr.append(track);
+            }
+            
+            playlistAttrs.put(PlaylistDisplayColumns.ColumnNames.TRACK_NAMES.getNameValue(), 
+                    tracksStr.toString());
+            
+            displayPlaylists.add(playlistAttrs);
+        }
+
+        filterLogger.info("found " + displayPlaylists.getLength() + " playlists for display");
+
+        /*
+         * Add the playlists to the window table view.
+         */
+        playlistsTableView.setTableData(displayPlaylists);
+    }
+
     /*
      * Initialize BXML variables and collect the list of components to be
      * skinned.
@@ -75,6 +75,9 @@ public class StringConstants
     public static final String ARTISTS_SET_ALTNAME_BUTTON_TIP = "Manually set artist alternate name.";
     public static final String ARTISTS_SET_INSTRUCTIONS = 
             "Select one or more artists to manually modify alternate artist names.";
+    public static final String ARTISTS_SUGGEST_ALTNAMES_BUTTON = "Suggest Alternate Names";
+    public static final String ARTISTS_SUGGEST_ALTNAMES_BUTTON_TIP = 
+            "Select the next group of similar artist names.";
 
     /*
      * FindDuplicatesDialog constants.
@@ -277,6 +280,11 @@ public class StringConstants
     public static final String PREFS_LOG_LEVEL_TIP =
             "Log levels determine how much information is logged for debugging purposes." + lineSeparator
             + "These should only be changed if directed by support personnel.";
+    public static final String PREFS_PARALLEL_PARSE = "Parallel Parsing?";
+    public static final String PREFS_PARALLEL_PARSE_BORDER = "Input File Parsing";
+    public static final String PREFS_PARALLEL_PARSE_TIP =
+            "Parse the tracks of an XML input file in parallel. This can be faster for large "
+            + "libraries on computers with several cores.";
     public static final String PREFS_PLAYLIST_LOG_LEVEL = "Playlist Log Level:";
     public static final String PREFS_PLAYLIST_LOG_LEVEL_TIP =
             "This is the log level for the playlist management component.";
@@ -322,6 +330,10 @@ public class StringConstants
     public static final String PREFS_UI_LOG_LEVEL = "UI Log Level:";
     public static final String PREFS_UI_LOG_LEVEL_TIP =
             "This is the log level for the user interface component.";
+    public static final String PREFS_WATCH_FILE = "Reload Automatically?";
+    public static final String PREFS_WATCH_FILE_BORDER = "Input File Changes";
+    public static final String PREFS_WATCH_FILE_TIP =
+            "Watch the input file, and reload it in the background when iTunes updates it.";
 
     /*
      * QueryPlaylistsWindow constants.
@@ -452,6 +464,8 @@ public class StringConstants
     public static final String ALERT_NO_INPUT_FILE =
             "No input file has been saved. Use the File -> Open menu to select a file.";
     public static final String ALERT_NO_PRINTER = "Could not locate a printer service.";
+    public static final String ALERT_NO_SIMILAR_ARTISTS =
+            "There are no more similar artist names to suggest.";
     public static final String ALERT_NO_TRACKS = "There are no tracks matching the set of filters.";
     public static final String ALERT_NON_FATAL_ERROR =
             "An internal error has occurred, but it is not severe enough to close the application.";
@@ -1,6 +1,5 @@
 package itunesq;
 
-import java.util.Comparator;
 import java.util.Date;
 
 import org.apache.pivot.collections.ArrayList;
@@ -39,7 +38,6 @@ public class Track
     private Date trkReleased;
     private int trkRating;
     private String trkEncoder;
-    private List<TrackPlaylistInfo> trkPlaylists;
     private TrackType trkType;
     
     /**
@@ -71,6 +69,12 @@ public class Track
      */
     private static final int RATING_DIVISOR = 20;
 
+    /*
+     * Sort key, created when first needed and discarded if any of the attributes it's
+     * based on change.
+     */
+    private SortKey trkSortKey = null;
+
     /**
      * Class constructor.
      * 
@@ -79,19 +83,6 @@ public class Track
     public Track(int ID)
     {
         trkID = ID;
-        trkPlaylists = new ArrayList<TrackPlaylistInfo>();
-
-        /*
-         * Set a comparator so that when we display the playlists for a track they are sorted.
-         */
-        trkPlaylists.setComparator(new Comparator<TrackPlaylistInfo>()
-        {
-            @Override
-            public int compare(TrackPlaylistInfo c1, TrackPlaylistInfo c2)
-            {
-                return c1.compareTo(c2);
-            }
-        });
     }
 
     // ---------------- Getters and setters ---------------------------------
@@ -124,6 +115,7 @@ public class Track
     public void setName(String name)
     {
         this.trkName = name;
+        trkSortKey = null;
     }
 
     /**
@@ -144,6 +136,17 @@ public class Track
     public void setArtist(String artist)
     {
         this.trkArtist = artist;
+        trkSortKey = null;
+    }
+
+    /**
+     * Gets the composer name.
+     * 
+     * @return composer name
+     */
+    public String getComposer()
+    {
+        return trkComposer;
     }
 
     /**
@@ -174,6 +177,17 @@ public class Track
     public void setAlbum(String album)
     {
         this.trkAlbum = album;
+        trkSortKey = null;
+    }
+
+    /**
+     * Gets the genre.
+     * 
+     * @return genre
+     */
+    public String getGenre()
+    {
+        return trkGenre;
     }
 
     /**
@@ -204,6 +218,17 @@ public class Track
     public void setKind(String kind)
     {
         this.trkKind = kind;
+        trkSortKey = null;
+    }
+
+    /**
+     * Gets the track size in bytes.
+     * 
+     * @return track size
+     */
+    public int getSize()
+    {
+        return trkSize;
     }
 
     /**
@@ -256,6 +281,16 @@ public class Track
         this.trkYear = year;
     }
 
+    /**
+     * Gets the date the track was last modified.
+     * 
+     * @return date modified
+     */
+    public Date getModified()
+    {
+        return trkModified;
+    }
+
     /**
      * Sets the modification date.
      * 
@@ -266,6 +301,16 @@ public class Track
         this.trkModified = modified;
     }
 
+    /**
+     * Gets the date the track was added.
+     * 
+     * @return date added
+     */
+    public Date getDateAdded()
+    {
+        return trkDateAdded;
+    }
+
     /**
      * Sets the date the track was added.
      * 
@@ -276,6 +321,16 @@ public class Track
         this.trkDateAdded = dateAdded;
     }
 
+    /**
+     * Gets the bit rate.
+     * 
+     * @return bit rate
+     */
+    public int getBitRate()
+    {
+        return trkBitRate;
+    }
+
     /**
      * Sets the bit rate.
      * 
@@ -286,6 +341,16 @@ public class Track
         this.trkBitRate = bitRate;
     }
 
+    /**
+     * Gets the sample rate.
+     * 
+     * @return sample rate
+     */
+    public int getSampleRate()
+    {
+        return trkSampleRate;
+    }
+
     /**
      * Sets the sample rate.
      * 
@@ -296,6 +361,16 @@ public class Track
         this.trkSampleRate = sampleRate;
     }
 
+    /**
+     * Gets the play count.
+     * 
+     * @return play count
+     */
+    public int getPlayCount()
+    {
+        return trkPlayCount;
+    }
+
     /**
      * Sets the play count.
      * 
@@ -306,6 +381,16 @@ public class Track
         this.trkPlayCount = playCount;
     }
 
+    /**
+     * Gets the release date.
+     * 
+     * @return release date
+     */
+    public Date getReleased()
+    {
+        return trkReleased;
+    }
+
     /**
      * Sets the release date.
      * 
@@ -326,6 +411,16 @@ public class Track
         return trkRating / RATING_DIVISOR;
     }
 
+    /**
+     * Gets the raw rating, which is the number of stars times 20.
+     * 
+     * @return raw rating
+     */
+    public int getRating()
+    {
+        return trkRating;
+    }
+
     /**
      * Sets the track rating.
      * 
@@ -357,13 +452,29 @@ public class Track
     }
 
     /**
-     * Get the list of playlist info objects.
+     * Get the list of playlist info objects. This is created from the track
+     * playlist index, and is sorted by playlist name.
      * 
      * @return list of playlist info objects
      */
     public List<TrackPlaylistInfo> getPlaylists()
     {
-        return trkPlaylists;
+        TrackPlaylistIndex trackPlaylistIndex = Database.getTrackPlaylistIndex();
+        int trackIndex = Database.getTrackIndex(trkID);
+        int playlistCount = trackPlaylistIndex.getPlaylistCount(trackIndex);
+
+        List<TrackPlaylistInfo> playlists = new ArrayList<TrackPlaylistInfo>(playlistCount);
+        for (int i = 0; i < playlistCount; i++)
+        {
+            int ordinal = trackPlaylistIndex.getPlaylistOrdinal(trackIndex, i);
+
+            TrackPlaylistInfo playlistInfo = new TrackPlaylistInfo();
+            playlistInfo.setPlaylistName(trackPlaylistIndex.getPlaylistName(ordinal));
+            playlistInfo.setBypassed(trackPlaylistIndex.isPlaylistBypassed(ordinal));
+            playlists.add(playlistInfo);
+        }
+
+        return playlists;
     }
     
     /**
@@ -395,68 +506,30 @@ public class Track
      */
     public int getNonBypassedPlaylistCount()
     {
-        int playlistCount = 0;
-
-        for (TrackPlaylistInfo playlistInfo : trkPlaylists)
-        {
-            if (playlistInfo.getBypassed() == false)
-            {
-                playlistCount++;
-            }
-        }
-
-        return playlistCount;
-    }
-
-    /**
-     * Clears the track playlist info.
-     */
-    public void clearPlaylistInfo()
-    {
-        trkPlaylists.clear();
+        return Database.getTrackPlaylistIndex().getNonBypassedPlaylistCount(Database.getTrackIndex(trkID));
     }
-
+    
     /**
-     * Adds playlist info to the track.
+     * Gets the sort key for this track. This contains the attributes used to
+     * sort tracks, normalized once so that comparing tracks doesn't need to
+     * create any objects.
      * 
-     * @param playlistInfo playlist info
+     * @return sort key
      */
-    public void addPlaylistInfoToTrack(TrackPlaylistInfo playlistInfo)
+    public SortKey getSortKey()
     {
-        int index = 0;
-        boolean playlistFound = false;
-
-        /*
-         * Check if we already have a playlist info for the input playlist. This can happen
-         * if the bypass preferences are updated.
-         */
-        for (TrackPlaylistInfo trackPlaylistInfo : trkPlaylists)
+        SortKey sortKey = trkSortKey;
+        if (sortKey == null)
         {
-            if (trackPlaylistInfo.getPlaylistName().equals(playlistInfo.getPlaylistName()))
-            {
-                playlistFound = true;
-                break;
-            }
-
-            index++;
+            sortKey = new SortKey(this);
+            trkSortKey = sortKey;
         }
 
-        /*
-         * Add or update the playlist info.
-         */
-        if (playlistFound == false)
-        {
-            trkPlaylists.add(playlistInfo);
-        }
-        else
-        {
-            trkPlaylists.update(index, playlistInfo);
-        }
+        return sortKey;
     }
-    
+
     /**
      * Compares a given track to this track, using only the name.
-     * This is used when building the duplicates map of tracks.
      * 
      * @param t2 track to be compared to this track
      * @return negative value, zero, or positive value to indicate less than,
@@ -464,14 +537,7 @@ public class Track
      */
     public int compareToName (Track t2)
     {
-    	
-    	/*
-    	 * Ignore leading "The" (case insensitive).
-    	 */
-    	String thisName = this.trkName.replaceAll("^(?i)The ", "");
-    	String thatName = t2.trkName.replaceAll("^(?i)The ", "");
-        
-    	return thisName.toLowerCase().compareTo(thatName.toLowerCase());    	
+        return getSortKey().compareToName(t2.getSortKey());
     }
 
     /**
@@ -483,103 +549,7 @@ public class Track
      */
     public int compareTo(Track t2)
     {
-    	int retval;
-    	
-    	/*
-    	 * Ignore leading "The" (case insensitive).
-    	 */
-    	String thisName = this.trkName.replaceAll("^(?i)The ", "");
-    	String thatName = t2.trkName.replaceAll("^(?i)The ", "");
-
-        /*
-         * Compare the following items to determine the result. The first item that doesn't match
-         * is the overall result.
-         */
-    	
-    	/*
-    	 * Name (always exists)
-    	 */
-        retval = thisName.toLowerCase().compareTo(thatName.toLowerCase());
-        
-        if (retval == 0)
-        {
-        	
-        	/*
-        	 * Artist (could be null)
-        	 */
-        	String thisArtist = this.trkArtist;
-        	String thatArtist = t2.trkArtist;
-        	if (thisArtist == null && thatArtist == null)
-        	{
-        		retval = 0;
-        	}
-        	else if (thisArtist == null)
-        	{
-        		retval = -1;
-        	}
-        	else if (thatArtist == null)
-        	{
-        		retval = 1;
-        	}
-        	else
-        	{
-        		retval = this.trkArtist.toLowerCase().compareTo(t2.trkArtist.toLowerCase());
-        	}
-            
-        	if (retval == 0)
-            {
-            	
-            	/*
-            	 * Album (could be null)
-            	 */
-            	String thisAlbum = this.trkAlbum;
-            	String thatAlbum = t2.trkAlbum;
-            	if (thisAlbum == null && thatAlbum == null)
-            	{
-            		retval = 0;
-            	}
-            	else if (thisAlbum == null)
-            	{
-            		retval = -1;
-            	}
-            	else if (thatAlbum == null)
-            	{
-            		retval = 1;
-            	}
-            	else
-            	{
-                    retval = this.trkAlbum.toLowerCase().compareTo(t2.trkAlbum.toLowerCase());
-            	}
-                
-            	if (retval == 0)
-                {
-                	
-                	/*
-                	 * Kind (don't think it can be null, but let's check anyway)
-                	 */
-                	String thisKind = this.trkKind;
-                	String thatKind = t2.trkKind;
-                	if (thisKind == null && thatKind == null)
-                	{
-                		retval = 0;
-                	}
-                	else if (thisKind == null)
-                	{
-                		retval = -1;
-                	}
-                	else if (thatKind == null)
-                	{
-                		retval = 1;
-                	}
-                	else
-                	{
-                        retval = this.trkKind.toLowerCase().compareTo(t2.trkKind.toLowerCase());
-                	}
-                }
-            }
-        }
-        
-        return retval;
+        return getSortKey().compareTo(t2.getSortKey());
     }
 
     /**
@@ -642,17 +612,23 @@ public class Track
         StringBuilder playlistsStr = new StringBuilder();
         StringBuilder bypassedStr = new StringBuilder();
 
-        for (TrackPlaylistInfo playlistInfo : trkPlaylists)
+        TrackPlaylistIndex trackPlaylistIndex = Database.getTrackPlaylistIndex();
+        int trackIndex = Database.getTrackIndex(trkID);
+        int playlistCount = trackPlaylistIndex.getPlaylistCount(trackIndex);
+
+        for (int i = 0; i < playlistCount; i++)
         {
-            if (playlistsStr.length() > 0)
+            int ordinal = trackPlaylistIndex.getPlaylistOrdinal(trackIndex, i);
+
+            if (i > 0)
             {
                 playlistsStr.append(InternalConstants.LIST_ITEM_SEPARATOR);
                 bypassedStr.append(InternalConstants.LIST_ITEM_SEPARATOR);
             }
 
-            playlistsStr.append(playlistInfo.getPlaylistName());
+            playlistsStr.append(trackPlaylistIndex.getPlaylistName(ordinal));
 
-            if (playlistInfo.getBypassed() == true)
+            if (trackPlaylistIndex.isPlaylistBypassed(ordinal) == true)
             {
                 bypassedStr.append("Y");
             }
@@ -668,8 +644,134 @@ public class Track
                 bypassedStr.toString());
 
         result.put(TrackDisplayColumns.ColumnNames.NUMPLAYLISTS.getNameValue(),
-                Integer.toString(trkPlaylists.getLength()));
+                Integer.toString(playlistCount));
 
         return result;
     }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /**
+     * Class that represents the sort key of a track. The key is immutable,
+     * and contains the name, artist, album and kind of the track, with the
+     * leading "The" (case insensitive) removed from the name and everything
+     * converted to lower case.
+     * <p>
+     * Tracks are compared by name, then artist, then album, then kind. The
+     * first item that doesn't match is the overall result. A missing artist,
+     * album or kind is less than any other value.
+     * 
+     * @author Jon
+     *
+     */
+    public static final class SortKey implements Comparable<SortKey>
+    {
+        private final String name;
+        private final String artist;
+        private final String album;
+        private final String kind;
+
+        private SortKey(Track track)
+        {
+            name = Utilities.stripLeadingArticle(track.trkName).toLowerCase();
+            artist = (track.trkArtist != null) ? track.trkArtist.toLowerCase() : null;
+            album = (track.trkAlbum != null) ? track.trkAlbum.toLowerCase() : null;
+            kind = (track.trkKind != null) ? track.trkKind.toLowerCase() : null;
+        }
+
+        /**
+         * Gets the normalized name.
+         *
+         * @return normalized name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Gets a string representation of this sort key. Two sort keys have
+         * the same string representation exactly when they compare as equal,
+         * so it can be used as a hash key.
+         *
+         * @return string representation of this sort key
+         */
+        public String toKeyString()
+        {
+            StringBuilder keyString = new StringBuilder(name);
+            appendNullable(keyString, artist);
+            appendNullable(keyString, album);
+            appendNullable(keyString, kind);
+
+            return keyString.toString();
+        }
+
+        /**
+         * Compares a given sort key to this sort key, using only the name.
+         * 
+         * @param k2 sort key to be compared to this sort key
+         * @return negative value, zero, or positive value to indicate less
+         * than, equal to, or greater than, respectively
+         */
+        public int compareToName(SortKey k2)
+        {
+            return name.compareTo(k2.name);
+        }
+
+        /**
+         * Compares a given sort key to this sort key.
+         * 
+         * @param k2 sort key to be compared to this sort key
+         * @return negative value, zero, or positive value to indicate less
+         * than, equal to, or greater than, respectively
+         */
+        @Override
+        public int compareTo(SortKey k2)
+        {
+            int retval = name.compareTo(k2.name);
+            if (retval == 0)
+            {
+                retval = compareNullable(artist, k2.artist);
+                if (retval == 0)
+                {
+                    retval = compareNullable(album, k2.album);
+                    if (retval == 0)
+                    {
+                        retval = compareNullable(kind, k2.kind);
+                    }
+                }
+            }
+
+            return retval;
+        }
+
+        /*
+         * Compare two values that could be null.
+         */
+        private static int compareNullable(String s1, String s2)
+        {
+            if (s1 == null)
+            {
+                return (s2 == null) ? 0 : -1;
+            }
+
+            return (s2 == null) ? 1 : s1.compareTo(s2);
+        }
+
+        /*
+         * Append a value that could be null to a key string. Each value is preceded by a
+         * separator that also tells a missing value from an empty one.
+         */
+        private static void appendNullable(StringBuilder keyString, String s)
+        {
+            if (s == null)
+            {
+                keyString.append('\u0000');
+            }
+            else
+            {
+                keyString.append('\u0001').append(s);
+            }
+        }
+    }
 }
@@ -0,0 +1,230 @@
+package itunesq;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.pivot.collections.List;
+
+/**
+ * Class that represents an index of track ID to the index of the track in
+ * the all tracks list.
+ * <p>
+ * The index is built once from the sorted list of all tracks, and never
+ * changes after that. Lookups use primitive integers, so they don't create
+ * any objects:
+ * <ul>
+ * <li>If the track IDs are compact, which is normally the case, the index is
+ * a dense array indexed by track ID.</li>
+ * <li>Otherwise it's an open addressing hash table of track ID to list
+ * index.</li>
+ * </ul>
+ * Whether each track is a video track is kept in a bit set, indexed by list
+ * index. All other tracks are audio tracks, including tracks of unknown
+ * type.
+ *
+ * @author Jon
+ *
+ */
+public class TrackIDIndex
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    /*
+     * A dense array is used if the range of track IDs is no more than this many times the
+     * number of tracks.
+     */
+    private static final int MAX_DENSE_RANGE_FACTOR = 4;
+
+    /*
+     * Value for a missing track in the dense array and the hash table.
+     */
+    private static final int NO_INDEX = -1;
+
+    private int numTracks;
+    private int numVideoTracks;
+
+    /*
+     * Dense array. Entry i is the list index of track ID minTrackID + i.
+     */
+    private int minTrackID;
+    private int[] denseIndices = null;
+
+    /*
+     * Hash table. The capacity is a power of two, and an empty slot has NO_INDEX as its
+     * value.
+     */
+    private int[] hashTrackIDs = null;
+    private int[] hashIndices = null;
+    private int hashMask;
+
+    private BitSet videoTracks;
+
+    /**
+     * Class constructor. This builds the index from a list of tracks.
+     *
+     * @param tracks list of tracks
+     */
+    public TrackIDIndex(List<Track> tracks)
+    {
+        if (tracks == null)
+        {
+            throw new IllegalArgumentException("tracks argument is null");
+        }
+
+        numTracks = tracks.getLength();
+        numVideoTracks = 0;
+        videoTracks = new BitSet(numTracks);
+
+        /*
+         * Find the range of track IDs to decide which kind of index to build.
+         */
+        int maxTrackID = 0;
+        minTrackID = 0;
+        for (int i = 0; i < numTracks; i++)
+        {
+            int trackID = tracks.get(i).getID();
+            if (i == 0 || trackID < minTrackID)
+            {
+                minTrackID = trackID;
+            }
+            if (i == 0 || trackID > maxTrackID)
+            {
+                maxTrackID = trackID;
+            }
+        }
+
+        long range = (numTracks > 0) ? (long) maxTrackID - minTrackID + 1 : 0;
+        if (range <= (long) numTracks * MAX_DENSE_RANGE_FACTOR)
+        {
+            denseIndices = new int[(int) range];
+            Arrays.fill(denseIndices, NO_INDEX);
+        }
+        else
+        {
+            int capacity = Integer.highestOneBit(numTracks * 2 - 1) << 1;
+            hashTrackIDs = new int[capacity];
+            hashIndices = new int[capacity];
+            Arrays.fill(hashIndices, NO_INDEX);
+            hashMask = capacity - 1;
+        }
+
+        /*
+         * Add the tracks.
+         */
+        for (int i = 0; i < numTracks; i++)
+        {
+            Track track = tracks.get(i);
+            int trackID = track.getID();
+
+            if (denseIndices != null)
+            {
+                denseIndices[trackID - minTrackID] = i;
+            }
+            else
+            {
+                int slot = findSlot(trackID);
+                hashTrackIDs[slot] = trackID;
+                hashIndices[slot] = i;
+            }
+
+            if (track.getTrackType() == Track.TrackType.VIDEO)
+            {
+                videoTracks.set(i);
+                numVideoTracks++;
+            }
+        }
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the number of tracks in the index.
+     *
+     * @return number of tracks
+     */
+    public int getNumTracks()
+    {
+        return numTracks;
+    }
+
+    /**
+     * Gets the number of video tracks in the index.
+     *
+     * @return number of video tracks
+     */
+    public int getNumVideoTracks()
+    {
+        return numVideoTracks;
+    }
+
+    /**
+     * Gets the number of audio tracks in the index.
+     *
+     * @return number of audio tracks
+     */
+    public int getNumAudioTracks()
+    {
+        return numTracks - numVideoTracks;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Gets the list index of a track ID.
+     *
+     * @param trackID track ID
+     * @return index in the all tracks list, or -1 if the track ID is not in
+     * the index
+     */
+    public int getIndex(int trackID)
+    {
+        if (denseIndices != null)
+        {
+            int offset = trackID - minTrackID;
+
+            return (offset >= 0 && offset < denseIndices.length) ? denseIndices[offset] : NO_INDEX;
+        }
+
+        return hashIndices[findSlot(trackID)];
+    }
+
+    /**
+     * Determines if the track at a list index is a video track.
+     *
+     * @param index index in the all tracks list
+     * @return <code>true</code> if the track is a video track, otherwise
+     * <code>false</code>
+     */
+    public boolean isVideoIndex(int index)
+    {
+        return videoTracks.get(index);
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Find the hash table slot for a track ID. This is either the slot that contains it, or
+     * the empty slot where it belongs.
+     */
+    private int findSlot(int trackID)
+    {
+        int slot = mix(trackID) & hashMask;
+        while (hashIndices[slot] != NO_INDEX && hashTrackIDs[slot] != trackID)
+        {
+            slot = (slot + 1) & hashMask;
+        }
+
+        return slot;
+    }
+
+    /*
+     * Spread the bits of a track ID, so that IDs with a common stride don't collide.
+     */
+    private static int mix(int trackID)
+    {
+        int hash = trackID * 0x9E3779B9;
+
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,105 @@
+package itunesq;
+
+import java.util.Arrays;
+
+/**
+ * Class that represents a list of track IDs, stored as primitive integers.
+ * <p>
+ * Track IDs are kept in the order they were added. This avoids the boxing of
+ * a <code>List&lt;Integer&gt;</code>, which matters for the large number of
+ * lists the database keeps. The list can be handed out as a read-only
+ * <code>TrackIDSequence</code>.
+ *
+ * @author Jon
+ *
+ */
+public class TrackIDList extends TrackIDSequence
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * Class constructor.
+     */
+    public TrackIDList()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class constructor specifying the initial capacity.
+     *
+     * @param capacity initial capacity
+     */
+    public TrackIDList(int capacity)
+    {
+        super(checkCapacity(capacity));
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Adds a track ID to the end of the list.
+     *
+     * @param trackID track ID
+     */
+    public void add(int trackID)
+    {
+        if (length == trackIDs.length)
+        {
+            trackIDs = Arrays.copyOf(trackIDs, Math.max(DEFAULT_CAPACITY, length * 2));
+        }
+
+        trackIDs[length++] = trackID;
+    }
+
+    /**
+     * Removes the first occurrence of a track ID from the list.
+     *
+     * @param trackID track ID
+     * @return <code>true</code> if the track ID was found, otherwise
+     * <code>false</code>
+     */
+    public boolean remove(int trackID)
+    {
+        int index = indexOf(trackID);
+        if (index < 0)
+        {
+            return false;
+        }
+
+        System.arraycopy(trackIDs, index + 1, trackIDs, index, length - index - 1);
+        length--;
+
+        return true;
+    }
+
+    /**
+     * Releases any unused capacity. This is worth doing for a list that
+     * won't grow any more.
+     */
+    public void trimToLength()
+    {
+        if (trackIDs.length != length)
+        {
+            trackIDs = Arrays.copyOf(trackIDs, length);
+        }
+    }
+
+    // ---------------- Private methods -------------------------------------
+
+    /*
+     * Check the initial capacity.
+     */
+    private static int checkCapacity(int capacity)
+    {
+        if (capacity < 0)
+        {
+            throw new IllegalArgumentException("capacity argument is negative");
+        }
+
+        return capacity;
+    }
+}
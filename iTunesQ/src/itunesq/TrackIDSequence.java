@@ -0,0 +1,152 @@
+package itunesq;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * Class that represents a read-only sequence of track IDs, stored as
+ * primitive integers.
+ * <p>
+ * This is the read-only view of a <code>TrackIDList</code>. It reflects any
+ * changes made to the list, but has no methods to make changes itself.
+ * Iterating over it, or streaming it, doesn't box the track IDs.
+ *
+ * @author Jon
+ *
+ */
+public class TrackIDSequence
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    /*
+     * The track IDs are in the first 'length' entries of the array. These are maintained by
+     * the TrackIDList subclass.
+     */
+    int[] trackIDs;
+    int length;
+
+    /*
+     * Class constructor.
+     */
+    TrackIDSequence(int capacity)
+    {
+        trackIDs = new int[capacity];
+        length = 0;
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the number of track IDs in the sequence.
+     *
+     * @return number of track IDs
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Gets the track ID at an index.
+     *
+     * @param index index into the sequence
+     * @return track ID
+     */
+    public int get(int index)
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds, length " + length);
+        }
+
+        return trackIDs[index];
+    }
+
+    /**
+     * Finds the index of the first occurrence of a track ID.
+     *
+     * @param trackID track ID
+     * @return index, or -1 if the track ID was not found
+     */
+    public int indexOf(int trackID)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (trackIDs[i] == trackID)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Determines if the sequence contains a track ID.
+     *
+     * @param trackID track ID
+     * @return <code>true</code> if the track ID was found, otherwise
+     * <code>false</code>
+     */
+    public boolean contains(int trackID)
+    {
+        return indexOf(trackID) >= 0;
+    }
+
+    /**
+     * Gets a copy of the track IDs as an array.
+     *
+     * @return array of track IDs
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(trackIDs, length);
+    }
+
+    /**
+     * Gets an iterator over the track IDs. The iterator doesn't box the
+     * track IDs if <code>nextInt</code> is used.
+     *
+     * @return iterator over the track IDs
+     */
+    public PrimitiveIterator.OfInt iterator()
+    {
+        return new PrimitiveIterator.OfInt()
+        {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < length;
+            }
+
+            @Override
+            public int nextInt()
+            {
+                if (next >= length)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return trackIDs[next++];
+            }
+        };
+    }
+
+    /**
+     * Gets a stream of the track IDs. The stream must be consumed before the
+     * underlying list is changed.
+     *
+     * @return stream of track IDs
+     */
+    public IntStream stream()
+    {
+        return Arrays.stream(trackIDs, 0, length);
+    }
+}
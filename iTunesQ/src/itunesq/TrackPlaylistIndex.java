@@ -0,0 +1,375 @@
+package itunesq;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Map;
+
+/**
+ * Class that represents an index of track to the playlists that contain the
+ * track.
+ * <p>
+ * The index is built from all playlists that are neither folders nor
+ * ignored. Playlists with the same name are indexed as one playlist. Each
+ * indexed playlist gets an ordinal, in case-insensitive order of the playlist
+ * name, and whether it's bypassed is kept in a bit set indexed by ordinal.
+ * <p>
+ * For each track, identified by its index in the all tracks list, the index
+ * holds the ordinals of its playlists in ascending order. So the playlists of
+ * a track come out sorted by name. The ordinals of all tracks are kept in a
+ * single array, with an array of offsets giving the start of each track's
+ * ordinals, so the index doesn't create any objects per track.
+ * <p>
+ * The index refers to tracks by list index, so it must be rebuilt whenever
+ * the track indexes change, or the playlists or their ignored status
+ * change. A change to the bypassed status only needs an updated copy of the
+ * index, which shares the track entries with the original.
+ *
+ * @author Jon
+ *
+ */
+public class TrackPlaylistIndex
+{
+
+    // ---------------- Private variables -----------------------------------
+
+    /*
+     * Order of the playlist ordinals. Names that only differ in case are ordered by the
+     * exact name, so the order doesn't depend on the playlists map.
+     */
+    private static final Comparator<String> PLAYLIST_NAME_ORDER = new Comparator<String>()
+    {
+        @Override
+        public int compare(String s1, String s2)
+        {
+            int result = s1.toLowerCase().compareTo(s2.toLowerCase());
+
+            return (result != 0) ? result : s1.compareTo(s2);
+        }
+    };
+
+    private String[] playlistNames;
+    private BitSet bypassedPlaylists;
+
+    /*
+     * The ordinals of the playlists of track index i are in entries trackOffsets[i] up to
+     * trackOffsets[i + 1] of trackOrdinals.
+     */
+    private int[] trackOffsets;
+    private int[] trackOrdinals;
+
+    /**
+     * Class constructor for an empty index.
+     */
+    public TrackPlaylistIndex()
+    {
+        playlistNames = new String[0];
+        bypassedPlaylists = new BitSet();
+        trackOffsets = new int[1];
+        trackOrdinals = new int[0];
+    }
+
+    /**
+     * Class constructor. This builds the index from a collection of
+     * playlists.
+     *
+     * @param playlists map of playlist persistent ID to playlist
+     * @param trackIDIndex index of track ID to track index
+     */
+    public TrackPlaylistIndex(Map<String, Playlist> playlists, TrackIDIndex trackIDIndex)
+    {
+        if (playlists == null)
+        {
+            throw new IllegalArgumentException("playlists argument is null");
+        }
+
+        if (trackIDIndex == null)
+        {
+            throw new IllegalArgumentException("trackIDIndex argument is null");
+        }
+
+        /*
+         * Collect the playlists to be indexed, and their distinct names. We skip the
+         * following:
+         *
+         * - Folder playlists (covered by the playlists in the folder)
+         * - Ignored playlists
+         */
+        Playlist[] indexedPlaylists = new Playlist[playlists.getCount()];
+        int numIndexedPlaylists = 0;
+        Map<String, Integer> ordinalsByName = new HashMap<String, Integer>();
+
+        for (String playlistKey : playlists)
+        {
+            Playlist playlistObj = playlists.get(playlistKey);
+
+            if (playlistObj.getFolderContentCount() == 0 && playlistObj.getIgnored() == false)
+            {
+                indexedPlaylists[numIndexedPlaylists++] = playlistObj;
+                ordinalsByName.put(playlistObj.getName(), 0);
+            }
+        }
+
+        /*
+         * Assign the ordinals in name order.
+         */
+        playlistNames = new String[ordinalsByName.getCount()];
+        int ordinal = 0;
+        for (String playlistName : ordinalsByName)
+        {
+            playlistNames[ordinal++] = playlistName;
+        }
+
+        Arrays.sort(playlistNames, PLAYLIST_NAME_ORDER);
+
+        for (ordinal = 0; ordinal < playlistNames.length; ordinal++)
+        {
+            ordinalsByName.put(playlistNames[ordinal], ordinal);
+        }
+
+        /*
+         * Put the playlists in ordinal order, so that the ordinals are added to each track
+         * in ascending order. The sort is stable, so a bypassed indicator from a later
+         * playlist with the same name wins.
+         */
+        int[] playlistOrdinals = new int[numIndexedPlaylists];
+        Integer[] playlistOrder = new Integer[numIndexedPlaylists];
+        for (int i = 0; i < numIndexedPlaylists; i++)
+        {
+            playlistOrdinals[i] = ordinalsByName.get(indexedPlaylists[i].getName());
+            playlistOrder[i] = i;
+        }
+
+        Arrays.sort(playlistOrder, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer i1, Integer i2)
+            {
+                return Integer.compare(playlistOrdinals[i1], playlistOrdinals[i2]);
+            }
+        });
+
+        bypassedPlaylists = new BitSet(playlistNames.length);
+        for (Integer i : playlistOrder)
+        {
+            bypassedPlaylists.set(playlistOrdinals[i], indexedPlaylists[i].getBypassed());
+        }
+
+        /*
+         * Count the playlists of each track, then fill in the ordinals. In both passes a
+         * track is only counted once per ordinal, because the tracks of a playlist can
+         * contain duplicates, and playlists can share a name.
+         */
+        int numTracks = trackIDIndex.getNumTracks();
+        int[] lastOrdinals = new int[numTracks];
+
+        trackOffsets = new int[numTracks + 1];
+        Arrays.fill(lastOrdinals, -1);
+        for (Integer i : playlistOrder)
+        {
+            TrackIDSequence playlistTracks = indexedPlaylists[i].getTracks();
+            if (playlistTracks == null)
+            {
+                continue;
+            }
+
+            for (int j = 0; j < playlistTracks.getLength(); j++)
+            {
+                int trackIndex = trackIDIndex.getIndex(playlistTracks.get(j));
+                if (trackIndex >= 0 && lastOrdinals[trackIndex] != playlistOrdinals[i])
+                {
+                    lastOrdinals[trackIndex] = playlistOrdinals[i];
+                    trackOffsets[trackIndex + 1]++;
+                }
+            }
+        }
+
+        for (int trackIndex = 0; trackIndex < numTracks; trackIndex++)
+        {
+            trackOffsets[trackIndex + 1] += trackOffsets[trackIndex];
+        }
+
+        trackOrdinals = new int[trackOffsets[numTracks]];
+        int[] nextOffsets = Arrays.copyOf(trackOffsets, numTracks);
+        Arrays.fill(lastOrdinals, -1);
+        for (Integer i : playlistOrder)
+        {
+            TrackIDSequence playlistTracks = indexedPlaylists[i].getTracks();
+            if (playlistTracks == null)
+            {
+                continue;
+            }
+
+            for (int j = 0; j < playlistTracks.getLength(); j++)
+            {
+                int trackIndex = trackIDIndex.getIndex(playlistTracks.get(j));
+                if (trackIndex >= 0 && lastOrdinals[trackIndex] != playlistOrdinals[i])
+                {
+                    lastOrdinals[trackIndex] = playlistOrdinals[i];
+                    trackOrdinals[nextOffsets[trackIndex]++] = playlistOrdinals[i];
+                }
+            }
+        }
+    }
+
+    /*
+     * Class constructor for a copy of an index with different bypassed indicators. The
+     * copy shares everything else with the original, which never changes.
+     */
+    private TrackPlaylistIndex(TrackPlaylistIndex index, BitSet bypassedPlaylists)
+    {
+        this.playlistNames = index.playlistNames;
+        this.bypassedPlaylists = bypassedPlaylists;
+        this.trackOffsets = index.trackOffsets;
+        this.trackOrdinals = index.trackOrdinals;
+    }
+
+    // ---------------- Getters and setters ---------------------------------
+
+    /**
+     * Gets the number of indexed playlists.
+     *
+     * @return number of playlists
+     */
+    public int getNumPlaylists()
+    {
+        return playlistNames.length;
+    }
+
+    /**
+     * Gets the total number of track playlist entries in the index.
+     *
+     * @return number of entries
+     */
+    public int getNumEntries()
+    {
+        return trackOrdinals.length;
+    }
+
+    // ---------------- Public methods --------------------------------------
+
+    /**
+     * Gets the name of a playlist.
+     *
+     * @param ordinal playlist ordinal
+     * @return playlist name
+     */
+    public String getPlaylistName(int ordinal)
+    {
+        return playlistNames[ordinal];
+    }
+
+    /**
+     * Determines if a playlist is bypassed.
+     *
+     * @param ordinal playlist ordinal
+     * @return <code>true</code> if the playlist is bypassed, otherwise
+     * <code>false</code>
+     */
+    public boolean isPlaylistBypassed(int ordinal)
+    {
+        return bypassedPlaylists.get(ordinal);
+    }
+
+    /**
+     * Gets the ordinal of a playlist.
+     *
+     * @param playlistName playlist name
+     * @return playlist ordinal, or a negative value if the playlist is not in
+     * the index
+     */
+    public int getPlaylistOrdinal(String playlistName)
+    {
+        return Arrays.binarySearch(playlistNames, playlistName, PLAYLIST_NAME_ORDER);
+    }
+
+    /**
+     * Creates a copy of the index with the bypassed indicator of some
+     * playlists changed. The copy shares the track entries with this index,
+     * so only the bypassed indicators are copied. This index isn't changed.
+     *
+     * @param bypassedByName map of playlist name to its new bypassed
+     * indicator. Playlists that are not in the index are skipped.
+     * @return updated copy of the index
+     */
+    public TrackPlaylistIndex updateBypassed(Map<String, Boolean> bypassedByName)
+    {
+        if (bypassedByName == null)
+        {
+            throw new IllegalArgumentException("bypassedByName argument is null");
+        }
+
+        BitSet updatedBypassedPlaylists = (BitSet) bypassedPlaylists.clone();
+        for (String playlistName : bypassedByName)
+        {
+            int ordinal = getPlaylistOrdinal(playlistName);
+            if (ordinal >= 0)
+            {
+                updatedBypassedPlaylists.set(ordinal, bypassedByName.get(playlistName));
+            }
+        }
+
+        return new TrackPlaylistIndex(this, updatedBypassedPlaylists);
+    }
+
+    /**
+     * Gets the number of playlists that contain a track.
+     *
+     * @param trackIndex index in the all tracks list
+     * @return number of playlists, which is 0 if the track index is not in
+     * the index
+     */
+    public int getPlaylistCount(int trackIndex)
+    {
+        if (trackIndex < 0 || trackIndex >= trackOffsets.length - 1)
+        {
+            return 0;
+        }
+
+        return trackOffsets[trackIndex + 1] - trackOffsets[trackIndex];
+    }
+
+    /**
+     * Gets the ordinal of one of the playlists that contain a track. The
+     * playlists of a track are in ascending order of ordinal.
+     *
+     * @param trackIndex index in the all tracks list
+     * @param i index into the playlists of the track, from 0 to the playlist
+     * count minus 1
+     * @return playlist ordinal
+     */
+    public int getPlaylistOrdinal(int trackIndex, int i)
+    {
+        if (i < 0 || i >= getPlaylistCount(trackIndex))
+        {
+            throw new IndexOutOfBoundsException("index " + i + " out of bounds, playlist count "
+                    + getPlaylistCount(trackIndex));
+        }
+
+        return trackOrdinals[trackOffsets[trackIndex] + i];
+    }
+
+    /**
+     * Gets the number of playlists that contain a track and are not
+     * bypassed.
+     *
+     * @param trackIndex index in the all tracks list
+     * @return number of non-bypassed playlists
+     */
+    public int getNonBypassedPlaylistCount(int trackIndex)
+    {
+        int playlistCount = 0;
+
+        for (int i = 0; i < getPlaylistCount(trackIndex); i++)
+        {
+            if (bypassedPlaylists.get(trackOrdinals[trackOffsets[trackIndex] + i]) == false)
+            {
+                playlistCount++;
+            }
+        }
+
+        return playlistCount;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import org.apache.pivot.beans.BXML;
 import org.apache.pivot.beans.BXMLSerializer;
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Map;
@@ -23,6 +24,7 @@ import org.apache.pivot.wtk.Label;
 import org.apache.pivot.wtk.Mouse;
 import org.apache.pivot.wtk.Orientation;
 import org.apache.pivot.wtk.PushButton;
+import org.apache.pivot.wtk.SortDirection;
 import org.apache.pivot.wtk.TablePane;
 import org.apache.pivot.wtk.TableView;
 import org.apache.pivot.wtk.TableViewHeader;
@@ -53,6 +55,9 @@ public class TracksWindow
     private String queryStr = null;
     private List<String> columnNames = null;
     private String tableSortColumnName = null;
+    private Skins.Window displayWindow = null;
+    private List<Track> displayedTracks = null;
+    private LibraryWatcher.ReloadListener reloadListener = null;
     private Logger logger = null;
 
     /*
@@ -225,43 +230,7 @@ public class TracksWindow
         /*
          * Create a list suitable for the setTableData() method.
          */
-        List<HashMap<String, String>> displayTracks = new ArrayList<HashMap<String, String>>();
-
-        /*
-         * Now walk the set, and add all requested tracks to the list.
-         */
-        int trackNum = 0;
-
-        for (Track track : tracks)
-        {
-        	HashMap<String, String> trackAttrs;
-        	switch (window)
-        	{
-        	case TRACKS:
-                trackAttrs = track.toDisplayMap(++trackNum);
-                displayTracks.add(trackAttrs);
-        		break;
-        	
-        	case AUDIO_TRACKS:
-        		if (Database.getAudioTracksMap().get(track.getID()) != null)
-        		{
-                    trackAttrs = track.toDisplayMap(++trackNum);
-                    displayTracks.add(trackAttrs);
-        		}
-        		break;
-        	
-        	case VIDEO_TRACKS:
-        		if (Database.getVideoTracksMap().get(track.getID()) != null)
-        		{
-                    trackAttrs = track.toDisplayMap(++trackNum);
-                    displayTracks.add(trackAttrs);
-        		}
-        		break;
-        	
-        	default:
-                throw new InternalErrorException(true, "unexpected window type '" + window + "'");
-        	}
-        }
+        List<HashMap<String, String>> displayTracks = createDisplayTracks(window, tracks);
 
         logger.info("found " + displayTracks.getLength() + " tracks for display");
 
@@ -291,6 +260,21 @@ public class TracksWindow
          */
         tracksTableView.setTableData(displayTracks);
 
+        /*
+         * Refresh the tracks if the input file is reloaded while the window is open.
+         */
+        displayWindow = window;
+        displayedTracks = tracks;
+        reloadListener = new LibraryWatcher.ReloadListener()
+        {
+            @Override
+            public void libraryReloaded()
+            {
+                refreshTracks();
+            }
+        };
+        LibraryWatcher.addReloadListener(reloadListener);
+
         /*
          * Add a sort listener to allow column sorting.
          */
@@ -507,6 +491,111 @@ public class TracksWindow
 
     // ---------------- Private methods -------------------------------------
 
+    /*
+     * Create the table data for a list of tracks.
+     */
+    private List<HashMap<String, String>> createDisplayTracks(Skins.Window window, List<Track> tracks)
+    {
+        List<HashMap<String, String>> displayTracks = new ArrayList<HashMap<String, String>>();
+
+        /*
+         * Now walk the set, and add all requested tracks to the list.
+         */
+        int trackNum = 0;
+
+        for (Track track : tracks)
+        {
+        	HashMap<String, String> trackAttrs;
+        	switch (window)
+        	{
+        	case TRACKS:
+                trackAttrs = track.toDisplayMap(++trackNum);
+                displayTracks.add(trackAttrs);
+        		break;
+        	
+        	case AUDIO_TRACKS:
+        		if (Database.isTrackOfType(track.getID(), Track.TrackType.AUDIO) == true)
+        		{
+                    trackAttrs = track.toDisplayMap(++trackNum);
+                    displayTracks.add(trackAttrs);
+        		}
+        		break;
+        	
+        	case VIDEO_TRACKS:
+        		if (Database.isTrackOfType(track.getID(), Track.TrackType.VIDEO) == true)
+        		{
+                    trackAttrs = track.toDisplayMap(++trackNum);
+                    displayTracks.add(trackAttrs);
+        		}
+        		break;
+        	
+        	default:
+                throw new InternalErrorException(true, "unexpected window type '" + window + "'");
+        	}
+        }
+
+        return displayTracks;
+    }
+
+    /*
+     * Refresh the displayed tracks after the input file has been reloaded.
+     */
+    private void refreshTracks()
+    {
+        logger.trace("refreshTracks: " + this.hashCode());
+
+        List<Track> tracks;
+
+        /*
+         * A basic tracks display shows all audio or video tracks, so just get them again.
+         */
+        if (queryType == ListQueryType.Type.NONE)
+        {
+            Track.TrackType trackType = (displayWindow == Skins.Window.VIDEO_TRACKS) 
+                    ? Track.TrackType.VIDEO : Track.TrackType.AUDIO;
+            tracks = Database.getTracksOfType(trackType);
+        }
+
+        /*
+         * The results of a query are kept as they are, but each track is replaced by its
+         * reloaded version. Tracks that no longer exist are dropped.
+         */
+        else
+        {
+            tracks = new ArrayList<Track>();
+            for (Track track : displayedTracks)
+            {
+                Track reloadedTrack = Database.getTrackByID(track.getID());
+                if (reloadedTrack != null)
+                {
+                    tracks.add(reloadedTrack);
+                }
+            }
+        }
+        displayedTracks = tracks;
+
+        List<HashMap<String, String>> displayTracks = createDisplayTracks(displayWindow, tracks);
+        logger.info("refreshed " + displayTracks.getLength() + " tracks for display");
+
+        numTracksLabel.setText(StringConstants.TRACK_NUMBER + displayTracks.getLength());
+        tracksTableView.setTableData(displayTracks);
+
+        /*
+         * Resort the table according to the current sort, if any.
+         */
+        TableView.SortDictionary sort = tracksTableView.getSort();
+        if (sort.getLength() > 0)
+        {
+            Dictionary.Pair<String, SortDirection> dict = tracksTableView.getSort().get(0);
+            tracksTableView.setSort(dict.key, dict.value);
+        }
+
+        if (queryType != ListQueryType.Type.NONE)
+        {
+            trackPlaylistsTableView.setTableData(new ArrayList<HashMap<String, String>>());
+        }
+    }
+
     /*
      * Set up the various event handlers.
      */
@@ -553,6 +642,11 @@ public class TracksWindow
             {
                 logger.info("done button pressed");
 
+                /*
+                 * We no longer care about the input file being reloaded.
+                 */
+                LibraryWatcher.removeReloadListener(reloadListener);
+
                 /*
                  * Close the window.
                  */
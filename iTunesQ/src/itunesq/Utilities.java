@@ -56,6 +56,11 @@ public final class Utilities
     private static final String FORMATTED_DATE_ISO8601_UTC_ZONE_SUFFIX = "X";
     private static final String FORMATTED_DATE_ISO8601_ZONE_SUFFIX = "XXX";
     
+    /*
+     * Article ignored by stripLeadingArticle().
+     */
+    private static final String LEADING_ARTICLE = "The ";
+
     /*
      * Format returned by getCurrentTimestamp().
      */
@@ -272,6 +277,23 @@ public final class Utilities
         return calendar.getTimeInMillis();
     }
 
+    /**
+     * Removes a leading "The " (case insensitive) from a name, which is
+     * ignored when sorting names.
+     * 
+     * @param name name
+     * @return name without the leading article
+     */
+    public static String stripLeadingArticle(String name)
+    {
+        if (name.regionMatches(true, 0, LEADING_ARTICLE, 0, LEADING_ARTICLE.length()))
+        {
+            return name.substring(LEADING_ARTICLE.length());
+        }
+
+        return name;
+    }
+
     /**
      * Gets the current timestamp.
      * 
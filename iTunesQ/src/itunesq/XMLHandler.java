@@ -6,20 +6,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.ParseException;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.pivot.collections.ArrayList;
-import org.apache.pivot.collections.LinkedList;
 import org.apache.pivot.collections.List;
-import org.apache.pivot.collections.Map;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.located.LocatedElement;
-import org.jdom2.located.LocatedJDOMFactory;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Logger;
@@ -29,10 +20,20 @@ import ch.qos.logback.classic.Logger;
  * <p>
  * This is a final class consisting entirely of static methods.
  * <p>
- * The main public method is <code>processXML</code>, that uses JDOM to walk
- * through the XML file. I'd like to note that the XML file (original iTunes 
- * design) is rather ridiculous and difficult to work with. Just saying.
- * 
+ * The main public method is <code>processXML</code>, that uses a streaming
+ * plist reader to walk through the XML file. Tracks and playlists are added to
+ * the database as they are read, so only a single track or playlist is held in
+ * memory at a time. The file can also be read with <code>readXML</code>, which
+ * hands the tracks and playlists to a listener instead.
+ * <p>
+ * I'd like to note that the XML file (original iTunes design) is rather
+ * ridiculous and difficult to work with. Just saying.
+ * <p>
+ * The tracks are the bulk of the file. If the user prefers, the file is
+ * memory-mapped and the tracks are parsed in parallel chunks on a fork-join
+ * pool. The tracks are still handed to the listener in file order, so the
+ * result is the same as parsing them sequentially.
+ *
  * @author Jon
  *
  */
@@ -58,12 +59,19 @@ public final class XMLHandler
     private static final String ELEM_DICT = "dict";
     private static final String ELEM_INTEGER = "integer";
     private static final String ELEM_KEY = "key";
+    private static final String ELEM_PLIST = "plist";
     private static final String ELEM_STRING = "string";
 
     private static final String KEY_DATE = "Date";
     private static final String KEY_PLAYLISTS = "Playlists";
     private static final String KEY_TRACKS = "Tracks";
 
+    /*
+     * Number of chunks to split the tracks into for each processor when parsing them in
+     * parallel. More chunks than processors evens out the load.
+     */
+    private static final int TRACK_CHUNKS_PER_PROCESSOR = 4;
+
     // ---------------- Public methods --------------------------------------
 
     /**
@@ -80,7 +88,7 @@ public final class XMLHandler
 
     /**
      * Gets the timestamp of the XML file.
-     * 
+     *
      * @return file timestamp
      */
     public static String getXMLFileTimestamp()
@@ -89,1012 +97,797 @@ public final class XMLHandler
     }
 
     /**
-     * Reads and processes the XML file.
+     * Gets the date of the XML file.
+     * 
+     * @return file date, or null if no file has been processed
+     */
+    public static Date getXMLFileDate()
+    {
+        return fileDate;
+    }
+
+    /**
+     * Sets the date of the XML file. This is used when the database is
+     * restored without processing the file.
      * 
+     * @param date file date
+     */
+    public static void setXMLFileDate(Date date)
+    {
+        fileDate = date;
+    }
+
+    /**
+     * Reads and processes the XML file.
+     *
      * @param xmlFileName XML file name
      * @throws IOException If an error occurs trying to read the XML
      * file.
      */
-    public static void processXML(String xmlFileName) 
+    public static void processXML(String xmlFileName)
             throws IOException
     {
         fileLogger.trace("processXML");
 
         /*
-         * Create a SAXBuilder to read the XML file.
-         */
-        fileLogger.info("creating SAX builder");
-        SAXBuilder jdomBuilder = new SAXBuilder(null, null, new LocatedJDOMFactory());
-
-        /*
-         * Build the JDOM document.
+         * Read the XML file into the database. Use separate threads for the tracks and artists
+         * if that's worthwhile. The database is empty, so the tracks can be bulk loaded.
          */
-        Document jdomDocument = null;
-        fileLogger.info("creating JDOM document");
+        DatabaseLoader loader = createDatabaseLoader(PipelinedDatabaseLoader.isWorthwhile());
+        loader.setBulkLoad(true);
         try
         {
-            jdomDocument = jdomBuilder.build(xmlFileName);
+            readXML(xmlFileName, loader);
         }
-        catch (JDOMException e)
+        finally
         {
-            MainWindow.logException(fileLogger, e);
-            handleJDOMError(e.getMessage());
+            loader.finish();
         }
 
+    	/*
+    	 * Post-process the playlists as follows:
+    	 *
+    	 *   1) Set the content count for all folder playlists.
+    	 *   2) Mark all bypassed playlists.
+    	 *   3) Update track playlist info for all playlists.
+    	 */
+    	PlaylistCollection.postProcessPlaylists();
+
         /*
-         * The first 2 elements look like this:
-         * 
-         * <plist version="..."> <dict>
+         * Log the XML file statistics.
          */
-        fileLogger.info("looking for root elements");
-
-        Element root = jdomDocument.getRootElement();
-        Element mainDict = nextSibling(root);
-        if (mainDict == null || !mainDict.getName().equals(ELEM_DICT))
-        {
-            handleJDOMError("could not find main <" + ELEM_DICT + "> element");
-        }
+        Database.logFileStats();
+    }
 
-        Element dateKey = null;
-        Element dateValue = null;
-        Element trackKey = null;
-        Element tracksHolder = null;
-        Element playlistKey = null;
-        Element playlistsHolder = null;
+    /**
+     * Creates a database loader that handles tracks and playlists the way
+     * the XML file requires.
+     *
+     * @param pipelined <code>true</code> to use separate threads for the
+     * tracks and artists
+     * @return database loader
+     */
+    public static DatabaseLoader createDatabaseLoader(boolean pipelined)
+    {
+        DatabaseLoader loader = (pipelined == true)
+                ? new PipelinedDatabaseLoader(trackLogger, playlistLogger, artistLogger)
+                : new DatabaseLoader(trackLogger, playlistLogger, artistLogger);
 
         /*
-         * Get the children of the top level <dict> element. These represent
-         * global information and the lists of tracks and playlists.
+         * Find duplicates by name only, and check for ignored playlists as they are found.
          */
-        List<Element> mainChildren = javaListToPivotList(mainDict);
+        loader.setDuplicatesByName(true);
+        loader.setCheckIgnoredPlaylists(true);
+
+        return loader;
+    }
+
+    /**
+     * Reads the XML file, handing each track and playlist to a listener. The
+     * file date is also saved.
+     *
+     * @param xmlFileName XML file name
+     * @param listener listener that receives the tracks and playlists
+     * @throws IOException If an error occurs trying to read the XML
+     * file.
+     */
+    public static void readXML(String xmlFileName, LibraryListener listener)
+            throws IOException
+    {
+        fileLogger.trace("readXML");
+
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener argument is null");
+        }
 
         /*
-         * Try to locate the following elements:
-         * 
-         *   <key>Date</key> 
-         *   <key>Tracks</key> 
-         *   <key>Playlists</key>
+         * Map the XML file if the tracks should be parsed in parallel. The file might not be
+         * one we can split, in which case we parse it sequentially after all.
          */
-        fileLogger.info("looking for global information elements");
-
-        for (Element elem : mainChildren)
+        MappedPlistFile mappedFile = null;
+        if (Preferences.getInstance().getParallelTrackParsing() == true)
         {
-            if (elem.getName().equals(ELEM_KEY) && elem.getTextTrim().equals(KEY_DATE))
+            mappedFile = MappedPlistFile.open(xmlFileName,
+                    Runtime.getRuntime().availableProcessors() * TRACK_CHUNKS_PER_PROCESSOR);
+            if (mappedFile == null)
             {
-                dateKey = elem;
-            }
-            if (elem.getName().equals(ELEM_KEY) && elem.getTextTrim().equals(KEY_TRACKS))
-            {
-                trackKey = elem;
-            }
-            if (elem.getName().equals(ELEM_KEY) && elem.getTextTrim().equals(KEY_PLAYLISTS))
-            {
-                playlistKey = elem;
+                fileLogger.info("unable to split tracks, parsing them sequentially");
             }
         }
 
         /*
-         * Locate the following <date> element for the date key.
-         * 
-         * NOTE: This is optional.
+         * Create a streaming reader for the XML file. When parsing the tracks in parallel, it
+         * reads everything except the tracks.
          */
+        fileLogger.info("creating plist stream reader");
+        PlistStreamReader plist = (mappedFile != null)
+                ? new PlistStreamReader(mappedFile.openWithoutTracks(), 1)
+                : new PlistStreamReader(xmlFileName);
+
         String xmlDate = null;
-        if (dateKey != null)
+        boolean tracksFound = false;
+        boolean playlistsFound = false;
+
+        try
         {
-            dateValue = nextSibling(dateKey);
-            if (dateValue != null && dateValue.getName().equals(ELEM_DATE))
+
+            /*
+             * The first 2 elements look like this:
+             *
+             * <plist version="..."> <dict>
+             */
+            fileLogger.info("looking for root elements");
+
+            if (plist.nextTag() == false || !plist.getName().equals(ELEM_PLIST)
+                    || plist.nextTag() == false || !plist.getName().equals(ELEM_DICT))
             {
-            	xmlDate = dateValue.getValue();
+                handleXMLError("could not find main <" + ELEM_DICT + "> element");
             }
-            else
+
+            /*
+             * Walk the children of the top level <dict> element. These represent
+             * global information and the lists of tracks and playlists. We care
+             * about the following elements:
+             *
+             *   <key>Date</key>
+             *   <key>Tracks</key>
+             *   <key>Playlists</key>
+             *
+             * Everything else is skipped. The tracks and playlists are processed
+             * as soon as they are found, rather than after the entire file has been
+             * read.
+             */
+            fileLogger.info("looking for global information elements");
+
+            while (plist.nextTag() == true)
             {
-                handleJDOMError(dateKey,
-                        "could not find <" + ELEM_DATE + "> element after '" + KEY_DATE + "' key");
+                if (!plist.getName().equals(ELEM_KEY))
+                {
+                    plist.skipElement();
+                    continue;
+                }
+
+                String keyValue = plist.getElementTextTrim();
+                switch (keyValue)
+                {
+
+                /*
+                 * Locate the following <date> element for the date key.
+                 *
+                 * NOTE: This is optional.
+                 */
+                case KEY_DATE:
+                    if (plist.nextTag() == false || !plist.getName().equals(ELEM_DATE))
+                    {
+                        handleXMLError(plist, "could not find <" + ELEM_DATE + "> element after '"
+                                + KEY_DATE + "' key");
+                    }
+                    xmlDate = plist.getElementTextTrim();
+                    break;
+
+                /*
+                 * Locate the following <dict> element for the tracks key, which in
+                 * turn contains the tracks as children.
+                 */
+                case KEY_TRACKS:
+                    if (plist.nextTag() == false || !plist.getName().equals(ELEM_DICT))
+                    {
+                        handleXMLError(plist, "could not find <" + ELEM_DICT + "> element after '"
+                                + KEY_TRACKS + "' key");
+                    }
+
+                    /*
+                     * Now gather the actual tracks. The <dict> element is empty if
+                     * we're parsing them in parallel.
+                     */
+                    fileLogger.info("gathering tracks");
+                    long startTime = System.currentTimeMillis();
+                    if (mappedFile != null)
+                    {
+                        generateTracksParallel(mappedFile, listener);
+                        plist.skipElement();
+                    }
+                    else
+                    {
+                        generateTracks(plist, listener);
+                    }
+                    fileLogger.info("gathered tracks in "
+                            + (System.currentTimeMillis() - startTime) + " ms ("
+                            + ((mappedFile != null) ? "parallel" : "sequential") + ")");
+                    tracksFound = true;
+                    listener.tracksComplete();
+                    break;
+
+                /*
+                 * Locate the following <array> element for the playlists key, which
+                 * in turn contains the playlists as children.
+                 */
+                case KEY_PLAYLISTS:
+                    if (plist.nextTag() == false || !plist.getName().equals(ELEM_ARRAY))
+                    {
+                        handleXMLError(plist, "could not find <" + ELEM_ARRAY + "> element after '"
+                                + KEY_PLAYLISTS + "' key");
+                    }
+
+                    /*
+                     * Playlists refer to tracks, so the tracks must come first.
+                     */
+                    if (tracksFound == false)
+                    {
+                        handleXMLError(plist, "could not find '" + KEY_TRACKS + "' key");
+                    }
+
+                    /*
+                     * Gather playlists.
+                     */
+                    fileLogger.info("gathering playlists");
+                    generatePlaylists(plist, listener);
+                    playlistsFound = true;
+                    break;
+
+                /*
+                 * We need to skip over the sibling element for all keys we don't
+                 * process.
+                 */
+                default:
+                    skipValue(plist, keyValue);
+                }
             }
         }
-        
+        finally
+        {
+            plist.close();
+        }
+
+        if (tracksFound == false)
+        {
+            handleXMLError("could not find '" + KEY_TRACKS + "' key");
+        }
+
+        if (playlistsFound == false)
+        {
+            handleXMLError("could not find '" + KEY_PLAYLISTS + "' key");
+        }
+
         /*
          * The <date> element doesn't exist, so use the file modification date.
          */
-        else
+        if (xmlDate == null)
         {
         	Path xmlPath = Paths.get(xmlFileName);
         	BasicFileAttributes attrs = Files.readAttributes(xmlPath, BasicFileAttributes.class);
         	xmlDate = attrs.lastModifiedTime().toString();
         }
-        
-        /*
-         * Parse the date if we were successful.
-         */
-        if (xmlDate != null)
-        {
-            try
-            {
-                fileDate = Utilities.parseDate(xmlDate);
-            }
-            catch (ParseException e)
-            {
-                MainWindow.logException(fileLogger, e);
-                handleJDOMError("unable to parse date value " + xmlDate);
-            }
-        }
 
         /*
-         * Locate the following <dict> element for the tracks key, which in turn
-         * contains the tracks as children.
+         * Parse the date.
          */
-        if (trackKey != null)
+        try
         {
-            tracksHolder = nextSibling(trackKey);
-            if (tracksHolder == null || !tracksHolder.getName().equals(ELEM_DICT))
-            {
-                handleJDOMError(trackKey, "could not find <" + ELEM_DICT + "> element after '"
-                        + KEY_TRACKS + "' key");
-            }
+            fileDate = Utilities.parseDate(xmlDate);
         }
-        else
+        catch (ParseException e)
         {
-            handleJDOMError("could not find '" + KEY_TRACKS + "' key");
+            MainWindow.logException(fileLogger, e);
+            handleXMLError("unable to parse date value " + xmlDate);
         }
+    }
 
-        /*
-         * Locate the following <array> element for the playlists key, which in
-         * turn contains the playlists as children.
-         */
-    	if (playlistKey != null)
-    	{
-    		playlistsHolder = nextSibling(playlistKey);
-    		if (playlistsHolder == null || !playlistsHolder.getName().equals(ELEM_ARRAY))
-    		{
-    			handleJDOMError(playlistKey, "could not find <" + ELEM_ARRAY + "> element after '"
-    					+ KEY_PLAYLISTS + "' key");
-    		}
-    	}
-    	else
-    	{
-    		handleJDOMError("could not find '" + KEY_PLAYLISTS + "' key");
-    	}
+    // ---------------- Private methods -------------------------------------
 
-        /*
-         * Now gather the actual tracks.
-         */
-        fileLogger.info("gathering tracks");
-        generateTracks(tracksHolder);
+    /*
+     * Create the tracks from the XML file. The reader is positioned on the
+     * <dict> element that holds the tracks.
+     */
+    private static void generateTracks(PlistStreamReader plist, LibraryListener listener)
+    {
+        trackLogger.trace("generateTracks");
 
         /*
-         * Now that the tracks (and artists) are all created, post-process the artists
-         * to try and find additional alternate names, and to verify artist alternate name 
-         * overrides.
+         * Walk through the children of the parent <dict> element.
+         *
+         * Each track consists of a pair of sibling elements:
+         *
+         * - <key>ID number</key>
+         * - <dict> ... </dict>  (whose children are the attributes of the track)
+         *
+         * Each track is completely processed before the next one is read.
          */
-        ArtistNames.postProcessArtists();
+        trackLogger.debug("starting track loop");
+        while (plist.nextTag() == true)
+        {
 
-        /*
-         * Gather playlists.
-         */
-    	fileLogger.info("gathering playlists");
-    	generatePlaylists(playlistsHolder);
+            /*
+             * The first element of the pair is expected to be the ID key.
+             */
+            if (!plist.getName().equals(ELEM_KEY))
+            {
+                handleXMLError(plist, "<" + ELEM_DICT + "> element child is not <" + ELEM_KEY + ">");
+            }
 
-    	/*
-    	 * Post-process the playlists as follows:
-    	 * 
-    	 *   1) Set the content count for all folder playlists.
-    	 *   2) Mark all bypassed playlists.
-    	 *   3) Update track playlist info for all playlists.
-    	 */
-    	PlaylistCollection.postProcessPlaylists();
+            int ID = Integer.valueOf(plist.getElementTextTrim());
 
-        /*
-         * Log the XML file statistics.
-         */
-        Database.logFileStats();
-    }
+            /*
+             * The second element of the pair is expected to be the <dict> element
+             * containing the track attributes.
+             */
+            if (plist.nextTag() == false || !plist.getName().equals(ELEM_DICT))
+            {
+                handleXMLError(plist,
+                        "did not find <" + ELEM_DICT + "> element after track ID " + ID);
+            }
 
-    // ---------------- Private methods -------------------------------------
+            listener.trackFound(readTrack(plist, ID));
+        }
+    }
 
     /*
-     * Create the tracks from the XML file.
+     * Create the tracks from a mapped XML file, parsing the chunks of the tracks
+     * section in parallel. The tracks are handed to the listener in file order,
+     * as each chunk completes.
      */
-    private static void generateTracks(Element tracksHolder)
+    private static void generateTracksParallel(MappedPlistFile mappedFile,
+            LibraryListener listener)
     {
-        trackLogger.trace("generateTracks");
+        trackLogger.trace("generateTracksParallel");
+
+        int chunkCount = mappedFile.getChunkCount();
+        trackLogger.info("parsing tracks in " + chunkCount + " chunks");
 
         /*
-         * Get a list of the XML tracks to work with.
+         * Start all the chunks. Forking from outside a fork-join pool runs them on the
+         * common pool.
          */
-        List<Element> tracksXML = javaListToPivotList(tracksHolder);
+        ArrayList<TracksChunkTask> chunkTasks = new ArrayList<TracksChunkTask>(chunkCount);
+        for (int i = 0; i < chunkCount; i++)
+        {
+            TracksChunkTask chunkTask = new TracksChunkTask(mappedFile, i);
+            chunkTasks.add(chunkTask);
+            chunkTask.fork();
+        }
 
         /*
-         * We collect all the tracks into an ArrayList of type Track.
-         * Make sure it's sorted by track name.
+         * Hand the tracks to the listener chunk by chunk. If anything fails, don't leave the
+         * remaining chunks running.
          */
-        ArrayList<Track> tracks = Database.getTracks();
-        tracks.setComparator(new Comparator<Track>()
+        boolean complete = false;
+        try
         {
-            @Override
-            public int compare(Track t1, Track t2)
+            for (TracksChunkTask chunkTask : chunkTasks)
             {
-                return t1.compareTo(t2);
+                for (Track trackObj : chunkTask.join())
+                {
+                    listener.trackFound(trackObj);
+                }
             }
-        });
-
-        /*
-         * Get the duplicates map.
-         */
-        Map<String, List<Integer>> duplicatesMap = Database.getDuplicatesMap();
-
-        /*
-         * Get the list of artist names, and set a case-insensitive
-         * comparator.
-         */
-        ArrayList<ArtistCorrelator> artistCorrelators = Database.getArtistCorrelators();
-        artistCorrelators.setComparator(new Comparator<ArtistCorrelator>()
+            complete = true;
+        }
+        finally
         {
-            @Override
-            public int compare(ArtistCorrelator c1, ArtistCorrelator c2)
+            if (complete == false)
             {
-                return c1.compareToNormalized(c2);
+                for (TracksChunkTask chunkTask : chunkTasks)
+                {
+                    chunkTask.cancel(true);
+                }
             }
-        });
+        }
+    }
 
-        /*
-         * Get the artists map.
-         */
-        Map<Integer, Artist> artists = Database.getArtists();
-        
-        /*
-         * Get the codecs map.
-         */
-        Map<String, CodecStats> codecStats = Database.getCodecStats();
-        codecStats.setComparator(String.CASE_INSENSITIVE_ORDER);
+    /*
+     * Read the attributes of a single track. The reader is positioned on the
+     * track <dict> element, and is left positioned on its end element.
+     */
+    private static Track readTrack(PlistStreamReader plist, int ID)
+    {
+        Track trackObj = new Track(ID);
 
         /*
-         * Walk through the elements of the parent <dict> element.
-         * 
-         * This is tricky stuff. Each track consists of a pair of sibling
-         * elements: 
-         * 
-         * - <key>ID number</key> 
-         * - <dict> ... </dict>  (whose children are the attributes of the track)
-         * 
-         * We walk all the children expecting this structure, so we use
-         * variables that are expected to be set when the ID key is found, then
-         * used after we continue the loop once the ID key is processed. I know
-         * this is hideous.
+         * Walk through the track attribute elements.
          */
-        int ID = 0;
-        Track trackObj = null;
-
-        trackLogger.debug("starting track loop");
-        for (Element trackElem : tracksXML)
+        while (plist.nextTag() == true)
         {
 
             /*
-             * Grab the element and process it if it's an ID key.
+             * The first track attribute element of a pair is expected
+             * to be <key>.
              */
-            if (trackElem.getName().equals(ELEM_KEY))
+            if (!plist.getName().equals(ELEM_KEY))
             {
-
-                /*
-                 * Sanity check the hideous variables.
-                 */
-                if (ID != 0 || trackObj != null)
-                {
-                    handleJDOMError(trackElem,
-                            "did not find <" + ELEM_DICT + "> element after track ID " + ID);
-                }
-
-                ID = Integer.valueOf(trackElem.getTextTrim());
-
-                /*
-                 * Now that the ID key has been processed, iterate the loop to
-                 * process the sibling <dict> element.
-                 */
-                continue;
+                handleXMLError(plist,
+                        "<" + ELEM_DICT + "> element child is not <" + ELEM_KEY + ">");
             }
 
             /*
-             * Process the <dict> element that is a sibling to the ID key.
+             * Process the track attributes we care about, and
+             * ignore the rest.
              */
-            if (trackElem.getName().equals(ELEM_DICT))
+            String keyValue = plist.getElementTextTrim();
+            switch (keyValue)
             {
+            case "Name":
+                trackObj.setName(nextStringValue(plist, keyValue));
+                break;
 
-                /*
-                 * Get the children elements that are the track attributes.
-                 */
-                List<Element> trackChildren = javaListToPivotList(trackElem);
+            case "Artist":
+                trackObj.setArtist(nextStringValue(plist, keyValue));
+                break;
 
-                /*
-                 * Initialize the track object.
-                 */
-                trackObj = new Track(ID);
+            case "Composer":
+                trackObj.setComposer(nextStringValue(plist, keyValue));
+                break;
 
-                /*
-                 * Walk through the track attribute elements.
-                 */
-                Iterator<Element> trackChildIter = trackChildren.iterator();
-                while (trackChildIter.hasNext())
-                {
-                    Element trackAttr = trackChildIter.next();
+            case "Album":
+                trackObj.setAlbum(nextStringValue(plist, keyValue));
+                break;
 
-                    /*
-                     * The first track attribute element of a pair is expected
-                     * to be <key>.
-                     */
-                    if (trackAttr.getName().equals(ELEM_KEY))
-                    {
+            case "Genre":
+                trackObj.setGenre(nextStringValue(plist, keyValue));
+                break;
 
-                        /*
-                         * Process the track attributes we care about, and
-                         * ignore the rest.
-                         */
-                        String keyValue = trackAttr.getTextTrim();
-                        switch (keyValue)
-                        {
-                        case "Name":
-                            trackObj.setName(nextStringValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Artist":
-                            trackObj.setArtist(nextStringValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Composer":
-                            trackObj.setComposer(nextStringValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Album":
-                            trackObj.setAlbum(nextStringValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Genre":
-                            trackObj.setGenre(nextStringValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Kind":
-                        	String kind = nextStringValue(trackChildIter, keyValue);
-                            trackObj.setKind(kind);
-                            
-                            /*
-                             * Set the type of track. A kind that doesn't match any known type will 
-                             * result in a warning when creating the tracks map, and audio will be assumed.
-                             */
-                            if (kind.toLowerCase().contains("audio"))
-                            {
-                            	trackObj.setTrackType(Track.TrackType.AUDIO);
-                            }
-                            else if (kind.toLowerCase().contains("video"))
-                            {
-                            	trackObj.setTrackType(Track.TrackType.VIDEO);
-                            }
-                            else
-                            {
-                            	trackObj.setTrackType(Track.TrackType.UNKNOWN);
-                            }
-                            
-                            /*
-                             * Get the codec name, for example AAC. Change MPEG to MP3 since it's more common.
-                             */
-                            String[] kindWords = kind.split(" ");
-                            String codec = kindWords[0];
-                            if (codec.equals("MPEG"))
-                            {
-                            	codec = "MP3";
-                            }
-                            
-                            /*
-                             * Accumulate a count of each codec discovered.
-                             */
-                            CodecStats stats = codecStats.get(codec);
-                            if (stats != null)
-                            {
-                            	stats.incrementCount();
-                            }
-                            else
-                            {
-                            	stats = new CodecStats();
-                            	stats.setCount(1);
-                            	stats.setType(trackObj.getTrackType());
-                            }
-                        	codecStats.put(codec, stats);
-                            
-                        	break;
-
-                        case "Size":
-                            trackObj.setSize(nextIntValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Total Time":
-                            trackObj.setDuration(nextIntValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Year":
-                            trackObj.setYear(nextYearValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Date Modified":
-                            trackObj.setModified(nextDateValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Date Added":
-                            trackObj.setDateAdded(nextDateValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Bit Rate":
-                            trackObj.setBitRate(nextIntValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Sample Rate":
-                            trackObj.setSampleRate(nextIntValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Play Count":
-                            trackObj.setPlayCount(nextIntValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Release Date":
-                            trackObj.setReleased(nextDateValue(trackChildIter, keyValue));
-                            break;
-
-                        case "Rating":
-                            trackObj.setRating(nextIntValue(trackChildIter, keyValue));
-                            break;
-
-                        /*
-                         * We need to skip over the sibling element for all
-                         * attributes we don't process.
-                         */
-                        default:
-                            trackAttr = trackChildIter.next();
-                        }
-                    }
-                    else
-                    {
-                        handleJDOMError(trackAttr,
-                                "<" + ELEM_DICT + "> element child is not <" + ELEM_KEY + ">");
-                    }
-                }
-                
-                boolean trackLogged = false;
-                Track.TrackType trackType = trackObj.getTrackType();
+            case "Kind":
+            	String kind = nextStringValue(plist, keyValue);
+                trackObj.setKind(kind);
 
                 /*
-                 * Add the track to the duplicates map if necessary. We have to
-                 * do this before adding it to the main tracks list, to avoid
-                 * false duplicates.
-                 * 
-                 * The standard track comparator compares a number of items to ensure
-                 * uniqueness. But that would short-circuit the duplicates map because 
-                 * it would only find duplicates for the same artist and same album.
-                 * So we use just a name comparator.
+                 * Set the type of track. A kind that doesn't match any known type will
+                 * result in a warning when creating the tracks map, and audio will be assumed.
                  */
-                Comparator<Track> nameComparator = (new Comparator<Track>()
+                if (kind.toLowerCase().contains("audio"))
                 {
-                    @Override
-                    public int compare(Track t1, Track t2)
-                    {
-                        return t1.compareToName(t2);
-                    }
-                });
-                
-				int index = ArrayList.binarySearch(tracks, trackObj, nameComparator);
-            	if (index >= 0)
-            	{
-            		List<Integer> trackIDs;
-            		String trackName = trackObj.getName();
-            		int thisID = trackObj.getID();
-
-            		if ((trackIDs = duplicatesMap.get(trackName)) == null)
-            		{
-            			trackIDs = new ArrayList<Integer>();
-            			int foundID = tracks.get(index).getID();
-            			trackIDs.add(foundID);
-            			trackLogger.debug("initialized duplicates map entry for track '" + trackName
-            					+ "', track ID " + foundID);
-            		}
-            		trackIDs.add(thisID);
-            		trackLogger.debug("added track ID " + thisID + " type " + trackType + " to track '" + trackName + "'");
-            		trackLogged = true;
-
-            		duplicatesMap.put(trackName, trackIDs);
-            	}
-
-            	/*
-            	 * Add the track object to the all tracks list.
-            	 */
-            	tracks.add(trackObj);
-            	if (trackLogged == false)
-            	{
-            		trackLogger.debug("found track ID " + ID + " type " + trackType + ", name '" + trackObj.getName() + "'");
-            	}
-            }
-            else
-            {
-                handleJDOMError(trackElem,
-                        "did not find <" + ELEM_DICT + "> element after track ID " + ID);
-            }
+                	trackObj.setTrackType(Track.TrackType.AUDIO);
+                }
+                else if (kind.toLowerCase().contains("video"))
+                {
+                	trackObj.setTrackType(Track.TrackType.VIDEO);
+                }
+                else
+                {
+                	trackObj.setTrackType(Track.TrackType.UNKNOWN);
+                }
+            	break;
 
-            /*
-             * Handle tracks that have an artist.
-             */
-            String artist = trackObj.getArtist();
-            if (artist != null)
-            {
+            case "Size":
+                trackObj.setSize(nextIntValue(plist, keyValue));
+                break;
 
-                /*
-                 * Get an artist names object and normalize the artist name.
-                 */
-                ArtistNames artistNames = new ArtistNames(artist);
-                String normalizedName = artistNames.normalizeName();
+            case "Total Time":
+                trackObj.setDuration(nextIntValue(plist, keyValue));
+                break;
 
-                /*
-                 * Try to match the artist name to the current list of artists. This method
-                 * detects alternate artist names, matching them to the existing primary name.
-                 */
-                int index = artistNames.matchArtist(artistCorrelators, artistLogger);
-                if (index < 0)
-                {
+            case "Year":
+                trackObj.setYear(nextYearValue(plist, keyValue));
+                break;
 
-                    /*
-                     * We did not find a match. Add the artist name to the list of such names
-                     * (as a correlator object).
-                     */
-                    ArtistCorrelator artistCorr = new ArtistCorrelator(artist);
-                    artistCorr.setNormalizedName(normalizedName);
-                    artistCorrelators.add(artistCorr);
+            case "Date Modified":
+                trackObj.setModified(nextDateValue(plist, keyValue));
+                break;
 
-                    /*
-                     * Create a new artist object, initialize it from the track, and add it to 
-                     * the artist map.
-                     */
-                    Artist artistObj = new Artist(artist);
-                    artistObj.setArtistNames(artistNames);
-                    artistObj.addTrackToArtist(trackObj, artistLogger);
-                    Integer correlator = artistObj.getCorrelator();
-                    artistCorr.setArtistKey(correlator);
-                    artists.put(correlator, artistObj);
-                    artistLogger.debug("found artist name '" + artist + "', normalized '"
-                            + normalizedName + "'");
-                }
+            case "Date Added":
+                trackObj.setDateAdded(nextDateValue(plist, keyValue));
+                break;
 
-                /*
-                 * The artist already exists in the list of artist names and the
-                 * artist map. Update the artist object from the track and then
-                 * replace it in the artist map.
-                 */
-                else
-                {
-                    ArtistCorrelator artistCorr = artistCorrelators.get(index);
-                    Artist artistObj = artists.get(artistCorr.getArtistKey());
-                    artistObj.addTrackToArtist(trackObj, artistLogger);
-                    artists.put(artistCorr.getArtistKey(), artistObj);
-                    artistLogger.debug("updated existing artist name '" + artist + "', normalized '"
-                            + normalizedName + "'");
-                }
-            }
+            case "Bit Rate":
+                trackObj.setBitRate(nextIntValue(plist, keyValue));
+                break;
+
+            case "Sample Rate":
+                trackObj.setSampleRate(nextIntValue(plist, keyValue));
+                break;
+
+            case "Play Count":
+                trackObj.setPlayCount(nextIntValue(plist, keyValue));
+                break;
+
+            case "Release Date":
+                trackObj.setReleased(nextDateValue(plist, keyValue));
+                break;
+
+            case "Rating":
+                trackObj.setRating(nextIntValue(plist, keyValue));
+                break;
 
             /*
-             * Reset these hideous variables for the next pair of elements.
+             * We need to skip over the sibling element for all
+             * attributes we don't process.
              */
-            ID = 0;
-            trackObj = null;
+            default:
+                skipValue(plist, keyValue);
+            }
         }
 
-        /*
-         * Generate the track ID to index mappings. We have to wait until all
-         * tracks have been found and sorted in order for the indices to be
-         * correct.
-         */
-        Database.generateTrackIDMappings(trackLogger);
+        return trackObj;
     }
 
     /*
-     * Create the playlists from the XML file.
+     * Create the playlists from the XML file. The reader is positioned on the
+     * <array> element that holds the playlists.
      */
-    private static void generatePlaylists(Element playlistsHolder)
+    private static void generatePlaylists(PlistStreamReader plist, LibraryListener listener)
     {
         playlistLogger.trace("generatePlaylists");
 
         /*
-         * Reset the playlist ignored count, so it doesn't keep growing if we
-         * reread the XML file.
-         */
-        Database.setPlaylistIgnoredCount(0);
-
-        /*
-         * Get a list of the XML playlists to work with.
-         */
-        List<Element> playlistsXML = javaListToPivotList(playlistsHolder);
-
-        /*
-         * We collect all the playlists into a HashMap of the playlist name to
-         * its Playlist object. Initialize it now.
-         */
-        Map<String, Playlist> playlists = Database.getPlaylists();
-
-        /*
-         * To be able to find a given playlist by name, we also create a HashMap
-         * of the playlist name to ID.
-         */
-        Map<String, String> playlistsMap = Database.getPlaylistsMap();
-
-        /*
-         * Initialize the list of playlist names, and set a case-insensitive
-         * comparator.
-         */
-        List<String> playlistNames = Database.getPlaylistNames();
-        playlistNames.setComparator(String.CASE_INSENSITIVE_ORDER);
-
-        /*
-         * Walk through the elements of the parent <array> element.
+         * Walk through the children of the parent <array> element, each of which
+         * is a <dict> element representing one playlist.
          */
         playlistLogger.debug("starting playlist loop");
-        for (Element playlistElem : playlistsXML)
+        while (plist.nextTag() == true)
         {
+            if (!plist.getName().equals(ELEM_DICT))
+            {
+                handleXMLError(plist,
+                        "<" + ELEM_ARRAY + "> element child is not <" + ELEM_DICT + ">");
+            }
 
             /*
              * Create a new playlist object.
              */
             Playlist playlistObj = new Playlist();
 
-            /*
-             * Get the children elements that are the playlist attributes.
-             */
-            List<Element> playlistChildren = javaListToPivotList(playlistElem);
-
             /*
              * Walk through the playlist attribute elements.
              */
-            Iterator<Element> playlistChildIter = playlistChildren.iterator();
-            while (playlistChildIter.hasNext())
+            while (plist.nextTag() == true)
             {
-                Element playlistAttr = playlistChildIter.next();
 
                 /*
                  * The first playlist attribute element of a pair is expected to
                  * be <key>.
                  */
-                if (playlistAttr.getName().equals(ELEM_KEY))
+                if (!plist.getName().equals(ELEM_KEY))
                 {
+                    handleXMLError(plist,
+                            "<" + ELEM_DICT + "> element child is not <" + ELEM_KEY + ">");
+                }
 
-                    /*
-                     * Process the playlist attributes we care about, and ignore
-                     * the rest.
-                     */
-                    String keyValue = playlistAttr.getTextTrim();
-                    switch (keyValue)
-                    {
-                    case "Name":
-                        String plName = nextStringValue(playlistChildIter, keyValue);
-                        playlistObj.setName(plName);
-
-                        /*
-                         * If this playlist is to be ignored, indicate so.
-                         */
-                        if (PlaylistCollection.isPlaylistIgnored(plName))
-                        {
-                            playlistObj.setIgnored(true);
-                            Database.incrementPlaylistIgnoredCount(1);
-                        }
-                        break;
-
-                    case "Playlist Persistent ID":
-                        playlistObj.setPersistentID(nextStringValue(playlistChildIter, keyValue));
-                        break;
-
-                    case "Parent Persistent ID":
-                        playlistObj.setParentPersistentID(
-                                nextStringValue(playlistChildIter, keyValue));
-                        break;
-
-                    case "Playlist Items":
+                /*
+                 * Process the playlist attributes we care about, and ignore
+                 * the rest.
+                 */
+                String keyValue = plist.getElementTextTrim();
+                switch (keyValue)
+                {
+                case "Name":
+                    playlistObj.setName(nextStringValue(plist, keyValue));
+                    break;
 
-                        /*
-                         * Gather the playlist track IDs.
-                         */
-                        List<Integer> playlistTracks = new LinkedList<Integer>();
-                        playlistTracks = gatherPlaylistTracks(playlistAttr);
+                case "Playlist Persistent ID":
+                    playlistObj.setPersistentID(nextStringValue(plist, keyValue));
+                    break;
 
-                        playlistLogger.debug("playlist '" + playlistObj.getName() + "' has "
-                                + playlistTracks.getLength() + " tracks");
-                        playlistObj.setTracks(playlistTracks);
+                case "Parent Persistent ID":
+                    playlistObj.setParentPersistentID(nextStringValue(plist, keyValue));
+                    break;
 
-                        /*
-                         * Skip over the entire playlist tracks element.
-                         */
-                        playlistAttr = playlistChildIter.next();
-                        break;
+                case "Playlist Items":
 
                     /*
-                     * We need to skip over the sibling element for all
-                     * attributes we don't process.
+                     * Gather the playlist track IDs.
                      */
-                    default:
-                        playlistAttr = playlistChildIter.next();
-                    }
-                }
-                else
-                {
-                    handleJDOMError(playlistAttr,
-                            "<" + ELEM_DICT + "> element child is not <" + ELEM_KEY + ">");
-                }
-            }
+                    TrackIDList playlistTracks = gatherPlaylistTracks(plist, keyValue);
 
-            /*
-             * Add the playlist object to the collection.
-             */
-            playlists.put(playlistObj.getPersistentID(), playlistObj);
-            playlistsMap.put(playlistObj.getName(), playlistObj.getPersistentID());
-            playlistLogger.debug("found playlist name " + playlistObj.getName());
+                    playlistLogger.debug("playlist '" + playlistObj.getName() + "' has "
+                            + playlistTracks.getLength() + " tracks");
+                    playlistObj.setTracks(playlistTracks);
+                    break;
 
-            /*
-             * If the playlist is not ignored, add its name to the playlist name
-             * list.
-             */
-            if (playlistObj.getIgnored() == false)
-            {
-                Database.addPlaylistName(playlistObj.getName());
+                /*
+                 * We need to skip over the sibling element for all
+                 * attributes we don't process.
+                 */
+                default:
+                    skipValue(plist, keyValue);
+                }
             }
+
+            listener.playlistFound(playlistObj);
         }
     }
 
     /*
      * Gather the list of tracks for a playlist.
-     * 
+     *
      * Once again we have XML ridiculousness to deal with. The playlist tracks
      * are laid out like so:
-     * 
-     *   <key>Playlist Items</key> 
-     *     <array> 
-     *       <dict> 
-     *         <key>Track ID</key><integer>nnnn</integer> 
-     *       </dict> 
+     *
+     *   <key>Playlist Items</key>
+     *     <array>
+     *       <dict>
+     *         <key>Track ID</key><integer>nnnn</integer>
+     *       </dict>
      *     </array>
-     * 
-     * We're passed the element for 'Playlist Items'.
+     *
+     * The reader is positioned on the 'Playlist Items' key, and is left
+     * positioned on the end of the <array> element.
      */
-    private static List<Integer> gatherPlaylistTracks(Element playlistTracksKeyElem)
+    private static TrackIDList gatherPlaylistTracks(PlistStreamReader plist, String keyName)
     {
         playlistLogger.trace("gatherPlaylistTracks");
 
-        List<Integer> playlistTracks = new LinkedList<Integer>();
+        TrackIDList playlistTracks = new TrackIDList();
 
         /*
-         * Get the next sibling, which should be the <array> element.
+         * The next element should be the <array> element.
          */
-        Element playlistTracksHolder = nextSibling(playlistTracksKeyElem);
-        if (playlistTracksHolder == null || !playlistTracksHolder.getName().equals(ELEM_ARRAY))
+        if (plist.nextTag() == false || !plist.getName().equals(ELEM_ARRAY))
         {
-            handleJDOMError(playlistTracksKeyElem, "could not find <" + ELEM_ARRAY
-                    + "> element after '" + playlistTracksKeyElem.getTextTrim() + "' key");
+            handleXMLError(plist, "could not find <" + ELEM_ARRAY + "> element after '"
+                    + keyName + "' key");
         }
 
         /*
-         * Get the children of the <array>, which is a list of <dict> elements.
+         * Walk the children of the <array>, which is a list of <dict> elements.
          */
-        List<Element> playlistTracksDictList = javaListToPivotList(playlistTracksHolder);
-
-        /*
-         * Walk the <dict> list.
-         */
-        for (Element playlistTracksDictElem : playlistTracksDictList)
+        while (plist.nextTag() == true)
         {
+            if (!plist.getName().equals(ELEM_DICT))
+            {
+                handleXMLError(plist,
+                        "<" + ELEM_ARRAY + "> element child is not <" + ELEM_DICT + ">");
+            }
 
             /*
-             * Get the children of this <dict> element, which are the playlist
+             * Walk the children of this <dict> element, which are the playlist
              * track attributes. Yay.
              */
-            List<Element> playlistTrackAttrs = javaListToPivotList(playlistTracksDictElem);
-
-            /*
-             * Walk the list of playlist track attributes.
-             */
-            Iterator<Element> playlistTrackAttrsIter = playlistTrackAttrs.iterator();
-            while (playlistTrackAttrsIter.hasNext())
+            while (plist.nextTag() == true)
             {
-                Element playlistTracksAttr = playlistTrackAttrsIter.next();
 
                 /*
                  * The first element of the pair is expected to be <key>.
                  */
-                if (playlistTracksAttr.getName().equals(ELEM_KEY))
+                if (!plist.getName().equals(ELEM_KEY))
+                {
+                    handleXMLError(plist,
+                            "<" + ELEM_DICT + "> element child is not <" + ELEM_KEY + ">");
+                }
+
+                /*
+                 * The name of the <key> is expected to be "Track ID".
+                 */
+                String keyValue = plist.getElementTextTrim();
+
+                if (keyValue.equals("Track ID"))
                 {
 
                     /*
-                     * The name of the <key> is expected to be "Track ID".
+                     * So we finally have the track ID. Add it to the
+                     * collection we will return.
                      */
-                    String keyValue = playlistTracksAttr.getTextTrim();
-
-                    if (keyValue.equals("Track ID"))
-                    {
-
-                        /*
-                         * So we finally have the track ID. Add it to the
-                         * collection we will return.
-                         */
-                        Integer playlistTrackID =
-                                Integer.valueOf(nextIntValue(playlistTrackAttrsIter, keyValue));
-                        playlistTracks.add(playlistTrackID);
-                    }
-                    else
-                    {
-                        handleJDOMError(playlistTracksAttr,
-                                "'Playlist Items' child is not 'Track ID");
-                    }
+                    playlistTracks.add(nextIntValue(plist, keyValue));
                 }
                 else
                 {
-                    handleJDOMError(playlistTracksAttr,
-                            "<" + ELEM_DICT + "> element child is not <" + ELEM_KEY + ">");
+                    handleXMLError(plist, "'Playlist Items' child is not 'Track ID");
                 }
             }
         }
+        playlistTracks.trimToLength();
 
         return playlistTracks;
     }
 
-    /*
-     * Guess I'm stupid, because I could not find a way to easily convert
-     * java.util.List to Pivot's List. Hence this ridiculous method :(
-     */
-    private static List<Element> javaListToPivotList(Element elem)
-    {
-        List<Element> listChildren = new ArrayList<Element>();
-
-        java.util.List<Element> xmlChildren = elem.getChildren();
-        for (Element childElem : xmlChildren)
-        {
-            listChildren.add(childElem);
-        }
-
-        return listChildren;
-    }
-
-    /*
-     * JDOM doesn't include a method to find sibling elements. But we need to
-     * locate the next sibling in many cases, due to the weird structure of the
-     * XML.
-     */
-    private static Element nextSibling(Element current)
-    {
-        Element nextSibling = null;
-
-        try
-        {
-
-            /*
-             * If the current element is root, just grab the next element (1).
-             */
-            if (current.isRootElement())
-            {
-                nextSibling = (Element) current.getContent(1);
-            }
-
-            /*
-             * For non-root elements, get the parent's child list, locate the
-             * current element within that list, then grab the next sequential
-             * element.
-             */
-            else
-            {
-                Element parent = current.getParentElement();
-                List<Element> children = javaListToPivotList(parent);
-                int myIndex = children.indexOf(current);
-
-                if (myIndex >= 0 && myIndex < children.getLength() - 1)
-                {
-                    nextSibling = (Element) children.get(myIndex + 1);
-                }
-            }
-        }
-        catch (IndexOutOfBoundsException e)
-        {
-            MainWindow.logException(fileLogger, e);
-            handleJDOMError("expected sibling element not found after " + current.getTextTrim());
-        }
-
-        return nextSibling;
-    }
-
     /*
      * Track and playlist attributes come in sibling pairs, for example:
-     * 
+     *
      * <key>Name</key><string>Silence Is Golden</string>
-     * 
-     * We need to process these with an iterator, so can't use getNextSibling()
-     * to find the sibling with the attribute value. This method uses the
-     * iterator to get the value from the second element, so as to keep the
-     * integrity of the iterator.
-     * 
-     * Note that getNextSibling() is still needed for cases when we don't have
-     * an iterator.
+     *
+     * The reader is positioned on the <key> element. This method advances to
+     * the second element and returns its value, leaving the reader positioned
+     * on the end of the second element.
      */
-    private static String nextStringValue(Iterator<Element> trackChildIter, String keyName)
+    private static String nextStringValue(PlistStreamReader plist, String keyName)
     {
-        Element nextTrackAttr = trackChildIter.next();
-        if (!nextTrackAttr.getName().equals(ELEM_STRING))
+        if (plist.nextTag() == false || !plist.getName().equals(ELEM_STRING))
         {
-            handleJDOMError(nextTrackAttr,
+            handleXMLError(plist,
                     "expected <" + ELEM_STRING + "> element not found after '" + keyName + "' key");
         }
 
-        return nextTrackAttr.getTextTrim();
+        return plist.getElementTextTrim();
     }
 
     /*
-     * See getNextStringValue() for more information.
+     * See nextStringValue() for more information.
      */
-    private static int nextIntValue(Iterator<Element> trackChildIter, String keyName)
+    private static int nextIntValue(PlistStreamReader plist, String keyName)
     {
-        Element nextTrackAttr = trackChildIter.next();
-        if (!nextTrackAttr.getName().equals(ELEM_INTEGER))
+        if (plist.nextTag() == false || !plist.getName().equals(ELEM_INTEGER))
         {
-            handleJDOMError(nextTrackAttr, "expected <" + ELEM_INTEGER
+            handleXMLError(plist, "expected <" + ELEM_INTEGER
                     + "> element not found after '" + keyName + "' key");
         }
 
-        return Integer.valueOf(nextTrackAttr.getTextTrim());
+        return Integer.valueOf(plist.getElementTextTrim());
     }
 
     /*
-     * See getNextStringValue() for more information.
+     * See nextStringValue() for more information.
      */
-    private static Date nextDateValue(Iterator<Element> trackChildIter, String keyName)
+    private static Date nextDateValue(PlistStreamReader plist, String keyName)
     {
-        Element nextTrackAttr = trackChildIter.next();
-        if (!nextTrackAttr.getName().equals(ELEM_DATE))
+        if (plist.nextTag() == false || !plist.getName().equals(ELEM_DATE))
         {
-            handleJDOMError(nextTrackAttr,
+            handleXMLError(plist,
                     "expected <" + ELEM_DATE + "> element not found after '" + keyName + "' key");
         }
 
+        String value = plist.getElementTextTrim();
         Date date = null;
         try
         {
-            date = Utilities.parseDate(nextTrackAttr.getTextTrim());
+            date = Utilities.parseDate(value);
         }
         catch (ParseException e)
         {
             MainWindow.logException(fileLogger, e);
-            handleJDOMError("unable to parse date value " + nextTrackAttr.getTextTrim());
+            handleXMLError(plist, "unable to parse date value " + value);
         }
 
         return date;
     }
 
     /*
-     * See getNextStringValue() for more information.
-     * 
+     * See nextStringValue() for more information.
+     *
      * The year can be an integer such as 1953, or a string such as "2/9/1975" or "2012-08-14T07:00:00Z".
      * We convert the string variants into an integer for consistency, ignoring all but the year.
      */
-    private static int nextYearValue(Iterator<Element> trackChildIter, String keyName)
+    private static int nextYearValue(PlistStreamReader plist, String keyName)
     {
     	int returnVal = 0;
-    	
-        Element nextTrackAttr = trackChildIter.next();
-        switch (nextTrackAttr.getName())
+
+        if (plist.nextTag() == false)
+        {
+            handleXMLError(plist, "expected <" + ELEM_INTEGER + "> or <" + ELEM_STRING
+                    + "> element not found after '" + keyName + "' key");
+        }
+
+        switch (plist.getName())
         {
         case ELEM_INTEGER:
-        	returnVal = Integer.valueOf(nextTrackAttr.getTextTrim());
+        	returnVal = Integer.valueOf(plist.getElementTextTrim());
         	break;
-        	
+
         case ELEM_STRING:
-    		String year = nextTrackAttr.getTextTrim();
-    		
+    		String year = plist.getElementTextTrim();
+
     		if (year.indexOf('/') != -1)
     		{
         		String str[] = year.split("/");
-            	returnVal = Integer.parseInt(str[2]);    			
+            	returnVal = Integer.parseInt(str[2]);
     		}
     		else if (year.indexOf('-') != -1)
     		{
     			returnVal = Integer.valueOf(year.substring(0, 4));
     		}
-    		
+
         	break;
-        	
+
         default:
-            handleJDOMError(nextTrackAttr, "expected <" + ELEM_INTEGER + "> or <" + ELEM_STRING
+            handleXMLError(plist, "expected <" + ELEM_INTEGER + "> or <" + ELEM_STRING
             		+ "> element not found after '" + keyName + "' key");
         }
 
@@ -1102,35 +895,111 @@ public final class XMLHandler
     }
 
     /*
-     * Handle a JDOM error, message only. This method does not return.
+     * Skip over the sibling element of a key we don't process. The value can
+     * be arbitrarily complex, for example an <array> of <dict> elements.
+     */
+    private static void skipValue(PlistStreamReader plist, String keyName)
+    {
+        if (plist.nextTag() == false)
+        {
+            handleXMLError(plist, "expected sibling element not found after " + keyName);
+        }
+
+        plist.skipElement();
+    }
+
+    /*
+     * Handle an XML error, message only. This method does not return.
      */
-    private static void handleJDOMError(String message)
+    private static void handleXMLError(String message)
     {
-        handleJDOMError(null, message);
+        throw new XMLProcessingException(0, 0, message);
     }
 
     /*
-     * Handle a JDOM error, element and message. This method does not return.
+     * Handle an XML error, using the current location of the reader. This
+     * method does not return.
      */
-    private static void handleJDOMError(Element element, String message)
+    private static void handleXMLError(PlistStreamReader plist, String message)
     {
-        int line = 0;
-        int column = 0;
 
         /*
-         * If we have an element, and it's a LocatedElement, then get the line
-         * and column associated with the element.
+         * Throw an XMLProcessingException.
          */
-        if (element != null && element instanceof LocatedElement)
+        throw new XMLProcessingException(plist.getLine(), plist.getColumn(), message);
+    }
+
+    // ---------------- Nested classes --------------------------------------
+
+    /*
+     * Fork-join task that parses one chunk of the tracks section into a list of tracks.
+     */
+    private static final class TracksChunkTask extends RecursiveTask<List<Track>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private transient MappedPlistFile mappedFile;
+        private int index;
+
+        private TracksChunkTask(MappedPlistFile mappedFile, int index)
         {
-            LocatedElement locElem = (LocatedElement) element;
-            line = locElem.getLine();
-            column = locElem.getColumn();
+            this.mappedFile = mappedFile;
+            this.index = index;
         }
 
-        /*
-         * Throw an XMLProcessingException.
-         */
-        throw new XMLProcessingException(line, column, message);
+        @Override
+        protected List<Track> compute()
+        {
+            final List<Track> chunkTracks = new ArrayList<Track>();
+
+            try
+            {
+                PlistStreamReader plist = new PlistStreamReader(mappedFile.openChunk(index),
+                        mappedFile.getChunkLine(index));
+                try
+                {
+                    if (plist.nextTag() == false || !plist.getName().equals(ELEM_DICT))
+                    {
+                        handleXMLError(plist, "could not find <" + ELEM_DICT
+                                + "> element for tracks chunk " + index);
+                    }
+
+                    /*
+                     * Collect the tracks of the chunk. Playlists can't appear here.
+                     */
+                    generateTracks(plist, new LibraryListener()
+                    {
+                        @Override
+                        public void trackFound(Track trackObj)
+                        {
+                            chunkTracks.add(trackObj);
+                        }
+
+                        @Override
+                        public void tracksComplete()
+                        {
+                        }
+
+                        @Override
+                        public void playlistFound(Playlist playlistObj)
+                        {
+                            throw new InternalErrorException(true,
+                                    "playlist found in tracks chunk " + index);
+                        }
+                    });
+                }
+                finally
+                {
+                    plist.close();
+                }
+            }
+            catch (IOException e)
+            {
+                MainWindow.logException(fileLogger, e);
+                handleXMLError("unable to read tracks chunk " + index);
+            }
+
+            return chunkTracks;
+        }
     }
-}
\ No newline at end of file
+}